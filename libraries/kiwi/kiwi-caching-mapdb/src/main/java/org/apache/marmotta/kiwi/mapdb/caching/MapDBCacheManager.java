@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.mapdb.caching;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.marmotta.kiwi.caching.CacheManager;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.mapdb.serializer.NodeSerializer;
+import org.apache.marmotta.kiwi.mapdb.util.DictionaryMap;
+import org.apache.marmotta.kiwi.model.rdf.*;
+import org.mapdb.Atomic;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KiWi Cache Manager implementation based on MapDB. The node caches are kept off-heap in a memory-mapped file, so
+ * that tens of millions of nodes can be cached without a large Java heap:
+ * <ul>
+ *     <li>the node cache stores each node once, in the binary format of KiWiIO, and decodes it when it is read</li>
+ *     <li>the URI, BNode and literal caches are plain string -> node id dictionaries on top of the node cache</li>
+ * </ul>
+ * The triple, namespace and registry caches are small or short-lived and stay on the heap.
+ * <p/>
+ * When a cache directory is configured, the cache file survives restarts. It is only reused when it was closed
+ * properly and belongs to the same database; otherwise it is discarded and the cache starts empty. Without cache
+ * directory, a temporary file is used and deleted on shutdown.
+ * <p/>
+ * Does not support clustered operation.
+ */
+public class MapDBCacheManager implements CacheManager {
+
+    private static Logger log = LoggerFactory.getLogger(MapDBCacheManager.class);
+
+    private static final String CACHE_FILE  = "kiwi-cache.db";
+
+    // marker file present while the cache is open; if it exists on startup, the cache was not closed properly
+    private static final String OPEN_MARKER = "kiwi-cache.open";
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    private KiWiConfiguration configuration;
+
+    private File directory;
+
+    private boolean temporary;
+
+    private DB db;
+
+    private HTreeMap<Long,KiWiNode> nodeCache;
+    private HTreeMap<String,Long> uriDictionary, bnodeDictionary, literalDictionary;
+
+    private DictionaryMap<KiWiUriResource> uriCache;
+    private DictionaryMap<KiWiAnonResource> bnodeCache;
+    private DictionaryMap<KiWiLiteral> literalCache;
+
+    private Cache<Long,KiWiTriple> tripleCache;
+    private Cache<String,KiWiNamespace> namespaceUriCache, namespacePrefixCache;
+    private ConcurrentHashMap<Long,Long> registryCache;
+
+    private Map<String,Cache> dynamicCaches;
+
+
+    public MapDBCacheManager(KiWiConfiguration configuration) {
+        this.configuration = configuration;
+
+        log.info("initialising MapDB off-heap caching backend ...");
+
+        if(configuration.isClustered()) {
+            log.warn("clustering not supported by MapDB caching backend; please use Infinispan or Hazelcast instead!");
+        }
+
+        try {
+            if(configuration.getCacheDirectory() != null) {
+                directory = new File(configuration.getCacheDirectory());
+                if(!directory.exists() && !directory.mkdirs()) {
+                    throw new IOException("could not create cache directory " + directory);
+                }
+                temporary = false;
+            } else {
+                directory = Files.createTempDirectory("kiwi-cache").toFile();
+                temporary = true;
+            }
+
+            File marker = new File(directory, OPEN_MARKER);
+            if(marker.exists()) {
+                log.warn("MapDB cache in {} was not closed properly, discarding it", directory);
+                deleteCacheFiles();
+            }
+
+            db = openDatabase();
+
+            if(!marker.createNewFile()) {
+                log.warn("could not create cache marker file {}", marker);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("could not initialise MapDB cache directory", ex);
+        }
+
+        nodeCache = db.createHashMap(NODE_CACHE)
+                .keySerializer(Serializer.LONG)
+                .valueSerializer(new NodeSerializer())
+                .expireMaxSize(configuration.getNodeCacheSize())
+                .makeOrGet();
+
+        uriDictionary     = createDictionary(URI_CACHE, configuration.getUriCacheSize());
+        bnodeDictionary   = createDictionary(BNODE_CACHE, configuration.getBNodeCacheSize());
+        literalDictionary = createDictionary(LITERAL_CACHE, configuration.getLiteralCacheSize());
+
+        uriCache     = new DictionaryMap<>(uriDictionary, nodeCache, KiWiUriResource.class);
+        bnodeCache   = new DictionaryMap<>(bnodeDictionary, nodeCache, KiWiAnonResource.class);
+        literalCache = new DictionaryMap<>(literalDictionary, nodeCache, KiWiLiteral.class);
+
+        // the node ids cached in the file are only valid for the database they have been created for
+        Atomic.String fingerprint = db.getAtomicString(FINGERPRINT);
+        String expected = configuration.getJdbcUrl() + " " + configuration.getDbUser();
+        if(!expected.equals(fingerprint.get())) {
+            if(nodeCache.size() > 0) {
+                log.info("MapDB cache in {} belongs to a different database, discarding it", directory);
+            }
+            clearNodeCaches();
+            fingerprint.set(expected);
+        } else {
+            log.info("reusing MapDB cache in {} ({} nodes)", directory, nodeCache.size());
+        }
+
+        tripleCache = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getTripleCacheSize())
+                .expireAfterAccess(30, TimeUnit.MINUTES)
+                .build();
+
+        namespaceUriCache = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getNamespaceCacheSize())
+                .expireAfterAccess(1, TimeUnit.DAYS)
+                .build();
+
+        namespacePrefixCache = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getNamespaceCacheSize())
+                .expireAfterAccess(1, TimeUnit.DAYS)
+                .build();
+
+        registryCache = new ConcurrentHashMap<>();
+
+        dynamicCaches = new HashMap<>();
+    }
+
+    private DB openDatabase() {
+        DBMaker maker = DBMaker.newFileDB(new File(directory, CACHE_FILE))
+                .mmapFileEnableIfSupported()
+                .transactionDisable()
+                .asyncWriteEnable();
+        if(temporary) {
+            maker = maker.deleteFilesAfterClose();
+        }
+
+        try {
+            return maker.make();
+        } catch (RuntimeException ex) {
+            log.warn("MapDB cache in {} could not be opened ({}), discarding it", directory, ex.getMessage());
+            deleteCacheFiles();
+            return maker.make();
+        }
+    }
+
+    private HTreeMap<String,Long> createDictionary(String name, int size) {
+        return db.createHashMap(name)
+                .keySerializer(Serializer.STRING)
+                .valueSerializer(Serializer.LONG)
+                .expireMaxSize(size)
+                .makeOrGet();
+    }
+
+    private void deleteCacheFiles() {
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for(File f : files) {
+                if(f.getName().startsWith(CACHE_FILE) && !f.delete()) {
+                    log.warn("could not delete cache file {}", f);
+                }
+            }
+        }
+    }
+
+    private void clearNodeCaches() {
+        uriDictionary.clear();
+        bnodeDictionary.clear();
+        literalDictionary.clear();
+        nodeCache.clear();
+    }
+
+    /**
+     * Return the node id -> node cache from the cache manager. This cache is heavily used to lookup
+     * nodes when querying or loading triples and should therefore have a decent size (default 500.000 elements).
+     *
+     * @return an off-heap map containing the node id -> node mappings
+     */
+    @Override
+    public Map<Long, KiWiNode> getNodeCache() {
+        return nodeCache;
+    }
+
+    /**
+     * Return the triple id -> triple cache from the cache manager. This cache is used for speeding up the
+     * construction of query results.
+     *
+     * @return
+     */
+    @Override
+    public Map<Long, KiWiTriple> getTripleCache() {
+        return tripleCache.asMap();
+    }
+
+    /**
+     * Return the uri -> KiWiUriResource cache from the cache manager. This cache is used when constructing new
+     * KiWiUriResources to avoid a database lookup.
+     *
+     * @return
+     */
+    @Override
+    public Map<String, KiWiUriResource> getUriCache() {
+        return uriCache;
+    }
+
+    /**
+     * Return the anonId -> KiWiAnonResource cache from the cache manager. This cache is used when constructing new
+     * KiWiAnonResources to avoid a database lookup.
+     *
+     * @return
+     */
+    @Override
+    public Map<String, KiWiAnonResource> getBNodeCache() {
+        return bnodeCache;
+    }
+
+    /**
+     * Return the literal cache key -> KiWiLiteral cache from the cache manager. This cache is used when constructing new
+     * KiWiLiterals to avoid a database lookup.
+     *
+     * @return
+     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createCacheKey(String, java.util.Locale, String)
+     */
+    @Override
+    public Map<String, KiWiLiteral> getLiteralCache() {
+        return literalCache;
+    }
+
+    /**
+     * Return the URI -> namespace cache from the cache manager. Used for looking up namespaces
+     *
+     * @return
+     */
+    @Override
+    public Map<String, KiWiNamespace> getNamespaceUriCache() {
+        return namespaceUriCache.asMap();
+    }
+
+    /**
+     * Return the prefix -> namespace cache from the cache manager. Used for looking up namespaces
+     *
+     * @return
+     */
+    @Override
+    public Map<String, KiWiNamespace> getNamespacePrefixCache() {
+        return namespacePrefixCache.asMap();
+    }
+
+    /**
+     * Create and return the cache used by the CacheTripleRegistry. This is an unlimited synchronous replicated
+     * cache and should be used with care.
+     *
+     * @return
+     */
+    @Override
+    public Map<Long, Long> getRegistryCache() {
+        return registryCache;
+    }
+
+    /**
+     * Get the cache with the given name from the cache manager. Can be used to request additional
+     * caches from the cache manager that are not covered by explicit methods.
+     *
+     * @param name
+     * @return
+     */
+    @Override
+    public Map getCacheByName(String name) {
+        synchronized (dynamicCaches) {
+            if(!dynamicCaches.containsKey(name)) {
+                dynamicCaches.put(name, CacheBuilder.newBuilder().expireAfterAccess(30, TimeUnit.MINUTES).maximumSize(100000).build());
+            }
+            return dynamicCaches.get(name).asMap();
+        }
+    }
+
+    /**
+     * Clear all caches managed by this cache manager.
+     */
+    @Override
+    public void clear() {
+        for(Cache c : dynamicCaches.values()) {
+            c.invalidateAll();
+        }
+
+        for(Cache c : new Cache[] { tripleCache, namespacePrefixCache, namespaceUriCache}) {
+            c.invalidateAll();
+        }
+
+        clearNodeCaches();
+
+        registryCache.clear();
+    }
+
+    /**
+     * Shutdown this cache manager instance. Will flush and close the MapDB cache file, so it can be reused
+     * on the next startup.
+     */
+    @Override
+    public void shutdown() {
+        dynamicCaches.clear();
+
+        if(!db.isClosed()) {
+            log.info("closing MapDB cache in {} ({} nodes)", directory, nodeCache.size());
+            db.commit();
+            db.close();
+        }
+
+        File marker = new File(directory, OPEN_MARKER);
+        if(!marker.delete()) {
+            log.warn("could not delete cache marker file {}", marker);
+        }
+
+        if(temporary && !directory.delete()) {
+            log.warn("could not delete temporary cache directory {}", directory);
+        }
+    }
+}
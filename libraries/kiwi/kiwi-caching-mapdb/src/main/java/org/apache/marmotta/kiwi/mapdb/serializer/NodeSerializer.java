@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.mapdb.serializer;
+
+import org.apache.marmotta.kiwi.io.KiWiIO;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.mapdb.Serializer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * MapDB serializer storing KiWi nodes in the compact binary format of KiWiIO. Nodes are only decoded when they are
+ * read from the cache.
+ * <p/>
+ * The serializer is stored in the MapDB catalog together with the maps using it, so it needs to be Serializable.
+ */
+public class NodeSerializer implements Serializer<KiWiNode>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void serialize(DataOutput out, KiWiNode value) throws IOException {
+        KiWiIO.writeNode(out, value);
+    }
+
+    @Override
+    public KiWiNode deserialize(DataInput in, int available) throws IOException {
+        return KiWiIO.readNode(in);
+    }
+
+    @Override
+    public int fixedSize() {
+        return -1;
+    }
+}
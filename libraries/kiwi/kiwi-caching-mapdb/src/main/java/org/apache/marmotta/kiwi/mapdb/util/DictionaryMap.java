@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.mapdb.util;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A map API wrapper combining a string -> node id dictionary with the node id -> node store, so it is compatible with
+ * the KiWi caching API for the URI, BNode and literal caches.
+ * <p/>
+ * Only the node id is kept in the dictionary; the node itself is stored once in the node store and decoded when it
+ * is read. A dictionary entry whose node has been evicted from the node store is treated as a cache miss and removed.
+ * <p/>
+ * For performance reasons, put() and remove() do not return the previous value (which would need to be decoded).
+ */
+public class DictionaryMap<V extends KiWiNode> implements Map<String,V> {
+
+    private ConcurrentMap<String,Long> dictionary;
+
+    private Map<Long,KiWiNode> nodes;
+
+    private Class<V> type;
+
+    public DictionaryMap(ConcurrentMap<String, Long> dictionary, Map<Long, KiWiNode> nodes, Class<V> type) {
+        this.dictionary = dictionary;
+        this.nodes = nodes;
+        this.type = type;
+    }
+
+    @Override
+    public int size() {
+        return dictionary.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dictionary.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object o) {
+        return get(o) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object o) {
+        throw new UnsupportedOperationException("value lookups not supported by cache");
+    }
+
+    @Override
+    public V get(Object o) {
+        Long id = dictionary.get(o);
+        if(id == null) {
+            return null;
+        }
+
+        KiWiNode node = nodes.get(id);
+        if(type.isInstance(node)) {
+            return type.cast(node);
+        } else {
+            // node has been evicted (or replaced), the dictionary entry is stale
+            dictionary.remove(o, id);
+            return null;
+        }
+    }
+
+    @Override
+    public V put(String k, V v) {
+        // only persisted nodes have a stable id
+        if(v.getId() >= 0) {
+            nodes.put(v.getId(), v);
+            dictionary.put(k, v.getId());
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object o) {
+        dictionary.remove(o);
+        return null;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends V> map) {
+        for(Map.Entry<? extends String, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void clear() {
+        dictionary.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return ImmutableSet.copyOf(dictionary.keySet());
+    }
+
+    @Override
+    public Collection<V> values() {
+        throw new UnsupportedOperationException("listing values not supported by cache");
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        ImmutableSet.Builder<Entry<String,V>> entries = ImmutableSet.builder();
+        for(String key : dictionary.keySet()) {
+            V value = get(key);
+            if(value != null) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+            }
+        }
+        return entries.build();
+    }
+}
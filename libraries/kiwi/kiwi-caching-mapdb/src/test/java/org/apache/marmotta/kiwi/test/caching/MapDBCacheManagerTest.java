@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.caching;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.marmotta.kiwi.caching.CacheManager;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.mapdb.caching.MapDBCacheManager;
+import org.apache.marmotta.kiwi.model.rdf.KiWiStringLiteral;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+
+/**
+ * Test the dictionary caches and the persistence of the MapDB cache backend across restarts.
+ */
+public class MapDBCacheManagerTest {
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("kiwi-mapdb-test").toFile();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private KiWiConfiguration createConfiguration(String jdbcUrl) {
+        KiWiConfiguration configuration = new KiWiConfiguration("test", jdbcUrl, "kiwi", "kiwi", new H2Dialect());
+        configuration.setCacheDirectory(directory.getAbsolutePath());
+        return configuration;
+    }
+
+    private KiWiUriResource createURI(long id, String uri) {
+        KiWiUriResource r = new KiWiUriResource(uri, new Date());
+        r.setId(id);
+        return r;
+    }
+
+    @Test
+    public void testDictionaryLookup() {
+        CacheManager cacheManager = new MapDBCacheManager(createConfiguration("jdbc:h2:mem:test1"));
+        try {
+            KiWiUriResource uri = createURI(1L, "http://localhost/resource/1");
+            cacheManager.getNodeCache().put(uri.getId(), uri);
+            cacheManager.getUriCache().put(uri.stringValue(), uri);
+
+            KiWiStringLiteral literal = new KiWiStringLiteral("value", null, null, new Date());
+            literal.setId(2L);
+            cacheManager.getLiteralCache().put("value", literal);
+
+            Assert.assertEquals(uri, cacheManager.getUriCache().get(uri.stringValue()));
+            Assert.assertEquals(1L, cacheManager.getUriCache().get(uri.stringValue()).getId());
+            Assert.assertEquals(literal, cacheManager.getLiteralCache().get("value"));
+            Assert.assertEquals(literal, cacheManager.getNodeCache().get(2L));
+
+            // the dictionaries are independent of each other
+            Assert.assertNull(cacheManager.getBNodeCache().get(uri.stringValue()));
+
+            // removing the node invalidates the dictionary entry
+            cacheManager.getNodeCache().remove(1L);
+            Assert.assertNull(cacheManager.getUriCache().get(uri.stringValue()));
+        } finally {
+            cacheManager.shutdown();
+        }
+    }
+
+    @Test
+    public void testRestart() {
+        KiWiUriResource uri = createURI(1L, "http://localhost/resource/1");
+
+        CacheManager cacheManager = new MapDBCacheManager(createConfiguration("jdbc:h2:mem:test2"));
+        cacheManager.getUriCache().put(uri.stringValue(), uri);
+        cacheManager.shutdown();
+
+        // same database: the cache is still warm
+        cacheManager = new MapDBCacheManager(createConfiguration("jdbc:h2:mem:test2"));
+        try {
+            Assert.assertEquals(uri, cacheManager.getUriCache().get(uri.stringValue()));
+        } finally {
+            cacheManager.shutdown();
+        }
+
+        // different database: the cached ids are not valid anymore
+        cacheManager = new MapDBCacheManager(createConfiguration("jdbc:h2:mem:other"));
+        try {
+            Assert.assertNull(cacheManager.getUriCache().get(uri.stringValue()));
+        } finally {
+            cacheManager.shutdown();
+        }
+    }
+}
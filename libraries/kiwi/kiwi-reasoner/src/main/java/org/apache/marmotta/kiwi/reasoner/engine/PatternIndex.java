@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.reasoner.engine;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import org.apache.marmotta.kiwi.reasoner.model.program.Field;
+import org.apache.marmotta.kiwi.reasoner.model.program.Pattern;
+import org.apache.marmotta.kiwi.reasoner.model.program.ResourceField;
+import org.apache.marmotta.kiwi.reasoner.model.program.Rule;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A discrimination index over the body patterns of reasoning rules, similar to the alpha network of a Rete matcher.
+ * Each pattern is stored under the constant resources in its subject, property and object position, so that the
+ * patterns an added triple can possibly match are found with at most one hash lookup per combination of constant
+ * positions occurring in the rules, instead of comparing the triple with every pattern.
+ * <p/>
+ * The candidates returned by {@link #getCandidates(org.openrdf.model.Statement)} agree with the triple in all
+ * constant subject, property and object positions. Literal objects, contexts and variables occurring several times
+ * in a pattern are not indexed, so candidates still need to be checked with a full match.
+ * <p/>
+ * The index is not thread-safe; the reasoning engine replaces its index by an updated copy when rules change.
+ */
+public class PatternIndex {
+
+    private static final int SUBJECT  = 1;
+    private static final int PROPERTY = 2;
+    private static final int OBJECT   = 4;
+
+    /**
+     * The rules each pattern occurs in.
+     */
+    private final SetMultimap<Pattern,Rule> patternRules;
+
+    /**
+     * The indexed patterns, one map for each combination of constant positions (bit mask of SUBJECT, PROPERTY
+     * and OBJECT), keyed by the constant values in these positions.
+     */
+    private final SetMultimap<Key,Pattern>[] patterns;
+
+    /**
+     * Create a new, empty pattern index.
+     */
+    @SuppressWarnings("unchecked")
+    public PatternIndex() {
+        patternRules = HashMultimap.create();
+        patterns     = new SetMultimap[8];
+    }
+
+    /**
+     * Create a copy of the pattern index passed as argument.
+     */
+    public PatternIndex(PatternIndex other) {
+        this();
+        patternRules.putAll(other.patternRules);
+        for(int shape = 0; shape < patterns.length; shape++) {
+            if(other.patterns[shape] != null) {
+                patterns[shape] = HashMultimap.create(other.patterns[shape]);
+            }
+        }
+    }
+
+    /**
+     * Add all body patterns of the rule passed as argument to the index.
+     */
+    public void addRule(Rule rule) {
+        for(Pattern pattern : rule.getBody()) {
+            if(!patternRules.containsKey(pattern)) {
+                int shape = getShape(pattern);
+                if(patterns[shape] == null) {
+                    patterns[shape] = HashMultimap.create();
+                }
+                patterns[shape].put(getKey(pattern, shape), pattern);
+            }
+            patternRules.put(pattern, rule);
+        }
+    }
+
+    /**
+     * Remove the rule passed as argument from the index. Patterns that are no longer used by any other rule are
+     * removed as well.
+     */
+    public void removeRule(Rule rule) {
+        for(Pattern pattern : rule.getBody()) {
+            if(patternRules.remove(pattern, rule) && !patternRules.containsKey(pattern)) {
+                int shape = getShape(pattern);
+                patterns[shape].remove(getKey(pattern, shape), pattern);
+            }
+        }
+    }
+
+    /**
+     * Return the patterns that can match the triple passed as argument, i.e. all patterns whose constant subject,
+     * property and object agree with the triple.
+     */
+    public Collection<Pattern> getCandidates(Statement triple) {
+        List<Pattern> result = new ArrayList<>();
+        for(int shape = 0; shape < patterns.length; shape++) {
+            if(patterns[shape] != null && !patterns[shape].isEmpty()) {
+                result.addAll(patterns[shape].get(new Key(shape,
+                        (shape & SUBJECT)  != 0 ? triple.getSubject()   : null,
+                        (shape & PROPERTY) != 0 ? triple.getPredicate() : null,
+                        (shape & OBJECT)   != 0 ? triple.getObject()    : null)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the rules containing the pattern passed as argument in their body.
+     */
+    public Set<Rule> getRules(Pattern pattern) {
+        return patternRules.get(pattern);
+    }
+
+    /**
+     * Return all indexed patterns.
+     */
+    public Set<Pattern> getPatterns() {
+        return patternRules.keySet();
+    }
+
+    /**
+     * Return the number of distinct patterns in the index.
+     */
+    public int size() {
+        return patternRules.keySet().size();
+    }
+
+    public boolean isEmpty() {
+        return patternRules.isEmpty();
+    }
+
+    private static int getShape(Pattern pattern) {
+        int shape = 0;
+        if(isConstant(pattern.getSubject())) {
+            shape |= SUBJECT;
+        }
+        if(isConstant(pattern.getProperty())) {
+            shape |= PROPERTY;
+        }
+        // literals are not indexed, because their equality is not symmetric for all literal types
+        if(isConstant(pattern.getObject())) {
+            shape |= OBJECT;
+        }
+        return shape;
+    }
+
+    private static Key getKey(Pattern pattern, int shape) {
+        return new Key(shape,
+                (shape & SUBJECT)  != 0 ? ((ResourceField) pattern.getSubject()).getResource()  : null,
+                (shape & PROPERTY) != 0 ? ((ResourceField) pattern.getProperty()).getResource() : null,
+                (shape & OBJECT)   != 0 ? ((ResourceField) pattern.getObject()).getResource()   : null);
+    }
+
+    private static boolean isConstant(Field field) {
+        return field != null && field.isResourceField();
+    }
+
+    private static final class Key {
+
+        private final int shape;
+
+        private final Value subject, property, object;
+
+        private final int hashCode;
+
+        private Key(int shape, Value subject, Value property, Value object) {
+            this.shape    = shape;
+            this.subject  = subject;
+            this.property = property;
+            this.object   = object;
+            this.hashCode = Objects.hashCode(shape, subject, property, object);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return shape == key.shape && Objects.equal(subject, key.subject) && Objects.equal(property, key.property) && Objects.equal(object, key.object);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -35,7 +35,20 @@ public class ReasoningConfiguration {
     private boolean removeDuplicateJustifications = true;
 
     /**
-     * Number of parallel workers for processing reasoning rules.
+     * Evaluate rules set-at-a-time for all triples added in a transaction (semi-naive evaluation) instead of
+     * evaluating the rule body separately for each matching triple.
+     */
+    private boolean semiNaive = true;
+
+    /**
+     * Maximum number of added triples joined with the stored triples in a single database query when evaluating
+     * rules semi-naively.
+     */
+    private int deltaSize = 500;
+
+    /**
+     * Number of parallel workers for processing reasoning rules. Workers evaluate the bodies of different rules in
+     * parallel during semi-naive evaluation; a value of 1 evaluates all rules on the reasoner thread.
      */
     private int workers = 4;
 
@@ -58,4 +71,28 @@ public class ReasoningConfiguration {
         this.removeDuplicateJustifications = removeDuplicateJustifications;
     }
 
+    public boolean isSemiNaive() {
+        return semiNaive;
+    }
+
+    public void setSemiNaive(boolean semiNaive) {
+        this.semiNaive = semiNaive;
+    }
+
+    public int getDeltaSize() {
+        return deltaSize;
+    }
+
+    public void setDeltaSize(int deltaSize) {
+        this.deltaSize = deltaSize;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
 }
@@ -18,9 +18,10 @@
 package org.apache.marmotta.kiwi.reasoner.engine;
 
 import com.google.common.base.Equivalence;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import info.aduna.iteration.CloseableIteration;
+import info.aduna.iteration.CloseableIteratorIteration;
 import info.aduna.iteration.EmptyIteration;
 import info.aduna.iteration.Iterations;
 import info.aduna.iteration.SingletonIteration;
@@ -52,7 +53,15 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -85,7 +94,7 @@ public class ReasoningEngine implements TransactionListener {
      * A queue of transaction data objects of committed transactions, will be consumed by the reasoner
      * thread in incremental reasoning.
      */
-    private LinkedBlockingQueue<TransactionData> reasoningQueue;
+    private LinkedBlockingQueue<QueuedTransaction> reasoningQueue;
 
 
     /**
@@ -108,13 +117,14 @@ public class ReasoningEngine implements TransactionListener {
     /**
      * In-memory cache of the currently active reasoning programs, (re-)initialized by {@link #loadPrograms()}.
      */
-    private List<Program> programs;
+    private List<Program> programs = Collections.emptyList();
 
     /**
-     * In-memory cache to store all patterns that are candidates for matching triples and accessing the rules
-     * they belong to.
+     * In-memory index of all patterns that are candidates for matching triples and accessing the rules
+     * they belong to. Replaced by an updated copy whenever the rules change, so the reasoner thread always sees
+     * a consistent index.
      */
-    private Multimap<Pattern,Rule> patternRuleMap;
+    private volatile PatternIndex patternIndex = new PatternIndex();
 
     /**
      * Internal counter to count executions of the reasoner (informational purposes only)
@@ -128,6 +138,24 @@ public class ReasoningEngine implements TransactionListener {
      */
     private SKWRLReasoner reasonerThread;
 
+    /**
+     * Worker threads evaluating rule bodies in parallel during semi-naive evaluation; null in case only a single
+     * worker is configured, in which case all rules are evaluated by the reasoner thread.
+     */
+    private ExecutorService workers;
+
+    /**
+     * Timing information for each rule that has been evaluated.
+     */
+    private final ConcurrentMap<Rule,RuleStatistics> ruleStatistics = new ConcurrentHashMap<Rule, RuleStatistics>();
+
+    /**
+     * Number of transactions processed by the reasoner thread and the time in milliseconds the last transaction has
+     * been waiting in the queue before its processing completed.
+     */
+    private final AtomicLong processedTransactions = new AtomicLong();
+    private volatile long lastLag = 0;
+
     protected static Equivalence<Statement> equivalence = StatementCommons.quadrupleEquivalence();
 
     /**
@@ -148,13 +176,17 @@ public class ReasoningEngine implements TransactionListener {
 
         loadPrograms();
 
-        this.reasoningQueue = new LinkedBlockingQueue<TransactionData>();
+        if(config.getWorkers() > 1) {
+            this.workers = Executors.newFixedThreadPool(config.getWorkers(), new ThreadFactoryBuilder().setNameFormat("SKWRL Reasoner Worker %d").setDaemon(true).build());
+        }
+
+        this.reasoningQueue = new LinkedBlockingQueue<QueuedTransaction>();
         this.reasonerThread = new SKWRLReasoner();
     }
 
-    public void loadPrograms() {
+    public synchronized void loadPrograms() {
         log.info("program configuration changed, reloading ...");
-        patternRuleMap = HashMultimap.<Pattern,Rule>create();
+        PatternIndex index = new PatternIndex();
 
         try {
             KiWiReasoningConnection connection = persistence.getConnection();
@@ -163,9 +195,7 @@ public class ReasoningEngine implements TransactionListener {
 
                 for(Program p : programs) {
                     for(Rule rule : p.getRules()) {
-                        for(Pattern pattern : rule.getBody()) {
-                            patternRuleMap.put(pattern,rule);
-                        }
+                        index.addRule(rule);
                     }
                 }
             } finally {
@@ -175,10 +205,48 @@ public class ReasoningEngine implements TransactionListener {
             programs = Collections.emptyList();
             log.warn("cannot load reasoning programs, reasoning disabled (error message: {})", ex.getMessage());
         }
+        patternIndex = index;
+
+        // only keep statistics for rules that are still in use
+        Set<Rule> rules = new HashSet<Rule>();
+        for(Program p : programs) {
+            rules.addAll(p.getRules());
+        }
+        ruleStatistics.keySet().retainAll(rules);
     }
 
 
-    public void programChanged(Program program) {
+    /**
+     * Update the pattern index for a program that has been changed without reloading all programs: the rules
+     * of the previous version of the program (identified by its name) are removed from the index and the rules
+     * of the new version are added.
+     *
+     * @param program the new version of the program
+     */
+    public synchronized void programChanged(Program program) {
+        PatternIndex index = new PatternIndex(patternIndex);
+        List<Program> updated = new ArrayList<Program>(programs);
+
+        for(Iterator<Program> it = updated.iterator(); it.hasNext(); ) {
+            Program old = it.next();
+            if(old.getName() != null && old.getName().equals(program.getName())) {
+                for(Rule rule : old.getRules()) {
+                    index.removeRule(rule);
+                }
+                it.remove();
+            }
+        }
+        updated.add(program);
+
+        // rules might be shared with other programs
+        for(Program p : updated) {
+            for(Rule rule : p.getRules()) {
+                index.addRule(rule);
+            }
+        }
+
+        programs     = updated;
+        patternIndex = index;
     }
 
     /**
@@ -192,6 +260,14 @@ public class ReasoningEngine implements TransactionListener {
 
         log.debug("processing new rule: {}", rule);
 
+        synchronized (this) {
+            if(!containsRule(rule)) {
+                PatternIndex index = new PatternIndex(patternIndex);
+                index.addRule(rule);
+                patternIndex = index;
+            }
+        }
+
         try {
             updateTaskStatus("processing new rule ...");
             processRule(rule, null, null);
@@ -264,13 +340,14 @@ public class ReasoningEngine implements TransactionListener {
      */
     @Override
     public void afterCommit(TransactionData data) {
-        if( (data.getAddedTriples().size() > 0 || data.getRemovedTriples().size() > 0) && patternRuleMap.size() > 0) {
+        if( (data.getAddedTriples().size() > 0 || data.getRemovedTriples().size() > 0) && !patternIndex.isEmpty()) {
 
-            reasoningQueue.remove(data);
-            if (!reasoningQueue.offer(data)) {
+            QueuedTransaction queued = new QueuedTransaction(data);
+            reasoningQueue.remove(queued);
+            if (!reasoningQueue.offer(queued)) {
                 log.info("waiting for reasoning queue to become available ...");
                 try {
-                    reasoningQueue.put(data);
+                    reasoningQueue.put(queued);
                     log.info("reasoning queue available, added data");
                 } catch (InterruptedException e) {
                     log.error("interrupted while waiting for reasoning queue to become available ...");
@@ -370,11 +447,11 @@ public class ReasoningEngine implements TransactionListener {
                     KiWiReasoningConnection connection = persistence.getConnection();
                     try {
                         // first clean up justifications that are no longer supported
-                        cleanupJustifications(connection, data.getRemovedTriples());
+                        Set<Long> affected = cleanupJustifications(connection, data.getRemovedTriples());
 
 
-                        // then remove all inferred triples that are no longer supported
-                        cleanupUnsupported(connection);
+                        // then remove those inferred triples affected by the removal that are no longer supported
+                        cleanupUnsupported(connection, affected);
 
                         // and finally garbage collect those triples that are inferred and deleted
                         // garbage collection is now carried out by a thread in the triple store
@@ -489,16 +566,18 @@ public class ReasoningEngine implements TransactionListener {
      * This method iterates over all triples that are passed as argument and
      * checks whether they are used as supporting triples justifications. All
      * such justifications are removed. Triples that are no longer supported
-     * will later be cleaned up by {@link #cleanupUnsupported(org.apache.marmotta.kiwi.reasoner.persistence.KiWiReasoningConnection)}
+     * will later be cleaned up by {@link #cleanupUnsupported(org.apache.marmotta.kiwi.reasoner.persistence.KiWiReasoningConnection, java.util.Set)}
      *
      * @param removedTriples
+     * @return the database IDs of the triples supported by the removed justifications
      */
-    private void cleanupJustifications(KiWiReasoningConnection connection, TripleTable<Statement> removedTriples) throws SQLException {
+    private Set<Long> cleanupJustifications(KiWiReasoningConnection connection, TripleTable<Statement> removedTriples) throws SQLException {
         updateTaskStatus("cleaning up justifications for " + removedTriples.size() + " removed triples");
+        List<KiWiTriple> triples = new ArrayList<KiWiTriple>(removedTriples.size());
         for(Statement stmt : removedTriples) {
-            KiWiTriple t = (KiWiTriple)stmt;
-            connection.deleteJustifications(t);
+            triples.add((KiWiTriple)stmt);
         }
+        return connection.deleteJustificationsBySupporting(triples);
     }
 
 
@@ -508,12 +587,34 @@ public class ReasoningEngine implements TransactionListener {
     private void cleanupUnsupported(KiWiReasoningConnection connection) throws SQLException, SailException {
         updateTaskStatus("cleaning up unsupported triples");
 
-        int count = 0, total = 0;
+        startTask("Unsupported Triple Cleaner", TASK_GROUP);
+        updateTaskStatus("loading unsupported triples");
+
+        removeUnsupported(connection.listUnsupportedTriples());
+    }
+
+    /**
+     * Cleanup those inferred triples with the database IDs passed as argument that are no longer supported by any
+     * justification. Since base justifications only contain base triples, the triples supported by the justifications
+     * removed for a set of removed base triples are the only ones that can lose their last justification, so this is
+     * sufficient for incremental maintenance and avoids scanning all inferred triples.
+     */
+    private void cleanupUnsupported(KiWiReasoningConnection connection, Set<Long> candidates) throws SQLException, SailException {
+        if(candidates.isEmpty()) {
+            return;
+        }
+
+        updateTaskStatus("cleaning up unsupported triples");
+        log.debug("checking {} triples for remaining justifications", candidates.size());
 
         startTask("Unsupported Triple Cleaner", TASK_GROUP);
         updateTaskStatus("loading unsupported triples");
 
-        CloseableIteration<KiWiTriple,SQLException> tripleIterator = connection.listUnsupportedTriples();
+        removeUnsupported(new CloseableIteratorIteration<KiWiTriple, SQLException>(connection.listUnsupportedTriples(candidates).iterator()));
+    }
+
+    private void removeUnsupported(CloseableIteration<KiWiTriple,SQLException> tripleIterator) throws SQLException, SailException {
+        int count = 0;
         try {
             if(tripleIterator.hasNext()) {
 
@@ -548,19 +649,125 @@ public class ReasoningEngine implements TransactionListener {
      */
     private void processRules(final Set<KiWiTriple> addedTriples) throws SQLException, SailException, ReasoningException {
         updateTaskStatus("processing rules ...");
-        // select the rules that have at least one matching pattern; the match method will
+        PatternIndex index = patternIndex;
+
+        // in semi-naive evaluation, the triples matching a pattern are collected and joined with the stored
+        // triples at once for each rule containing the pattern
+        Map<Pattern,List<KiWiTriple>> deltas = new HashMap<Pattern, List<KiWiTriple>>();
+
+        // select the rules that have at least one matching pattern; the index only returns the patterns whose
+        // constants agree with the triple, the match method then checks the remaining conditions and will
         // return a set of variable bindings that we will be used to prepopulate the bindings
-        for(final Pattern pattern : patternRuleMap.keySet()) {
-            for(KiWiTriple triple : addedTriples) {
+        for(KiWiTriple triple : addedTriples) {
+            for(Pattern pattern : index.getCandidates(triple)) {
                 QueryResult match = matches(pattern,triple);
                 if(match != null) {
-                    for(Rule rule : patternRuleMap.get(pattern)) {
-                        log.debug("REASONER(rule '{}'): pattern {} matched with triple {}", rule.getName(), pattern.toString(), triple.toString());
-                        processRule(rule, match, pattern);
+                    if(config.isSemiNaive() && triple.getId() >= 0) {
+                        List<KiWiTriple> delta = deltas.get(pattern);
+                        if(delta == null) {
+                            delta = new ArrayList<KiWiTriple>();
+                            deltas.put(pattern, delta);
+                        }
+                        delta.add(triple);
+                    } else {
+                        for(Rule rule : index.getRules(pattern)) {
+                            log.debug("REASONER(rule '{}'): pattern {} matched with triple {}", rule.getName(), pattern.toString(), triple.toString());
+                            processRule(rule, match, pattern);
+                        }
+                    }
+                }
+            }
+        }
+
+        // evaluate the rules in a fixed order, so that the inferred triples and justifications are stored in the
+        // same order no matter how many workers are used; with workers, there is one task per chunk of the delta, so
+        // that the bindings a worker keeps in memory are the results of a single query
+        int deltaSize = Math.max(config.getDeltaSize(), 1);
+        List<DeltaTask> tasks = new ArrayList<DeltaTask>();
+        for(Map.Entry<Pattern,List<KiWiTriple>> delta : deltas.entrySet()) {
+            for(Rule rule : index.getRules(delta.getKey())) {
+                log.debug("REASONER(rule '{}'): pattern {} matched with {} triples", rule.getName(), delta.getKey().toString(), delta.getValue().size());
+                if(workers == null) {
+                    tasks.add(new DeltaTask(rule, delta.getKey(), delta.getValue(), 0));
+                } else {
+                    int chunkIndex = 0;
+                    for(List<KiWiTriple> chunk : Lists.partition(delta.getValue(), deltaSize)) {
+                        tasks.add(new DeltaTask(rule, delta.getKey(), chunk, chunkIndex++));
                     }
                 }
             }
         }
+        Collections.sort(tasks);
+
+        if(workers == null || tasks.size() < 2) {
+            for(DeltaTask task : tasks) {
+                processRuleDelta(task.rule, task.pattern, task.delta);
+            }
+        } else {
+            processRulesParallel(tasks);
+        }
+    }
+
+    /**
+     * Evaluate the rule bodies of the tasks passed as argument in parallel by the worker threads, and store the
+     * inferred triples and justifications of each task in the order of the task list on the calling thread. Only
+     * a bounded number of evaluated tasks is kept in memory while waiting to be stored, each holding the bindings
+     * of at most {@link ReasoningConfiguration#getDeltaSize()} delta triples.
+     */
+    private void processRulesParallel(List<DeltaTask> tasks) throws SQLException, SailException, ReasoningException {
+        int window = config.getWorkers() * 2;
+
+        Iterator<DeltaTask> it = tasks.iterator();
+        Deque<DeltaTask> pendingTasks = new ArrayDeque<DeltaTask>(window);
+        Deque<Future<List<QueryResult>>> pending = new ArrayDeque<Future<List<QueryResult>>>(window);
+        try {
+            while(it.hasNext() || !pending.isEmpty()) {
+                while(it.hasNext() && pending.size() < window) {
+                    DeltaTask task = it.next();
+                    pendingTasks.add(task);
+                    pending.add(workers.submit(task));
+                }
+
+                DeltaTask task = pendingTasks.poll();
+                List<QueryResult> rows = await(pending.poll());
+
+                storeResults(task.rule, rows, task.queryTime);
+            }
+        } finally {
+            for(Future<List<QueryResult>> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws SQLException, ReasoningException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReasoningException("interrupted while waiting for reasoning workers", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            } else if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if(e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new ReasoningException("error while evaluating rule", e.getCause());
+        }
+    }
+
+    /**
+     * Return true in case all patterns of the rule passed as argument are indexed for this rule.
+     */
+    private boolean containsRule(Rule rule) {
+        for(Pattern pattern : rule.getBody()) {
+            if(!patternIndex.getRules(pattern).contains(rule)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -571,159 +778,355 @@ public class ReasoningEngine implements TransactionListener {
      * @param rule
      * @param match
      */
-    private void processRule(Rule rule, QueryResult match, Pattern p) throws SQLException, SailException, ReasoningException {
+    private void processRule(Rule rule, final QueryResult match, Pattern p) throws SQLException, SailException, ReasoningException {
 
         // get the variable bindings for the rule evaluation
         log.debug("REASONER(rule '{}'): evaluating rule body {} ...", rule.getName() != null ? rule.getName() : rule.getId(), rule);
 
         // create a collection consisting of the body minus the pattern that already matched
-        Set<Pattern> body = new HashSet<Pattern>(rule.getBody());
+        final Set<Pattern> body = new HashSet<Pattern>(rule.getBody());
 
         if(p != null) {
             body.remove(p);
         }
 
-        CloseableIteration<QueryResult, SQLException> bodyResult;
+        materialize(rule, new RuleEvaluation() {
+            @Override
+            public long evaluate(KiWiReasoningConnection connection, RuleMaterializer materializer) throws SQLException, SailException, ReasoningException {
+                CloseableIteration<QueryResult, SQLException> bodyResult;
+
+                // if there are further patterns, evaluate them; if the matched pattern was the only pattern, then
+                // simply take the match as binding
+                if(body.size() > 0) {
+                    bodyResult = connection.query(body,match,null,null,true);
+                } else if(match != null) {
+                    bodyResult = new SingletonIteration<QueryResult, SQLException>(match);
+                } else {
+                    bodyResult = new EmptyIteration<QueryResult, SQLException>();
+                }
+
+                try {
+                    while(bodyResult.hasNext()) {
+                        materializer.add(bodyResult.next());
+                    }
+                } finally {
+                    Iterations.closeCloseable(bodyResult);
+                }
+                return 0;
+            }
+        });
+    }
+
+    /**
+     * Process the rule given as argument semi-naively for all triples in the delta matching the given body pattern:
+     * the delta is joined with the stored triples for the remaining body patterns in one database query per
+     * {@link ReasoningConfiguration#getDeltaSize()} triples, and the inferred triples and their justifications are
+     * written in batches. The inferred triples are committed as new transactions and thus form the delta of the
+     * next round, until no new triples are inferred.
+     *
+     * @param rule    the rule to evaluate
+     * @param pattern the body pattern matched by the triples in the delta
+     * @param delta   persisted triples added in the transaction that match the pattern
+     */
+    private void processRuleDelta(Rule rule, final Pattern pattern, final List<KiWiTriple> delta) throws SQLException, SailException, ReasoningException {
+        log.debug("REASONER(rule '{}'): evaluating rule body {} for {} triples matching pattern {} ...", rule.getName() != null ? rule.getName() : rule.getId(), rule, delta.size(), pattern);
 
+        final Set<Pattern> body = new HashSet<Pattern>(rule.getBody());
+
+        materialize(rule, new RuleEvaluation() {
+            @Override
+            public long evaluate(KiWiReasoningConnection connection, RuleMaterializer materializer) throws SQLException, SailException, ReasoningException {
+                for(List<KiWiTriple> chunk : Lists.partition(delta, Math.max(config.getDeltaSize(), 1))) {
+                    CloseableIteration<QueryResult, SQLException> bodyResult = connection.query(body, pattern, chunk, true);
+                    try {
+                        while(bodyResult.hasNext()) {
+                            materializer.add(bodyResult.next());
+                        }
+                    } finally {
+                        Iterations.closeCloseable(bodyResult);
+                    }
+                }
+                return 0;
+            }
+        });
+    }
+
+    /**
+     * Store the triples inferred by the rule passed as argument from the bindings of its body that have been
+     * evaluated by a worker thread.
+     *
+     * @param rule      the rule that has been evaluated
+     * @param rows      the bindings of the rule body
+     * @param queryTime the time in milliseconds the worker spent on evaluating the rule body
+     */
+    private void storeResults(Rule rule, final List<QueryResult> rows, final long queryTime) throws SQLException, SailException, ReasoningException {
+        materialize(rule, new RuleEvaluation() {
+            @Override
+            public long evaluate(KiWiReasoningConnection connection, RuleMaterializer materializer) throws SQLException, SailException, ReasoningException {
+                for(QueryResult row : rows) {
+                    materializer.add(row);
+                }
+                return queryTime;
+            }
+        });
+    }
+
+    /**
+     * Evaluate the body of a rule with the evaluation passed as argument and store the inferred triples and their
+     * justifications, using new database and sail connections. In case of an error, both connections are rolled
+     * back; the transactions committed for previous batches of the rule are kept.
+     *
+     * @param rule       the rule to evaluate
+     * @param evaluation the evaluation of the rule body, passing its bindings to the materializer
+     */
+    private void materialize(Rule rule, RuleEvaluation evaluation) throws SQLException, SailException, ReasoningException {
         KiWiReasoningConnection connection = persistence.getConnection();
         SailConnection     sail = store.getConnection();
         KiWiSailConnection isail = getWrappedConnection(sail);
         try {
+            long start = System.currentTimeMillis();
+            RuleMaterializer materializer = new RuleMaterializer(rule, connection, sail, isail);
 
-            // if there are further patterns, evaluate them; if the matched pattern was the only pattern, then
-            // simply take the match as binding
-            if(body.size() > 0) {
-                bodyResult = connection.query(body,match,null,null,true);
-            } else if(match != null) {
-                bodyResult = new SingletonIteration<QueryResult, SQLException>(match);
-            } else {
-                bodyResult = new EmptyIteration<QueryResult, SQLException>();
-            }
+            sail.begin();
+            long workerTime = evaluation.evaluate(connection, materializer);
+            materializer.finish();
+            materializer.record(System.currentTimeMillis() - start - materializer.storeTime + workerTime);
+        } catch(SailException | SQLException | ReasoningException ex) {
+            log.error("REASONING ERROR: could not process rule, database state will be inconsistent! Message: {}",ex.getMessage());
+            log.debug("Exception details:",ex);
 
-            // construct triples out of the bindings and the rule heads
-            long counter = 0;
+            connection.rollback();
+            sail.rollback();
+            throw ex;
+        } finally {
+            connection.close();
+            sail.close();
+        }
+    }
 
-            // initialise a new set of justifications
-            Set<Justification> justifications = new HashSet<Justification>();
+    /**
+     * Evaluation of a rule body, passing the bindings to the materializer of the rule.
+     */
+    private interface RuleEvaluation {
+
+        /**
+         * @param connection the database connection used for storing the results, also usable for the evaluation
+         * @param materializer the materializer receiving the bindings of the rule body
+         * @return the time in milliseconds spent on evaluating the rule body on other threads, if any
+         */
+        long evaluate(KiWiReasoningConnection connection, RuleMaterializer materializer) throws SQLException, SailException, ReasoningException;
+    }
 
-            sail.begin();
-            while(bodyResult.hasNext()) {
-                QueryResult row = bodyResult.next();
-                Map<VariableField,KiWiNode> binding = row.getBindings();
-
-                Resource subject = null;
-                URI property = null;
-                Value object;
-
-                if(rule.getHead().getSubject() != null && rule.getHead().getSubject().isVariableField()) {
-                    if(!binding.get(rule.getHead().getSubject()).isUriResource() && !binding.get(rule.getHead().getSubject()).isAnonymousResource()) {
-                        log.info("cannot use value {} as subject, because it is not a resource",binding.get(rule.getHead().getSubject()));
-                        continue;
-                    }
-                    subject = (KiWiResource)binding.get(rule.getHead().getSubject());
-                } else if(rule.getHead().getSubject() != null && rule.getHead().getSubject().isResourceField()) {
-                    subject = ((ResourceField)rule.getHead().getSubject()).getResource();
-                } else
-                    throw new IllegalArgumentException("Subject of rule head may only be a variable or a resource; rule: "+rule);
-
-                if(rule.getHead().getProperty() != null && rule.getHead().getProperty().isVariableField()) {
-                    if(!binding.get(rule.getHead().getProperty()).isUriResource()) {
-                        log.info("cannot use value {} as property, because it is not a URI resource",binding.get(rule.getHead().getProperty()));
-                        continue;
-                    }
-                    property = (KiWiUriResource)binding.get(rule.getHead().getProperty());
-                } else if(rule.getHead().getProperty() != null && rule.getHead().getProperty().isResourceField()) {
-                    property = (KiWiUriResource)((ResourceField)rule.getHead().getProperty()).getResource();
-                } else
-                    throw new IllegalArgumentException("Property of rule head may only be a variable or a resource; rule: "+rule);
-
-                if(rule.getHead().getObject() != null && rule.getHead().getObject().isVariableField()) {
-                    object = binding.get(rule.getHead().getObject());
-                } else if(rule.getHead().getObject() != null && rule.getHead().getObject().isResourceField()) {
-                    object = ((ResourceField)rule.getHead().getObject()).getResource();
-                } else if(rule.getHead().getObject() != null && rule.getHead().getObject().isLiteralField()) {
-                    object = ((LiteralField)rule.getHead().getObject()).getLiteral();
-                } else
-                    throw new IllegalArgumentException("Object of rule head may only be a variable, a literal, or a resource; rule: "+rule);
-
-
-                KiWiTriple triple = isail.addInferredStatement(subject, property, object);
-
-                Justification justification = new Justification();
-                justification.setTriple(triple);
-                justification.getSupportingRules().add(rule);
-                justification.getSupportingTriples().addAll(row.getJustifications());
-                justifications.add(justification);
-
-                // when the batch size is reached, commit the transaction, save the justifications, and start a new
-                // transaction and new justification set
-                if(++counter % config.getBatchSize() == 0) {
-                    persistenceLock.lock();
+    /**
+     * Evaluation of a rule body for the triples of the delta matching one of its patterns, carried out by a worker
+     * thread using its own database connection. Tasks are ordered by rule, pattern and chunk of the delta.
+     */
+    private class DeltaTask implements Callable<List<QueryResult>>, Comparable<DeltaTask> {
 
-                    try {
+        private final Rule rule;
 
-                        sail.commit();
+        private final Pattern pattern;
 
-                        log.debug("adding {} justifications",justifications.size());
+        private final List<KiWiTriple> delta;
 
-                        updateTaskStatus("storing justifications ...");
-                        Set<Justification> baseJustifications = getBaseJustifications(connection,justifications);
+        // position of the delta among the chunks of the triples matching the pattern
+        private final int chunk;
 
-                        if(config.isRemoveDuplicateJustifications()) {
-                            removeDuplicateJustifications(connection,baseJustifications);
-                        }
+        private volatile long queryTime;
 
-                        log.debug("{} justifications added after resolving inferred triples", baseJustifications.size());
+        private DeltaTask(Rule rule, Pattern pattern, List<KiWiTriple> delta, int chunk) {
+            this.rule = rule;
+            this.pattern = pattern;
+            this.delta = delta;
+            this.chunk = chunk;
+        }
 
-                        // persist the justifications that have been created in the rule processing
-                        if(baseJustifications.size() > 0) {
-                            connection.storeJustifications(baseJustifications);
-                        }
-                        connection.commit();
-                        sail.begin();
-                    } finally {
-                        persistenceLock.unlock();
-                    }
-                    justifications.clear();
+        @Override
+        public List<QueryResult> call() throws SQLException {
+            log.debug("REASONER(rule '{}'): evaluating rule body {} for {} triples matching pattern {} ...", rule.getName() != null ? rule.getName() : rule.getId(), rule, delta.size(), pattern);
+
+            long start = System.currentTimeMillis();
+            Set<Pattern> body = new HashSet<Pattern>(rule.getBody());
+            List<QueryResult> rows = new ArrayList<QueryResult>();
+
+            KiWiReasoningConnection connection = persistence.getConnection();
+            try {
+                for(List<KiWiTriple> chunk : Lists.partition(delta, Math.max(config.getDeltaSize(), 1))) {
+                    Iterations.addAll(connection.query(body, pattern, chunk, true), rows);
                 }
+                connection.commit();
+            } finally {
+                connection.close();
             }
+            queryTime = System.currentTimeMillis() - start;
+            return rows;
+        }
 
-            persistenceLock.lock();
+        @Override
+        public int compareTo(DeltaTask o) {
+            if(rule.getId() != o.rule.getId()) {
+                return rule.getId() < o.rule.getId() ? -1 : 1;
+            }
+            int result = pattern.toString().compareTo(o.pattern.toString());
+            if(result != 0) {
+                return result;
+            }
+            return chunk < o.chunk ? -1 : (chunk > o.chunk ? 1 : 0);
+        }
+    }
+
+    /**
+     * Constructs the triples inferred by a rule from the bindings of its body and stores them together with their
+     * justifications; the sail transaction is committed and the justifications are persisted whenever the batch size
+     * is reached.
+     */
+    private class RuleMaterializer {
+
+        private final Rule rule;
+
+        private final KiWiReasoningConnection connection;
+
+        private final SailConnection sail;
+
+        private final KiWiSailConnection isail;
+
+        // initialise a new set of justifications
+        private final Set<Justification> justifications = new HashSet<Justification>();
+
+        private long counter = 0;
+
+        // time in milliseconds spent on storing triples and justifications
+        private long storeTime = 0;
+
+        private RuleMaterializer(Rule rule, KiWiReasoningConnection connection, SailConnection sail, KiWiSailConnection isail) {
+            this.rule = rule;
+            this.connection = connection;
+            this.sail = sail;
+            this.isail = isail;
+        }
+
+        /**
+         * Construct the triple for the rule head from the binding passed as argument and add it to the store.
+         */
+        private void add(QueryResult row) throws SQLException, SailException, ReasoningException {
+            long start = System.currentTimeMillis();
             try {
-                sail.commit();
+                addBinding(row);
+            } finally {
+                storeTime += System.currentTimeMillis() - start;
+            }
+        }
 
-                log.debug("adding {} justifications",justifications.size());
-                updateTaskStatus("storing justifications ...");
-                Set<Justification> baseJustifications = getBaseJustifications(connection,justifications);
+        private void addBinding(QueryResult row) throws SQLException, SailException, ReasoningException {
+            Map<VariableField,KiWiNode> binding = row.getBindings();
 
-                if(config.isRemoveDuplicateJustifications()) {
-                    removeDuplicateJustifications(connection,baseJustifications);
-                }
+            Resource subject = null;
+            URI property = null;
+            Value object;
 
-                // persist the justifications that have been created in the rule processing
-                if(baseJustifications.size() > 0) {
-                    connection.storeJustifications(baseJustifications);
+            if(rule.getHead().getSubject() != null && rule.getHead().getSubject().isVariableField()) {
+                if(!binding.get(rule.getHead().getSubject()).isUriResource() && !binding.get(rule.getHead().getSubject()).isAnonymousResource()) {
+                    log.info("cannot use value {} as subject, because it is not a resource",binding.get(rule.getHead().getSubject()));
+                    return;
                 }
+                subject = (KiWiResource)binding.get(rule.getHead().getSubject());
+            } else if(rule.getHead().getSubject() != null && rule.getHead().getSubject().isResourceField()) {
+                subject = ((ResourceField)rule.getHead().getSubject()).getResource();
+            } else
+                throw new IllegalArgumentException("Subject of rule head may only be a variable or a resource; rule: "+rule);
+
+            if(rule.getHead().getProperty() != null && rule.getHead().getProperty().isVariableField()) {
+                if(!binding.get(rule.getHead().getProperty()).isUriResource()) {
+                    log.info("cannot use value {} as property, because it is not a URI resource",binding.get(rule.getHead().getProperty()));
+                    return;
+                }
+                property = (KiWiUriResource)binding.get(rule.getHead().getProperty());
+            } else if(rule.getHead().getProperty() != null && rule.getHead().getProperty().isResourceField()) {
+                property = (KiWiUriResource)((ResourceField)rule.getHead().getProperty()).getResource();
+            } else
+                throw new IllegalArgumentException("Property of rule head may only be a variable or a resource; rule: "+rule);
+
+            if(rule.getHead().getObject() != null && rule.getHead().getObject().isVariableField()) {
+                object = binding.get(rule.getHead().getObject());
+            } else if(rule.getHead().getObject() != null && rule.getHead().getObject().isResourceField()) {
+                object = ((ResourceField)rule.getHead().getObject()).getResource();
+            } else if(rule.getHead().getObject() != null && rule.getHead().getObject().isLiteralField()) {
+                object = ((LiteralField)rule.getHead().getObject()).getLiteral();
+            } else
+                throw new IllegalArgumentException("Object of rule head may only be a variable, a literal, or a resource; rule: "+rule);
+
+
+            KiWiTriple triple = isail.addInferredStatement(subject, property, object);
+
+            Justification justification = new Justification();
+            justification.setTriple(triple);
+            justification.getSupportingRules().add(rule);
+            justification.getSupportingTriples().addAll(row.getJustifications());
+            justifications.add(justification);
+
+            // when the batch size is reached, commit the transaction, save the justifications, and start a new
+            // transaction and new justification set
+            if(++counter % config.getBatchSize() == 0) {
+                persistenceLock.lock();
 
-                log.debug("{} justifications added after resolving inferred triples", baseJustifications.size());
+                try {
+                    storeJustifications();
+                    sail.begin();
+                } finally {
+                    persistenceLock.unlock();
+                }
+                justifications.clear();
+            }
+        }
 
-                Iterations.closeCloseable(bodyResult);
-                connection.commit();
+        /**
+         * Commit the sail transaction and persist the remaining justifications.
+         */
+        private void finish() throws SQLException, SailException, ReasoningException {
+            long start = System.currentTimeMillis();
+            persistenceLock.lock();
+            try {
+                storeJustifications();
             } finally {
                 persistenceLock.unlock();
+                storeTime += System.currentTimeMillis() - start;
             }
-        } catch(SailException | SQLException | ReasoningException ex) {
-            log.error("REASONING ERROR: could not process rule, database state will be inconsistent! Message: {}",ex.getMessage());
-            log.debug("Exception details:",ex);
+        }
 
-            connection.rollback();
-            sail.rollback();
-            throw ex;
-        } finally {
-            connection.close();
-            sail.close();
+        /**
+         * Record the statistics of this rule evaluation.
+         *
+         * @param queryTime the time in milliseconds spent on evaluating the rule body
+         */
+        private void record(long queryTime) {
+            RuleStatistics statistics = ruleStatistics.get(rule);
+            if(statistics == null) {
+                ruleStatistics.putIfAbsent(rule, new RuleStatistics(rule));
+                statistics = ruleStatistics.get(rule);
+            }
+            statistics.record(counter, queryTime, storeTime);
         }
 
+        private void storeJustifications() throws SQLException, SailException, ReasoningException {
+            sail.commit();
+
+            log.debug("adding {} justifications",justifications.size());
+
+            updateTaskStatus("storing justifications ...");
+            Set<Justification> baseJustifications = getBaseJustifications(connection,justifications);
+
+            if(config.isRemoveDuplicateJustifications()) {
+                removeDuplicateJustifications(connection,baseJustifications);
+            }
+
+            log.debug("{} justifications added after resolving inferred triples", baseJustifications.size());
+
+            // persist the justifications that have been created in the rule processing
+            if(baseJustifications.size() > 0) {
+                connection.storeJustifications(baseJustifications);
+            }
+            connection.commit();
+        }
     }
 
     /**
@@ -808,19 +1211,20 @@ public class ReasoningEngine implements TransactionListener {
      * @param justifications
      */
     private void removeDuplicateJustifications(KiWiReasoningConnection connection, Set<Justification> justifications) throws SQLException {
-        // remove duplicate justifications
-        Map<KiWiTriple,Collection<Justification>> justificationCache = StatementCommons.newQuadrupleMap();
+        // remove duplicate justifications; justifications are compared by the IDs of their triples and rules, so only
+        // these IDs need to be loaded for the existing justifications
+        Map<Long,Set<CompactJustification>> justificationCache = new HashMap<Long, Set<CompactJustification>>();
         for(Iterator<Justification> it = justifications.iterator(); it.hasNext(); ) {
             Justification j = it.next();
 
-            Collection<Justification> supportJustifications = justificationCache.get(j.getTriple());
+            Set<CompactJustification> supportJustifications = justificationCache.get(j.getTriple().getId());
             // cache justifications of triple in case they are needed again in this run
             if(supportJustifications == null) {
-                supportJustifications = getJustifications(connection, j.getTriple(), Collections.<Justification>emptySet());
-                justificationCache.put(j.getTriple(),supportJustifications);
+                supportJustifications = connection.listCompactJustificationsForTriple(j.getTriple().getId());
+                justificationCache.put(j.getTriple().getId(),supportJustifications);
             }
 
-            if(supportJustifications.contains(j)) {
+            if(!supportJustifications.isEmpty() && supportJustifications.contains(CompactJustification.of(j))) {
                 it.remove();
             }
         }
@@ -894,6 +1298,50 @@ public class ReasoningEngine implements TransactionListener {
         return reasonerThread.isRunning() || !reasoningQueue.isEmpty();
     }
 
+    /**
+     * Return the number of transactions waiting to be processed by the reasoner.
+     */
+    public int getQueueSize() {
+        return reasoningQueue.size();
+    }
+
+    /**
+     * Return the time in milliseconds the oldest transaction in the queue has been waiting, or 0 in case the queue
+     * is empty.
+     */
+    public long getQueueLag() {
+        QueuedTransaction oldest = reasoningQueue.peek();
+        return oldest != null ? System.currentTimeMillis() - oldest.queued : 0;
+    }
+
+    /**
+     * Return the time in milliseconds between queueing and finishing the processing of the last transaction.
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * Return the number of transactions processed by the reasoner.
+     */
+    public long getProcessedTransactions() {
+        return processedTransactions.get();
+    }
+
+    /**
+     * Return the number of worker threads used for evaluating rules.
+     */
+    public int getWorkers() {
+        return workers != null ? config.getWorkers() : 1;
+    }
+
+    /**
+     * Return timing information for all rules evaluated since the reasoner has been started.
+     */
+    public Collection<RuleStatistics> getRuleStatistics() {
+        return Collections.unmodifiableCollection(ruleStatistics.values());
+    }
+
     public void shutdown() {
         shutdown(false);
     }
@@ -933,6 +1381,10 @@ public class ReasoningEngine implements TransactionListener {
             reasonerThread.shutdown(false);
         }
 
+        if(workers != null) {
+            workers.shutdownNow();
+        }
+
         isshutdown = true;
     }
 
@@ -988,12 +1440,15 @@ public class ReasoningEngine implements TransactionListener {
                 try {
                     updateTaskStatus("idle");
 
-                    TransactionData data = reasoningQueue.take();
+                    QueuedTransaction queued = reasoningQueue.take();
                     running = true;
 
                     updateTaskMaxProgress(reasoningQueue.size());
 
-                    executeReasoner(data);
+                    executeReasoner(queued.data);
+
+                    lastLag = System.currentTimeMillis() - queued.queued;
+                    processedTransactions.incrementAndGet();
                 } catch (InterruptedException ex) {
 
                 } catch (RuntimeException ex) {
@@ -1011,4 +1466,32 @@ public class ReasoningEngine implements TransactionListener {
         }
     }
 
+    /**
+     * A transaction waiting in the reasoning queue, together with the time it has been queued.
+     */
+    private static class QueuedTransaction {
+
+        private final TransactionData data;
+
+        private final long queued;
+
+        private QueuedTransaction(TransactionData data) {
+            this.data = data;
+            this.queued = System.currentTimeMillis();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            return data.equals(((QueuedTransaction) o).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return data.hashCode();
+        }
+    }
+
 }
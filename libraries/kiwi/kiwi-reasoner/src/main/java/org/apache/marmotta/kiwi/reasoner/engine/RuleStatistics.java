@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.reasoner.engine;
+
+import org.apache.marmotta.kiwi.reasoner.model.program.Rule;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing information collected by the reasoning engine for a single rule: how often the rule body has been
+ * evaluated, how many bindings the evaluations yielded and how much time was spent querying the database and
+ * storing the inferred triples.
+ */
+public class RuleStatistics {
+
+    private final Rule rule;
+
+    private final AtomicLong evaluations = new AtomicLong();
+
+    private final AtomicLong bindings    = new AtomicLong();
+
+    private final AtomicLong queryTime   = new AtomicLong();
+
+    private final AtomicLong storeTime   = new AtomicLong();
+
+    public RuleStatistics(Rule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * Record an evaluation of the rule body.
+     *
+     * @param bindings  the number of bindings yielded by the rule body
+     * @param queryTime the time in milliseconds spent on evaluating the rule body
+     * @param storeTime the time in milliseconds spent on storing inferred triples and justifications
+     */
+    void record(long bindings, long queryTime, long storeTime) {
+        this.evaluations.incrementAndGet();
+        this.bindings.addAndGet(bindings);
+        this.queryTime.addAndGet(queryTime);
+        this.storeTime.addAndGet(storeTime);
+    }
+
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * Return the name of the rule, or its database id in case the rule has no name.
+     */
+    public String getName() {
+        return rule.getName() != null ? rule.getName() : String.valueOf(rule.getId());
+    }
+
+    public long getEvaluations() {
+        return evaluations.get();
+    }
+
+    public long getBindings() {
+        return bindings.get();
+    }
+
+    public long getQueryTime() {
+        return queryTime.get();
+    }
+
+    public long getStoreTime() {
+        return storeTime.get();
+    }
+
+    /**
+     * Return the total time in milliseconds spent on this rule.
+     */
+    public long getTotalTime() {
+        return queryTime.get() + storeTime.get();
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.reasoner.model.program;
+
+import com.google.common.primitives.Longs;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A compact representation of a persistent justification by database IDs only: the ID of the supported triple and
+ * sorted arrays with the IDs of the supporting triples and rules. Compact justifications can be loaded from the
+ * database without loading the triples and rules themselves, and are much cheaper to compare than full
+ * justifications, e.g. when checking whether a newly created justification already exists.
+ * <p/>
+ * Two compact justifications are equal if they support the same triple with the same triples and rules; the
+ * database ID of the justification is not considered.
+ */
+public final class CompactJustification {
+
+    private final long id;
+
+    private final long triple;
+
+    private final long[] supportingTriples;
+
+    private final long[] supportingRules;
+
+    private final int hashCode;
+
+    public CompactJustification(long id, long triple, Collection<Long> supportingTriples, Collection<Long> supportingRules) {
+        this(id, triple, Longs.toArray(supportingTriples), Longs.toArray(supportingRules));
+    }
+
+    private CompactJustification(long id, long triple, long[] supportingTriples, long[] supportingRules) {
+        this.id                = id;
+        this.triple            = triple;
+        this.supportingTriples = pack(supportingTriples);
+        this.supportingRules   = pack(supportingRules);
+
+        int result = (int) (triple ^ (triple >>> 32));
+        result = 31 * result + Arrays.hashCode(this.supportingTriples);
+        result = 31 * result + Arrays.hashCode(this.supportingRules);
+        this.hashCode = result;
+    }
+
+    /**
+     * Create the compact representation of the justification passed as argument. The justification, the triple it
+     * supports and all supporting triples and rules must have been persisted before.
+     *
+     * @throws IllegalArgumentException in case the supported triple or one of the supporting triples or rules is not persistent
+     */
+    public static CompactJustification of(Justification justification) {
+        if(justification.getTriple().getId() < 0) {
+            throw new IllegalArgumentException("supported triple is not persistent: " + justification.getTriple());
+        }
+
+        long[] triples = new long[justification.getSupportingTriples().size()];
+        int i = 0;
+        for(KiWiTriple t : justification.getSupportingTriples()) {
+            if(t.getId() < 0) {
+                throw new IllegalArgumentException("supporting triple is not persistent: " + t);
+            }
+            triples[i++] = t.getId();
+        }
+
+        long[] rules = new long[justification.getSupportingRules().size()];
+        i = 0;
+        for(Rule r : justification.getSupportingRules()) {
+            if(r.getId() <= 0) {
+                throw new IllegalArgumentException("supporting rule is not persistent: " + r);
+            }
+            rules[i++] = r.getId();
+        }
+
+        return new CompactJustification(justification.getId(), justification.getTriple().getId(), triples, rules);
+    }
+
+    /**
+     * The database ID of the justification, or -1 in case the justification has not been persisted yet.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * The database ID of the triple supported by this justification.
+     */
+    public long getTriple() {
+        return triple;
+    }
+
+    /**
+     * The sorted database IDs of the triples supporting this justification.
+     */
+    public long[] getSupportingTriples() {
+        return supportingTriples.clone();
+    }
+
+    /**
+     * The sorted database IDs of the rules supporting this justification.
+     */
+    public long[] getSupportingRules() {
+        return supportingRules.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CompactJustification that = (CompactJustification) o;
+
+        if (triple != that.triple) return false;
+        if (!Arrays.equals(supportingTriples, that.supportingTriples)) return false;
+        if (!Arrays.equals(supportingRules, that.supportingRules)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactJustification{" +
+                "triple=" + triple +
+                ", supportingTriples=" + Arrays.toString(supportingTriples) +
+                ", supportingRules=" + Arrays.toString(supportingRules) +
+                '}';
+    }
+
+    /**
+     * Sort the IDs passed as argument and remove duplicates; the array is modified in place.
+     */
+    private static long[] pack(long[] result) {
+        Arrays.sort(result);
+
+        int size = 0;
+        for(int i = 0; i < result.length; i++) {
+            if(size == 0 || result[size-1] != result[i]) {
+                result[size++] = result[i];
+            }
+        }
+        return size < result.length ? Arrays.copyOf(result, size) : result;
+    }
+}
@@ -676,6 +676,31 @@ public class KiWiReasoningConnection extends KiWiConnection {
      * @throws SQLException
      */
     public void deleteJustifications(Iteration<Justification, SQLException> justifications) throws SQLException {
+        Set<Long> ids = new HashSet<Long>();
+        try {
+            while(justifications.hasNext()) {
+                Justification j = justifications.next();
+                if(j.getId() < 0) {
+                    log.error("cannot delete justification since it does not have a database ID");
+                } else {
+                    ids.add(j.getId());
+                }
+            }
+        } finally {
+            Iterations.closeCloseable(justifications);
+        }
+
+        deleteJustificationsById(ids);
+    }
+
+
+    /**
+     * Delete the justifications with the database IDs given as argument (batch operation).
+     *
+     * @param ids
+     * @throws SQLException
+     */
+    private void deleteJustificationsById(Collection<Long> ids) throws SQLException {
         requireJDBCConnection();
 
         PreparedStatement deleteJustification = getPreparedStatement("justifications.delete");
@@ -687,22 +712,16 @@ public class KiWiReasoningConnection extends KiWiConnection {
             deleteJustificationRules.clearBatch();
             deleteJustificationTriples.clearBatch();
 
-            while(justifications.hasNext()) {
-                Justification j = justifications.next();
-                if(j.getId() < 0) {
-                    log.error("cannot delete justification since it does not have a database ID");
-                } else {
-                    deleteJustificationRules.setLong(1, j.getId());
-                    deleteJustificationRules.addBatch();
+            for(long id : ids) {
+                deleteJustificationRules.setLong(1, id);
+                deleteJustificationRules.addBatch();
 
-                    deleteJustificationTriples.setLong(1, j.getId());
-                    deleteJustificationTriples.addBatch();
+                deleteJustificationTriples.setLong(1, id);
+                deleteJustificationTriples.addBatch();
 
-                    deleteJustification.setLong(1, j.getId());
-                    deleteJustification.addBatch();
-                }
+                deleteJustification.setLong(1, id);
+                deleteJustification.addBatch();
             }
-            Iterations.closeCloseable(justifications);
 
             deleteJustificationTriples.executeBatch();
             deleteJustificationRules.executeBatch();
@@ -711,6 +730,48 @@ public class KiWiReasoningConnection extends KiWiConnection {
     }
 
 
+    /**
+     * Delete all justifications supported by one of the triples given as argument and return the database IDs of the
+     * triples that were supported by the deleted justifications. Only the IDs of the affected justifications are
+     * loaded, so the cost of the operation depends on the number of affected justifications and not on the overall
+     * number of justifications. The returned triples are the only ones that can have become unsupported, and can be
+     * checked with {@link #listUnsupportedTriples(java.util.Collection)}.
+     *
+     * @param triples the removed triples
+     * @return the database IDs of the triples supported by the deleted justifications
+     * @throws SQLException
+     */
+    public Set<Long> deleteJustificationsBySupporting(Iterable<KiWiTriple> triples) throws SQLException {
+        requireJDBCConnection();
+
+        Set<Long> justificationIds = new HashSet<Long>();
+        Set<Long> supportedIds     = new HashSet<Long>();
+
+        PreparedStatement listByTriple = getPreparedStatement("justifications.list_ids_by_striple");
+        synchronized (listByTriple) {
+            for(KiWiTriple triple : triples) {
+                if(triple.getId() >= 0) {
+                    listByTriple.setLong(1, triple.getId());
+
+                    ResultSet result = listByTriple.executeQuery();
+                    try {
+                        while(result.next()) {
+                            justificationIds.add(result.getLong("id"));
+                            supportedIds.add(result.getLong("triple_id"));
+                        }
+                    } finally {
+                        result.close();
+                    }
+                }
+            }
+        }
+
+        deleteJustificationsById(justificationIds);
+
+        return supportedIds;
+    }
+
+
 
     /**
      * Delete the justifications referring to a certain rule given as argument.
@@ -877,6 +938,58 @@ public class KiWiReasoningConnection extends KiWiConnection {
         return result;
     }
 
+    /**
+     * List the compact representation of all justifications supporting the triple with the given database ID. Only
+     * the IDs of the supporting triples and rules are loaded, not the triples and rules themselves.
+     *
+     * @param tripleId
+     * @return
+     * @throws SQLException
+     */
+    public Set<CompactJustification> listCompactJustificationsForTriple(long tripleId) throws SQLException {
+        requireJDBCConnection();
+
+        Map<Long,Long> supported = new HashMap<Long, Long>();
+        Map<Long,List<Long>> triples = new HashMap<Long, List<Long>>();
+        Map<Long,List<Long>> rules   = new HashMap<Long, List<Long>>();
+
+        loadCompactSupport("justifications.load_compact_triples", tripleId, supported, triples);
+        loadCompactSupport("justifications.load_compact_rules", tripleId, supported, rules);
+
+        Set<CompactJustification> result = new HashSet<CompactJustification>();
+        for(Map.Entry<Long,Long> entry : supported.entrySet()) {
+            List<Long> jtriples = triples.get(entry.getKey());
+            List<Long> jrules   = rules.get(entry.getKey());
+            result.add(new CompactJustification(entry.getKey(), entry.getValue(),
+                    jtriples != null ? jtriples : Collections.<Long>emptyList(),
+                    jrules   != null ? jrules   : Collections.<Long>emptyList()));
+        }
+        return result;
+    }
+
+    private void loadCompactSupport(String statement, long tripleId, Map<Long,Long> supported, Map<Long,List<Long>> support) throws SQLException {
+        PreparedStatement loadSupport = getPreparedStatement(statement);
+        synchronized (loadSupport) {
+            loadSupport.setLong(1, tripleId);
+            ResultSet result = loadSupport.executeQuery();
+            try {
+                while(result.next()) {
+                    long id = result.getLong("id");
+                    supported.put(id, result.getLong("triple_id"));
+
+                    List<Long> ids = support.get(id);
+                    if(ids == null) {
+                        ids = new ArrayList<Long>();
+                        support.put(id, ids);
+                    }
+                    ids.add(result.getLong("support_id"));
+                }
+            } finally {
+                result.close();
+            }
+        }
+    }
+
     /**
      * List all triples that are not supported by at least one justification.
      * @return
@@ -901,6 +1014,39 @@ public class KiWiReasoningConnection extends KiWiConnection {
 
 
 
+    /**
+     * List those triples with the database IDs given as argument that are inferred and not supported by at least one
+     * justification. In contrast to {@link #listUnsupportedTriples()}, only the given triples are checked, e.g. the
+     * triples returned by {@link #deleteJustificationsBySupporting(Iterable)}.
+     *
+     * @param tripleIds
+     * @return
+     * @throws SQLException
+     */
+    public List<KiWiTriple> listUnsupportedTriples(Collection<Long> tripleIds) throws SQLException {
+        requireJDBCConnection();
+
+        List<KiWiTriple> unsupported = new ArrayList<KiWiTriple>();
+
+        PreparedStatement checkUnsupported = getPreparedStatement("justifications.check_unsupported");
+        synchronized (checkUnsupported) {
+            for(long id : tripleIds) {
+                checkUnsupported.setLong(1, id);
+
+                ResultSet result = checkUnsupported.executeQuery();
+                try {
+                    if(result.next()) {
+                        unsupported.add(constructTripleFromDatabase(result));
+                    }
+                } finally {
+                    result.close();
+                }
+            }
+        }
+        return unsupported;
+    }
+
+
     /**
      * Evaluate a query on the triple store. The query parameters passed to the method call are
      * translated into database queries in HQL and directly evaluated by a single database
@@ -924,6 +1070,34 @@ public class KiWiReasoningConnection extends KiWiConnection {
      *         variables and offset and limited by the parameters given
      */
     public CloseableIteration<QueryResult, SQLException> query(final Collection<Pattern> patterns, final QueryResult initialBindings, Set<Filter> filters, List<VariableField> orderBy, final boolean justifications) throws SQLException {
+        return query(patterns, initialBindings, null, null, filters, orderBy, justifications);
+    }
+
+    /**
+     * Evaluate a query on the triple store where one of the patterns may only be matched by the triples given
+     * as argument (the delta of a semi-naive evaluation). The delta is joined with the other patterns in a single
+     * database query, so that a rule body can be evaluated for many added triples at once. Apart from the
+     * restriction of the delta pattern, the query behaves like
+     * {@link #query(java.util.Collection, org.apache.marmotta.kiwi.reasoner.model.query.QueryResult, java.util.Set, java.util.List, boolean)}.
+     *
+     * @param patterns        the set of patterns to query; patterns are considered to be connected by AND
+     * @param deltaPattern    the pattern (contained in patterns) that is only matched by the delta triples
+     * @param delta           the triples the delta pattern may match; the triples need to be persisted
+     * @param justifications  if true, the matching triples are returned as justifications with each result
+     * @return a list of bindings matching the query patterns
+     */
+    public CloseableIteration<QueryResult, SQLException> query(final Collection<Pattern> patterns, Pattern deltaPattern, Collection<KiWiTriple> delta, final boolean justifications) throws SQLException {
+        if(!patterns.contains(deltaPattern)) {
+            throw new IllegalArgumentException("delta pattern is not contained in the query patterns");
+        }
+        if(delta.isEmpty()) {
+            throw new IllegalArgumentException("delta must not be empty");
+        }
+
+        return query(patterns, null, deltaPattern, delta, null, null, justifications);
+    }
+
+    private CloseableIteration<QueryResult, SQLException> query(final Collection<Pattern> patterns, final QueryResult initialBindings, Pattern deltaPattern, Collection<KiWiTriple> delta, Set<Filter> filters, List<VariableField> orderBy, final boolean justifications) throws SQLException {
         requireJDBCConnection();
 
         if(filters != null) {
@@ -1104,7 +1278,20 @@ public class KiWiReasoningConnection extends KiWiConnection {
             }
         }
 
-        // 4. for each pattern, ensure that the matched triple is not marked as deleted
+        // 4. restrict the triples matched by the delta pattern to the triples given in the delta; the ids are
+        //    inlined like the node ids above
+        if(deltaPattern != null) {
+            StringBuilder ids = new StringBuilder();
+            for(KiWiTriple t : delta) {
+                if(ids.length() > 0) {
+                    ids.append(",");
+                }
+                ids.append(t.getId());
+            }
+            whereConditions.add(patternNames.get(deltaPattern) + ".id IN (" + ids + ")");
+        }
+
+        // 5. for each pattern, ensure that the matched triple is not marked as deleted
         for(Pattern p : patterns) {
             String pName = patternNames.get(p);
             whereConditions.add(pName+".deleted = false");
@@ -170,7 +170,7 @@ public class KiWiReasoningSail extends TransactionalSailWrapper {
             throw new SailException("cannot store program in database",ex);
         }
 
-        engine.loadPrograms();
+        engine.programChanged(program);
 
         // now add all added rules to the reasoner
         for(Rule rule : program.getRules()) {
@@ -208,6 +208,7 @@ public class KiWiReasoningSail extends TransactionalSailWrapper {
     public void updateProgram(Program program) throws SailException {
         Set<Rule> added = new HashSet<Rule>();
         Set<Rule> removed = new HashSet<Rule>();
+        Program stored;
         try {
             KiWiReasoningConnection connection = persistence.getConnection();
             try {
@@ -227,8 +228,9 @@ public class KiWiReasoningSail extends TransactionalSailWrapper {
 
                 }
 
-                // store program in the database
+                // store program in the database; unchanged rules only have a database ID in the stored version
                 connection.updateProgram(program);
+                stored = connection.loadProgram(program.getName());
                 connection.commit();
             } finally {
                 connection.close();
@@ -237,7 +239,7 @@ public class KiWiReasoningSail extends TransactionalSailWrapper {
             throw new SailException("cannot store program in database",ex);
         }
 
-        engine.loadPrograms();
+        engine.programChanged(stored);
 
         // if rules have been removed, clean up
         if(removed.size() > 0) {
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.reasoner.test.engine;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.reasoner.engine.PatternIndex;
+import org.apache.marmotta.kiwi.reasoner.model.program.Pattern;
+import org.apache.marmotta.kiwi.reasoner.model.program.Rule;
+import org.apache.marmotta.kiwi.reasoner.parser.KWRLProgramParser;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Test routing of triples to rule body patterns by the pattern index.
+ */
+public class PatternIndexTest {
+
+    private static final String RDF  = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String RDFS = "http://www.w3.org/2000/01/rdf-schema#";
+    private static final String EX   = "http://localhost/ex#";
+
+    private static final Map<String,String> NAMESPACES = ImmutableMap.of("rdf", RDF, "rdfs", RDFS, "ex", EX);
+
+    private Repository repository;
+
+    private Rule subClass, type, anyProperty, any;
+
+    @Before
+    public void setup() throws Exception {
+        repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+
+        subClass    = parse(1, "($1 rdfs:subClassOf $2), ($2 rdfs:subClassOf $3) -> ($1 rdfs:subClassOf $3)");
+        type        = parse(2, "($1 rdf:type $2), ($2 rdfs:subClassOf $3) -> ($1 rdf:type $3)");
+        anyProperty = parse(3, "($1 $2 ex:Thing) -> ($1 rdf:type ex:Thing)");
+        any         = parse(4, "($1 $2 $3) -> ($2 rdf:type rdf:Property)");
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        repository.shutDown();
+    }
+
+    @Test
+    public void testCandidates() {
+        PatternIndex index = new PatternIndex();
+        index.addRule(subClass);
+        index.addRule(type);
+        index.addRule(anyProperty);
+        index.addRule(any);
+
+        // ($1 sc $2), ($2 sc $3) and ($2 sc $3) of the type rule are the same pattern
+        Assert.assertEquals(5, index.size());
+
+        Collection<Pattern> candidates = index.getCandidates(triple(EX + "A", RDFS + "subClassOf", EX + "B"));
+        Assert.assertEquals(3, candidates.size());
+        Assert.assertThat(candidates, hasItems(subClass.getBody().get(0), subClass.getBody().get(1), any.getBody().get(0)));
+        Assert.assertThat(index.getRules(subClass.getBody().get(1)), containsInAnyOrder(subClass, type));
+
+        candidates = index.getCandidates(triple(EX + "a", RDF + "type", EX + "Thing"));
+        Assert.assertThat(candidates, containsInAnyOrder(type.getBody().get(0), anyProperty.getBody().get(0), any.getBody().get(0)));
+
+        candidates = index.getCandidates(triple(EX + "a", EX + "other", EX + "b"));
+        Assert.assertThat(candidates, contains(any.getBody().get(0)));
+    }
+
+    @Test
+    public void testRemoveRule() {
+        PatternIndex index = new PatternIndex();
+        index.addRule(subClass);
+        index.addRule(type);
+
+        PatternIndex copy = new PatternIndex(index);
+        copy.removeRule(subClass);
+
+        // the shared pattern stays in the index for the remaining rule
+        Collection<Pattern> candidates = copy.getCandidates(triple(EX + "A", RDFS + "subClassOf", EX + "B"));
+        Assert.assertThat(candidates, contains(type.getBody().get(1)));
+        Assert.assertThat(copy.getRules(type.getBody().get(1)), contains(type));
+
+        copy.removeRule(type);
+        Assert.assertTrue(copy.isEmpty());
+        Assert.assertThat(copy.getCandidates(triple(EX + "a", RDF + "type", EX + "B")), empty());
+
+        // the original index is not modified by changes to the copy
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(2, new HashSet<>(index.getCandidates(triple(EX + "A", RDFS + "subClassOf", EX + "B"))).size());
+    }
+
+    private Rule parse(long id, String rule) throws Exception {
+        Rule r = KWRLProgramParser.parseRule(rule, NAMESPACES, repository.getValueFactory());
+        r.setId(id);
+        return r;
+    }
+
+    private static KiWiTriple triple(String subject, String property, String object) {
+        return new KiWiTriple(new KiWiUriResource(subject), new KiWiUriResource(property), new KiWiUriResource(object), null);
+    }
+}
@@ -34,6 +34,7 @@ import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
 import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
 import org.apache.marmotta.kiwi.reasoner.engine.ReasoningConfiguration;
 import org.apache.marmotta.kiwi.reasoner.engine.ReasoningEngine;
+import org.apache.marmotta.kiwi.reasoner.engine.RuleStatistics;
 import org.apache.marmotta.kiwi.reasoner.model.program.Justification;
 import org.apache.marmotta.kiwi.reasoner.model.program.Program;
 import org.apache.marmotta.kiwi.reasoner.model.program.Rule;
@@ -346,6 +347,51 @@ public class ReasoningEngineTest {
     }
 
 
+    /**
+     * Run the conjunction test with the triples matched one at a time instead of the semi-naive set-at-a-time
+     * evaluation used by default; both must yield the same inferred triples and justifications.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIncrementalReasoningConjunctionNaive() throws Exception {
+        engine.shutdown(true);
+
+        ReasoningConfiguration naive = new ReasoningConfiguration();
+        naive.setSemiNaive(false);
+        engine = new ReasoningEngine(rpersistence,tsail,naive);
+
+        testIncrementalReasoningConjunction();
+    }
+
+
+    /**
+     * Run the conjunction test with all rules evaluated by the reasoner thread instead of the worker pool used by
+     * default; both must yield the same inferred triples and justifications. Also checks that timing statistics
+     * are collected for the evaluated rules.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIncrementalReasoningConjunctionSingleWorker() throws Exception {
+        engine.shutdown(true);
+
+        ReasoningConfiguration single = new ReasoningConfiguration();
+        single.setWorkers(1);
+        engine = new ReasoningEngine(rpersistence,tsail,single);
+        Assert.assertEquals(1, engine.getWorkers());
+
+        testIncrementalReasoningConjunction();
+
+        Assert.assertEquals(0, engine.getQueueSize());
+        Assert.assertTrue(engine.getProcessedTransactions() > 0);
+        Assert.assertFalse(engine.getRuleStatistics().isEmpty());
+        for(RuleStatistics statistics : engine.getRuleStatistics()) {
+            Assert.assertTrue(statistics.getEvaluations() > 0);
+        }
+    }
+
+
     /**
      * Test running a full reasoning over the triple store based on the simple program and the simple.ttl data file.
      * Test if the expected triples are present. Since we are only evaluating a single reasoning round, we cannot
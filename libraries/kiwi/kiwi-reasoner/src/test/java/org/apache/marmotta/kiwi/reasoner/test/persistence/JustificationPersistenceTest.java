@@ -27,6 +27,7 @@ import java.sql.BatchUpdateException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -36,6 +37,7 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
 import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+import org.apache.marmotta.kiwi.reasoner.model.program.CompactJustification;
 import org.apache.marmotta.kiwi.reasoner.model.program.Justification;
 import org.apache.marmotta.kiwi.reasoner.model.program.Program;
 import org.apache.marmotta.kiwi.reasoner.parser.KWRLProgramParser;
@@ -316,6 +318,31 @@ public class JustificationPersistenceTest {
             Assert.assertThat("unsupported triples differ", unsupported2, hasItem((KiWiTriple)infTriples.get(1)));
 
 
+            // *** check compact justifications and incremental deletion
+
+            // the compact representation of j1 only contains the IDs of its triples and rules
+            Set<CompactJustification> compact = connection.listCompactJustificationsForTriple(((KiWiTriple) infTriples.get(0)).getId());
+            Assert.assertEquals("number of justifications is wrong", 1, compact.size());
+            Assert.assertThat("justifications differ", compact, hasItem(CompactJustification.of(j1)));
+
+            // deleting the justifications supported by baseTriples.get(0) only affects j1 and thus infTriples.get(0)
+            Set<Long> affected = connection.deleteJustificationsBySupporting(Collections.singleton((KiWiTriple) baseTriples.get(0)));
+            Assert.assertEquals("affected triples differ", Collections.singleton(((KiWiTriple) infTriples.get(0)).getId()), affected);
+            Assert.assertTrue(connection.listCompactJustificationsForTriple(((KiWiTriple) infTriples.get(0)).getId()).isEmpty());
+
+            // only inferred triples are reported as unsupported
+            List<KiWiTriple> unsupported3 = connection.listUnsupportedTriples(Arrays.asList(((KiWiTriple) infTriples.get(0)).getId(), ((KiWiTriple) baseTriples.get(1)).getId()));
+            Assert.assertEquals("number of unsupported triples is wrong",1,unsupported3.size());
+            Assert.assertThat("unsupported triples differ", unsupported3, hasItem((KiWiTriple)infTriples.get(0)));
+
+            resultListJustifications = listJustifications.executeQuery();
+
+            Assert.assertTrue(resultListJustifications.next());
+            Assert.assertEquals(0, resultListJustifications.getInt("count"));
+            resultListJustifications.close();
+            connection.commit();
+
+
         } catch(BatchUpdateException ex) {
             if(ex.getNextException() != null) {
                 ex.printStackTrace();
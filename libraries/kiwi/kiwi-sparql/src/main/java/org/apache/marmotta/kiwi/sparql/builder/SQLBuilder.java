@@ -40,7 +40,9 @@ import org.openrdf.query.algebra.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.security.SecureRandom;
 import java.util.*;
+import java.util.regex.Pattern;
 
 /**
  * A builder for translating SPARQL queries into SQL.
@@ -56,6 +58,28 @@ public class SQLBuilder {
      */
     private static final String[] positions = new String[] {"subject","predicate","object","context"};
 
+    /**
+     * Node ids that may change between executions of queries with the same shape (constants in the subject, predicate
+     * and object of patterns as well as the bindings passed to the query) are marked in the generated SQL so that they
+     * can later be replaced by query parameters. The random token avoids clashes with string constants of the query.
+     *
+     * @see #parameter(long)
+     */
+    private static final String PARAMETER_TOKEN = Long.toHexString(new SecureRandom().nextLong());
+
+    /**
+     * Matches a parameter marker in the generated SQL; the first group is the node id, or "T" for the snapshot date
+     * in point-in-time mode.
+     */
+    public static final Pattern PARAMETER_PATTERN = Pattern.compile("\\{" + PARAMETER_TOKEN + ":(-?\\d+|T)\\}");
+
+    /**
+     * The first group of the parameter pattern for the snapshot date marker.
+     *
+     * @see #snapshotParameter()
+     */
+    public static final String SNAPSHOT_PARAMETER = "T";
+
 
     /**
      * Reference to the registry of natively supported functions with parameter and return types as well as SQL translation
@@ -126,6 +150,12 @@ public class SQLBuilder {
     // a prefix for naming table aliases (needed in case this is a subquery)
     private String prefix;
 
+    /**
+     * Point-in-time mode: triples are selected by their creation and deletion dates relative to a snapshot date
+     * (passed as query parameter) instead of by their deleted flag.
+     */
+    private boolean snapshot;
+
     /**
      * Create a new SQLBuilder for the given query, initial bindings, dataset, and
      * @param query
@@ -133,17 +163,33 @@ public class SQLBuilder {
      * @param dataset
      */
     public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, final KiWiValueFactory valueFactory, KiWiDialect dialect, Set<String> projectedVars) throws UnsatisfiableQueryException {
+        this(query, bindings, dataset, valueFactory, dialect, projectedVars, false);
+    }
+
+    /**
+     * Create a new SQLBuilder for the given query, initial bindings, dataset, and
+     * @param query
+     * @param bindings
+     * @param dataset
+     * @param snapshot if true, the query is evaluated against a snapshot of the triple store at the date passed as
+     *                 query parameter (see {@link #snapshotParameter()})
+     */
+    public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, final KiWiValueFactory valueFactory, KiWiDialect dialect, Set<String> projectedVars, boolean snapshot) throws UnsatisfiableQueryException {
         this(query, bindings, dataset, new ValueConverter() {
             @Override
             public KiWiNode convert(Value value) {
                 return valueFactory.convert(value);
             }
-        }, dialect, projectedVars);
+        }, dialect, projectedVars, snapshot);
     }
 
 
     public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> projectedVars) throws UnsatisfiableQueryException {
-        this(query,bindings, dataset, converter, dialect, "", projectedVars, new HashMap<String, SQLVariable>());
+        this(query, bindings, dataset, converter, dialect, projectedVars, false);
+    }
+
+    public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> projectedVars, boolean snapshot) throws UnsatisfiableQueryException {
+        this(query,bindings, dataset, converter, dialect, "", projectedVars, new HashMap<String, SQLVariable>(), snapshot);
     }
 
     /**
@@ -152,7 +198,7 @@ public class SQLBuilder {
      * @param bindings
      * @param dataset
      */
-    public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, String prefix, Set<String> projectedVars, Map<String,SQLVariable> variables) throws UnsatisfiableQueryException {
+    public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, String prefix, Set<String> projectedVars, Map<String,SQLVariable> variables, boolean snapshot) throws UnsatisfiableQueryException {
         this.query = query;
         this.bindings = bindings;
         this.dataset = dataset;
@@ -161,6 +207,7 @@ public class SQLBuilder {
         this.projectedVars = projectedVars;
         this.prefix = prefix;
         this.variables = variables;
+        this.snapshot = snapshot;
 
         prepareBuilder();
     }
@@ -190,12 +237,16 @@ public class SQLBuilder {
         return projectedVars;
     }
 
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
     private void prepareBuilder()  throws UnsatisfiableQueryException {
         Preconditions.checkArgument(query instanceof Projection || query instanceof Union || query instanceof Extension || query instanceof Order || query instanceof Group || query instanceof LeftJoin ||query instanceof Join || query instanceof Filter || query instanceof StatementPattern || query instanceof Distinct || query instanceof Slice || query instanceof Reduced);
 
 
         // collect all patterns in a list, using depth-first search over the join
-        PatternCollector pc = new PatternCollector(query, bindings, dataset, converter, dialect, projectedVars, prefix);
+        PatternCollector pc = new PatternCollector(query, bindings, dataset, converter, dialect, projectedVars, prefix, snapshot);
 
         fragments = pc.parts;
 
@@ -532,7 +583,11 @@ public class SQLBuilder {
                             throw new UnsatisfiableQueryException("the values in this query have not been created by the KiWi value factory");
                         }
 
-                        if (nodeId >= 0) {
+                        // constants in subject, predicate and object are query parameters, so the same SQL can be used for
+                        // queries only differing in these constants; unknown nodes (id < 0) will simply not match
+                        if (i < 3 && fields[i].getName().startsWith("-const")) {
+                            p.getConditions().add(pName + "." + positions[i] + " = " + parameter(nodeId));
+                        } else if (nodeId >= 0) {
                             String condition = pName + "." + positions[i] + " = " + nodeId;
                             p.getConditions().add(condition);
                         }
@@ -707,7 +762,7 @@ public class SQLBuilder {
                     String vName = vNames.get(0);
                     Value binding = converter.convert(bindings.getValue(v));
                     if(binding instanceof KiWiNode) {
-                        whereConditions.add(vName+" = "+((KiWiNode)binding).getId());
+                        whereConditions.add(vName+" = "+parameter(((KiWiNode)binding).getId()));
                     } else {
                         throw new IllegalStateException("the values in this binding have not been created by the KiWi value factory");
                     }
@@ -918,7 +973,27 @@ public class SQLBuilder {
 
 
     /**
-     * Construct the SQL query for the given SPARQL query part.
+     * Return a marker for a node id that will be turned into a query parameter when the SQL is prepared.
+     *
+     * @see #PARAMETER_PATTERN
+     */
+    public static String parameter(long nodeId) {
+        return "{" + PARAMETER_TOKEN + ":" + nodeId + "}";
+    }
+
+    /**
+     * Return a marker for the snapshot date of point-in-time queries that will be turned into a timestamp query
+     * parameter when the SQL is prepared.
+     *
+     * @see #PARAMETER_PATTERN
+     */
+    public static String snapshotParameter() {
+        return "{" + PARAMETER_TOKEN + ":" + SNAPSHOT_PARAMETER + "}";
+    }
+
+    /**
+     * Construct the SQL query for the given SPARQL query part. Node ids that can be passed as query parameters are
+     * contained as markers (see {@link #PARAMETER_PATTERN}) and need to be replaced before executing the query.
      *
      * @return
      */
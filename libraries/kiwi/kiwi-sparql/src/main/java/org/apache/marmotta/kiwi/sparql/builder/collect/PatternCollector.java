@@ -49,14 +49,16 @@ public class PatternCollector extends QueryModelVisitorBase<RuntimeException> {
     private KiWiDialect dialect;
     private Set<String> projectedVars;
     private String prefix;
+    private boolean snapshot;
 
-    public PatternCollector(TupleExpr expr, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> projectedVars, String prefix) {
+    public PatternCollector(TupleExpr expr, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, Set<String> projectedVars, String prefix, boolean snapshot) {
         this.bindings = bindings;
         this.dataset = dataset;
         this.converter = converter;
         this.dialect = dialect;
         this.projectedVars = projectedVars;
         this.prefix  = prefix;
+        this.snapshot = snapshot;
 
         parts.push(new SQLFragment());
         expr.visit(this);
@@ -64,7 +66,7 @@ public class PatternCollector extends QueryModelVisitorBase<RuntimeException> {
 
     @Override
     public void meet(StatementPattern node) throws RuntimeException {
-        parts.getLast().getPatterns().add(new SQLPattern(prefix + "P" + (++counter), node));
+        parts.getLast().getPatterns().add(new SQLPattern(prefix + "P" + (++counter), node, snapshot));
 
         super.meet(node);
     }
@@ -96,14 +98,14 @@ public class PatternCollector extends QueryModelVisitorBase<RuntimeException> {
     public void meet(Union node) throws RuntimeException {
         // unions are treated as subqueries, don't continue collection, but add the Union to the last part
 
-        parts.getLast().getSubqueries().add(new SQLUnion(prefix + "U" + (++counter),node, bindings, dataset, converter, dialect));
+        parts.getLast().getSubqueries().add(new SQLUnion(prefix + "U" + (++counter),node, bindings, dataset, converter, dialect, snapshot));
     }
 
     @Override
     public void meet(Projection node) throws RuntimeException {
         // subqueries are represented with a projection inside a JOIN; we don't continue collection
 
-        parts.getLast().getSubqueries().add(new SQLSubQuery(prefix + "S" + (++counter), node, bindings, dataset, converter, dialect, projectedVars));
+        parts.getLast().getSubqueries().add(new SQLSubQuery(prefix + "S" + (++counter), node, bindings, dataset, converter, dialect, projectedVars, snapshot));
     }
 
     @Override
@@ -17,6 +17,7 @@
 
 package org.apache.marmotta.kiwi.sparql.builder.model;
 
+import org.apache.marmotta.kiwi.sparql.builder.SQLBuilder;
 import org.openrdf.model.Resource;
 import org.openrdf.query.algebra.StatementPattern;
 import org.openrdf.query.algebra.Var;
@@ -84,9 +85,24 @@ public class SQLPattern extends SQLClause {
     private List<Resource> variableContexts;
 
     public SQLPattern(String name, StatementPattern sparqlPattern) {
+        this(name, sparqlPattern, false);
+    }
+
+    /**
+     * Create a new pattern. In snapshot mode, the pattern matches all triples that existed at the snapshot date
+     * instead of the triples that are currently not deleted.
+     *
+     * @see org.apache.marmotta.kiwi.sparql.builder.SQLBuilder#snapshotParameter()
+     */
+    public SQLPattern(String name, StatementPattern sparqlPattern, boolean snapshot) {
         super();
         this.name = name;
-        this.conditions.add(name + ".deleted = false");
+        if(snapshot) {
+            this.conditions.add(name + ".createdAt <= " + SQLBuilder.snapshotParameter());
+            this.conditions.add("(" + name + ".deleted = false OR " + name + ".deletedAt > " + SQLBuilder.snapshotParameter() + ")");
+        } else {
+            this.conditions.add(name + ".deleted = false");
+        }
         this.sparqlPattern = sparqlPattern;
 
         tripleFields.put(TripleColumns.SUBJECT,   sparqlPattern.getSubjectVar());
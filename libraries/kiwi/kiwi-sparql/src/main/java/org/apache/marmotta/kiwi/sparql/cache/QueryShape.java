@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.cache;
+
+import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.AggregateOperatorBase;
+import org.openrdf.query.algebra.QueryModelNode;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The normalized shape of a query part evaluated natively in the database. Two query parts with the same shape
+ * translate into the same SQL query and only differ in the query parameters, i.e. the constants used in the subject,
+ * predicate and object of triple patterns and the values of the bindings passed to the evaluation.
+ * <p/>
+ * The shape consists of a key, where the parameter values have been replaced by placeholders, and the node ids of
+ * the parameter values in the order they have been found in the query. Since the SQL builder refers to parameters by
+ * node id, the key also describes which parameters have the same value, so the parameters can be mapped back
+ * unambiguously.
+ *
+ * @see org.apache.marmotta.kiwi.sparql.builder.SQLBuilder#parameter(long)
+ */
+public class QueryShape {
+
+    private String key;
+
+    private long[] parameters;
+
+    private Date snapshot;
+
+    public QueryShape(TupleExpr query, BindingSet bindings, Dataset dataset, Set<String> projectedVars, KiWiValueFactory valueFactory) {
+        this(query, bindings, dataset, projectedVars, valueFactory, null);
+    }
+
+    /**
+     * Create the shape of a query part. In case a snapshot date is given, the query part is evaluated against
+     * the triples that existed at this date; the date is a query parameter and not part of the key.
+     */
+    public QueryShape(TupleExpr query, BindingSet bindings, Dataset dataset, Set<String> projectedVars, KiWiValueFactory valueFactory, Date snapshot) {
+        this.snapshot = snapshot;
+
+        final StringBuilder key = new StringBuilder();
+        final List<Value> values = new ArrayList<>();
+
+        query.visit(new QueryModelVisitorBase<RuntimeException>() {
+            @Override
+            protected void meetNode(QueryModelNode node) {
+                key.append(node.getSignature());
+                if(node instanceof AggregateOperatorBase && ((AggregateOperatorBase) node).isDistinct()) {
+                    key.append(" DISTINCT");
+                }
+                key.append('(');
+                node.visitChildren(this);
+                key.append(')');
+            }
+
+            @Override
+            public void meet(Var node) {
+                if(isParameter(node)) {
+                    key.append("Var(?)");
+                    values.add(node.getValue());
+                } else {
+                    meetNode(node);
+                }
+            }
+        });
+
+        key.append("|bindings:");
+        if(bindings != null) {
+            for(String name : new TreeSet<>(bindings.getBindingNames())) {
+                key.append(name).append(',');
+                values.add(bindings.getValue(name));
+            }
+        }
+
+        key.append("|projection:").append(new TreeSet<>(projectedVars));
+
+        if(dataset != null) {
+            key.append("|default:").append(sort(dataset.getDefaultGraphs()));
+            key.append("|named:").append(sort(dataset.getNamedGraphs()));
+        }
+
+        if(snapshot != null) {
+            key.append("|snapshot");
+        }
+
+        // node ids of the parameters, and for each parameter the index of the first parameter with the same node id
+        key.append("|parameters:");
+        parameters = new long[values.size()];
+        for(int i=0; i<parameters.length; i++) {
+            parameters[i] = valueFactory.convert(values.get(i)).getId();
+            key.append(getParameterIndex(parameters[i])).append(',');
+        }
+
+        this.key = key.toString();
+    }
+
+    /**
+     * Return true in case the variable is a constant in the subject, predicate or object of a triple pattern; these
+     * are turned into query parameters by the SQL builder.
+     */
+    private static boolean isParameter(Var var) {
+        if(var.hasValue() && var.getName().startsWith("-const") && var.getParentNode() instanceof StatementPattern) {
+            return var != ((StatementPattern) var.getParentNode()).getContextVar();
+        }
+        return false;
+    }
+
+    private static Set<String> sort(Set<URI> graphs) {
+        Set<String> result = new TreeSet<>();
+        for(URI graph : graphs) {
+            result.add(String.valueOf(graph));
+        }
+        return result;
+    }
+
+    /**
+     * The key identifying the shape of the query.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Return the index of the first parameter with the given node id, or -1 if no parameter has this node id.
+     */
+    public int getParameterIndex(long nodeId) {
+        for(int i=0; i<parameters.length; i++) {
+            if(parameters[i] == nodeId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the node id of the parameter with the given index.
+     */
+    public long getParameter(int index) {
+        return parameters[index];
+    }
+
+    /**
+     * The snapshot date of a point-in-time query part, or null if the query part is evaluated on the current data.
+     */
+    public Date getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.cache;
+
+import org.apache.marmotta.kiwi.sparql.builder.SQLBuilder;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLVariable;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+/**
+ * The result of translating a query part into SQL: the SQL query with parameters, the mapping of the query
+ * parameters to the parameters of the query shape, and the variable descriptions needed for converting the
+ * result rows. A plan can be reused for all query parts with the same shape.
+ *
+ * @see QueryShape
+ */
+public class SQLPlan {
+
+    private String sql;
+
+    // for each query parameter the index of the corresponding parameter in the query shape, or SNAPSHOT for the
+    // snapshot date of point-in-time queries
+    private int[] parameters;
+
+    private static final int SNAPSHOT = -1;
+
+    private List<SQLVariable> variables;
+
+    private Set<String> projectedVars;
+
+    // false in case the SQL contains node ids that are not described by the shape
+    private boolean reusable;
+
+    private long cacheGeneration;
+
+    /**
+     * Create a new plan from the SQL query built by the builder passed as argument. The builder must have been
+     * created for a query with the given shape.
+     *
+     * @param builder         the SQL builder for the query part
+     * @param shape           the shape of the query part
+     * @param cacheGeneration the generation of the node caches at the time the node ids have been looked up
+     */
+    public SQLPlan(SQLBuilder builder, QueryShape shape, long cacheGeneration) {
+        this.variables       = Collections.unmodifiableList(new ArrayList<>(builder.getVariables().values()));
+        this.projectedVars   = Collections.unmodifiableSet(new HashSet<>(builder.getProjectedVars()));
+        this.cacheGeneration = cacheGeneration;
+        this.reusable        = true;
+
+        List<Integer> parameterList = new ArrayList<>();
+        StringBuffer sql = new StringBuffer();
+        Matcher m = SQLBuilder.PARAMETER_PATTERN.matcher(builder.build());
+        while(m.find()) {
+            if(SQLBuilder.SNAPSHOT_PARAMETER.equals(m.group(1))) {
+                m.appendReplacement(sql, "?");
+                parameterList.add(SNAPSHOT);
+                continue;
+            }
+
+            int index = shape.getParameterIndex(Long.parseLong(m.group(1)));
+            if(index >= 0) {
+                m.appendReplacement(sql, "?");
+                parameterList.add(index);
+            } else {
+                m.appendReplacement(sql, m.group(1));
+                reusable = false;
+            }
+        }
+        m.appendTail(sql);
+
+        this.sql = sql.toString();
+        this.parameters = new int[parameterList.size()];
+        for(int i=0; i<parameters.length; i++) {
+            parameters[i] = parameterList.get(i);
+        }
+    }
+
+    /**
+     * Set the query parameters of the statement prepared for this plan to the parameter values of the shape passed
+     * as argument.
+     */
+    public void setParameters(PreparedStatement statement, QueryShape shape) throws SQLException {
+        for(int i=0; i<parameters.length; i++) {
+            if(parameters[i] == SNAPSHOT) {
+                statement.setTimestamp(i+1, new Timestamp(shape.getSnapshot().getTime()));
+            } else {
+                statement.setLong(i+1, shape.getParameter(parameters[i]));
+            }
+        }
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<SQLVariable> getVariables() {
+        return variables;
+    }
+
+    public Set<String> getProjectedVars() {
+        return projectedVars;
+    }
+
+    /**
+     * Return true in case the plan can be used for other queries with the same shape.
+     */
+    public boolean isReusable() {
+        return reusable;
+    }
+
+    public long getCacheGeneration() {
+        return cacheGeneration;
+    }
+}
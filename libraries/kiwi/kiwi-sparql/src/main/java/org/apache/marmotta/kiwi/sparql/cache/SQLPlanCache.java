@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache for the SQL plans of natively evaluated query parts, indexed by the key of the query shape. The cache is
+ * shared by all connections of a store. Plans are only valid as long as the node ids they contain are valid, so the
+ * cache is emptied whenever the node caches of the persistence have been cleared (e.g. by the garbage collector).
+ * The JMX name of the cache statistics is org.apache.marmotta.kiwi.sparql:type=SQLPlanCache
+ */
+public class SQLPlanCache implements SQLPlanCacheMBean {
+
+    public static final String JMX_NAME = "org.apache.marmotta.kiwi.sparql:type=SQLPlanCache";
+
+    private static final int MAX_SIZE = 1000;
+
+    private KiWiPersistence persistence;
+
+    private Cache<String,SQLPlan> plans;
+
+    private AtomicLong hits, misses;
+
+    public SQLPlanCache(KiWiPersistence persistence) {
+        this.persistence = persistence;
+        this.plans       = CacheBuilder.newBuilder().maximumSize(MAX_SIZE).build();
+        this.hits        = new AtomicLong();
+        this.misses      = new AtomicLong();
+    }
+
+    /**
+     * Return the cached plan for the given query shape, or null if there is none.
+     */
+    public SQLPlan get(QueryShape shape) {
+        SQLPlan plan = plans.getIfPresent(shape.getKey());
+        if(plan != null && plan.getCacheGeneration() != persistence.getCacheGeneration()) {
+            plans.invalidateAll();
+            plan = null;
+        }
+
+        if(plan != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return plan;
+    }
+
+    /**
+     * Add the plan for the given query shape to the cache, unless it cannot be reused for other queries.
+     */
+    public void put(QueryShape shape, SQLPlan plan) {
+        if(plan.isReusable() && plan.getCacheGeneration() == persistence.getCacheGeneration()) {
+            plans.put(shape.getKey(), plan);
+        }
+    }
+
+    /**
+     * Return the generation of the node caches; needs to be determined before looking up any node ids for a plan.
+     */
+    public long getCacheGeneration() {
+        return persistence.getCacheGeneration();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total > 0 ? (double) hits.get() / total : 0.0;
+    }
+
+    @Override
+    public long getSize() {
+        return plans.size();
+    }
+
+    @Override
+    public void clear() {
+        plans.invalidateAll();
+        hits.set(0);
+        misses.set(0);
+    }
+}
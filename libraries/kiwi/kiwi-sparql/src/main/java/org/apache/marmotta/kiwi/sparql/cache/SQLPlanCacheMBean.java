@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.cache;
+
+/**
+ * Statistics of the SQL plan cache, to be published in JMX.
+ */
+public interface SQLPlanCacheMBean {
+
+    /**
+     * Number of query parts for which a cached SQL plan could be used.
+     */
+    public long getHits();
+
+    /**
+     * Number of query parts that needed to be translated into SQL.
+     */
+    public long getMisses();
+
+    /**
+     * Ratio of hits to the total number of lookups, or 0 in case there have not been any lookups yet.
+     */
+    public double getHitRatio();
+
+    /**
+     * Number of SQL plans currently held in the cache.
+     */
+    public long getSize();
+
+    /**
+     * Remove all SQL plans from the cache and reset the statistics.
+     */
+    public void clear();
+}
@@ -1,52 +0,0 @@
-/*
- * Licensed to the Apache Software Foundation (ASF) under one or more
- * contributor license agreements.  See the NOTICE file distributed with
- * this work for additional information regarding copyright ownership.
- * The ASF licenses this file to You under the Apache License, Version 2.0
- * (the "License"); you may not use this file except in compliance with
- * the License.  You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.apache.marmotta.kiwi.sparql.evaluation;
-
-import org.openrdf.model.Value;
-import org.openrdf.query.algebra.StatementPattern;
-import org.openrdf.query.algebra.Var;
-import org.openrdf.query.algebra.evaluation.impl.EvaluationStatistics;
-
-/**
- * Add file description here!
- *
- * @author Sebastian Schaffert (sschaffert@apache.org)
- */
-public class KiWiEvaluationStatistics extends EvaluationStatistics {
-
-    public KiWiEvaluationStatistics() {
-    }
-
-    @Override
-    protected CardinalityCalculator createCardinalityCalculator() {
-        return new KiWiCardinalityCalculator();
-    }
-
-    protected class KiWiCardinalityCalculator extends CardinalityCalculator {
-
-        @Override
-        protected double getCardinality(StatementPattern sp) {
-            return super.getCardinality(sp);
-        }
-
-        protected Value getConstantValue(Var var) {
-            return (var != null) ? var.getValue() : null;
-        }
-    }
-
-}
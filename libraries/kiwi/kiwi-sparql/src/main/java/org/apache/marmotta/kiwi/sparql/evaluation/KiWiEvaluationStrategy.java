@@ -18,35 +18,26 @@
 package org.apache.marmotta.kiwi.sparql.evaluation;
 
 import info.aduna.iteration.*;
-import org.apache.marmotta.commons.vocabulary.XSD;
-import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
 import org.apache.marmotta.kiwi.persistence.KiWiConnection;
-import org.apache.marmotta.kiwi.persistence.util.ResultSetIteration;
-import org.apache.marmotta.kiwi.persistence.util.ResultTransformerFunction;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
 import org.apache.marmotta.kiwi.sparql.builder.SQLBuilder;
-import org.apache.marmotta.kiwi.sparql.builder.ValueType;
 import org.apache.marmotta.kiwi.sparql.builder.collect.SupportedFinder;
-import org.apache.marmotta.kiwi.sparql.builder.model.SQLVariable;
+import org.apache.marmotta.kiwi.sparql.cache.QueryShape;
+import org.apache.marmotta.kiwi.sparql.cache.SQLPlan;
+import org.apache.marmotta.kiwi.sparql.cache.SQLPlanCache;
 import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
-import org.openrdf.model.URI;
-import org.openrdf.model.impl.BNodeImpl;
-import org.openrdf.model.impl.LiteralImpl;
-import org.openrdf.model.impl.URIImpl;
 import org.openrdf.query.*;
 import org.openrdf.query.algebra.*;
 import org.openrdf.query.algebra.evaluation.TripleSource;
 import org.openrdf.query.algebra.evaluation.impl.EvaluationStrategyImpl;
-import org.openrdf.query.impl.MapBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
 
@@ -76,6 +67,17 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
     private KiWiValueFactory valueFactory;
     private ExecutorService executorService;
 
+    /**
+     * Cache for the SQL translations of natively evaluated query parts; null in case plans are not cached.
+     */
+    private SQLPlanCache planCache;
+
+    /**
+     * Snapshot date for point-in-time queries over the versioned triple store; null in case queries are evaluated
+     * on the current data.
+     */
+    private Date snapshot;
+
 
     private Set<String> projectedVars = new HashSet<>();
 
@@ -97,6 +99,20 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
         this.executorService = Executors.newCachedThreadPool();
     }
 
+    public KiWiEvaluationStrategy(TripleSource tripleSource, Dataset dataset, KiWiConnection connection, KiWiValueFactory valueFactory, SQLPlanCache planCache) {
+        this(tripleSource, dataset, connection, valueFactory);
+        this.planCache = planCache;
+    }
+
+    /**
+     * Create an evaluation strategy for point-in-time queries, evaluating the natively supported query parts against
+     * the triples that existed at the snapshot date. The triple source needs to return the triples of the same snapshot.
+     */
+    public KiWiEvaluationStrategy(TripleSource tripleSource, Dataset dataset, KiWiConnection connection, KiWiValueFactory valueFactory, SQLPlanCache planCache, Date snapshot) {
+        this(tripleSource, dataset, connection, valueFactory, planCache);
+        this.snapshot = snapshot;
+    }
+
     @Override
     public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Projection projection, BindingSet bindings) throws QueryEvaluationException {
         // count projected variables
@@ -205,12 +221,20 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
         log.debug("applying KiWi native optimizations on SPARQL query ...");
 
         try {
-            final SQLBuilder builder = new SQLBuilder(join, bindings, dataset, valueFactory, connection.getDialect(), projectedVars);
-
-            final PreparedStatement queryStatement = connection.getJDBCConnection().prepareStatement(builder.build().toString());
-            if (connection.getDialect().isCursorSupported()) {
-                queryStatement.setFetchSize(connection.getConfiguration().getCursorSize());
+            // queries with the same shape only differ in their parameters and can reuse the SQL translation
+            long cacheGeneration = planCache != null ? planCache.getCacheGeneration() : 0;
+            QueryShape shape = new QueryShape(join, bindings, dataset, projectedVars, valueFactory, snapshot);
+            SQLPlan cached = planCache != null ? planCache.get(shape) : null;
+            if(cached == null) {
+                cached = new SQLPlan(new SQLBuilder(join, bindings, dataset, valueFactory, connection.getDialect(), projectedVars, snapshot != null), shape, cacheGeneration);
+                if(planCache != null) {
+                    planCache.put(shape, cached);
+                }
             }
+            final SQLPlan plan = cached;
+
+            final PreparedStatement queryStatement = connection.getQueryStatement(plan.getSql());
+            plan.setParameters(queryStatement, shape);
 
             Future<ResultSet> queryFuture =
                     executorService.submit(new Callable<ResultSet>() {
@@ -233,150 +257,10 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
             try {
                 ResultSet result = queryFuture.get();
 
-                ResultSetIteration<BindingSet> it = new ResultSetIteration<BindingSet>(result, true, new ResultTransformerFunction<BindingSet>() {
-                    @Override
-                    public BindingSet apply(ResultSet row) throws SQLException {
-                        MapBindingSet resultRow = new MapBindingSet();
-
-                        List<SQLVariable> vars = new ArrayList<>(builder.getVariables().values());
-
-                        long[] nodeIds = new long[vars.size()];
-                        for(int i=0; i<vars.size(); i++) {
-                            SQLVariable sv = vars.get(i);
-                            if(sv.getProjectionType() == ValueType.NODE && (builder.getProjectedVars().isEmpty() || builder.getProjectedVars().contains(sv.getSparqlName()))) {
-                                nodeIds[i] = row.getLong(sv.getName());
-                            }
-                        }
-                        KiWiNode[] nodes = connection.loadNodesByIds(nodeIds);
-
-                        for (int i = 0; i < vars.size(); i++) {
-                            SQLVariable sv = vars.get(i);
-                            if(nodes[i] != null) {
-                                // resolved node
-                                resultRow.addBinding(sv.getSparqlName(), nodes[i]);
-                            } else if(sv.getProjectionType() != ValueType.NONE && (builder.getProjectedVars().isEmpty() || builder.getProjectedVars().contains(sv.getSparqlName()))) {
-                                // literal value
-                                String svalue;
-                                switch (sv.getProjectionType()) {
-                                    case URI:
-                                        svalue = row.getString(sv.getName());
-                                        if(svalue != null)
-                                            resultRow.addBinding(sv.getSparqlName(), new URIImpl(svalue));
-                                        break;
-                                    case BNODE:
-                                        svalue = row.getString(sv.getName());
-                                        if(svalue != null)
-                                            resultRow.addBinding(sv.getSparqlName(), new BNodeImpl(svalue));
-                                        break;
-                                    case INT:
-                                        if(row.getObject(sv.getName()) != null) {
-                                            svalue = Integer.toString(row.getInt(sv.getName()));
-                                            URI type = XSD.Integer;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                        }
-                                        break;
-                                    case DOUBLE:
-                                        if(row.getObject(sv.getName()) != null) {
-                                            svalue = Double.toString(row.getDouble(sv.getName()));
-                                            URI type = XSD.Double;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                        }
-                                        break;
-                                    case DECIMAL:
-                                        if(row.getObject(sv.getName()) != null) {
-                                            svalue = row.getBigDecimal(sv.getName()).toString();
-                                            URI type = XSD.Decimal;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                        }
-                                        break;
-                                    case BOOL:
-                                        if(row.getObject(sv.getName()) != null) {
-                                            svalue = Boolean.toString(row.getBoolean(sv.getName()));
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue.toLowerCase(), XSD.Boolean));
-                                        }
-                                        break;
-                                    case STRING:
-                                    default:
-                                        svalue = row.getString(sv.getName());
-
-                                        if(svalue != null) {
-
-                                            // retrieve optional type and language information, because string functions
-                                            // need to preserve this in certain cases, even when constructing new literals
-                                            String lang = null;
-                                            try {
-                                                lang = row.getString(sv.getName() + "_LANG");
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            URI type = null;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            if (lang != null) {
-                                                if (svalue.length() > 0) {
-                                                    resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, lang));
-                                                } else {
-                                                    // string functions that return empty literal should yield no type or language
-                                                    resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(""));
-                                                }
-                                            } else if (type != null) {
-                                                if(type.stringValue().equals(XSD.String.stringValue())) {
-                                                    // string functions on other datatypes than string should yield no binding
-                                                    if (svalue.length() > 0) {
-                                                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                                    } else {
-                                                        // string functions that return empty literal should yield no type or language
-                                                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(""));
-                                                    }
-                                                }
-                                            } else {
-                                                resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue));
-                                            }
-
-                                        }
-                                        break;
-                                }
-                            }
-                        }
-
-
-                        if (bindings != null) {
-                            for (Binding binding : bindings) {
-                                resultRow.addBinding(binding);
-                            }
-                        }
-                        return resultRow;
-                    }
-                });
+                // rows are converted in blocks, resolving the nodes of a whole block at once
+                NativeResultIteration it = new NativeResultIteration(connection, queryStatement, result, plan, bindings, connection.getConfiguration().getCursorSize());
 
-
-                return new ExceptionConvertingIteration<BindingSet, QueryEvaluationException>(new CloseableIteratorIteration<BindingSet, SQLException>(Iterations.asList(it).iterator())) {
+                return new ExceptionConvertingIteration<BindingSet, QueryEvaluationException>(it) {
                     @Override
                     protected QueryEvaluationException convert(Exception e) {
                         return new QueryEvaluationException(e);
@@ -392,6 +276,7 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
                 throw new QueryInterruptedException("SPARQL query execution cancelled");
             } catch (ExecutionException e) {
                 log.error("error executing SPARQL query", e.getCause());
+                queryStatement.close();
                 if (e.getCause() instanceof SQLException) {
                     throw new QueryEvaluationException(e.getCause());
                 } else if (e.getCause() instanceof InterruptedException) {
@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.evaluation;
+
+import info.aduna.iteration.LookAheadIteration;
+import org.apache.marmotta.commons.vocabulary.XSD;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.sparql.builder.ValueType;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLVariable;
+import org.apache.marmotta.kiwi.sparql.cache.SQLPlan;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.Binding;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.impl.MapBindingSet;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Iterates over the result of a natively evaluated query part and converts the rows into binding sets. Rows are
+ * read in blocks; the nodes referenced by all rows of a block are resolved with a single call to
+ * KiWiConnection.loadNodesByIds(), so a cold node cache does not cause a database query for each row.
+ * <p/>
+ * When the iteration is closed, the statement is handed back to the connection for reuse.
+ */
+public class NativeResultIteration extends LookAheadIteration<BindingSet, SQLException> {
+
+    private KiWiConnection connection;
+
+    private PreparedStatement statement;
+
+    private ResultSet result;
+
+    private SQLPlan plan;
+
+    private BindingSet bindings;
+
+    private int blockSize;
+
+    // the variables with their index in the row, and whether they are projected
+    private List<SQLVariable> variables;
+    private boolean[] projected;
+
+    // columns for literal types and languages available in the result
+    private Set<String> columns;
+
+    private Iterator<BindingSet> block = Collections.emptyIterator();
+
+    private boolean exhausted = false;
+
+    public NativeResultIteration(KiWiConnection connection, PreparedStatement statement, ResultSet result, SQLPlan plan, BindingSet bindings, int blockSize) throws SQLException {
+        this.connection = connection;
+        this.statement  = statement;
+        this.result     = result;
+        this.plan       = plan;
+        this.bindings   = bindings;
+        this.blockSize  = Math.max(1, blockSize);
+
+        this.variables = plan.getVariables();
+        this.projected = new boolean[variables.size()];
+        for(int i=0; i<variables.size(); i++) {
+            projected[i] = variables.get(i).getProjectionType() != ValueType.NONE && (plan.getProjectedVars().isEmpty() || plan.getProjectedVars().contains(variables.get(i).getSparqlName()));
+        }
+
+        this.columns = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        ResultSetMetaData metaData = result.getMetaData();
+        for(int i=1; i<=metaData.getColumnCount(); i++) {
+            columns.add(metaData.getColumnLabel(i));
+        }
+    }
+
+    @Override
+    protected BindingSet getNextElement() throws SQLException {
+        while(!block.hasNext()) {
+            if(exhausted) {
+                return null;
+            }
+            block = readBlock().iterator();
+        }
+        return block.next();
+    }
+
+    /**
+     * Read the next block of rows from the result, resolve all nodes referenced in the block at once and
+     * convert the rows into binding sets.
+     */
+    private List<BindingSet> readBlock() throws SQLException {
+        List<Row> rows = new ArrayList<>(blockSize);
+        while(rows.size() < blockSize) {
+            if(!result.next()) {
+                exhausted = true;
+                break;
+            }
+            rows.add(readRow());
+        }
+
+        Set<Long> ids = new LinkedHashSet<>();
+        for(Row row : rows) {
+            for(int i=0; i<variables.size(); i++) {
+                if(row.ids[i] > 0) {
+                    ids.add(row.ids[i]);
+                }
+                if(row.types[i] > 0) {
+                    ids.add(row.types[i]);
+                }
+            }
+        }
+
+        Map<Long,KiWiNode> nodes = new HashMap<>();
+        if(ids.size() > 0) {
+            long[] idArray = new long[ids.size()];
+            int pos = 0;
+            for(Long id : ids) {
+                idArray[pos++] = id;
+            }
+            for(KiWiNode node : connection.loadNodesByIds(idArray)) {
+                if(node != null) {
+                    nodes.put(node.getId(), node);
+                }
+            }
+        }
+
+        List<BindingSet> block = new ArrayList<>(rows.size());
+        for(Row row : rows) {
+            block.add(buildBindings(row, nodes));
+        }
+        return block;
+    }
+
+    /**
+     * Copy the values needed for the bindings from the current row of the result.
+     */
+    private Row readRow() throws SQLException {
+        Row row = new Row(variables.size());
+
+        for(int i=0; i<variables.size(); i++) {
+            if(!projected[i]) {
+                continue;
+            }
+
+            SQLVariable sv = variables.get(i);
+            switch (sv.getProjectionType()) {
+                case NODE:
+                    row.ids[i] = result.getLong(sv.getName());
+                    break;
+                case URI:
+                case BNODE:
+                    row.values[i] = result.getString(sv.getName());
+                    break;
+                case INT:
+                    if(result.getObject(sv.getName()) != null) {
+                        row.values[i] = Integer.toString(result.getInt(sv.getName()));
+                        row.types[i]  = getType(sv);
+                    }
+                    break;
+                case DOUBLE:
+                    if(result.getObject(sv.getName()) != null) {
+                        row.values[i] = Double.toString(result.getDouble(sv.getName()));
+                        row.types[i]  = getType(sv);
+                    }
+                    break;
+                case DECIMAL:
+                    if(result.getObject(sv.getName()) != null) {
+                        row.values[i] = result.getBigDecimal(sv.getName()).toString();
+                        row.types[i]  = getType(sv);
+                    }
+                    break;
+                case BOOL:
+                    if(result.getObject(sv.getName()) != null) {
+                        row.values[i] = Boolean.toString(result.getBoolean(sv.getName()));
+                    }
+                    break;
+                case STRING:
+                default:
+                    row.values[i] = result.getString(sv.getName());
+                    if(row.values[i] != null) {
+                        // retrieve optional type and language information, because string functions
+                        // need to preserve this in certain cases, even when constructing new literals
+                        if(columns.contains(sv.getName() + "_LANG")) {
+                            row.langs[i] = result.getString(sv.getName() + "_LANG");
+                        }
+                        row.types[i] = getType(sv);
+                    }
+                    break;
+            }
+        }
+        return row;
+    }
+
+    private long getType(SQLVariable sv) throws SQLException {
+        if(columns.contains(sv.getName() + "_TYPE")) {
+            return result.getLong(sv.getName() + "_TYPE");
+        }
+        return 0;
+    }
+
+    private BindingSet buildBindings(Row row, Map<Long,KiWiNode> nodes) {
+        MapBindingSet resultRow = new MapBindingSet();
+
+        for (int i = 0; i < variables.size(); i++) {
+            if(!projected[i]) {
+                continue;
+            }
+
+            SQLVariable sv = variables.get(i);
+            URI type = row.types[i] > 0 ? (URI) nodes.get(row.types[i]) : null;
+            String svalue = row.values[i];
+
+            switch (sv.getProjectionType()) {
+                case NODE:
+                    if(nodes.containsKey(row.ids[i])) {
+                        // resolved node
+                        resultRow.addBinding(sv.getSparqlName(), nodes.get(row.ids[i]));
+                    } else if(row.ids[i] != 0) {
+                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(Long.toString(row.ids[i])));
+                    }
+                    break;
+                case URI:
+                    if(svalue != null)
+                        resultRow.addBinding(sv.getSparqlName(), new URIImpl(svalue));
+                    break;
+                case BNODE:
+                    if(svalue != null)
+                        resultRow.addBinding(sv.getSparqlName(), new BNodeImpl(svalue));
+                    break;
+                case INT:
+                    if(svalue != null)
+                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, row.types[i] > 0 ? type : XSD.Integer));
+                    break;
+                case DOUBLE:
+                    if(svalue != null)
+                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, row.types[i] > 0 ? type : XSD.Double));
+                    break;
+                case DECIMAL:
+                    if(svalue != null)
+                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, row.types[i] > 0 ? type : XSD.Decimal));
+                    break;
+                case BOOL:
+                    if(svalue != null)
+                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue.toLowerCase(), XSD.Boolean));
+                    break;
+                case STRING:
+                default:
+                    if(svalue != null) {
+                        String lang = row.langs[i];
+                        if (lang != null) {
+                            if (svalue.length() > 0) {
+                                resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, lang));
+                            } else {
+                                // string functions that return empty literal should yield no type or language
+                                resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(""));
+                            }
+                        } else if (type != null) {
+                            if(type.stringValue().equals(XSD.String.stringValue())) {
+                                // string functions on other datatypes than string should yield no binding
+                                if (svalue.length() > 0) {
+                                    resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
+                                } else {
+                                    // string functions that return empty literal should yield no type or language
+                                    resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(""));
+                                }
+                            }
+                        } else {
+                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue));
+                        }
+                    }
+                    break;
+            }
+        }
+
+        if (bindings != null) {
+            for (Binding binding : bindings) {
+                resultRow.addBinding(binding);
+            }
+        }
+        return resultRow;
+    }
+
+    @Override
+    protected void handleClose() throws SQLException {
+        try {
+            result.close();
+
+            // the statement can be used by the next query with the same SQL
+            connection.releaseQueryStatement(plan.getSql(), statement);
+        } finally {
+            super.handleClose();
+        }
+    }
+
+    /**
+     * The values of a result row needed to construct the bindings once the nodes have been resolved.
+     */
+    private static class Row {
+        long[]   ids;
+        long[]   types;
+        String[] values;
+        String[] langs;
+
+        Row(int size) {
+            ids    = new long[size];
+            types  = new long[size];
+            values = new String[size];
+            langs  = new String[size];
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
 import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.apache.marmotta.kiwi.sail.KiWiSailConnection;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.cache.SQLPlanCache;
 import org.openrdf.sail.*;
 import org.openrdf.sail.helpers.NotifyingSailWrapper;
 import org.openrdf.sail.helpers.SailConnectionWrapper;
@@ -31,8 +32,11 @@ import org.openrdf.sail.helpers.SailWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
@@ -49,6 +53,8 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
 
     private KiWiStore parent;
 
+    private SQLPlanCache planCache;
+
     public KiWiSparqlSail(NotifyingSail baseSail) {
         super(baseSail);
 
@@ -59,6 +65,15 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
     public void initialize() throws SailException {
         super.initialize();
 
+        planCache = new SQLPlanCache(parent.getPersistence());
+        if(parent.getPersistence().getConfiguration().isJmxEnabled()) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(planCache, new ObjectName(SQLPlanCache.JMX_NAME));
+            } catch (JMException ex) {
+                log.warn("could not register SQL plan cache statistics in JMX: {}", ex.getMessage());
+            }
+        }
+
         // start fulltext indexing in a separate thread (MARMOTTA-415)
         Thread indexer = new Thread("Fulltext Indexer") {
             @Override
@@ -69,6 +84,29 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
         indexer.start();
     }
 
+    @Override
+    public void shutDown() throws SailException {
+        if(parent.getPersistence().getConfiguration().isJmxEnabled()) {
+            try {
+                ObjectName name = new ObjectName(SQLPlanCache.JMX_NAME);
+                if(ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+                }
+            } catch (JMException ex) {
+                log.warn("could not unregister SQL plan cache statistics from JMX: {}", ex.getMessage());
+            }
+        }
+
+        super.shutDown();
+    }
+
+    /**
+     * Return the cache of SQL plans used for natively evaluated query parts.
+     */
+    public SQLPlanCache getPlanCache() {
+        return planCache;
+    }
+
     /**
      * Get the root sail in the wrapped sail stack
      * @param sail
@@ -200,7 +238,7 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
         NotifyingSailConnection connection = super.getConnection();
         KiWiSailConnection root   = getRootConnection(connection);
 
-        return new KiWiSparqlSailConnection(connection, root.getDatabaseConnection(), root.getValueFactory());
+        return new KiWiSparqlSailConnection(connection, root.getDatabaseConnection(), root.getValueFactory(), parent.getPersistence().getStatistics(), planCache);
     }
 
 
@@ -19,8 +19,10 @@ package org.apache.marmotta.kiwi.sparql.sail;
 
 import info.aduna.iteration.CloseableIteration;
 import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.statistics.KiWiStatistics;
+import org.apache.marmotta.kiwi.sail.KiWiEvaluationStatistics;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
-import org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStatistics;
+import org.apache.marmotta.kiwi.sparql.cache.SQLPlanCache;
 import org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStrategy;
 import org.apache.marmotta.kiwi.sparql.evaluation.KiWiTripleSource;
 import org.apache.marmotta.kiwi.sparql.optimizer.DifferenceOptimizer;
@@ -50,11 +52,15 @@ public class KiWiSparqlSailConnection extends NotifyingSailConnectionWrapper {
 
     private KiWiConnection connection;
     private KiWiValueFactory valueFactory;
+    private KiWiStatistics statistics;
+    private SQLPlanCache planCache;
 
-    public KiWiSparqlSailConnection(NotifyingSailConnection parent, KiWiConnection connection, KiWiValueFactory valueFactory) {
+    public KiWiSparqlSailConnection(NotifyingSailConnection parent, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiStatistics statistics, SQLPlanCache planCache) {
         super(parent);
         this.connection = connection;
         this.valueFactory = valueFactory;
+        this.statistics = statistics;
+        this.planCache = planCache;
     }
 
     @Override
@@ -70,7 +76,7 @@ public class KiWiSparqlSailConnection extends NotifyingSailConnectionWrapper {
 
         try {
             KiWiTripleSource tripleSource = new KiWiTripleSource(this,valueFactory,includeInferred);
-            EvaluationStrategy strategy = new KiWiEvaluationStrategy(tripleSource, dataset, connection, valueFactory);
+            EvaluationStrategy strategy = new KiWiEvaluationStrategy(tripleSource, dataset, connection, valueFactory, planCache);
 
             new BindingAssigner().optimize(tupleExpr, dataset, bindings);
             //new ConstantOptimizer(strategy).optimize(tupleExpr, dataset, bindings);
@@ -83,7 +89,7 @@ public class KiWiSparqlSailConnection extends NotifyingSailConnectionWrapper {
 
 
             new QueryModelNormalizer().optimize(tupleExpr, dataset, bindings);
-            new QueryJoinOptimizer(new KiWiEvaluationStatistics()).optimize(tupleExpr, dataset, bindings);
+            new QueryJoinOptimizer(new KiWiEvaluationStatistics(statistics, valueFactory)).optimize(tupleExpr, dataset, bindings);
             new IterativeEvaluationOptimizer().optimize(tupleExpr, dataset, bindings);
             new FilterOptimizer().optimize(tupleExpr, dataset, bindings);
             //new OrderLimitOptimizer().optimize(tupleExpr, dataset, bindings);
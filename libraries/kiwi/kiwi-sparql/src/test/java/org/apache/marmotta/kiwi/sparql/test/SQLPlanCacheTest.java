@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.test;
+
+import info.aduna.iteration.Iterations;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.cache.SQLPlanCache;
+import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Test that queries only differing in their constants reuse the SQL translation and still return the right results.
+ *
+ * @see org.apache.marmotta.kiwi.sparql.cache.SQLPlanCache
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class SQLPlanCacheTest {
+
+    private KiWiStore store;
+
+    private KiWiSparqlSail ssail;
+
+    private Repository repository;
+
+    private URI type, name, class1, class2;
+
+    private URI subject1, subject2;
+
+    private Literal name1, name2;
+
+    private final KiWiConfiguration dbConfig;
+
+    public SQLPlanCacheTest(KiWiConfiguration dbConfig) {
+        this.dbConfig = dbConfig;
+    }
+
+    @Before
+    public void initDatabase() throws RepositoryException {
+        store = new KiWiStore(dbConfig);
+        ssail = new KiWiSparqlSail(store);
+        repository = new SailRepository(ssail);
+        repository.initialize();
+
+        type     = repository.getValueFactory().createURI("http://localhost/test/type");
+        name     = repository.getValueFactory().createURI("http://localhost/test/name");
+        class1   = repository.getValueFactory().createURI("http://localhost/test/" + RandomStringUtils.randomAlphanumeric(8));
+        class2   = repository.getValueFactory().createURI("http://localhost/test/" + RandomStringUtils.randomAlphanumeric(8));
+        subject1 = repository.getValueFactory().createURI("http://localhost/test/" + RandomStringUtils.randomAlphanumeric(8));
+        subject2 = repository.getValueFactory().createURI("http://localhost/test/" + RandomStringUtils.randomAlphanumeric(8));
+        name1    = repository.getValueFactory().createLiteral("first");
+        name2    = repository.getValueFactory().createLiteral("second");
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            con.add(subject1, type, class1);
+            con.add(subject1, name, name1);
+            con.add(subject2, type, class2);
+            con.add(subject2, name, name2);
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    @After
+    public void dropDatabase() throws RepositoryException, SQLException {
+        store.getPersistence().dropDatabase();
+        repository.shutDown();
+    }
+
+    private List<BindingSet> queryNames(URI clazz) throws Exception {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            String queryStr = "SELECT ?X ?N WHERE { ?X <" + type.stringValue() + "> <" + clazz.stringValue() + "> . ?X <" + name.stringValue() + "> ?N }";
+
+            TupleQuery query = con.prepareTupleQuery(QueryLanguage.SPARQL, queryStr);
+            List<BindingSet> result = Iterations.asList(query.evaluate());
+            con.commit();
+            return result;
+        } finally {
+            con.close();
+        }
+    }
+
+    @Test
+    public void testPlanReuse() throws Exception {
+        SQLPlanCache cache = ssail.getPlanCache();
+        cache.clear();
+
+        List<BindingSet> result1 = queryNames(class1);
+        Assert.assertEquals(1, result1.size());
+        Assert.assertEquals(subject1, result1.get(0).getValue("X"));
+        Assert.assertEquals(name1, result1.get(0).getValue("N"));
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertTrue(cache.getMisses() > 0);
+
+        // same query with a different constant uses the cached plan
+        List<BindingSet> result2 = queryNames(class2);
+        Assert.assertEquals(1, result2.size());
+        Assert.assertEquals(subject2, result2.get(0).getValue("X"));
+        Assert.assertEquals(name2, result2.get(0).getValue("N"));
+        Assert.assertTrue(cache.getHits() > 0);
+    }
+
+    @Test
+    public void testClearCache() throws Exception {
+        SQLPlanCache cache = ssail.getPlanCache();
+
+        queryNames(class1);
+        Assert.assertTrue(cache.getSize() > 0);
+
+        // node ids might have changed, so the plans must not be used anymore
+        store.getPersistence().clearCache();
+        long hits = cache.getHits();
+
+        List<BindingSet> result = queryNames(class1);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(subject1, result.get(0).getValue("X"));
+        Assert.assertEquals(hits, cache.getHits());
+    }
+}
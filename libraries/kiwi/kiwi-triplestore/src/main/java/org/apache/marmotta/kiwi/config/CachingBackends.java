@@ -49,7 +49,14 @@ public enum CachingBackends {
     /**
      * Cache backend based in EHCache for single-machine production environments.
      */
-    EHCACHE("org.apache.marmotta.kiwi.ehcache.caching.EHCacheManagerFactory");
+    EHCACHE("org.apache.marmotta.kiwi.ehcache.caching.EHCacheManagerFactory"),
+
+
+    /**
+     * Cache backend based on MapDB, keeping the node caches off-heap in memory-mapped files that survive
+     * restarts; for single-machine environments with very large numbers of nodes.
+     */
+    MAPDB("org.apache.marmotta.kiwi.mapdb.caching.MapDBCacheManagerFactory");
 
 
     CachingBackends(String factoryClass) {
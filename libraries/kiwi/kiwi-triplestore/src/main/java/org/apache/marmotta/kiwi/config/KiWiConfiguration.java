@@ -87,6 +87,21 @@ public class KiWiConfiguration {
      */
     private int cursorSize = 1000;
 
+    /**
+     * Maximum number of rows the garbage collector deletes in a single transaction.
+     */
+    private int gcBatchSize = 10000;
+
+    /**
+     * Number of partitions of the id range the garbage collector processes in parallel.
+     */
+    private int gcThreads = 1;
+
+    /**
+     * Maximum number of rows per second the garbage collector may process (0 = unlimited).
+     */
+    private int gcRowsPerSecond = 0;
+
     private boolean fulltextEnabled     = false;
     private String[] fulltextLanguages;
 
@@ -109,6 +124,12 @@ public class KiWiConfiguration {
 
     private int namespaceCacheSize = 500;
 
+    /**
+     * Directory where caching backends storing their data on disk (e.g. MAPDB) keep their files. If null,
+     * these backends use a temporary directory and start with an empty cache.
+     */
+    private String cacheDirectory;
+
     private int datacenterId = 0;
 
 
@@ -265,6 +286,57 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * Maximum number of rows the garbage collector deletes in a single transaction. Smaller batches hold locks
+     * for a shorter time, larger batches need fewer round trips.
+     */
+    public int getGcBatchSize() {
+        return gcBatchSize;
+    }
+
+    /**
+     * Maximum number of rows the garbage collector deletes in a single transaction. Smaller batches hold locks
+     * for a shorter time, larger batches need fewer round trips.
+     */
+    public KiWiConfiguration setGcBatchSize(int gcBatchSize) {
+        this.gcBatchSize = gcBatchSize;
+        return this;
+    }
+
+    /**
+     * Number of partitions of the id range the garbage collector processes in parallel, each in its own
+     * database connection.
+     */
+    public int getGcThreads() {
+        return gcThreads;
+    }
+
+    /**
+     * Number of partitions of the id range the garbage collector processes in parallel, each in its own
+     * database connection.
+     */
+    public KiWiConfiguration setGcThreads(int gcThreads) {
+        this.gcThreads = gcThreads;
+        return this;
+    }
+
+    /**
+     * Maximum number of rows per second the garbage collector may process over all partitions, used to limit
+     * the IO load caused by the garbage collection. A value of 0 disables throttling.
+     */
+    public int getGcRowsPerSecond() {
+        return gcRowsPerSecond;
+    }
+
+    /**
+     * Maximum number of rows per second the garbage collector may process over all partitions, used to limit
+     * the IO load caused by the garbage collection. A value of 0 disables throttling.
+     */
+    public KiWiConfiguration setGcRowsPerSecond(int gcRowsPerSecond) {
+        this.gcRowsPerSecond = gcRowsPerSecond;
+        return this;
+    }
+
     /**
      * Return true in case fulltext support is enabled in this configuration. If this is the case, the SPARQL module
      * will prepare the database with appropriate fulltext index support. Since this adds additional overhead, it is
@@ -333,6 +405,23 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * Directory where caching backends storing their data on disk (e.g. MAPDB) keep their files. If null,
+     * these backends use a temporary directory and start with an empty cache.
+     */
+    public String getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Directory where caching backends storing their data on disk (e.g. MAPDB) keep their files. When the same
+     * directory is used again for the same database, the cache survives a restart.
+     */
+    public KiWiConfiguration setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        return this;
+    }
+
     /**
      * The maximum size of the node ID cache used by the KiWiValueFactory (default: 1000000)
      * @return
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.jmx;
+
+/**
+ * Progress and metrics of the KiWi garbage collector, to be published in JMX.
+ */
+public interface KiWiGarbageCollectorMBean {
+
+    /**
+     * Return true in case a garbage collection is currently running.
+     */
+    boolean isRunning();
+
+    /**
+     * The table currently processed by the garbage collector ("triples" or "nodes"), or null if it is idle.
+     */
+    String getPhase();
+
+    /**
+     * Fraction (0.0 - 1.0) of the id range of the current phase that has already been processed.
+     */
+    double getProgress();
+
+    /**
+     * Number of garbage collections run since startup.
+     */
+    long getRuns();
+
+    /**
+     * Number of batches (transactions) executed since startup.
+     */
+    long getBatches();
+
+    /**
+     * Number of deleted triples removed from the database since startup.
+     */
+    long getReclaimedTriples();
+
+    /**
+     * Number of unreferenced nodes removed from the database since startup.
+     */
+    long getReclaimedNodes();
+
+    /**
+     * Number of rows removed by the last garbage collection.
+     */
+    long getLastReclaimed();
+
+    /**
+     * Duration of the last garbage collection in milliseconds.
+     */
+    long getLastDuration();
+}
@@ -30,6 +30,7 @@ import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.exception.ResultInterruptedException;
 import org.apache.marmotta.kiwi.model.rdf.*;
+import org.apache.marmotta.kiwi.persistence.statistics.StatisticsDelta;
 import org.apache.marmotta.kiwi.persistence.util.ResultSetIteration;
 import org.apache.marmotta.kiwi.persistence.util.ResultTransformerFunction;
 import org.joda.time.DateTime;
@@ -45,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -114,6 +116,13 @@ public class KiWiConnection implements AutoCloseable {
 
     private Map<String,PreparedStatement> statementCache;
 
+    /**
+     * Idle prepared statements for generated SQL queries (e.g. SPARQL queries translated to SQL), indexed by their
+     * SQL text. Statements are taken out of the cache while they are in use, so concurrent queries with the same
+     * SQL never share a statement.
+     */
+    private LinkedHashMap<String,PreparedStatement> queryStatementCache;
+
     private boolean autoCommit = false;
 
     private boolean batchCommit = true;
@@ -124,31 +133,30 @@ public class KiWiConnection implements AutoCloseable {
 
     private ReentrantLock commitLock;
 
-    private ReentrantLock literalLock;
-    private ReentrantLock uriLock;
-    private ReentrantLock bnodeLock;
-
     // this set keeps track of all statements that have been deleted in the active transaction of this connection
     // this is needed to be able to determine if adding the triple again will merely undo a deletion or is a
     // completely new addition to the triple store
     private BloomFilter<Long> deletedStatementsLog;
 
+    // changes to the triple statistics in the active transaction; applied to the shared statistics on commit
+    private StatisticsDelta statisticsDelta;
+
     private static long numberOfCommits = 0;
 
     private long transactionId;
 
     private int QUERY_BATCH_SIZE = 1024;
 
+    private static final int QUERY_STATEMENT_CACHE_SIZE = 100;
+
     public KiWiConnection(KiWiPersistence persistence, KiWiDialect dialect, CacheManager cacheManager) throws SQLException {
         this.cacheManager = cacheManager;
         this.dialect      = dialect;
         this.persistence  = persistence;
         this.commitLock   = new ReentrantLock();
-        this.literalLock   = new ReentrantLock();
-        this.uriLock   = new ReentrantLock();
-        this.bnodeLock   = new ReentrantLock();
         this.batchCommit  = dialect.isBatchSupported();
         this.deletedStatementsLog = BloomFilter.create(Funnels.longFunnel(), 100000);
+        this.statisticsDelta = persistence.getStatistics().createDelta();
         this.transactionId = getNextSequence();
 
         initCachePool();
@@ -171,7 +179,20 @@ public class KiWiConnection implements AutoCloseable {
      * @throws SQLException
      */
     private void initStatementCache() throws SQLException {
-        statementCache = new HashMap<String, PreparedStatement>();
+        statementCache = new ConcurrentHashMap<String, PreparedStatement>();
+
+        queryStatementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if(size() > QUERY_STATEMENT_CACHE_SIZE) {
+                    try {
+                        eldest.getValue().close();
+                    } catch (SQLException ex) {}
+                    return true;
+                }
+                return false;
+            }
+        };
 
         /*
         for(String key : dialect.getStatementIdentifiers()) {
@@ -450,6 +471,26 @@ public class KiWiConnection implements AutoCloseable {
 
     }
 
+    /**
+     * Look in the node caches for a node with the same value as the node passed as argument. In contrast to the
+     * load methods, no database query is run, so this method is a cheap way to check whether a node has been
+     * stored by a concurrent thread in the meantime.
+     *
+     * @param node the node to look for; only its value is considered, not its id
+     * @return the cached node with the same value, or null if no such node is cached
+     */
+    public KiWiNode loadCachedNode(KiWiNode node) {
+        if(node instanceof KiWiUriResource) {
+            return uriCache.get(node.stringValue());
+        } else if(node instanceof KiWiAnonResource) {
+            return bnodeCache.get(node.stringValue());
+        } else if(node instanceof KiWiLiteral) {
+            return literalCache.get(LiteralCommons.createCacheKey((Literal) node));
+        } else {
+            return null;
+        }
+    }
+
     /**
      * Batch load the nodes with the given ids. This method aims to offer performance improvements by reducing
      * database roundtrips.
@@ -479,6 +520,7 @@ public class KiWiConnection implements AutoCloseable {
             int nextBatchSize;
             PreparedStatement query;
             KiWiNode node;
+            Map<Long,KiWiNode> fetched = new HashMap<>(toFetch.size() * 2);
 
             while(position < toFetch.size()) {
                 nextBatchSize = computeBatchSize(position, toFetch.size());
@@ -497,11 +539,7 @@ public class KiWiConnection implements AutoCloseable {
                     try {
                         while(rows.next()) {
                             node = constructNodeFromDatabase(rows);
-                            for(int i=0; i<ids.length; i++) {
-                                if(ids[i] == node.getId()) {
-                                    result[i] = node;
-                                }
-                            }
+                            fetched.put(node.getId(), node);
                         }
                     } finally {
                         rows.close();
@@ -511,7 +549,11 @@ public class KiWiConnection implements AutoCloseable {
                 }
             }
 
-
+            for(int i=0; i<ids.length; i++) {
+                if(result[i] == null && ids[i] != 0) {
+                    result[i] = fetched.get(ids[i]);
+                }
+            }
         }
         return result;
     }
@@ -576,10 +618,9 @@ public class KiWiConnection implements AutoCloseable {
 
         requireJDBCConnection();
 
-        uriLock.lock();
-        try {
-            // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
-            PreparedStatement query = getPreparedStatement("load.uri_by_uri");
+        // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
+        PreparedStatement query = getPreparedStatement("load.uri_by_uri");
+        synchronized (query) {
             query.setString(1, uri);
             query.setMaxRows(1);
 
@@ -595,8 +636,6 @@ public class KiWiConnection implements AutoCloseable {
             } finally {
                 result.close();
             }
-        } finally {
-            uriLock.unlock();
         }
     }
 
@@ -621,11 +660,9 @@ public class KiWiConnection implements AutoCloseable {
 
         requireJDBCConnection();
 
-        bnodeLock.lock();
-
-        try {
-            // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
-            PreparedStatement query = getPreparedStatement("load.bnode_by_anonid");
+        // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
+        PreparedStatement query = getPreparedStatement("load.bnode_by_anonid");
+        synchronized (query) {
             query.setString(1,id);
             query.setMaxRows(1);
 
@@ -641,8 +678,6 @@ public class KiWiConnection implements AutoCloseable {
             } finally {
                 result.close();
             }
-        } finally {
-            bnodeLock.unlock();
         }
     }
 
@@ -675,25 +710,25 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
+        // otherwise prepare a query, depending on the parameters given
+        final PreparedStatement query;
+        if(lang == null && ltype == null) {
+            query = getPreparedStatement("load.literal_by_v");
+        } else if(lang != null) {
+            query = getPreparedStatement("load.literal_by_vl");
+        } else if(ltype != null) {
+            query = getPreparedStatement("load.literal_by_vt");
+        } else {
+            // This cannot happen...
+            throw new IllegalArgumentException("Impossible combination of lang/type in loadLiteral!");
+        }
 
-        try {
-            // otherwise prepare a query, depending on the parameters given
-            final PreparedStatement query;
-            if(lang == null && ltype == null) {
-                query = getPreparedStatement("load.literal_by_v");
-                query.setString(1,value);
-            } else if(lang != null) {
-                query = getPreparedStatement("load.literal_by_vl");
-                query.setString(1,value);
+        synchronized (query) {
+            query.setString(1,value);
+            if(lang != null) {
                 query.setString(2, lang);
             } else if(ltype != null) {
-                query = getPreparedStatement("load.literal_by_vt");
-                query.setString(1,value);
                 query.setLong(2,ltype.getId());
-            } else {
-                // This cannot happen...
-                throw new IllegalArgumentException("Impossible combination of lang/type in loadLiteral!");
             }
 
             // run the database query and if it yields a result, construct a new node; the method call will take care of
@@ -708,8 +743,6 @@ public class KiWiConnection implements AutoCloseable {
             } finally {
                 result.close();
             }
-        } finally {
-            literalLock.unlock();
         }
     }
 
@@ -741,11 +774,9 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
-        try {
-
-            // otherwise prepare a query, depending on the parameters given
-            PreparedStatement query = getPreparedStatement("load.literal_by_tv");
+        // otherwise prepare a query, depending on the parameters given
+        PreparedStatement query = getPreparedStatement("load.literal_by_tv");
+        synchronized (query) {
             query.setTimestamp(1, new Timestamp(date.getMillis()), calendarUTC);
             query.setInt(2, date.getZone().getOffset(date)/1000);
             query.setLong(3,ltype.getId());
@@ -762,8 +793,6 @@ public class KiWiConnection implements AutoCloseable {
             } finally {
                 result.close();
             }
-        } finally {
-            literalLock.unlock();
         }
     }
 
@@ -797,12 +826,9 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
-
-        try {
-
-            // otherwise prepare a query, depending on the parameters given
-            PreparedStatement query = getPreparedStatement("load.literal_by_iv");
+        // otherwise prepare a query, depending on the parameters given
+        PreparedStatement query = getPreparedStatement("load.literal_by_iv");
+        synchronized (query) {
             query.setLong(1,value);
             query.setLong(2,ltype.getId());
 
@@ -818,8 +844,6 @@ public class KiWiConnection implements AutoCloseable {
             } finally {
                 result.close();
             }
-        } finally {
-            literalLock.unlock();
         }
     }
 
@@ -852,11 +876,9 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
-
-        try {
-            // otherwise prepare a query, depending on the parameters given
-            PreparedStatement query = getPreparedStatement("load.literal_by_dv");
+        // otherwise prepare a query, depending on the parameters given
+        PreparedStatement query = getPreparedStatement("load.literal_by_dv");
+        synchronized (query) {
             query.setDouble(1, value);
             query.setLong(2, ltype.getId());
 
@@ -876,8 +898,6 @@ public class KiWiConnection implements AutoCloseable {
             } finally {
                 result.close();
             }
-        } finally {
-            literalLock.unlock();
         }
     }
 
@@ -910,12 +930,9 @@ public class KiWiConnection implements AutoCloseable {
             return null;
         }
 
-        literalLock.lock();
-
-        try {
-
-            // otherwise prepare a query, depending on the parameters given
-            PreparedStatement query = getPreparedStatement("load.literal_by_bv");
+        // otherwise prepare a query, depending on the parameters given
+        PreparedStatement query = getPreparedStatement("load.literal_by_bv");
+        synchronized (query) {
             query.setBoolean(1, value);
             query.setLong(2,ltype.getId());
 
@@ -931,8 +948,6 @@ public class KiWiConnection implements AutoCloseable {
             } finally {
                 result.close();
             }
-        } finally {
-            literalLock.unlock();
         }
     }
 
@@ -942,18 +957,26 @@ public class KiWiConnection implements AutoCloseable {
      * statements. The caller must make sure the connection is committed and closed properly.
      * <p/>
      * If the node already has an ID, the method will do nothing (assuming that it is already persistent)
-     *
+     * <p/>
+     * The method is not synchronized: only the INSERT statement of the node type is locked, so that different nodes
+     * can be stored in parallel. Callers storing nodes that might be created concurrently (e.g. the value factory)
+     * are responsible for guarding the lookup and the insert of the same node.
      *
      * @param node
      * @throws SQLException
      */
-    public synchronized void storeNode(KiWiNode node) throws SQLException {
+    public void storeNode(KiWiNode node) throws SQLException {
 
         // ensure the data type of a literal is persisted first
         if(node instanceof KiWiLiteral) {
             KiWiLiteral literal = (KiWiLiteral)node;
-            if(literal.getType() != null && literal.getType().getId() < 0) {
-                storeNode(literal.getType());
+            if(literal.getType() != null) {
+                // literals created in parallel may share the same new type object
+                synchronized (literal.getType()) {
+                    if(literal.getType().getId() < 0) {
+                        storeNode(literal.getType());
+                    }
+                }
             }
         }
 
@@ -969,79 +992,91 @@ public class KiWiConnection implements AutoCloseable {
             KiWiUriResource uriResource = (KiWiUriResource)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.uri");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2,uriResource.stringValue());
-            insertNode.setTimestamp(3, new Timestamp(uriResource.getCreated().getTime()), calendarUTC);
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2,uriResource.stringValue());
+                insertNode.setTimestamp(3, new Timestamp(uriResource.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+                insertNode.executeUpdate();
+            }
 
         } else if(node instanceof KiWiAnonResource) {
             KiWiAnonResource anonResource = (KiWiAnonResource)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.bnode");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2,anonResource.stringValue());
-            insertNode.setTimestamp(3, new Timestamp(anonResource.getCreated().getTime()), calendarUTC);
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2,anonResource.stringValue());
+                insertNode.setTimestamp(3, new Timestamp(anonResource.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+                insertNode.executeUpdate();
+            }
         } else if(node instanceof KiWiDateLiteral) {
             KiWiDateLiteral dateLiteral = (KiWiDateLiteral)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.tliteral");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2, dateLiteral.stringValue());
-            insertNode.setTimestamp(3, new Timestamp(dateLiteral.getDateContent().getMillis()), calendarUTC);
-            insertNode.setInt(4, dateLiteral.getDateContent().getZone().getOffset(dateLiteral.getDateContent())/1000);
-            if(dateLiteral.getType() != null)
-                insertNode.setLong(5,dateLiteral.getType().getId());
-            else
-                throw new IllegalStateException("a date literal must have a datatype");
-            insertNode.setTimestamp(6, new Timestamp(dateLiteral.getCreated().getTime()), calendarUTC);
-
-            insertNode.executeUpdate();
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2, dateLiteral.stringValue());
+                insertNode.setTimestamp(3, new Timestamp(dateLiteral.getDateContent().getMillis()), calendarUTC);
+                insertNode.setInt(4, dateLiteral.getDateContent().getZone().getOffset(dateLiteral.getDateContent())/1000);
+                if(dateLiteral.getType() != null)
+                    insertNode.setLong(5,dateLiteral.getType().getId());
+                else
+                    throw new IllegalStateException("a date literal must have a datatype");
+                insertNode.setTimestamp(6, new Timestamp(dateLiteral.getCreated().getTime()), calendarUTC);
+
+                insertNode.executeUpdate();
+            }
         } else if(node instanceof KiWiIntLiteral) {
             KiWiIntLiteral intLiteral = (KiWiIntLiteral)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.iliteral");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2, intLiteral.getContent());
-            insertNode.setDouble(3, intLiteral.getDoubleContent());
-            insertNode.setLong(4, intLiteral.getIntContent());
-            if(intLiteral.getType() != null)
-                insertNode.setLong(5,intLiteral.getType().getId());
-            else
-                throw new IllegalStateException("an integer literal must have a datatype");
-            insertNode.setTimestamp(6, new Timestamp(intLiteral.getCreated().getTime()), calendarUTC);
-
-            insertNode.executeUpdate();
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2, intLiteral.getContent());
+                insertNode.setDouble(3, intLiteral.getDoubleContent());
+                insertNode.setLong(4, intLiteral.getIntContent());
+                if(intLiteral.getType() != null)
+                    insertNode.setLong(5,intLiteral.getType().getId());
+                else
+                    throw new IllegalStateException("an integer literal must have a datatype");
+                insertNode.setTimestamp(6, new Timestamp(intLiteral.getCreated().getTime()), calendarUTC);
+
+                insertNode.executeUpdate();
+            }
         } else if(node instanceof KiWiDoubleLiteral) {
             KiWiDoubleLiteral doubleLiteral = (KiWiDoubleLiteral)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.dliteral");
-            insertNode.setLong(1, node.getId());
-            insertNode.setString(2, doubleLiteral.getContent());
-            insertNode.setDouble(3, doubleLiteral.getDoubleContent());
-            if(doubleLiteral.getType() != null)
-                insertNode.setLong(4,doubleLiteral.getType().getId());
-            else
-                throw new IllegalStateException("a double literal must have a datatype");
-            insertNode.setTimestamp(5, new Timestamp(doubleLiteral.getCreated().getTime()), calendarUTC);
-
-            insertNode.executeUpdate();
+            synchronized (insertNode) {
+                insertNode.setLong(1, node.getId());
+                insertNode.setString(2, doubleLiteral.getContent());
+                insertNode.setDouble(3, doubleLiteral.getDoubleContent());
+                if(doubleLiteral.getType() != null)
+                    insertNode.setLong(4,doubleLiteral.getType().getId());
+                else
+                    throw new IllegalStateException("a double literal must have a datatype");
+                insertNode.setTimestamp(5, new Timestamp(doubleLiteral.getCreated().getTime()), calendarUTC);
+
+                insertNode.executeUpdate();
+            }
         } else if(node instanceof KiWiBooleanLiteral) {
             KiWiBooleanLiteral booleanLiteral = (KiWiBooleanLiteral)node;
 
             PreparedStatement insertNode = getPreparedStatement("store.bliteral");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2, booleanLiteral.getContent());
-            insertNode.setBoolean(3, booleanLiteral.booleanValue());
-            if(booleanLiteral.getType() != null)
-                insertNode.setLong(4,booleanLiteral.getType().getId());
-            else
-                throw new IllegalStateException("a boolean literal must have a datatype");
-            insertNode.setTimestamp(5, new Timestamp(booleanLiteral.getCreated().getTime()), calendarUTC);
-
-            insertNode.executeUpdate();
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2, booleanLiteral.getContent());
+                insertNode.setBoolean(3, booleanLiteral.booleanValue());
+                if(booleanLiteral.getType() != null)
+                    insertNode.setLong(4,booleanLiteral.getType().getId());
+                else
+                    throw new IllegalStateException("a boolean literal must have a datatype");
+                insertNode.setTimestamp(5, new Timestamp(booleanLiteral.getCreated().getTime()), calendarUTC);
+
+                insertNode.executeUpdate();
+            }
         } else if(node instanceof KiWiStringLiteral) {
             KiWiStringLiteral stringLiteral = (KiWiStringLiteral)node;
 
@@ -1058,32 +1093,34 @@ public class KiWiConnection implements AutoCloseable {
 
 
             PreparedStatement insertNode = getPreparedStatement("store.sliteral");
-            insertNode.setLong(1,node.getId());
-            insertNode.setString(2, stringLiteral.getContent());
-            if(dbl_value != null) {
-                insertNode.setDouble(3, dbl_value);
-            } else {
-                insertNode.setObject(3, null);
-            }
-            if(lng_value != null) {
-                insertNode.setLong(4, lng_value);
-            } else {
-                insertNode.setObject(4, null);
-            }
+            synchronized (insertNode) {
+                insertNode.setLong(1,node.getId());
+                insertNode.setString(2, stringLiteral.getContent());
+                if(dbl_value != null) {
+                    insertNode.setDouble(3, dbl_value);
+                } else {
+                    insertNode.setObject(3, null);
+                }
+                if(lng_value != null) {
+                    insertNode.setLong(4, lng_value);
+                } else {
+                    insertNode.setObject(4, null);
+                }
 
-            if(stringLiteral.getLocale() != null) {
-                insertNode.setString(5, stringLiteral.getLocale().getLanguage().toLowerCase());
-            } else {
-                insertNode.setObject(5, null);
-            }
-            if(stringLiteral.getType() != null) {
-                insertNode.setLong(6,stringLiteral.getType().getId());
-            } else {
-                insertNode.setObject(6, null);
-            }
-            insertNode.setTimestamp(7, new Timestamp(stringLiteral.getCreated().getTime()), calendarUTC);
+                if(stringLiteral.getLocale() != null) {
+                    insertNode.setString(5, stringLiteral.getLocale().getLanguage().toLowerCase());
+                } else {
+                    insertNode.setObject(5, null);
+                }
+                if(stringLiteral.getType() != null) {
+                    insertNode.setLong(6,stringLiteral.getType().getId());
+                } else {
+                    insertNode.setObject(6, null);
+                }
+                insertNode.setTimestamp(7, new Timestamp(stringLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+                insertNode.executeUpdate();
+            }
         } else {
             log.warn("unrecognized node type: {}", node.getClass().getCanonicalName());
         }
@@ -1099,7 +1136,7 @@ public class KiWiConnection implements AutoCloseable {
      * @throws NullPointerException in case the subject, predicate, object or context have not been persisted
      * @return true in case the update added a new triple to the database, false in case the triple already existed
      */
-    public synchronized void storeTriple(final KiWiTriple triple) throws SQLException {
+    public void storeTriple(final KiWiTriple triple) throws SQLException {
         // mutual exclusion: prevent parallel adding and removing of the same triple
         synchronized (triple) {
 
@@ -1116,6 +1153,7 @@ public class KiWiConnection implements AutoCloseable {
 
                 //deletedStatementsLog.remove(triple.getId());
                 undeleteTriple(triple);
+                statisticsDelta.addTriple(triple);
 
             } else {
 
@@ -1123,7 +1161,10 @@ public class KiWiConnection implements AutoCloseable {
                     commitLock.lock();
                     try {
                         cacheTriple(triple);
-                        tripleBatch.add(triple);
+                        synchronized (tripleBatch) {
+                            tripleBatch.add(triple);
+                        }
+                        statisticsDelta.addTriple(triple);
                         if(tripleBatch.size() >= batchSize) {
                             flushBatch();
                         }
@@ -1136,31 +1177,37 @@ public class KiWiConnection implements AutoCloseable {
                     Preconditions.checkNotNull(triple.getObject().getId());
 
 
+                    // savepoints are set on the shared JDBC connection, so unbatched inserts are still serialized
                     try {
-                        RetryExecution<Boolean> execution = new RetryExecution<>("STORE");
-                        execution.setUseSavepoint(true);
-                        execution.execute(connection, new RetryCommand<Boolean>() {
-                            @Override
-                            public Boolean run() throws SQLException {
-                                PreparedStatement insertTriple = getPreparedStatement("store.triple");
-                                insertTriple.setLong(1,triple.getId());
-                                insertTriple.setLong(2,triple.getSubject().getId());
-                                insertTriple.setLong(3,triple.getPredicate().getId());
-                                insertTriple.setLong(4,triple.getObject().getId());
-                                if(triple.getContext() != null) {
-                                    insertTriple.setLong(5,triple.getContext().getId());
-                                } else {
-                                    insertTriple.setNull(5, Types.BIGINT);
-                                }
-                                insertTriple.setBoolean(6,triple.isInferred());
-                                insertTriple.setTimestamp(7, new Timestamp(triple.getCreated().getTime()));
-                                int count = insertTriple.executeUpdate();
+                        synchronized (this) {
+                            RetryExecution<Boolean> execution = new RetryExecution<>("STORE");
+                            execution.setUseSavepoint(true);
+                            execution.execute(connection, new RetryCommand<Boolean>() {
+                                @Override
+                                public Boolean run() throws SQLException {
+                                    PreparedStatement insertTriple = getPreparedStatement("store.triple");
+                                    insertTriple.setLong(1,triple.getId());
+                                    insertTriple.setLong(2,triple.getSubject().getId());
+                                    insertTriple.setLong(3,triple.getPredicate().getId());
+                                    insertTriple.setLong(4,triple.getObject().getId());
+                                    if(triple.getContext() != null) {
+                                        insertTriple.setLong(5,triple.getContext().getId());
+                                    } else {
+                                        insertTriple.setNull(5, Types.BIGINT);
+                                    }
+                                    insertTriple.setBoolean(6,triple.isInferred());
+                                    insertTriple.setTimestamp(7, new Timestamp(triple.getCreated().getTime()));
+                                    int count = insertTriple.executeUpdate();
 
-                                cacheTriple(triple);
+                                    cacheTriple(triple);
+                                    if(count > 0) {
+                                        statisticsDelta.addTriple(triple);
+                                    }
 
-                                return count > 0;
-                            }
-                        });
+                                    return count > 0;
+                                }
+                            });
+                        }
 
                     } catch(SQLException ex) {
                         if("HYT00".equals(ex.getSQLState())) { // H2 table locking timeout
@@ -1256,6 +1303,7 @@ public class KiWiConnection implements AutoCloseable {
                                     }
                                     deletedStatementsLog.put(triple.getId());
                                 }
+                                statisticsDelta.removeTriple(triple);
                             } finally {
                                 commitLock.unlock();
                             }
@@ -1268,7 +1316,7 @@ public class KiWiConnection implements AutoCloseable {
                                 deleteTriple.executeUpdate();
                             }
                             deletedStatementsLog.put(triple.getId());
-
+                            statisticsDelta.removeTriple(triple);
 
                         }
                     }
@@ -1311,6 +1359,7 @@ public class KiWiConnection implements AutoCloseable {
                         commitLock.lock();
                         try {
                             if (tripleBatch == null || tripleBatch.size() == 0) {
+                                recordContextDeletion(ctx);
 
                                 PreparedStatement deleteTriple = getPreparedStatement("delete.context");
                                 synchronized (deleteTriple) {
@@ -1321,8 +1370,10 @@ public class KiWiConnection implements AutoCloseable {
                             } else {
                                 // delete all triples from triple batch with a matching context
                                 for (Iterator<KiWiTriple> it = tripleBatch.iterator(); it.hasNext(); ) {
-                                    if (it.next().getContext().equals(ctx)) {
+                                    KiWiTriple triple = it.next();
+                                    if (triple.getContext().equals(ctx)) {
                                         it.remove();
+                                        statisticsDelta.removeTriple(triple);
                                     }
                                 }
                             }
@@ -1331,6 +1382,7 @@ public class KiWiConnection implements AutoCloseable {
                         }
                     } else {
                         requireJDBCConnection();
+                        recordContextDeletion(ctx);
 
                         PreparedStatement deleteTriple = getPreparedStatement("delete.context");
                         synchronized (deleteTriple) {
@@ -1385,8 +1437,12 @@ public class KiWiConnection implements AutoCloseable {
                                 deleteTriple.executeUpdate();
                             }
                             // deletedStatementsLog.put(triple.getId());
+                            statisticsDelta.removeAll();
                         } else {
                             // delete all triples from triple batch with a matching context
+                            for (KiWiTriple triple : tripleBatch) {
+                                statisticsDelta.removeTriple(triple);
+                            }
                             tripleBatch.clear();
                         }
                     } finally {
@@ -1400,6 +1456,7 @@ public class KiWiConnection implements AutoCloseable {
                         deleteTriple.executeUpdate();
                     }
                     //deletedStatementsLog.put(triple.getId());
+                    statisticsDelta.removeAll();
 
 
                 }
@@ -1414,6 +1471,25 @@ public class KiWiConnection implements AutoCloseable {
 
     }
 
+    /**
+     * Record the removal of all triples in the given context in the statistics delta of the transaction. Needs to
+     * be called before the triples are marked as deleted.
+     */
+    private void recordContextDeletion(KiWiResource ctx) throws SQLException {
+        PreparedStatement countTriples = getPreparedStatement("stats.context");
+        synchronized (countTriples) {
+            countTriples.setLong(1, ctx.getId());
+            ResultSet result = countTriples.executeQuery();
+            try {
+                while(result.next()) {
+                    statisticsDelta.removeTriples(result.getLong(1), result.getLong(2), ctx.getId(), result.getLong(3));
+                }
+            } finally {
+                result.close();
+            }
+        }
+    }
+
 
     /**
      * Mark the triple passed as argument as not deleted, setting the "deleted" flag to false and
@@ -1442,8 +1518,10 @@ public class KiWiConnection implements AutoCloseable {
             }
 
             PreparedStatement undeleteTriple = getPreparedStatement("undelete.triple");
-            undeleteTriple.setLong(1, triple.getId());
-            undeleteTriple.executeUpdate();
+            synchronized (undeleteTriple) {
+                undeleteTriple.setLong(1, triple.getId());
+                undeleteTriple.executeUpdate();
+            }
 
             if(!persistence.getConfiguration().isClustered()) {
                 cacheTriple(triple);
@@ -2060,16 +2138,74 @@ public class KiWiConnection implements AutoCloseable {
 
         PreparedStatement statement = statementCache.get(key);
         if(statement == null || statement.isClosed()) {
-            statement = connection.prepareStatement(dialect.getStatement(key), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-            statementCache.put(key,statement);
+            synchronized (statementCache) {
+                statement = statementCache.get(key);
+                if(statement == null || statement.isClosed()) {
+                    statement = connection.prepareStatement(dialect.getStatement(key), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    statementCache.put(key,statement);
+                }
+            }
+        }
+        // statements are shared by the threads using this connection; callers lock the statement while using it
+        synchronized (statement) {
+            statement.clearParameters();
+            if(persistence.getDialect().isCursorSupported()) {
+                statement.setFetchSize(persistence.getConfiguration().getCursorSize());
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * Return a prepared statement for a generated SQL query, e.g. a SPARQL query translated to SQL. Looks for an idle
+     * statement with the same SQL in the query statement cache and prepares a new statement if there is none. The
+     * statement is exclusively owned by the caller until it is handed back with releaseQueryStatement().
+     *
+     * @param sql the SQL query, usually containing query parameters
+     * @return
+     * @throws SQLException
+     */
+    public PreparedStatement getQueryStatement(String sql) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement statement;
+        synchronized (queryStatementCache) {
+            statement = queryStatementCache.remove(sql);
+        }
+        if(statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        } else {
+            statement.clearParameters();
         }
-        statement.clearParameters();
         if(persistence.getDialect().isCursorSupported()) {
             statement.setFetchSize(persistence.getConfiguration().getCursorSize());
         }
         return statement;
     }
 
+    /**
+     * Hand back a statement obtained from getQueryStatement() after its results have been consumed, so it can be
+     * reused by later queries with the same SQL. In case there is already an idle statement for the SQL, the
+     * statement is closed instead.
+     *
+     * @param sql       the SQL query the statement has been prepared for
+     * @param statement the statement to release
+     * @throws SQLException
+     */
+    public void releaseQueryStatement(String sql, PreparedStatement statement) throws SQLException {
+        if(closed || statement.isClosed()) {
+            return;
+        }
+
+        PreparedStatement previous;
+        synchronized (queryStatementCache) {
+            previous = queryStatementCache.put(sql, statement);
+        }
+        if(previous != null && previous != statement) {
+            previous.close();
+        }
+    }
+
     /**
      * Return the prepared statement with the given identifier; first looks in the statement cache and if it does
      * not exist there create a new statement. This method is used for building statements with variable argument
@@ -2084,20 +2220,27 @@ public class KiWiConnection implements AutoCloseable {
 
         PreparedStatement statement = statementCache.get(key+numberOfArguments);
         if(statement == null || statement.isClosed()) {
-            StringBuilder s = new StringBuilder();
-            for(int i=0; i<numberOfArguments; i++) {
-                if(i != 0) {
-                    s.append(',');
+            synchronized (statementCache) {
+                statement = statementCache.get(key+numberOfArguments);
+                if(statement == null || statement.isClosed()) {
+                    StringBuilder s = new StringBuilder();
+                    for(int i=0; i<numberOfArguments; i++) {
+                        if(i != 0) {
+                            s.append(',');
+                        }
+                        s.append('?');
+                    }
+
+                    statement = connection.prepareStatement(String.format(dialect.getStatement(key),s.toString(), numberOfArguments), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    statementCache.put(key+numberOfArguments,statement);
                 }
-                s.append('?');
             }
-
-            statement = connection.prepareStatement(String.format(dialect.getStatement(key),s.toString(), numberOfArguments), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-            statementCache.put(key+numberOfArguments,statement);
         }
-        statement.clearParameters();
-        if(persistence.getDialect().isCursorSupported()) {
-            statement.setFetchSize(persistence.getConfiguration().getCursorSize());
+        synchronized (statement) {
+            statement.clearParameters();
+            if(persistence.getDialect().isCursorSupported()) {
+                statement.setFetchSize(persistence.getConfiguration().getCursorSize());
+            }
         }
         return statement;
     }
@@ -2201,6 +2344,7 @@ public class KiWiConnection implements AutoCloseable {
         requireJDBCConnection();
 
         PreparedStatement statement = getPreparedStatement("meta.get");
+        statement.setString(1,key);
         ResultSet result = statement.executeQuery();
         try {
             if(result.next()) {
@@ -2221,6 +2365,44 @@ public class KiWiConnection implements AutoCloseable {
         }
     }
 
+    /**
+     * Remove the metadata value with the given key.
+     *
+     * @param key
+     * @throws SQLException
+     */
+    public void removeMetadata(String key) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement statement = getPreparedStatement("meta.delete");
+        statement.setString(1,key);
+        statement.executeUpdate();
+    }
+
+    /**
+     * Return all metadata values with keys starting with the given prefix.
+     *
+     * @param prefix
+     * @return a map from metadata keys to metadata values
+     * @throws SQLException
+     */
+    public Map<String,String> listMetadata(String prefix) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement statement = getPreparedStatement("meta.list");
+        statement.setString(1,prefix + "%");
+        ResultSet result = statement.executeQuery();
+        try {
+            Map<String,String> metadata = new HashMap<>();
+            while(result.next()) {
+                metadata.put(result.getString(1), result.getString(2));
+            }
+            return metadata;
+        } finally {
+            result.close();
+        }
+    }
+
 
     /**
      * Return the KiWi version of the database this connection is operating on. This query is necessary for
@@ -2378,6 +2560,8 @@ public class KiWiConnection implements AutoCloseable {
             }
         });
 
+        persistence.getStatistics().commit(statisticsDelta);
+
         this.transactionId = getNextSequence();
     }
 
@@ -2403,6 +2587,7 @@ public class KiWiConnection implements AutoCloseable {
             }
         }
         deletedStatementsLog = BloomFilter.create(Funnels.longFunnel(), 100000);
+        statisticsDelta.reset();
         if(connection != null && !connection.isClosed()) {
             connection.rollback();
         }
@@ -2462,6 +2647,14 @@ public class KiWiConnection implements AutoCloseable {
                         entry.getValue().close();
                     } catch (SQLException ex) {}
                 }
+                synchronized (queryStatementCache) {
+                    for(PreparedStatement statement : queryStatementCache.values()) {
+                        try {
+                            statement.close();
+                        } catch (SQLException ex) {}
+                    }
+                    queryStatementCache.clear();
+                }
             } catch(AbstractMethodError ex) {
                 log.debug("database system does not allow closing statements");
             }
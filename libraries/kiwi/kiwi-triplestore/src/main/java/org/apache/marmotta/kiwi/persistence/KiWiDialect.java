@@ -37,7 +37,7 @@ public abstract class KiWiDialect {
 
     private static Logger log = LoggerFactory.getLogger(KiWiDialect.class);
 
-    public final static int VERSION = 4;
+    public final static int VERSION = 5;
 
     private Properties statements;
 
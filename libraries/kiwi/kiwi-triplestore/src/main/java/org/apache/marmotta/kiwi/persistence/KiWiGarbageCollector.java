@@ -17,6 +17,9 @@
  */
 package org.apache.marmotta.kiwi.persistence;
 
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.marmotta.kiwi.jmx.KiWiGarbageCollectorMBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,8 +30,16 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class implements a garbage collector for the database that cleans up deleted triples and nodes when they
@@ -36,9 +47,13 @@ import java.util.concurrent.TimeUnit;
  * a complex SQL query, checking for all tables referencing rows in the triples and nodes tables. References need
  * to be registered by other components via the addTripleTableDependency and addNodeTableDependency methods.
  * <p/>
+ * The garbage collection is incremental: the id range of each table is processed in small batches, each in its
+ * own transaction, optionally in several partitions in parallel and throttled to a maximum number of rows per
+ * second (see KiWiConfiguration.setGcBatchSize(), setGcThreads() and setGcRowsPerSecond()).
+ * <p/>
  * Author: Sebastian Schaffert (sschaffert@apache.org)
  */
-public class KiWiGarbageCollector extends Thread {
+public class KiWiGarbageCollector extends Thread implements KiWiGarbageCollectorMBean {
 
     private static Logger log = LoggerFactory.getLogger(KiWiGarbageCollector.class);
 
@@ -51,7 +66,20 @@ public class KiWiGarbageCollector extends Thread {
 
     private KiWiPersistence persistence;
 
-    private boolean shutdown = false;
+    private volatile boolean shutdown = false;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // metrics published via JMX
+    private volatile String phase;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong reclaimedTriples = new AtomicLong();
+    private final AtomicLong reclaimedNodes = new AtomicLong();
+    private volatile long lastReclaimed;
+    private volatile long lastDuration;
 
     public KiWiGarbageCollector(KiWiPersistence persistence) {
         super("KiWi Garbage Collector");
@@ -89,6 +117,20 @@ public class KiWiGarbageCollector extends Thread {
         tripleTableDependencies.add(new TableDependency(tableName,columnName));
     }
 
+    /**
+     * Add information about a dependency of some table to the "triples" table that is given by an SQL condition
+     * instead of a column with triple ids, e.g. when triple ids are stored in a compressed form. A deleted triple
+     * is only cleaned up in case the table does not contain rows fulfilling the condition, which may refer to the
+     * candidate triple as "triples".
+     *
+     * @param tableName
+     * @param columnName
+     * @param condition
+     */
+    public void addTripleTableDependency(String tableName, String columnName, String condition) {
+        tripleTableDependencies.add(new TableDependency(tableName,columnName,condition));
+    }
+
     /**
      * Add information about a dependency of a column in some table to the "nodes" table; this information
      * is used when cleaning up unreferenced deleted entries in the nodes table. In theory, we could
@@ -141,6 +183,7 @@ public class KiWiGarbageCollector extends Thread {
         String checkNodeDuplicatesQuery = "SELECT svalue, ntype, count(id), max(id) FROM nodes group by svalue, ntype having count(id) > 1";
         String getNodeIdsQuery = "SELECT id FROM nodes WHERE svalue = ? AND ntype = ? AND id != ?";
 
+        List<EvictedNode> evicted = new ArrayList<>();
         try(Connection con = persistence.getJDBCConnection(true)) {
             PreparedStatement checkNodeDuplicatesStatement = con.prepareStatement(persistence.getDialect().getStatement("gc.check_consistency"));
             PreparedStatement getNodeIdsStatement = con.prepareStatement(persistence.getDialect().getStatement("gc.list_node_ids"));
@@ -165,6 +208,7 @@ public class KiWiGarbageCollector extends Thread {
                 try(ResultSet idResult = getNodeIdsStatement.executeQuery()) {
                     while(idResult.next()) {
                         ids.add(idResult.getLong(1));
+                        evicted.add(new EvictedNode(idResult.getLong(1), result.getString("ntype"), result.getString("svalue")));
                     }
                 }
                 getNodeIdsStatement.close();
@@ -193,52 +237,254 @@ public class KiWiGarbageCollector extends Thread {
             }
             checkNodeDuplicatesStatement.close();
         }
+
+        // the caches might still contain the removed duplicates, and cached triples might still refer to them
+        if(evicted.size() > 0) {
+            for(EvictedNode node : evicted) {
+                persistence.evictNode(node.id, node.ntype, node.svalue);
+            }
+            persistence.getCacheManager().getTripleCache().clear();
+        }
     }
 
 
     protected int garbageCollect() throws SQLException {
+        if(!running.compareAndSet(false, true)) {
+            log.warn("garbage collection is already running, skipping");
+            return 0;
+        }
+
         round++;
 
         long start = System.currentTimeMillis();
-
-        Connection con = persistence.getJDBCConnection(false);
         try {
             int count = 0;
 
             // garbage collect triples
-            try {
-                String gcTripleQuery = buildGCTriplesQuery();
-                PreparedStatement stmtGcTriples = con.prepareStatement(gcTripleQuery);
-                count += stmtGcTriples.executeUpdate();
-                stmtGcTriples.close();
+            long triples = collect("triples", buildGCTriplesQuery(), null, "gc.triples_range", "gc.triples_batch");
+            reclaimedTriples.addAndGet(triples);
+            count += triples;
+
+            // garbage collect nodes (only every 10th garbage collection, only makes sense when we previously deleted triples ...)
+            if(count > 0 && round % 10 == 1 && nodeTableDependencies.size() > 0) {
+                // then delete all unconnected nodes
+                long nodes = collect("nodes", buildGCNodesQuery(), buildGCNodeCandidatesQuery(), "gc.nodes_range", "gc.nodes_batch");
+                reclaimedNodes.addAndGet(nodes);
+                count += nodes;
+            }
+
+            lastDuration = System.currentTimeMillis() - start;
+            lastReclaimed = count;
+            runs.incrementAndGet();
+
+            log.info("... cleaned up {} entries (duration: {} ms)", count, lastDuration);
+
+            return count;
+        } finally {
+            phase = null;
+            running.set(false);
+        }
+    }
+
+    /**
+     * Garbage collect the rows of a table. The id range of the candidate rows is split into partitions that are
+     * processed in parallel (gcThreads). Each partition is processed in batches of at most gcBatchSize rows, each in
+     * its own transaction, so that no long-running statement locks large parts of the table.
+     *
+     * @param table          name of the table, used for logging and metrics
+     * @param deleteQuery    delete statement with two parameters for the (exclusive) lower and (inclusive) upper id
+     * @param evictQuery     select statement with the same parameters returning id, ntype and svalue of the nodes
+     *                       that are about to be deleted, so they can be evicted from the caches; null for tables
+     *                       that are not cached by value
+     * @param rangeStatement statement returning the minimum and maximum id of the candidate rows
+     * @param batchStatement statement returning the upper id of the next batch of candidate rows
+     * @return the number of rows deleted
+     */
+    private long collect(final String table, final String deleteQuery, final String evictQuery, String rangeStatement, final String batchStatement) {
+        phase = table;
+        processed.set(0);
+        total.set(0);
+
+        long min, max;
+        try {
+            Connection con = persistence.getJDBCConnection(false);
+            try(PreparedStatement stmt = con.prepareStatement(persistence.getDialect().getStatement(rangeStatement));
+                ResultSet result = stmt.executeQuery()) {
+                if(!result.next() || result.getObject(1) == null) {
+                    return 0;
+                }
+                min = result.getLong(1);
+                max = result.getLong(2);
                 con.commit();
-            } catch (SQLException ex) {
-                con.rollback();
+            } finally {
+                persistence.releaseJDBCConnection(con);
+            }
+        } catch (SQLException ex) {
+            log.warn("SQL error while determining garbage collection range on {} table: {}", table, ex.getMessage());
+            return 0;
+        }
+
+        int partitions = (int) Math.max(1, Math.min(persistence.getConfiguration().getGcThreads(), max - min + 1));
+        long span = (max - min) / partitions + 1;
+
+        total.set(max - min + 1);
+
+        final RateLimiter limiter = persistence.getConfiguration().getGcRowsPerSecond() > 0
+                ? RateLimiter.create(persistence.getConfiguration().getGcRowsPerSecond())
+                : null;
+
+        List<Callable<Long>> tasks = new ArrayList<>(partitions);
+        for(int i=0; i<partitions; i++) {
+            final long lower = min - 1 + i * span;
+            final long upper = i == partitions - 1 ? max : lower + span;
+            tasks.add(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return collectPartition(table, deleteQuery, evictQuery, batchStatement, lower, upper, limiter);
+                }
+            });
+        }
 
-                log.warn("SQL error while executing garbage collection on triples table: {}", ex.getMessage());
+        long count = 0;
+        if(partitions == 1) {
+            try {
+                count = tasks.get(0).call();
+            } catch (Exception ex) {
+                log.error("error while executing garbage collection on {} table", table, ex);
+            }
+        } else {
+            ExecutorService workers = Executors.newFixedThreadPool(partitions, new ThreadFactoryBuilder().setNameFormat("KiWi Garbage Collector (" + table + ") %d").setDaemon(true).build());
+            try {
+                for(Future<Long> result : workers.invokeAll(tasks)) {
+                    try {
+                        count += result.get();
+                    } catch (ExecutionException ex) {
+                        log.error("error while executing garbage collection on {} table", table, ex.getCause());
+                    }
+                }
+            } catch (InterruptedException ex) {
+                log.warn("garbage collection on {} table interrupted", table);
+                Thread.currentThread().interrupt();
+            } finally {
+                workers.shutdownNow();
             }
+        }
+        return count;
+    }
 
-            // garbage collect nodes (only every 10th garbage collection, only makes sense when we previously deleted triples ...)
-            if(count > 0 && round % 10 == 1) {
-                // then delete all unconnected nodes
+    /**
+     * Garbage collect the rows with lower < id <= upper in batches, committing after each batch. Processing of the
+     * partition stops on the first SQL error; the batches committed before are kept. In case an evictQuery is given,
+     * the candidates of each batch are evicted from the node caches once the batch is committed.
+     */
+    private long collectPartition(String table, String deleteQuery, String evictQuery, String batchStatement, long lower, long upper, RateLimiter limiter) throws SQLException {
+        int batchSize = Math.max(1, persistence.getConfiguration().getGcBatchSize());
+
+        long count = 0;
+        long position = lower;
+
+        Connection con = persistence.getJDBCConnection(false);
+        try(PreparedStatement stmtBatch = con.prepareStatement(persistence.getDialect().getStatement(batchStatement));
+            PreparedStatement stmtDelete = con.prepareStatement(deleteQuery);
+            PreparedStatement stmtEvict = evictQuery != null ? con.prepareStatement(evictQuery) : null) {
+
+            while(position < upper && !shutdown) {
+                // determine the upper id of the next batch of candidates
+                long next;
+                stmtBatch.setLong(1, position);
+                stmtBatch.setLong(2, upper);
+                stmtBatch.setInt(3, batchSize);
+                try(ResultSet result = stmtBatch.executeQuery()) {
+                    next = result.next() && result.getObject(1) != null ? result.getLong(1) : upper;
+                }
+
+                if(limiter != null) {
+                    limiter.acquire(batchSize);
+                }
+
+                List<EvictedNode> evicted = new ArrayList<>();
                 try {
-                    String gcNodesQuery = buildGCNodesQuery();
-                    PreparedStatement stmtGcNodes = con.prepareStatement(gcNodesQuery);
-                    count += stmtGcNodes.executeUpdate();
-                    stmtGcNodes.close();
+                    // references to nodes are only removed by the garbage collector, so the deleted nodes are among the candidates
+                    if(stmtEvict != null) {
+                        stmtEvict.setLong(1, position);
+                        stmtEvict.setLong(2, next);
+                        try(ResultSet result = stmtEvict.executeQuery()) {
+                            while(result.next()) {
+                                evicted.add(new EvictedNode(result.getLong(1), result.getString(2), result.getString(3)));
+                            }
+                        }
+                    }
+
+                    stmtDelete.setLong(1, position);
+                    stmtDelete.setLong(2, next);
+                    count += stmtDelete.executeUpdate();
                     con.commit();
                 } catch (SQLException ex) {
                     con.rollback();
 
-                    log.warn("SQL error while executing garbage collection on nodes table: {}", ex.getMessage());
+                    log.warn("SQL error while executing garbage collection on {} table: {}", table, ex.getMessage());
+                    break;
                 }
-            }
-            log.info("... cleaned up {} entries (duration: {} ms)", count, (System.currentTimeMillis()-start));
 
-            return count;
+                // deleted nodes must not be returned from the caches anymore
+                for(EvictedNode node : evicted) {
+                    persistence.evictNode(node.id, node.ntype, node.svalue);
+                }
+
+                batches.incrementAndGet();
+                processed.addAndGet(next - position);
+                position = next;
+            }
         } finally {
             persistence.releaseJDBCConnection(con);
         }
+        return count;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    @Override
+    public String getPhase() {
+        return phase;
+    }
+
+    @Override
+    public double getProgress() {
+        long t = total.get();
+        return t > 0 ? Math.min(1.0, (double) processed.get() / t) : 0.0;
+    }
+
+    @Override
+    public long getRuns() {
+        return runs.get();
+    }
+
+    @Override
+    public long getBatches() {
+        return batches.get();
+    }
+
+    @Override
+    public long getReclaimedTriples() {
+        return reclaimedTriples.get();
+    }
+
+    @Override
+    public long getReclaimedNodes() {
+        return reclaimedNodes.get();
+    }
+
+    @Override
+    public long getLastReclaimed() {
+        return lastReclaimed;
+    }
+
+    @Override
+    public long getLastDuration() {
+        return lastDuration;
     }
 
 
@@ -290,7 +536,7 @@ public class KiWiGarbageCollector extends Thread {
 
     private String buildGCTriplesQuery() {
         StringBuilder builder = new StringBuilder();
-        builder.append("DELETE FROM triples WHERE deleted = true");
+        builder.append("DELETE FROM triples WHERE deleted = true AND id > ? AND id <= ?");
 
         if(tripleTableDependencies.size() > 0) {
             builder.append(" AND NOT EXISTS (");
@@ -305,8 +551,12 @@ public class KiWiGarbageCollector extends Thread {
                 builder.append(" FROM ");
                 builder.append(next.table);
                 builder.append(" WHERE ");
-                builder.append(next.column);
-                builder.append(" = triples.id");
+                if(next.condition != null) {
+                    builder.append(next.condition);
+                } else {
+                    builder.append(next.column);
+                    builder.append(" = triples.id");
+                }
 
                 builder.append(")");
 
@@ -322,10 +572,18 @@ public class KiWiGarbageCollector extends Thread {
 
 
     private String buildGCNodesQuery() {
+        return "DELETE FROM nodes T1 WHERE T1.id > ? AND T1.id <= ?" + buildGCNodesCondition();
+    }
+
+    private String buildGCNodeCandidatesQuery() {
+        return "SELECT T1.id, T1.ntype, T1.svalue FROM nodes T1 WHERE T1.id > ? AND T1.id <= ?" + buildGCNodesCondition();
+    }
+
+    private String buildGCNodesCondition() {
         StringBuilder builder = new StringBuilder();
 
         if(nodeTableDependencies.size() > 0) {
-            builder.append("DELETE FROM nodes T1 WHERE NOT EXISTS (");
+            builder.append(" AND NOT EXISTS (");
 
             Iterator<TableDependency> iterator = nodeTableDependencies.iterator();
             while (iterator.hasNext()) {
@@ -356,10 +614,16 @@ public class KiWiGarbageCollector extends Thread {
     private static class TableDependency {
         String table;
         String column;
+        String condition;
 
         private TableDependency(String table, String column) {
+            this(table, column, null);
+        }
+
+        private TableDependency(String table, String column, String condition) {
             this.column = column;
             this.table = table;
+            this.condition = condition;
         }
 
         @Override
@@ -371,6 +635,7 @@ public class KiWiGarbageCollector extends Thread {
 
             if (!column.equals(that.column)) return false;
             if (!table.equals(that.table)) return false;
+            if (condition != null ? !condition.equals(that.condition) : that.condition != null) return false;
 
             return true;
         }
@@ -379,8 +644,21 @@ public class KiWiGarbageCollector extends Thread {
         public int hashCode() {
             int result = table.hashCode();
             result = 31 * result + column.hashCode();
+            result = 31 * result + (condition != null ? condition.hashCode() : 0);
             return result;
         }
     }
 
+    private static class EvictedNode {
+        long   id;
+        String ntype;
+        String svalue;
+
+        private EvictedNode(long id, String ntype, String svalue) {
+            this.id = id;
+            this.ntype = ntype;
+            this.svalue = svalue;
+        }
+    }
+
 }
@@ -17,24 +17,36 @@
  */
 package org.apache.marmotta.kiwi.persistence;
 
+import org.apache.marmotta.commons.sesame.model.LiteralCommons;
 import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.caching.CacheManagerFactory;
 import org.apache.marmotta.kiwi.caching.GuavaCacheManagerFactory;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.generator.IDGenerator;
 import org.apache.marmotta.kiwi.generator.SnowflakeIDGenerator;
+import org.apache.marmotta.kiwi.jmx.KiWiGarbageCollectorMBean;
+import org.apache.marmotta.kiwi.model.rdf.KiWiLiteral;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.persistence.statistics.KiWiStatistics;
 import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
 import org.apache.tomcat.jdbc.pool.DataSource;
 import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.openrdf.model.Literal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Add file description here!
@@ -57,8 +69,24 @@ public class KiWiPersistence {
 
     private CacheManager cacheManager;
 
+    /**
+     * Incremented whenever the caches are cleared or nodes are evicted, i.e. when node ids looked up before might not be valid anymore.
+     * Allows components outside the persistence to invalidate information derived from node ids.
+     */
+    private final AtomicLong cacheGeneration = new AtomicLong();
+
     private KiWiGarbageCollector  garbageCollector;
 
+    /**
+     * JMX name of the garbage collector metrics, null if not registered.
+     */
+    private ObjectName            garbageCollectorName;
+
+    /**
+     * Triple statistics used for estimating the cardinality of triple patterns in query planning.
+     */
+    private KiWiStatistics        statistics;
+
     /**
      * The KiWi configuration for this persistence.
      */
@@ -103,6 +131,9 @@ public class KiWiPersistence {
         // init garbage collector thread
         initGarbageCollector();
 
+        // statistics are loaded after the database has been initialised
+        statistics = new KiWiStatistics(this);
+
         try {
             logPoolInfo();
         } catch (SQLException e) {
@@ -194,6 +225,17 @@ public class KiWiPersistence {
         garbageCollector.addNodeTableDependency("triples","creator");
         garbageCollector.addNodeTableDependency("nodes","ltype");
 
+        if(configuration.isJmxEnabled()) {
+            try {
+                ObjectName name = new ObjectName("org.apache.marmotta.kiwi.jmx:type=KiWiGarbageCollector,name=" + ObjectName.quote(configuration.getName()));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(garbageCollector, KiWiGarbageCollectorMBean.class), name);
+                garbageCollectorName = name;
+            } catch (InstanceAlreadyExistsException e) {
+                log.debug("garbage collector metrics of {} already registered in JMX", configuration.getName());
+            } catch (JMException e) {
+                log.warn("could not register garbage collector metrics in JMX: {}", e.getMessage());
+            }
+        }
     }
 
     public void logPoolInfo() throws SQLException {
@@ -209,6 +251,8 @@ public class KiWiPersistence {
 
     public void initDatabase() throws SQLException {
         initDatabase("base", new String[] {"nodes", "triples", "namespaces","metadata"});
+
+        statistics.initialise();
     }
 
 
@@ -277,6 +321,8 @@ public class KiWiPersistence {
      */
     public void dropDatabase() throws SQLException {
         dropDatabase("base");
+
+        statistics.clear();
     }
 
     /**
@@ -319,6 +365,9 @@ public class KiWiPersistence {
                     }
                 }
                 connection.getJDBCConnection().commit();
+
+                // cached node ids are not valid anymore; this matters for caches that survive restarts
+                clearCache();
             } catch (SQLException ex) {
                 log.error("SQL exception while dropping database, rolling back");
                 connection.rollback();
@@ -445,13 +494,35 @@ public class KiWiPersistence {
         garbageCollector.addTripleTableDependency(tableName, columnName);
     }
 
+    /**
+     * Add information about a dependency of some table to the "triples" table that cannot be expressed by a column
+     * containing triple ids. A deleted triple is kept as long as the table contains a row fulfilling the SQL condition
+     * passed as argument, which may refer to the columns of the candidate triple as "triples.column".
+     *
+     * @param tableName
+     * @param columnName a column of the table (used for building the dependency query)
+     * @param condition  SQL condition selecting the rows of the table the triple depends on
+     */
+    public void addTripleTableDependency(String tableName, String columnName, String condition) {
+        garbageCollector.addTripleTableDependency(tableName, columnName, condition);
+    }
+
 
     public void shutdown() {
         log.info("shutting down KiWi persistence ...");
+        statistics.shutdown();
         initialized = false;
 
         idGenerator.shutdown();
         garbageCollector.shutdown();
+        if(garbageCollectorName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(garbageCollectorName);
+            } catch (JMException e) {
+                log.warn("could not unregister garbage collector metrics from JMX: {}", e.getMessage());
+            }
+            garbageCollectorName = null;
+        }
         cacheManager.shutdown();
         connectionPool.close();
 
@@ -463,6 +534,39 @@ public class KiWiPersistence {
      */
     public void clearCache() {
         cacheManager.clear();
+        cacheGeneration.incrementAndGet();
+    }
+
+    /**
+     * Remove the node with the given database id from the node caches, e.g. because the garbage collector deleted
+     * it. The URI and BNode caches are keyed by the string value of the node. The literal cache key also depends on
+     * language and datatype, so it is taken from the cached node; in case the literal is not in the node cache
+     * anymore, the literal cache is cleared.
+     *
+     * @param id     database id of the node
+     * @param ntype  node type as stored in the ntype column of the nodes table
+     * @param svalue string value of the node
+     */
+    public void evictNode(long id, String ntype, String svalue) {
+        KiWiNode node = cacheManager.getNodeCache().remove(id);
+        if("uri".equals(ntype)) {
+            cacheManager.getUriCache().remove(svalue);
+        } else if("bnode".equals(ntype)) {
+            cacheManager.getBNodeCache().remove(svalue);
+        } else if(node instanceof KiWiLiteral) {
+            cacheManager.getLiteralCache().remove(LiteralCommons.createCacheKey((Literal) node));
+        } else {
+            cacheManager.getLiteralCache().clear();
+        }
+        cacheGeneration.incrementAndGet();
+    }
+
+    /**
+     * Return the number of times the caches have been cleared or nodes have been evicted. A change in the value indicates that node ids
+     * looked up before might have become invalid.
+     */
+    public long getCacheGeneration() {
+        return cacheGeneration.get();
     }
 
 
@@ -483,6 +587,13 @@ public class KiWiPersistence {
         this.garbageCollector.garbageCollect();
     }
 
+    /**
+     * Return the progress and metrics of the garbage collector.
+     */
+    public KiWiGarbageCollectorMBean getGarbageCollectorMetrics() {
+        return garbageCollector;
+    }
+
     public boolean checkConsistency() throws SQLException {
         return garbageCollector.checkConsistency();
     }
@@ -491,5 +602,12 @@ public class KiWiPersistence {
         return idGenerator;
     }
 
+    /**
+     * Return the triple statistics of this triple store, used for estimating the cardinality of triple patterns.
+     */
+    public KiWiStatistics getStatistics() {
+        return statistics;
+    }
+
 
 }
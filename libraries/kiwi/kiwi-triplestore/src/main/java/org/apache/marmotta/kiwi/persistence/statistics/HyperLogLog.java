@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.statistics;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * A small HyperLogLog sketch for estimating the number of distinct node ids (e.g. the distinct subjects of a
+ * predicate). The sketch uses 128 registers of 5 bits, i.e. 80 bytes, and has a standard error of about 9%, which
+ * is sufficient for join ordering. Its encoded form fits into a value of the metadata table.
+ * <p/>
+ * Sketches only grow; removing an element is not possible. Estimates should therefore always be capped by the
+ * exact number of triples they have been built from.
+ */
+public class HyperLogLog {
+
+    private static final int P = 7;
+
+    private static final int M = 1 << P;
+
+    private static final int MAX_RANK = 31;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    private static final HashFunction hash = Hashing.murmur3_128();
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[M];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    /**
+     * Add the node id passed as argument to the sketch.
+     */
+    public synchronized void offer(long id) {
+        long h = hash.hashLong(id).asLong();
+
+        int index = (int) (h >>> (64 - P));
+        int rank  = Math.min(Long.numberOfLeadingZeros((h << P) | (1L << (P - 1))) + 1, MAX_RANK);
+
+        if(rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Merge the registers of the other sketch into this sketch. Afterwards, the sketch estimates the union of both sets.
+     */
+    public synchronized void merge(HyperLogLog other) {
+        byte[] otherRegisters = other.copyRegisters();
+        for(int i=0; i<M; i++) {
+            if(otherRegisters[i] > registers[i]) {
+                registers[i] = otherRegisters[i];
+            }
+        }
+    }
+
+    /**
+     * Return the estimated number of distinct ids added to this sketch.
+     */
+    public synchronized long cardinality() {
+        double sum   = 0;
+        int    zeros = 0;
+        for(byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if(r == 0) {
+                zeros++;
+            }
+        }
+
+        double estimate = ALPHA * M * M / sum;
+        if(estimate <= 2.5 * M && zeros > 0) {
+            // small range correction (linear counting)
+            estimate = M * Math.log((double) M / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private synchronized byte[] copyRegisters() {
+        return registers.clone();
+    }
+
+    /**
+     * Encode the sketch as string, packing the registers into 5 bits each.
+     */
+    public synchronized String encode() {
+        byte[] packed = new byte[M * 5 / 8];
+        for(int i=0; i<M; i++) {
+            for(int b=0; b<5; b++) {
+                if((registers[i] & (1 << b)) != 0) {
+                    int bit = i * 5 + b;
+                    packed[bit / 8] |= 1 << (bit % 8);
+                }
+            }
+        }
+        return BaseEncoding.base64().omitPadding().encode(packed);
+    }
+
+    /**
+     * Decode a sketch previously encoded with encode().
+     *
+     * @throws IllegalArgumentException in case the string is not a valid encoded sketch
+     */
+    public static HyperLogLog decode(String encoded) {
+        byte[] packed = BaseEncoding.base64().omitPadding().decode(encoded);
+        if(packed.length != M * 5 / 8) {
+            throw new IllegalArgumentException("invalid sketch length: " + packed.length);
+        }
+
+        byte[] registers = new byte[M];
+        for(int i=0; i<M; i++) {
+            for(int b=0; b<5; b++) {
+                int bit = i * 5 + b;
+                if((packed[bit / 8] & (1 << (bit % 8))) != 0) {
+                    registers[i] |= 1 << b;
+                }
+            }
+        }
+        return new HyperLogLog(registers);
+    }
+}
@@ -0,0 +1,620 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.statistics;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Statistics about the triples in the KiWi triple store, used for estimating the cardinality of triple patterns
+ * when ordering joins. The statistics keep:
+ * <ul>
+ *     <li>per predicate the number of triples and estimates of the number of distinct subjects and objects</li>
+ *     <li>per context the number of triples</li>
+ *     <li>per (predicate, object) pair the number of triples, for the most frequent pairs only (e.g. rdf:type with
+ *         a popular class)</li>
+ * </ul>
+ * The statistics are updated incrementally when a KiWiConnection commits and written to the metadata table from
+ * time to time in the background, so they are available again after a restart. When no statistics have been persisted
+ * yet, they are computed from the triples table in the background; until then, isAvailable() returns false.
+ * <p/>
+ * All numbers are estimates: distinct values are counted with HyperLogLog sketches that cannot forget removed
+ * triples, and transactions committing while the statistics are rebuilt may be counted twice. Call rebuild() to
+ * recompute them from scratch.
+ */
+public class KiWiStatistics {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiStatistics.class);
+
+    // metadata keys are limited to 64 characters; ids are encoded in base 36
+    private static final String KEY_PREFIX    = "st";
+    private static final String KEY_INIT      = "st.init";
+    private static final String KEY_ALL       = "st.all";
+    private static final String KEY_PREDICATE = "stp";
+    private static final String KEY_CONTEXT   = "stc";
+    private static final String KEY_PAIR      = "sto";
+
+    /**
+     * Maximum number of (predicate, object) pairs for which triple counts are kept
+     */
+    static final int MAX_PAIRS = 10000;
+
+    /**
+     * Interval in seconds between writing changed statistics to the database
+     */
+    private static final int FLUSH_INTERVAL = 60;
+
+    private KiWiPersistence persistence;
+
+    private volatile PredicateStatistics all;
+
+    private ConcurrentMap<Long,PredicateStatistics> predicates;
+
+    private ConcurrentMap<Long,Long> contexts;
+
+    private ConcurrentMap<PredicateObject,Long> pairs;
+
+    // keys of the metadata table that need to be written or removed
+    private Set<String> dirty;
+
+    private volatile boolean available = false;
+
+    // the statistics maps are replaced while holding the write lock, all updates hold the read lock
+    private ReadWriteLock lock;
+
+    private ScheduledExecutorService executor;
+
+    public KiWiStatistics(KiWiPersistence persistence) {
+        this.persistence = persistence;
+        this.lock        = new ReentrantReadWriteLock();
+        this.all         = new PredicateStatistics();
+        this.predicates  = new ConcurrentHashMap<>();
+        this.contexts    = new ConcurrentHashMap<>();
+        this.pairs       = new ConcurrentHashMap<>();
+        this.dirty       = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    /**
+     * Load the statistics from the metadata table and start writing changes in the background. In case no statistics
+     * have been stored yet, they are computed from the triples table in the background.
+     */
+    public void initialise() {
+        if(executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "KiWi Statistics");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (SQLException e) {
+                        log.warn("could not write triple statistics to database: {}", e.getMessage());
+                    }
+                }
+            }, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.SECONDS);
+        }
+
+        try {
+            if(!load()) {
+                log.info("no triple statistics found in database, computing them in the background");
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            rebuild();
+                        } catch (SQLException e) {
+                            log.error("could not compute triple statistics", e);
+                        }
+                    }
+                });
+            }
+        } catch (SQLException e) {
+            log.error("could not load triple statistics from database", e);
+        }
+    }
+
+    /**
+     * Create a new delta for collecting the statistics changes of a transaction.
+     */
+    public StatisticsDelta createDelta() {
+        return new StatisticsDelta(this);
+    }
+
+    /**
+     * Apply the changes of a committed transaction to the statistics. The delta is reset afterwards.
+     */
+    public void commit(StatisticsDelta delta) {
+        if(delta.isEmpty()) {
+            return;
+        }
+
+        if(delta.isCleared()) {
+            lock.writeLock().lock();
+            try {
+                clearEntries();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            all.merge(delta.getAll());
+            dirty.add(KEY_ALL);
+
+            for(Map.Entry<Long,PredicateStatistics> entry : delta.getPredicates().entrySet()) {
+                PredicateStatistics p = predicates.get(entry.getKey());
+                if(p == null) {
+                    predicates.putIfAbsent(entry.getKey(), new PredicateStatistics());
+                    p = predicates.get(entry.getKey());
+                }
+                p.merge(entry.getValue());
+                if(p.getCount() == 0) {
+                    predicates.remove(entry.getKey(), p);
+                }
+                dirty.add(KEY_PREDICATE + encodeId(entry.getKey()));
+            }
+
+            for(Map.Entry<Long,Long> entry : delta.getContexts().entrySet()) {
+                if(addCount(contexts, entry.getKey(), entry.getValue())) {
+                    dirty.add(KEY_CONTEXT + encodeId(entry.getKey()));
+                }
+            }
+
+            for(Map.Entry<PredicateObject,Long> entry : delta.getPairs().entrySet()) {
+                if(!acceptsPair(entry.getKey())) {
+                    continue;
+                }
+                if(addCount(pairs, entry.getKey(), entry.getValue())) {
+                    dirty.add(pairKey(entry.getKey()));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        delta.reset();
+    }
+
+    private static <K> boolean addCount(ConcurrentMap<K,Long> map, K key, long count) {
+        if(count == 0) {
+            return false;
+        }
+        while(true) {
+            Long current = map.get(key);
+            if(current == null) {
+                if(count < 0 || map.putIfAbsent(key, count) == null) {
+                    return count > 0;
+                }
+            } else if(current + count <= 0) {
+                if(map.remove(key, current)) {
+                    return true;
+                }
+            } else if(map.replace(key, current, current + count)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return true in case the counts for the (predicate, object) pair passed as argument should be recorded.
+     */
+    boolean acceptsPair(PredicateObject pair) {
+        return pairs.containsKey(pair) || pairs.size() < MAX_PAIRS;
+    }
+
+    /**
+     * Return true in case the statistics have been loaded or computed and can be used for cardinality estimation.
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Return the total number of triples in the triple store.
+     */
+    public long getTripleCount() {
+        return all.getCount();
+    }
+
+    /**
+     * Return the statistics of the predicate with the given node id, or null in case there are no triples with this
+     * predicate.
+     */
+    public PredicateStatistics getPredicateStatistics(long predicate) {
+        return predicates.get(predicate);
+    }
+
+    /**
+     * Return the number of triples in the context with the given node id.
+     */
+    public long getContextCount(long context) {
+        Long count = contexts.get(context);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Return the number of triples with the given predicate and object, or -1 in case the pair is not tracked.
+     */
+    public long getPairCount(long predicate, long object) {
+        Long count = pairs.get(new PredicateObject(predicate, object));
+        return count != null ? count : -1;
+    }
+
+    /**
+     * Estimate the number of triples matching a triple pattern. Nodes that are null are treated as variables;
+     * nodes that have not been persisted do not match any triples.
+     *
+     * @return the estimated number of matching triples; at least 1 in case any triples might match
+     */
+    public double getCardinality(KiWiNode subject, KiWiNode predicate, KiWiNode object, KiWiNode context) {
+        if(isTransient(subject) || isTransient(predicate) || isTransient(object) || isTransient(context)) {
+            return 0;
+        }
+
+        PredicateStatistics stats = predicate != null ? predicates.get(predicate.getId()) : all;
+        if(stats == null || stats.getCount() == 0) {
+            return 0;
+        }
+
+        double cardinality = stats.getCount();
+
+        if(object != null) {
+            long pairCount = predicate != null ? getPairCount(predicate.getId(), object.getId()) : -1;
+            if(pairCount >= 0) {
+                cardinality = pairCount;
+            } else {
+                cardinality /= stats.getDistinctObjects();
+            }
+        }
+
+        if(subject != null) {
+            cardinality /= stats.getDistinctSubjects();
+        }
+
+        if(context != null) {
+            long contextCount = getContextCount(context.getId());
+            if(contextCount == 0) {
+                return 0;
+            }
+            cardinality *= (double) contextCount / Math.max(1, all.getCount());
+        }
+
+        return Math.max(1.0, cardinality);
+    }
+
+    private static boolean isTransient(KiWiNode node) {
+        return node != null && node.getId() < 0;
+    }
+
+    /**
+     * Load the statistics from the metadata table.
+     *
+     * @return true in case statistics have been found
+     */
+    private boolean load() throws SQLException {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            Map<String,String> metadata = connection.listMetadata(KEY_PREFIX);
+            connection.commit();
+
+            if(!metadata.containsKey(KEY_INIT)) {
+                return false;
+            }
+
+            lock.writeLock().lock();
+            try {
+                clearEntries();
+                dirty.clear();
+                for(Map.Entry<String,String> entry : metadata.entrySet()) {
+                    String key = entry.getKey();
+                    try {
+                        if(KEY_ALL.equals(key)) {
+                            all = PredicateStatistics.decode(entry.getValue());
+                        } else if(key.startsWith(KEY_PREDICATE)) {
+                            predicates.put(decodeId(key.substring(KEY_PREDICATE.length())), PredicateStatistics.decode(entry.getValue()));
+                        } else if(key.startsWith(KEY_CONTEXT)) {
+                            contexts.put(decodeId(key.substring(KEY_CONTEXT.length())), Long.parseLong(entry.getValue()));
+                        } else if(key.startsWith(KEY_PAIR)) {
+                            String[] parts = entry.getValue().split(",");
+                            PredicateObject pair = new PredicateObject(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                            pairs.put(pair, Long.parseLong(parts[2]));
+
+                            // entries written by earlier versions are keyed by a hash of the two ids; move them
+                            if(!key.equals(pairKey(pair))) {
+                                dirty.add(key);
+                                dirty.add(pairKey(pair));
+                            }
+                        }
+                    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+                        log.warn("ignoring invalid triple statistics entry {}: {}", key, ex.getMessage());
+                    }
+                }
+                available = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            log.info("loaded triple statistics ({} triples, {} predicates, {} contexts)", all.getCount(), predicates.size(), contexts.size());
+            return true;
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Recompute all statistics from the triples table and write them to the metadata table. This is an expensive
+     * operation that scans all triples.
+     */
+    public synchronized void rebuild() throws SQLException {
+        long start = System.currentTimeMillis();
+
+        PredicateStatistics newAll = new PredicateStatistics();
+        Map<Long,PredicateStatistics> newPredicates = new HashMap<>();
+        Map<Long,Long> newContexts = new HashMap<>();
+        Map<PredicateObject,Long> newPairs = new HashMap<>();
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            PreparedStatement queryTriples = connection.getPreparedStatement("stats.triples");
+            synchronized (queryTriples) {
+                queryTriples.setFetchSize(persistence.getConfiguration().getCursorSize());
+                ResultSet result = queryTriples.executeQuery();
+                try {
+                    while(result.next()) {
+                        long subject   = result.getLong(1);
+                        long predicate = result.getLong(2);
+                        long object    = result.getLong(3);
+                        long context   = result.getLong(4);
+                        boolean hasContext = !result.wasNull();
+
+                        newAll.add(subject, object);
+
+                        PredicateStatistics p = newPredicates.get(predicate);
+                        if(p == null) {
+                            p = new PredicateStatistics();
+                            newPredicates.put(predicate, p);
+                        }
+                        p.add(subject, object);
+
+                        if(hasContext) {
+                            Long count = newContexts.get(context);
+                            newContexts.put(context, count != null ? count + 1 : 1);
+                        }
+                    }
+                } finally {
+                    result.close();
+                }
+            }
+
+            PreparedStatement queryPairs = connection.getPreparedStatement("stats.pairs");
+            synchronized (queryPairs) {
+                queryPairs.setInt(1, MAX_PAIRS);
+                ResultSet result = queryPairs.executeQuery();
+                try {
+                    while(result.next()) {
+                        newPairs.put(new PredicateObject(result.getLong(1), result.getLong(2)), result.getLong(3));
+                    }
+                } finally {
+                    result.close();
+                }
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.close();
+        }
+
+        lock.writeLock().lock();
+        try {
+            // remove the entries of the old statistics from the metadata table, unless they are overwritten below
+            clearEntries();
+
+            all = newAll;
+            dirty.add(KEY_ALL);
+            for(Map.Entry<Long,PredicateStatistics> entry : newPredicates.entrySet()) {
+                predicates.put(entry.getKey(), entry.getValue());
+                dirty.add(KEY_PREDICATE + encodeId(entry.getKey()));
+            }
+            for(Map.Entry<Long,Long> entry : newContexts.entrySet()) {
+                contexts.put(entry.getKey(), entry.getValue());
+                dirty.add(KEY_CONTEXT + encodeId(entry.getKey()));
+            }
+            for(Map.Entry<PredicateObject,Long> entry : newPairs.entrySet()) {
+                pairs.put(entry.getKey(), entry.getValue());
+                dirty.add(pairKey(entry.getKey()));
+            }
+            dirty.add(KEY_INIT);
+
+            available = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("computed triple statistics in {} ms ({} triples, {} predicates, {} contexts)", System.currentTimeMillis() - start, newAll.getCount(), newPredicates.size(), newContexts.size());
+
+        flush();
+    }
+
+    /**
+     * Remove all entries, marking them for removal from the metadata table.
+     */
+    private void clearEntries() {
+        for(Long id : predicates.keySet()) {
+            dirty.add(KEY_PREDICATE + encodeId(id));
+        }
+        for(Long id : contexts.keySet()) {
+            dirty.add(KEY_CONTEXT + encodeId(id));
+        }
+        for(PredicateObject pair : pairs.keySet()) {
+            dirty.add(pairKey(pair));
+        }
+        all = new PredicateStatistics();
+        dirty.add(KEY_ALL);
+        predicates.clear();
+        contexts.clear();
+        pairs.clear();
+    }
+
+    /**
+     * Write all changed statistics to the metadata table.
+     */
+    public synchronized void flush() throws SQLException {
+        if(dirty.isEmpty()) {
+            return;
+        }
+
+        // take a snapshot of the changed keys and their current values
+        Map<String,String> values = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            for(String key : dirty) {
+                values.put(key, encodeEntry(key));
+            }
+            dirty.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            for(Map.Entry<String,String> entry : values.entrySet()) {
+                if(entry.getValue() != null) {
+                    connection.setMetadata(entry.getKey(), entry.getValue());
+                } else {
+                    connection.removeMetadata(entry.getKey());
+                }
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            // try again with the next flush
+            dirty.addAll(values.keySet());
+            throw ex;
+        } finally {
+            connection.close();
+        }
+
+        log.debug("wrote {} triple statistics entries to database", values.size());
+    }
+
+    /**
+     * Return the current value of the metadata entry with the given key, or null if the entry should be removed.
+     */
+    private String encodeEntry(String key) {
+        if(KEY_INIT.equals(key)) {
+            return Long.toString(System.currentTimeMillis());
+        } else if(KEY_ALL.equals(key)) {
+            return all.encode();
+        } else if(key.startsWith(KEY_PREDICATE)) {
+            PredicateStatistics p = predicates.get(decodeId(key.substring(KEY_PREDICATE.length())));
+            return p != null ? p.encode() : null;
+        } else if(key.startsWith(KEY_CONTEXT)) {
+            Long count = contexts.get(decodeId(key.substring(KEY_CONTEXT.length())));
+            return count != null ? count.toString() : null;
+        } else if(key.startsWith(KEY_PAIR)) {
+            PredicateObject pair = decodePairKey(key);
+            Long count = pair != null ? pairs.get(pair) : null;
+            return count != null ? pair.predicate + "," + pair.object + "," + count : null;
+        } else {
+            return null;
+        }
+    }
+
+    private static String encodeId(long id) {
+        return Long.toString(id, 36);
+    }
+
+    /**
+     * Return the metadata key of a (predicate, object) pair, built from the two node ids so that keys never collide.
+     */
+    private static String pairKey(PredicateObject pair) {
+        return KEY_PAIR + encodeId(pair.predicate) + "." + encodeId(pair.object);
+    }
+
+    /**
+     * Return the pair of a metadata key built by pairKey(), or null for keys of earlier versions.
+     */
+    private static PredicateObject decodePairKey(String key) {
+        int separator = key.indexOf('.', KEY_PAIR.length());
+        if(separator < 0) {
+            return null;
+        }
+        return new PredicateObject(decodeId(key.substring(KEY_PAIR.length(), separator)), decodeId(key.substring(separator + 1)));
+    }
+
+    private static long decodeId(String encoded) {
+        return Long.parseLong(encoded, 36);
+    }
+
+    /**
+     * Forget all statistics without writing anything to the database, e.g. because the database has been dropped.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearEntries();
+            dirty.clear();
+            available = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stop the background thread and write all pending changes to the database.
+     */
+    public void shutdown() {
+        if(executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+
+            try {
+                flush();
+            } catch (SQLException e) {
+                log.warn("could not write triple statistics to database: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.statistics;
+
+/**
+ * Key for the (predicate, object) triple counts, consisting of the two node ids.
+ */
+class PredicateObject {
+
+    final long predicate;
+
+    final long object;
+
+    PredicateObject(long predicate, long object) {
+        this.predicate = predicate;
+        this.object = object;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PredicateObject that = (PredicateObject) o;
+
+        return predicate == that.predicate && object == that.object;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (predicate ^ (predicate >>> 32));
+        result = 31 * result + (int) (object ^ (object >>> 32));
+        return result;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.statistics;
+
+/**
+ * The statistics kept for a single predicate (or for all triples): the number of triples and sketches estimating the
+ * number of distinct subjects and objects.
+ */
+public class PredicateStatistics {
+
+    private long count;
+
+    private HyperLogLog subjects;
+
+    private HyperLogLog objects;
+
+    public PredicateStatistics() {
+        this(0, new HyperLogLog(), new HyperLogLog());
+    }
+
+    private PredicateStatistics(long count, HyperLogLog subjects, HyperLogLog objects) {
+        this.count = count;
+        this.subjects = subjects;
+        this.objects = objects;
+    }
+
+    public synchronized void add(long subject, long object) {
+        count++;
+        subjects.offer(subject);
+        objects.offer(object);
+    }
+
+    /**
+     * Add the triple count and distinct values of the other statistics to this statistics. The triple count of the
+     * other statistics may be negative (i.e. triples have been removed).
+     */
+    public synchronized void merge(PredicateStatistics other) {
+        count = Math.max(0, count + other.getCount());
+        subjects.merge(other.subjects);
+        objects.merge(other.objects);
+    }
+
+    public synchronized void remove(long triples) {
+        count -= triples;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimated number of distinct subjects; never larger than the number of triples.
+     */
+    public synchronized long getDistinctSubjects() {
+        return Math.max(1, Math.min(count, subjects.cardinality()));
+    }
+
+    /**
+     * Estimated number of distinct objects; never larger than the number of triples.
+     */
+    public synchronized long getDistinctObjects() {
+        return Math.max(1, Math.min(count, objects.cardinality()));
+    }
+
+    /**
+     * Encode the statistics as string suitable for the metadata table.
+     */
+    public synchronized String encode() {
+        return count + ";" + subjects.encode() + ";" + objects.encode();
+    }
+
+    /**
+     * Decode the statistics previously encoded with encode().
+     *
+     * @throws IllegalArgumentException in case the string is not valid
+     */
+    public static PredicateStatistics decode(String encoded) {
+        String[] parts = encoded.split(";");
+        if(parts.length != 3) {
+            throw new IllegalArgumentException("invalid predicate statistics: " + encoded);
+        }
+        return new PredicateStatistics(Long.parseLong(parts[0]), HyperLogLog.decode(parts[1]), HyperLogLog.decode(parts[2]));
+    }
+}
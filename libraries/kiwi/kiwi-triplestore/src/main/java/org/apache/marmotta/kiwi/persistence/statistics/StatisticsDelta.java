@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.statistics;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects the changes to the triple statistics made in a single transaction of a KiWiConnection. The changes are
+ * applied to the shared KiWiStatistics when the transaction commits and discarded on rollback.
+ */
+public class StatisticsDelta {
+
+    private KiWiStatistics statistics;
+
+    private PredicateStatistics all;
+
+    private Map<Long,PredicateStatistics> predicates;
+
+    private Map<Long,Long> contexts;
+
+    private Map<PredicateObject,Long> pairs;
+
+    // true in case all triples have been removed in this transaction
+    private boolean cleared;
+
+    StatisticsDelta(KiWiStatistics statistics) {
+        this.statistics = statistics;
+        reset();
+    }
+
+    /**
+     * Record the addition of the (persisted) triple passed as argument.
+     */
+    public synchronized void addTriple(KiWiTriple triple) {
+        long predicate = triple.getPredicate().getId();
+        long object    = triple.getObject().getId();
+
+        all.add(triple.getSubject().getId(), object);
+        getPredicate(predicate).add(triple.getSubject().getId(), object);
+        if(triple.getContext() != null) {
+            addContext(triple.getContext().getId(), 1);
+        }
+        addPair(new PredicateObject(predicate, object), 1);
+    }
+
+    /**
+     * Record the removal of the (persisted) triple passed as argument.
+     */
+    public synchronized void removeTriple(KiWiTriple triple) {
+        removeTriples(triple.getPredicate().getId(), triple.getObject().getId(), triple.getContext() != null ? triple.getContext().getId() : null, 1);
+    }
+
+    /**
+     * Record the removal of a number of triples with the same predicate, object and context (e.g. when deleting a
+     * whole context).
+     */
+    public synchronized void removeTriples(long predicate, long object, Long context, long count) {
+        all.remove(count);
+        getPredicate(predicate).remove(count);
+        if(context != null) {
+            addContext(context, -count);
+        }
+        addPair(new PredicateObject(predicate, object), -count);
+    }
+
+    /**
+     * Record the removal of all triples in the triple store. All changes recorded before are discarded.
+     */
+    public synchronized void removeAll() {
+        reset();
+        cleared = true;
+    }
+
+    public synchronized boolean isEmpty() {
+        return !cleared && predicates.isEmpty() && contexts.isEmpty();
+    }
+
+    /**
+     * Discard all changes, e.g. after the transaction has been committed or rolled back.
+     */
+    public synchronized void reset() {
+        all        = new PredicateStatistics();
+        predicates = new HashMap<>();
+        contexts   = new HashMap<>();
+        pairs      = new HashMap<>();
+        cleared    = false;
+    }
+
+    private PredicateStatistics getPredicate(long id) {
+        PredicateStatistics p = predicates.get(id);
+        if(p == null) {
+            p = new PredicateStatistics();
+            predicates.put(id, p);
+        }
+        return p;
+    }
+
+    private void addContext(long id, long count) {
+        Long current = contexts.get(id);
+        contexts.put(id, current != null ? current + count : count);
+    }
+
+    private void addPair(PredicateObject pair, long count) {
+        Long current = pairs.get(pair);
+        if(current != null) {
+            pairs.put(pair, current + count);
+        } else if(pairs.size() < KiWiStatistics.MAX_PAIRS && statistics.acceptsPair(pair)) {
+            pairs.put(pair, count);
+        }
+    }
+
+    synchronized boolean isCleared() {
+        return cleared;
+    }
+
+    synchronized PredicateStatistics getAll() {
+        return all;
+    }
+
+    synchronized Map<Long, PredicateStatistics> getPredicates() {
+        return predicates;
+    }
+
+    synchronized Map<Long, Long> getContexts() {
+        return contexts;
+    }
+
+    synchronized Map<PredicateObject, Long> getPairs() {
+        return pairs;
+    }
+}
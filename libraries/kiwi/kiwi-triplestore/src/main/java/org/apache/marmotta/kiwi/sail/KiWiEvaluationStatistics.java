@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sail;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.persistence.statistics.KiWiStatistics;
+import org.openrdf.model.Value;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.algebra.evaluation.impl.EvaluationStatistics;
+
+/**
+ * Evaluation statistics estimating the cardinality of triple patterns from the triple statistics maintained by the
+ * KiWi persistence (per predicate, context and frequent (predicate, object) pair). The QueryJoinOptimizer uses these
+ * estimates to order the joins of a query, both for the in-memory evaluation of the KiWiSailConnection and for the
+ * KiWi SPARQL module, where the SQLBuilder translates patterns in the order they appear in the optimized join tree.
+ * <p/>
+ * Constants of the patterns are only looked up, never created, so query planning does not write to the database;
+ * a pattern with a constant that has never been stored is estimated to match no triples.
+ * <p/>
+ * As long as no statistics are available (e.g. while they are computed after the first startup), the default
+ * Sesame heuristics are used.
+ *
+ * @author Sebastian Schaffert (sschaffert@apache.org)
+ */
+public class KiWiEvaluationStatistics extends EvaluationStatistics {
+
+    private KiWiStatistics statistics;
+
+    private KiWiValueFactory valueFactory;
+
+    public KiWiEvaluationStatistics(KiWiStatistics statistics, KiWiValueFactory valueFactory) {
+        this.statistics = statistics;
+        this.valueFactory = valueFactory;
+    }
+
+    @Override
+    protected CardinalityCalculator createCardinalityCalculator() {
+        return new KiWiCardinalityCalculator();
+    }
+
+    protected class KiWiCardinalityCalculator extends CardinalityCalculator {
+
+        @Override
+        protected double getCardinality(StatementPattern sp) {
+            if(statistics != null && statistics.isAvailable()) {
+                Var[] vars = { sp.getSubjectVar(), sp.getPredicateVar(), sp.getObjectVar(), sp.getContextVar() };
+                KiWiNode[] nodes = new KiWiNode[vars.length];
+                for(int i = 0; i < vars.length; i++) {
+                    Value value = getConstantValue(vars[i]);
+                    if(value != null) {
+                        nodes[i] = valueFactory.lookup(value);
+
+                        // a constant that has never been stored cannot match any triple
+                        if(nodes[i] == null) {
+                            return 0;
+                        }
+                    }
+                }
+                return statistics.getCardinality(nodes[0], nodes[1], nodes[2], nodes[3]);
+            } else {
+                return super.getCardinality(sp);
+            }
+        }
+
+        protected Value getConstantValue(Var var) {
+            return (var != null) ? var.getValue() : null;
+        }
+    }
+
+}
@@ -31,9 +31,7 @@ import org.openrdf.query.Dataset;
 import org.openrdf.query.QueryEvaluationException;
 import org.openrdf.query.QueryInterruptedException;
 import org.openrdf.query.algebra.QueryRoot;
-import org.openrdf.query.algebra.StatementPattern;
 import org.openrdf.query.algebra.TupleExpr;
-import org.openrdf.query.algebra.Var;
 import org.openrdf.query.algebra.evaluation.EvaluationStrategy;
 import org.openrdf.query.algebra.evaluation.TripleSource;
 import org.openrdf.query.algebra.evaluation.impl.*;
@@ -216,7 +214,7 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
             new DisjunctiveConstraintOptimizer().optimize(tupleExpr, dataset, bindings);
             new SameTermFilterOptimizer().optimize(tupleExpr, dataset, bindings);
             new QueryModelNormalizer().optimize(tupleExpr, dataset, bindings);
-            new QueryJoinOptimizer(new KiWiEvaluationStatistics()).optimize(tupleExpr, dataset, bindings);
+            new QueryJoinOptimizer(new KiWiEvaluationStatistics(store.getPersistence().getStatistics(), valueFactory)).optimize(tupleExpr, dataset, bindings);
             new IterativeEvaluationOptimizer().optimize(tupleExpr, dataset, bindings);
             new FilterOptimizer().optimize(tupleExpr, dataset, bindings);
             new OrderLimitOptimizer().optimize(tupleExpr, dataset, bindings);
@@ -727,27 +725,4 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
         // handled by garbage collection
     }
 
-    protected static class KiWiEvaluationStatistics extends EvaluationStatistics {
-
-        public KiWiEvaluationStatistics() {
-        }
-
-        @Override
-        protected CardinalityCalculator createCardinalityCalculator() {
-            return new KiWiCardinalityCalculator();
-        }
-
-        protected class KiWiCardinalityCalculator extends CardinalityCalculator {
-
-            @Override
-            protected double getCardinality(StatementPattern sp) {
-                return super.getCardinality(sp);
-            }
-
-            protected Value getConstantValue(Var var) {
-                return (var != null) ? var.getValue() : null;
-            }
-        }
-    }
-
 }
@@ -17,6 +17,7 @@
  */
 package org.apache.marmotta.kiwi.sail;
 
+import com.google.common.util.concurrent.Striped;
 import org.apache.marmotta.commons.sesame.model.LiteralCommons;
 import org.apache.marmotta.commons.sesame.model.Namespaces;
 import org.apache.marmotta.commons.sesame.tripletable.IntArray;
@@ -36,6 +37,7 @@ import org.slf4j.LoggerFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Add file description here!
@@ -46,6 +48,12 @@ public class KiWiValueFactory implements ValueFactory {
 
     private static Logger log = LoggerFactory.getLogger(KiWiValueFactory.class);
 
+    /**
+     * Number of lock stripes guarding the creation of new nodes; two nodes only contend if their values
+     * hash to the same stripe
+     */
+    private static final int NODE_LOCK_STRIPES = 256;
+
     private Random anonIdGenerator;
 
 
@@ -55,8 +63,12 @@ public class KiWiValueFactory implements ValueFactory {
 
     private String defaultContext;
 
+    // insert guards for new nodes, striped by node value
+    private Striped<Lock> nodeLocks;
+
     public KiWiValueFactory(KiWiStore store, String defaultContext) {
         anonIdGenerator = new Random();
+        nodeLocks       = Striped.lock(NODE_LOCK_STRIPES);
 
         switch (store.getPersistence().getConfiguration().getRegistryStrategy()) {
             case DATABASE:
@@ -125,10 +137,7 @@ public class KiWiValueFactory implements ValueFactory {
             KiWiUriResource result = connection.loadUriResource(uri);
 
             if(result == null) {
-                result = new KiWiUriResource(uri);
-
-                connection.storeNode(result);
-
+                result = storeNodeIfAbsent(connection, new KiWiUriResource(uri));
             }
             if(result.getId() < 0) {
                 log.error("node ID is null!");
@@ -144,6 +153,32 @@ public class KiWiValueFactory implements ValueFactory {
 
     }
 
+    /**
+     * Store a new node, unless the same node has been stored by a concurrent thread since it was looked up. Only the
+     * creation of nodes with the same value is serialized (up to hash collisions of the lock stripes); lookups of
+     * existing nodes never take a lock.
+     *
+     * @param connection the connection to store the node with
+     * @param node       the new node, not yet persisted
+     * @return the persisted node with the same value; either the node passed as argument or the concurrently stored one
+     */
+    @SuppressWarnings("unchecked")
+    private <N extends KiWiNode> N storeNodeIfAbsent(KiWiConnection connection, N node) throws SQLException {
+        Lock lock = nodeLocks.get(node);
+        lock.lock();
+        try {
+            KiWiNode cached = connection.loadCachedNode(node);
+            if(cached != null && cached.getId() >= 0 && node.getClass().isInstance(cached)) {
+                return (N) cached;
+            }
+
+            connection.storeNode(node);
+            return node;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Creates a new URI from the supplied namespace and local name. Calling this
      * method is funtionally equivalent to calling
@@ -178,9 +213,7 @@ public class KiWiValueFactory implements ValueFactory {
             KiWiAnonResource result = connection.loadAnonResource(nodeID);
 
             if(result == null) {
-                result = new KiWiAnonResource(nodeID);
-
-                connection.storeNode(result);
+                result = storeNodeIfAbsent(connection, new KiWiAnonResource(nodeID));
             }
             if(result.getId() < 0) {
                 log.error("node ID is null!");
@@ -278,6 +311,14 @@ public class KiWiValueFactory implements ValueFactory {
      * @return
      */
     private <T> KiWiLiteral createLiteral(T value, String lang, String type) {
+        return createLiteral(value, lang, type, true);
+    }
+
+    /**
+     * Internal method for loading and, if create is true, creating a literal. In case create is false, nothing is
+     * written to the database and null is returned if the literal (or its datatype) does not exist yet.
+     */
+    private <T> KiWiLiteral createLiteral(T value, String lang, String type, boolean create) {
         Locale locale;
         if(lang != null) {
             try {
@@ -295,10 +336,19 @@ public class KiWiValueFactory implements ValueFactory {
 
         KiWiLiteral result;
 
-        final KiWiUriResource rtype = type==null ? null: (KiWiUriResource)createURI(type);
-
         final KiWiConnection connection = aqcuireConnection();
         try {
+            final KiWiUriResource rtype;
+            if(type == null) {
+                rtype = null;
+            } else if(create) {
+                rtype = (KiWiUriResource)createURI(type);
+            } else {
+                rtype = connection.loadUriResource(type);
+                if(rtype == null) {
+                    return null;
+                }
+            }
 
             try {
                 // differentiate between the different types of the value
@@ -387,7 +437,10 @@ public class KiWiValueFactory implements ValueFactory {
             } catch(IllegalArgumentException ex) {
                 // malformed number or date
                 log.warn("malformed argument for typed literal of type {}: {}", rtype.stringValue(), value);
-                KiWiUriResource mytype = (KiWiUriResource)createURI(Namespaces.NS_XSD+"string");
+                KiWiUriResource mytype = create ? (KiWiUriResource)createURI(Namespaces.NS_XSD+"string") : connection.loadUriResource(Namespaces.NS_XSD+"string");
+                if(mytype == null) {
+                    return null;
+                }
 
                 result = connection.loadLiteral(value.toString(), lang, mytype);
 
@@ -398,7 +451,10 @@ public class KiWiValueFactory implements ValueFactory {
             }
 
             if(result.getId() < 0) {
-                connection.storeNode(result);
+                if(!create) {
+                    return null;
+                }
+                result = storeNodeIfAbsent(connection, result);
             }
 
             return result;
@@ -642,6 +698,42 @@ public class KiWiValueFactory implements ValueFactory {
     }
 
 
+    /**
+     * Look up the node with the same value as the value passed as argument. In contrast to {@link #convert(Value)},
+     * the node is not created in case it does not exist yet, so this method never writes to the database (e.g. when
+     * estimating the cardinality of query patterns).
+     *
+     * @param value the value to look up
+     * @return the stored node with the same value, or null if no such node exists
+     */
+    public KiWiNode lookup(Value value) {
+        if(value == null) {
+            return null;
+        } else if(value instanceof KiWiNode && ((KiWiNode) value).getId() >= 0) {
+            return (KiWiNode)value;
+        } else if(value instanceof Literal) {
+            Literal l = (Literal)value;
+            return createLiteral(l.getLabel(),l.getLanguage(), l.getDatatype() != null ? l.getDatatype().stringValue(): null, false);
+        }
+
+        KiWiConnection connection = aqcuireConnection();
+        try {
+            if(value instanceof URI) {
+                return connection.loadUriResource(value.stringValue());
+            } else if(value instanceof BNode) {
+                return connection.loadAnonResource(value.stringValue());
+            } else {
+                throw new IllegalArgumentException("the value passed as argument does not have the correct type");
+            }
+        } catch (SQLException e) {
+            log.error("database error, could not look up node",e);
+            throw new IllegalStateException("database error, could not look up node",e);
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+
     public void close() {
 
     }
@@ -54,7 +54,7 @@ CREATE TABLE namespaces (
 -- A table for storing metadata about the current database, e.g. version numbers for each table
 CREATE TABLE metadata (
   id        integer       NOT NULL AUTO_INCREMENT,
-  mkey      varchar(16)   NOT NULL,
+  mkey      varchar(64)   NOT NULL,
   mvalue    varchar(256)  NOT NULL,
   PRIMARY KEY(id)
 ) CHARACTER SET utf8 COLLATE utf8_bin  ENGINE=InnoDB;
@@ -81,5 +81,5 @@ CREATE INDEX idx_namespaces_uri ON namespaces(uri);
 CREATE INDEX idx_namespaces_prefix ON namespaces(prefix);
 
 -- insert initial metadata
-INSERT INTO metadata(mkey,mvalue) VALUES ('version','4');
+INSERT INTO metadata(mkey,mvalue) VALUES ('version','5');
 INSERT INTO metadata(mkey,mvalue) VALUES ('created',DATE_FORMAT(now(),'%Y-%m-%d %H:%i:%s') );
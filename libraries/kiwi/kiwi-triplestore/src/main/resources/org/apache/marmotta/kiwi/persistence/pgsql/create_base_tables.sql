@@ -58,7 +58,7 @@ CREATE TABLE namespaces (
 -- A table for storing metadata about the current database, e.g. version numbers for each table
 CREATE TABLE metadata (
   id        serial        NOT NULL,
-  mkey      varchar(16)   NOT NULL,
+  mkey      varchar(64)   NOT NULL,
   mvalue    varchar(256)  NOT NULL,
   PRIMARY KEY(id)
 );
@@ -103,5 +103,5 @@ DO INSTEAD NOTHING;
 -- a function for cleaning up table rows without incoming references
 
 -- insert initial metadata
-INSERT INTO metadata(mkey,mvalue) VALUES ('version','4');
+INSERT INTO metadata(mkey,mvalue) VALUES ('version','5');
 INSERT INTO metadata(mkey,mvalue) VALUES ('created',to_char(now(),'yyyy-MM-DD HH:mm:ss TZ') );
\ No newline at end of file
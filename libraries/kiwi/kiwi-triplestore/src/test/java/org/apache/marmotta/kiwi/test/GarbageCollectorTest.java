@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.jmx.KiWiGarbageCollectorMBean;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Test the incremental, partitioned garbage collection of deleted triples and unreferenced nodes.
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class GarbageCollectorTest {
+
+    private KiWiPersistence persistence;
+
+    private final KiWiConfiguration kiwiConfig;
+
+    // the configuration is shared with other tests, its values are restored after each test
+    private int gcBatchSize;
+
+    private int gcThreads;
+
+    public GarbageCollectorTest(KiWiConfiguration kiwiConfig) {
+        this.kiwiConfig = kiwiConfig;
+    }
+
+    @Before
+    public void initDatabase() throws SQLException {
+        gcBatchSize = kiwiConfig.getGcBatchSize();
+        gcThreads   = kiwiConfig.getGcThreads();
+
+        // small batches in several partitions, so that the collection needs many transactions
+        kiwiConfig.setGcBatchSize(7);
+        kiwiConfig.setGcThreads(3);
+
+        persistence = new KiWiPersistence(kiwiConfig);
+        persistence.initialise();
+        persistence.initDatabase();
+    }
+
+    @After
+    public void dropDatabase() throws SQLException {
+        try {
+            persistence.dropDatabase();
+            persistence.shutdown();
+        } finally {
+            kiwiConfig.setGcBatchSize(gcBatchSize);
+            kiwiConfig.setGcThreads(gcThreads);
+        }
+    }
+
+    @Test
+    public void testGarbageCollect() throws SQLException {
+        KiWiUriResource type   = new KiWiUriResource("http://localhost/type");
+        KiWiUriResource name   = new KiWiUriResource("http://localhost/name");
+        KiWiUriResource person = new KiWiUriResource("http://localhost/Person");
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            connection.storeNode(type);
+            connection.storeNode(name);
+            connection.storeNode(person);
+
+            // 110 persons with a type and a name each; the names are deleted afterwards
+            for(int i=0; i<110; i++) {
+                KiWiUriResource subject = new KiWiUriResource("http://localhost/" + RandomStringUtils.randomAlphanumeric(8));
+                KiWiUriResource value   = new KiWiUriResource("http://localhost/" + RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(subject);
+                connection.storeNode(value);
+
+                connection.storeTriple(new KiWiTriple(subject, type, person, null));
+
+                KiWiTriple nameTriple = new KiWiTriple(subject, name, value, null);
+                connection.storeTriple(nameTriple);
+                connection.commit();
+
+                connection.deleteTriple(nameTriple);
+            }
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+        Assert.assertEquals(220, count("SELECT count(*) FROM triples"));
+
+        persistence.garbageCollect();
+
+        KiWiGarbageCollectorMBean metrics = persistence.getGarbageCollectorMetrics();
+        Assert.assertFalse(metrics.isRunning());
+        Assert.assertEquals(1, metrics.getRuns());
+        Assert.assertEquals(110, metrics.getReclaimedTriples());
+        Assert.assertTrue(metrics.getBatches() > 3);
+        Assert.assertEquals(1.0, metrics.getProgress(), 0.001);
+
+        // the name values and the name property are no longer referenced
+        Assert.assertTrue(metrics.getReclaimedNodes() >= 111);
+        Assert.assertEquals(metrics.getReclaimedTriples() + metrics.getReclaimedNodes(), metrics.getLastReclaimed());
+
+        Assert.assertEquals(110, count("SELECT count(*) FROM triples"));
+        Assert.assertEquals(0, count("SELECT count(*) FROM triples WHERE deleted = true"));
+        Assert.assertEquals(112, count("SELECT count(*) FROM nodes"));
+    }
+
+    private long count(String query) throws SQLException {
+        Connection con = persistence.getJDBCConnection();
+        try(PreparedStatement stmt = con.prepareStatement(query); ResultSet result = stmt.executeQuery()) {
+            result.next();
+            return result.getLong(1);
+        } finally {
+            persistence.releaseJDBCConnection(con);
+        }
+    }
+}
@@ -23,7 +23,9 @@ import info.aduna.iteration.Iterations;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.marmotta.commons.sesame.repository.ResourceUtils;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
 import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
 import org.hamcrest.CoreMatchers;
 import org.junit.After;
@@ -32,6 +34,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.openrdf.model.*;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
 import org.openrdf.query.MalformedQueryException;
 import org.openrdf.query.QueryLanguage;
 import org.openrdf.query.Update;
@@ -879,4 +883,37 @@ public class RepositoryTest {
 
     }
 
+    /**
+     * Looking up values (e.g. when estimating the cardinality of query patterns) must not store new nodes in the
+     * database.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLookupUnknownValues() throws Exception {
+        KiWiValueFactory valueFactory = (KiWiValueFactory) store.getValueFactory();
+
+        URI uri = new URIImpl("http://localhost/resource/" + RandomStringUtils.randomAlphanumeric(8));
+        URI type = new URIImpl("http://localhost/type/" + RandomStringUtils.randomAlphanumeric(8));
+        Literal literal = new LiteralImpl(RandomStringUtils.randomAlphanumeric(8), type);
+
+        Assert.assertNull(valueFactory.lookup(uri));
+        Assert.assertNull(valueFactory.lookup(literal));
+
+        KiWiConnection connection = store.getPersistence().getConnection();
+        try {
+            Assert.assertNull(connection.loadUriResource(uri.stringValue()));
+            Assert.assertNull(connection.loadUriResource(type.stringValue()));
+        } finally {
+            connection.close();
+        }
+
+        // once created, the nodes are found
+        Resource created = valueFactory.createURI(uri.stringValue());
+        Assert.assertEquals(created, valueFactory.lookup(uri));
+
+        Literal createdLiteral = valueFactory.createLiteral(literal.getLabel(), type);
+        Assert.assertEquals(createdLiteral, valueFactory.lookup(literal));
+    }
+
 }
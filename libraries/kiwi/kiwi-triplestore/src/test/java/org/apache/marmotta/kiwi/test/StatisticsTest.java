@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+import org.apache.marmotta.kiwi.persistence.statistics.KiWiStatistics;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test the incremental maintenance, persistence and cardinality estimation of the triple statistics.
+ *
+ * @see org.apache.marmotta.kiwi.persistence.statistics.KiWiStatistics
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class StatisticsTest {
+
+    private KiWiPersistence persistence;
+
+    private final KiWiConfiguration kiwiConfig;
+
+    private KiWiUriResource type, name, person, document, context;
+
+    public StatisticsTest(KiWiConfiguration kiwiConfig) {
+        this.kiwiConfig = kiwiConfig;
+    }
+
+    @Before
+    public void initDatabase() throws SQLException, InterruptedException {
+        persistence = new KiWiPersistence(kiwiConfig);
+        persistence.initialise();
+        persistence.initDatabase();
+
+        // wait until the initial statistics have been computed in the background
+        for(int i=0; i<100 && !persistence.getStatistics().isAvailable(); i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(persistence.getStatistics().isAvailable());
+
+        type     = new KiWiUriResource("http://localhost/type");
+        name     = new KiWiUriResource("http://localhost/name");
+        person   = new KiWiUriResource("http://localhost/Person");
+        document = new KiWiUriResource("http://localhost/Document");
+        context  = new KiWiUriResource("http://localhost/context");
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            for(KiWiUriResource r : new KiWiUriResource[] { type, name, person, document, context }) {
+                connection.storeNode(r);
+            }
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @After
+    public void dropDatabase() throws SQLException {
+        persistence.dropDatabase();
+        persistence.shutdown();
+    }
+
+    /**
+     * Store 100 persons and 10 documents, each with a name
+     */
+    private List<KiWiTriple> storeData(KiWiConnection connection) throws SQLException {
+        List<KiWiTriple> triples = new ArrayList<>();
+        for(int i=0; i<110; i++) {
+            KiWiUriResource subject = new KiWiUriResource("http://localhost/" + RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource clazz   = i < 100 ? person : document;
+            KiWiUriResource value   = new KiWiUriResource("http://localhost/" + RandomStringUtils.randomAlphanumeric(8));
+            connection.storeNode(subject);
+            connection.storeNode(value);
+
+            triples.add(new KiWiTriple(subject, type, clazz, context));
+            triples.add(new KiWiTriple(subject, name, value, context));
+        }
+        for(KiWiTriple triple : triples) {
+            connection.storeTriple(triple);
+        }
+        return triples;
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws SQLException {
+        KiWiStatistics statistics = persistence.getStatistics();
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            List<KiWiTriple> triples = storeData(connection);
+
+            // not committed yet
+            Assert.assertEquals(0, statistics.getTripleCount());
+            Assert.assertNull(statistics.getPredicateStatistics(type.getId()));
+
+            connection.commit();
+
+            Assert.assertEquals(220, statistics.getTripleCount());
+            Assert.assertEquals(110, statistics.getPredicateStatistics(type.getId()).getCount());
+            Assert.assertEquals(100, statistics.getPairCount(type.getId(), person.getId()));
+            Assert.assertEquals(10, statistics.getPairCount(type.getId(), document.getId()));
+            Assert.assertEquals(220, statistics.getContextCount(context.getId()));
+
+            // the estimates for a pattern with a rare class should be much lower than for a frequent one
+            Assert.assertEquals(10.0, statistics.getCardinality(null, type, document, null), 0.1);
+            Assert.assertEquals(100.0, statistics.getCardinality(null, type, person, null), 0.1);
+            Assert.assertTrue(statistics.getCardinality(null, name, null, null) > statistics.getCardinality(null, type, document, null));
+
+            // distinct objects of rdf:type are two classes, distinct objects of name are roughly 110 values
+            Assert.assertEquals(2, statistics.getPredicateStatistics(type.getId()).getDistinctObjects());
+            Assert.assertTrue(statistics.getPredicateStatistics(name.getId()).getDistinctObjects() > 80);
+
+            // removal of triples is only visible after commit
+            for(KiWiTriple triple : triples.subList(0, 20)) {
+                connection.deleteTriple(triple);
+            }
+            Assert.assertEquals(220, statistics.getTripleCount());
+            connection.commit();
+            Assert.assertEquals(200, statistics.getTripleCount());
+            Assert.assertEquals(100, statistics.getPredicateStatistics(type.getId()).getCount());
+
+            // rolled back changes are not counted
+            storeData(connection);
+            connection.rollback();
+            Assert.assertEquals(200, statistics.getTripleCount());
+
+            // deleting a context removes all its triples from the statistics
+            connection.deleteContext(context);
+            connection.commit();
+            Assert.assertEquals(0, statistics.getTripleCount());
+            Assert.assertEquals(0, statistics.getContextCount(context.getId()));
+            Assert.assertEquals(0.0, statistics.getCardinality(null, type, person, null), 0.1);
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testRebuild() throws SQLException {
+        KiWiStatistics statistics = persistence.getStatistics();
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            storeData(connection);
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+
+        statistics.clear();
+        Assert.assertFalse(statistics.isAvailable());
+
+        statistics.rebuild();
+        Assert.assertTrue(statistics.isAvailable());
+        Assert.assertEquals(220, statistics.getTripleCount());
+        Assert.assertEquals(110, statistics.getPredicateStatistics(type.getId()).getCount());
+        Assert.assertEquals(100, statistics.getPairCount(type.getId(), person.getId()));
+        Assert.assertEquals(220, statistics.getContextCount(context.getId()));
+    }
+
+    @Test
+    public void testPersistence() throws SQLException {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            storeData(connection);
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+        persistence.getStatistics().flush();
+
+        // the (predicate, object) pairs are stored under keys built from the two node ids
+        connection = persistence.getConnection();
+        try {
+            Map<String,String> pairs = connection.listMetadata("sto");
+            connection.commit();
+            Assert.assertEquals(2, pairs.size());
+            Assert.assertTrue(pairs.containsKey("sto" + Long.toString(type.getId(), 36) + "." + Long.toString(person.getId(), 36)));
+            Assert.assertTrue(pairs.containsKey("sto" + Long.toString(type.getId(), 36) + "." + Long.toString(document.getId(), 36)));
+        } finally {
+            connection.close();
+        }
+
+        // a second persistence on the same database loads the statistics from the metadata table
+        KiWiPersistence other = new KiWiPersistence(kiwiConfig);
+        other.initialise();
+        other.initDatabase();
+        try {
+            KiWiStatistics statistics = other.getStatistics();
+            Assert.assertTrue(statistics.isAvailable());
+            Assert.assertEquals(220, statistics.getTripleCount());
+            Assert.assertEquals(110, statistics.getPredicateStatistics(type.getId()).getCount());
+            Assert.assertEquals(2, statistics.getPredicateStatistics(type.getId()).getDistinctObjects());
+            Assert.assertEquals(100, statistics.getPairCount(type.getId(), person.getId()));
+            Assert.assertEquals(10, statistics.getPairCount(type.getId(), document.getId()));
+            Assert.assertEquals(220, statistics.getContextCount(context.getId()));
+        } finally {
+            other.shutdown();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.profile;
+
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.sail.SailException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark measuring the throughput of the KiWiValueFactory when creating URIs and literals from several
+ * threads in parallel. Each invocation picks a value out of a fixed range, so that the benchmark measures a mix
+ * of newly created nodes (insert path) and nodes found in the cache (lookup path).
+ * <p/>
+ * The benchmark runs on an in-memory H2 database by default. Run it with
+ * <pre>
+ *     java -cp target/test-classes:... org.apache.marmotta.kiwi.test.profile.ValueFactoryBenchmark
+ * </pre>
+ * and compare the results for different thread counts (-Dthreads=N).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ValueFactoryBenchmark {
+
+    /**
+     * number of distinct values per node type; values are created once and then looked up in the cache
+     */
+    @Param({"100000"})
+    public int range;
+
+    private KiWiStore store;
+
+    private ValueFactory valueFactory;
+
+    @Setup(Level.Trial)
+    public void setup() throws SailException {
+        KiWiConfiguration config = KiWiDatabaseRunner.createKiWiConfig("H2", new H2Dialect());
+
+        store = new KiWiStore(config);
+        store.setDropTablesOnShutdown(true);
+        store.initialize();
+
+        valueFactory = store.getValueFactory();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws SailException {
+        store.shutDown();
+    }
+
+    @Benchmark
+    public URI createURI() {
+        return valueFactory.createURI("http://localhost/resource/" + ThreadLocalRandom.current().nextInt(range));
+    }
+
+    @Benchmark
+    public Literal createStringLiteral() {
+        return valueFactory.createLiteral("literal " + ThreadLocalRandom.current().nextInt(range), "en");
+    }
+
+    @Benchmark
+    public Literal createIntLiteral() {
+        return valueFactory.createLiteral((long) ThreadLocalRandom.current().nextInt(range));
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ValueFactoryBenchmark.class.getSimpleName())
+                .threads(Integer.getInteger("threads", Runtime.getRuntime().availableProcessors()))
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -42,7 +42,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Add file description here!
@@ -53,6 +57,12 @@ public class KiWiVersioningConnection extends KiWiConnection {
 
     private static Logger log = LoggerFactory.getLogger(KiWiVersioningConnection.class);
 
+    /**
+     * Number of consecutive triple ids forming one id range of the versions_ranges table; must match the divisor
+     * used by the "gc.versions_ranges" and "migrate.versions_ranges" statements.
+     */
+    public static final long TRIPLE_ID_RANGE = 4096;
+
     public KiWiVersioningConnection(KiWiPersistence persistence, KiWiDialect dialect, CacheManager cacheManager) throws SQLException {
         super(persistence, dialect, cacheManager);
     }
@@ -60,8 +70,10 @@ public class KiWiVersioningConnection extends KiWiConnection {
 
     /**
      * Store a new version in the database. Will query for a new sequence ID for versions, insert a new row in the
-     * versions table, and then add join entries to the versions_added and versions_removed tables for each added
-     * and removed triple.
+     * versions table, store the ids of the added and removed triples as compressed blocks in the versions_delta table
+     * (see TripleIdCodec) and add the version to the time index of all resources occurring as subject of an added or
+     * removed triple. The id ranges of the added and removed triples are stored in the versions_ranges table, through
+     * which the garbage collector sees which deleted triples might still be referenced by a version.
      * <p/>
      * Note that this method assumes the transaction data to be already consistent, i.e. a triple is not added and
      * removed at the same time. No check for this situation is performed
@@ -93,42 +105,73 @@ public class KiWiVersioningConnection extends KiWiConnection {
             insertVersion.executeUpdate();
         }
 
-        // then add join table entries for every added triple
-        PreparedStatement insertAdded = getPreparedStatement("store.version_added");
-        synchronized (insertAdded) {
-            insertAdded.clearParameters();
-            for(Statement added : data.getAddedTriples()) {
-                if(added instanceof KiWiTriple) {
-                    insertAdded.setLong(1,data.getId());
-                    insertAdded.setLong(2,((KiWiTriple) added).getId());
-                    insertAdded.addBatch();
-                } else {
-                    // maybe we should even throw an exception here
-                    log.warn("cannot create version with statements that are not instances of KiWiTriple!");
-                }
+        // then store the added and removed triples as compressed blocks of triple ids, and collect the resources
+        // affected by the version
+        Set<Long> resources = new HashSet<>();
+        long[] added   = getTripleIds(data.getAddedTriples(), resources);
+        long[] removed = getTripleIds(data.getRemovedTriples(), resources);
+
+        PreparedStatement insertDelta = getPreparedStatement("store.version_delta");
+        synchronized (insertDelta) {
+            insertDelta.clearParameters();
+            insertDelta.setLong(1, data.getId());
+            insertDelta.setBytes(2, TripleIdCodec.encode(added));
+            insertDelta.setBytes(3, TripleIdCodec.encode(removed));
+            insertDelta.executeUpdate();
+        }
+
+        // the id ranges keep the triples of the version from being cleaned up by the garbage collector
+        Set<Long> ranges = new HashSet<>();
+        for(long id : added) {
+            ranges.add(id / TRIPLE_ID_RANGE);
+        }
+        for(long id : removed) {
+            ranges.add(id / TRIPLE_ID_RANGE);
+        }
+        PreparedStatement insertRange = getPreparedStatement("store.version_range");
+        synchronized (insertRange) {
+            insertRange.clearParameters();
+            for(Long range : ranges) {
+                insertRange.setLong(1, range);
+                insertRange.setLong(2, data.getId());
+                insertRange.addBatch();
             }
-            insertAdded.executeBatch(); // if this is a performance issue, we could also run it every 1000 inserts or so
-        }
-
-        // then add join table entries for every removed triple
-        PreparedStatement insertRemoved = getPreparedStatement("store.version_removed");
-        synchronized (insertRemoved) {
-            insertRemoved.clearParameters();
-            for(Statement added : data.getRemovedTriples()) {
-                if(added instanceof KiWiTriple) {
-                    insertRemoved.setLong(1,data.getId());
-                    insertRemoved.setLong(2,((KiWiTriple) added).getId());
-                    insertRemoved.addBatch();
-                } else {
-                    // maybe we should even throw an exception here
-                    log.warn("cannot create version with statements that are not instances of KiWiTriple!");
-                }
+            insertRange.executeBatch();
+        }
+
+        // finally add the version to the time index of every affected resource
+        PreparedStatement insertResource = getPreparedStatement("store.version_resource");
+        synchronized (insertResource) {
+            insertResource.clearParameters();
+            for(Long resource : resources) {
+                insertResource.setLong(1, resource);
+                insertResource.setTimestamp(2, new Timestamp(data.getCommitTime().getTime()));
+                insertResource.setLong(3, data.getId());
+                insertResource.addBatch();
             }
-            insertRemoved.executeBatch(); // if this is a performance issue, we could also run it every 1000 inserts or so
+            insertResource.executeBatch();
         }
 
     }
 
+    /**
+     * Return the ids of the triples passed as argument and add the ids of their subjects to the set of resources.
+     */
+    private static long[] getTripleIds(Collection<Statement> triples, Set<Long> resources) {
+        long[] ids = new long[triples.size()];
+        int count = 0;
+        for(Statement triple : triples) {
+            if(triple instanceof KiWiTriple) {
+                ids[count++] = ((KiWiTriple) triple).getId();
+                resources.add(((KiWiTriple) triple).getSubject().getId());
+            } else {
+                // maybe we should even throw an exception here
+                log.warn("cannot create version with statements that are not instances of KiWiTriple!");
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
     /**
      * Remove the version with the id passed as argument, including all references to added and removed triples. The
      * triples themselves are not deleted immediately, we let the garbage collector carry this out periodically.
@@ -141,15 +184,20 @@ public class KiWiVersioningConnection extends KiWiConnection {
 
         requireJDBCConnection();
 
-        PreparedStatement removeAdded = getPreparedStatement("delete.version_added");
-        removeAdded.clearParameters();
-        removeAdded.setLong(1, id);
-        removeAdded.executeUpdate();
+        PreparedStatement removeRanges = getPreparedStatement("delete.version_ranges");
+        removeRanges.clearParameters();
+        removeRanges.setLong(1, id);
+        removeRanges.executeUpdate();
+
+        PreparedStatement removeDelta = getPreparedStatement("delete.version_delta");
+        removeDelta.clearParameters();
+        removeDelta.setLong(1, id);
+        removeDelta.executeUpdate();
 
-        PreparedStatement removeRemoved = getPreparedStatement("delete.version_removed");
-        removeRemoved.clearParameters();
-        removeRemoved.setLong(1, id);
-        removeRemoved.executeUpdate();
+        PreparedStatement removeResources = getPreparedStatement("delete.version_resources");
+        removeResources.clearParameters();
+        removeResources.setLong(1, id);
+        removeResources.executeUpdate();
 
         PreparedStatement removeVersion = getPreparedStatement("delete.version");
         removeVersion.clearParameters();
@@ -441,7 +489,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
 
     /**
      * Construct a version from the database using the data contained in the result set row passed as argument. The method
-     * will load all added and removed triples in subsequent SQL queries.
+     * will load the compressed blocks of added and removed triple ids and then the triples themselves (usually from the cache).
      * <p/>
      * The method will not change the ResultSet iterator, only read its values, so it needs to be executed for each row separately.
      *
@@ -457,32 +505,30 @@ public class KiWiVersioningConnection extends KiWiConnection {
             result.setCreator((KiWiResource) loadNodeById(row.getLong("creator")));
         }
 
-        // query the versions_added and versions_removed join tables to reconstruct the triple sets
-        PreparedStatement queryAdded = getPreparedStatement("load.versions_added");
-        synchronized (queryAdded) {
-            queryAdded.clearParameters();
-            queryAdded.setLong(1,result.getId());
-            ResultSet addedRow = queryAdded.executeQuery();
-            try {
-                while(addedRow.next()) {
-                    result.addTriple(loadTripleById(addedRow.getLong("triple_id")));
-                }
-            } finally {
-                addedRow.close();
-            }
-        }
-
-        PreparedStatement queryRemoved = getPreparedStatement("load.versions_removed");
-        synchronized (queryRemoved) {
-            queryRemoved.clearParameters();
-            queryRemoved.setLong(1,result.getId());
-            ResultSet removedRow = queryRemoved.executeQuery();
+        // decode the compressed blocks of added and removed triple ids to reconstruct the triple sets
+        PreparedStatement queryDelta = getPreparedStatement("load.version_delta");
+        synchronized (queryDelta) {
+            queryDelta.clearParameters();
+            queryDelta.setLong(1,result.getId());
+            ResultSet deltaRow = queryDelta.executeQuery();
             try {
-                while(removedRow.next()) {
-                    result.removeTriple(loadTripleById(removedRow.getLong("triple_id")));
+                if(deltaRow.next()) {
+                    byte[] added   = deltaRow.getBytes("added");
+                    byte[] removed = deltaRow.getBytes("removed");
+
+                    if(added != null) {
+                        for(long tripleId : TripleIdCodec.decode(added)) {
+                            result.addTriple(loadTripleById(tripleId));
+                        }
+                    }
+                    if(removed != null) {
+                        for(long tripleId : TripleIdCodec.decode(removed)) {
+                            result.removeTriple(loadTripleById(tripleId));
+                        }
+                    }
                 }
             } finally {
-                removedRow.close();
+                deltaRow.close();
             }
         }
 
@@ -674,4 +720,62 @@ public class KiWiVersioningConnection extends KiWiConnection {
         }
     }
 
+    /**
+     * Migrate the versions stored in the per-triple join tables versions_added and versions_removed used by earlier
+     * releases to the compact versions_delta, versions_resources and versions_ranges tables and drop the old tables
+     * afterwards. The new tables need to exist already. The caller is responsible for committing the transaction.
+     */
+    void migrateVersionTables() throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement queryVersions = getPreparedStatement("migrate.versions");
+        ResultSet versions = queryVersions.executeQuery();
+        try {
+            while(versions.next()) {
+                long versionId = versions.getLong("id");
+
+                // both lookups use the version_id index of the join tables
+                PreparedStatement insertDelta = getPreparedStatement("store.version_delta");
+                insertDelta.clearParameters();
+                insertDelta.setLong(1, versionId);
+                insertDelta.setBytes(2, TripleIdCodec.encode(queryIds("migrate.versions_added", versionId)));
+                insertDelta.setBytes(3, TripleIdCodec.encode(queryIds("migrate.versions_removed", versionId)));
+                insertDelta.executeUpdate();
+            }
+        } finally {
+            versions.close();
+        }
+
+        // the time index and the id ranges of all versions are built with a single query over the join tables each
+        getPreparedStatement("migrate.versions_resources").executeUpdate();
+        getPreparedStatement("migrate.versions_ranges").executeUpdate();
+
+        getPreparedStatement("migrate.drop_added").executeUpdate();
+        getPreparedStatement("migrate.drop_removed").executeUpdate();
+    }
+
+    /**
+     * Run the id query with the given key for the version passed as argument and return the ids in the first column.
+     */
+    private long[] queryIds(String key, long versionId) throws SQLException {
+        PreparedStatement query = getPreparedStatement(key);
+        query.clearParameters();
+        query.setLong(1, versionId);
+
+        long[] ids = new long[16];
+        int count = 0;
+        ResultSet result = query.executeQuery();
+        try {
+            while(result.next()) {
+                if(count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = result.getLong(1);
+            }
+        } finally {
+            result.close();
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
 }
@@ -19,10 +19,14 @@ package org.apache.marmotta.kiwi.versioning.persistence;
 
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.sql.SQLException;
+import java.util.Set;
 
 /**
  * This class handles all database access of the versioning component of the KiWi triple store. It provides
@@ -53,11 +57,48 @@ public class KiWiVersioningPersistence {
      * This method must only be called after the initDatabase of the wrapped KiWiPersistence has been evaluated.
      */
     public void initDatabase() throws SQLException {
-        persistence.initDatabase("versioning", new String[] {"versions", "versions_added", "versions_removed"});
+        migrateDatabase();
+
+        persistence.initDatabase("versioning", new String[] {"versions", "versions_delta", "versions_resources", "versions_ranges"});
 
         persistence.addNodeTableDependency("versions", "creator");
-        persistence.addTripleTableDependency("versions_added","triple_id");
-        persistence.addTripleTableDependency("versions_removed","triple_id");
+        persistence.addNodeTableDependency("versions_resources", "resource");
+
+        // the garbage collector cannot look into the compressed blocks of versions_delta; it keeps the deleted
+        // triples within the id ranges referenced by a version instead
+        persistence.addTripleTableDependency("versions_ranges", "version_id", getDialect().getStatement("gc.versions_ranges"));
+    }
+
+    /**
+     * Migrate the per-triple version tables of earlier releases (versions_added and versions_removed) to the
+     * compact version deltas, in case they exist.
+     */
+    private void migrateDatabase() throws SQLException {
+        KiWiVersioningConnection connection = getConnection();
+        try {
+            Set<String> tables = connection.getDatabaseTables();
+            if(tables.contains("versions_added") && !tables.contains("versions_delta")) {
+                log.info("migrating versions to compact version deltas ...");
+
+                ScriptRunner runner = new ScriptRunner(connection.getJDBCConnection(), false, false);
+                runner.runScript(new StringReader(getDialect().getCreateScript("versioning_delta")));
+
+                connection.migrateVersionTables();
+                connection.commit();
+
+                log.info("migration of versions finished");
+            }
+        } catch (SQLException ex) {
+            log.error("SQL exception while migrating versions, rolling back");
+            connection.rollback();
+            throw ex;
+        } catch (IOException ex) {
+            log.error("I/O exception while migrating versions, rolling back");
+            connection.rollback();
+            throw new SQLException("could not read the migration script for versions", ex);
+        } finally {
+            connection.close();
+        }
     }
 
     /**
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.versioning.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary encoding of the sets of triple ids added and removed in a version. The ids are sorted, stored as
+ * variable length differences to their predecessor and then deflated. Since the ids of triples created in the same
+ * transaction are usually close to each other, most differences fit into one or two bytes.
+ * <p/>
+ * Format (before compression): number of ids, first id, differences to the previous id; all as unsigned variable
+ * length integers (7 bits per byte, high bit set if more bytes follow).
+ */
+public class TripleIdCodec {
+
+    private TripleIdCodec() {
+    }
+
+    /**
+     * Encode the (non-negative) triple ids passed as argument. The order of the ids is not preserved and duplicates
+     * are removed.
+     */
+    public static byte[] encode(long[] ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sorted.length * 2 + 8);
+
+        int count = 0;
+        for(int i=0; i<sorted.length; i++) {
+            if(i == 0 || sorted[i] != sorted[i-1]) {
+                count++;
+            }
+        }
+        writeVarLong(out, count);
+
+        long previous = 0;
+        for(int i=0; i<sorted.length; i++) {
+            if(i == 0 || sorted[i] != sorted[i-1]) {
+                if(sorted[i] < 0) {
+                    throw new IllegalArgumentException("triple ids must not be negative: " + sorted[i]);
+                }
+                writeVarLong(out, sorted[i] - previous);
+                previous = sorted[i];
+            }
+        }
+
+        return deflate(out.toByteArray());
+    }
+
+    /**
+     * Decode the triple ids encoded with encode(); the ids are returned in ascending order.
+     *
+     * @throws IllegalArgumentException in case the data is not a valid encoding
+     */
+    public static long[] decode(byte[] data) {
+        byte[] raw = inflate(data);
+
+        int[] position = new int[1];
+        long count = readVarLong(raw, position);
+        if(count < 0 || count > raw.length) {
+            throw new IllegalArgumentException("invalid triple id block (count " + count + ")");
+        }
+
+        long[] ids = new long[(int) count];
+        long previous = 0;
+        for(int i=0; i<ids.length; i++) {
+            previous += readVarLong(raw, position);
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] data, int[] position) {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            if(position[0] >= data.length) {
+                throw new IllegalArgumentException("invalid triple id block (truncated)");
+            }
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("invalid triple id block (malformed number)");
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while(!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[4096];
+            while(!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("invalid triple id block (truncated)");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("invalid triple id block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -30,6 +30,9 @@ import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
 import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
 import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStrategy;
+import org.apache.marmotta.kiwi.sparql.optimizer.DifferenceOptimizer;
+import org.apache.marmotta.kiwi.sparql.optimizer.DistinctLimitOptimizer;
 import org.apache.marmotta.kiwi.versioning.persistence.KiWiVersioningConnection;
 import org.openrdf.model.Namespace;
 import org.openrdf.model.Resource;
@@ -132,19 +135,26 @@ public class KiWiSnapshotConnection implements SailConnection {
 
         try {
             KiWiTripleSource tripleSource = new KiWiTripleSource(this,includeInferred);
-            EvaluationStrategy strategy = new EvaluationStrategyImpl(tripleSource, dataset);
+
+            // supported query parts are translated into a single SQL query on the triples valid at the snapshot date
+            EvaluationStrategy strategy = new KiWiEvaluationStrategy(tripleSource, dataset, databaseConnection, valueFactory, parent.getPlanCache(), snapshotDate);
 
             new BindingAssigner().optimize(tupleExpr, dataset, bindings);
-            new ConstantOptimizer(strategy).optimize(tupleExpr, dataset, bindings);
             new CompareOptimizer().optimize(tupleExpr, dataset, bindings);
             new ConjunctiveConstraintSplitter().optimize(tupleExpr, dataset, bindings);
-            new DisjunctiveConstraintOptimizer().optimize(tupleExpr, dataset, bindings);
-            new SameTermFilterOptimizer().optimize(tupleExpr, dataset, bindings);
+
+            // these are better handled by SQL directly
+            //new DisjunctiveConstraintOptimizer().optimize(tupleExpr, dataset, bindings);
+            //new SameTermFilterOptimizer().optimize(tupleExpr, dataset, bindings);
+
             new QueryModelNormalizer().optimize(tupleExpr, dataset, bindings);
             new QueryJoinOptimizer(new KiWiEvaluationStatistics()).optimize(tupleExpr, dataset, bindings);
             new IterativeEvaluationOptimizer().optimize(tupleExpr, dataset, bindings);
             new FilterOptimizer().optimize(tupleExpr, dataset, bindings);
-            new OrderLimitOptimizer().optimize(tupleExpr, dataset, bindings);
+            new DistinctLimitOptimizer().optimize(tupleExpr, dataset, bindings);
+
+            // replace Difference with NOT EXISTS
+            new DifferenceOptimizer().optimize(tupleExpr, dataset, bindings);
 
             return strategy.evaluate(tupleExpr, bindings);
 
@@ -25,6 +25,7 @@ import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
 import org.apache.marmotta.commons.sesame.transactions.wrapper.TransactionalSailWrapper;
 import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.cache.SQLPlanCache;
 import org.apache.marmotta.kiwi.versioning.api.VersioningSail;
 import org.apache.marmotta.kiwi.versioning.model.Version;
 import org.apache.marmotta.kiwi.versioning.persistence.KiWiVersioningConnection;
@@ -74,6 +75,11 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
 
     private SesameFilter<Statement> filter;
 
+    /**
+     * Cache for the SQL translations of snapshot queries, shared by all snapshot connections.
+     */
+    private SQLPlanCache planCache;
+
     /**
      * Build a new {@link KiWiVersioningSail} based on the provided parent
      * {@link TransactionalSail}.
@@ -106,6 +112,7 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
         this.persistence = new KiWiVersioningPersistence(getBaseStore().getPersistence());
         this.activeSnapshots = new HashSet<KiWiSnapshotConnection>();
         this.filter = filter;
+        this.planCache = new SQLPlanCache(getBaseStore().getPersistence());
 
         parent.addTransactionListener(this);
     }
@@ -154,6 +161,13 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
         return persistence;
     }
 
+    /**
+     * Return the cache for the SQL translations of snapshot queries.
+     */
+    public SQLPlanCache getPlanCache() {
+        return planCache;
+    }
+
     /**
      * Called after a transaction has committed. This method will take the transaction data and convert it into a
      * Version object, which will then be persisted in the KiWiVersioningPersistence.
@@ -12,13 +12,21 @@
 -- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
 -- See the License for the specific language governing permissions and
 -- limitations under the License.
+
+DROP INDEX IF EXISTS idx_versions_resources_version;
+DROP INDEX IF EXISTS idx_versions_ranges_version;
 DROP INDEX IF EXISTS idx_versions_added;
 DROP INDEX IF EXISTS idx_versions_removed;
 DROP INDEX IF EXISTS idx_versions_added_tid;
 DROP INDEX IF EXISTS idx_versions_removed_tid;
 DROP INDEX IF EXISTS idx_versions_created;
 
+DROP TABLE IF EXISTS versions_resources;
+DROP TABLE IF EXISTS versions_delta;
+DROP TABLE IF EXISTS versions_ranges;
 
+-- tables of databases not yet migrated to the compact version deltas
 DROP TABLE IF EXISTS versions_added;
 DROP TABLE IF EXISTS versions_removed;
+
 DROP TABLE IF EXISTS versions;
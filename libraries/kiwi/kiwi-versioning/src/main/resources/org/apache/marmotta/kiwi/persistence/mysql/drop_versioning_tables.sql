@@ -12,14 +12,13 @@
 -- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
 -- See the License for the specific language governing permissions and
 -- limitations under the License.
-DROP INDEX idx_versions_added on versions_added;
-DROP INDEX idx_versions_added_tid on versions_added;
-DROP INDEX idx_versions_removed on versions_removed;
-DROP INDEX idx_versions_removed_tid on versions_removed;
-DROP INDEX idx_versions_created on versions;
 
+DROP TABLE IF EXISTS versions_resources;
+DROP TABLE IF EXISTS versions_delta;
+DROP TABLE IF EXISTS versions_ranges;
 
+-- tables of databases not yet migrated to the compact version deltas
 DROP TABLE IF EXISTS versions_added;
 DROP TABLE IF EXISTS versions_removed;
-DROP TABLE IF EXISTS versions;
 
+DROP TABLE IF EXISTS versions;
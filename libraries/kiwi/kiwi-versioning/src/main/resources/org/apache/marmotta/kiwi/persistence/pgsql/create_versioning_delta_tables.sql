@@ -0,0 +1,44 @@
+-- Licensed to the Apache Software Foundation (ASF) under one or more
+-- contributor license agreements.  See the NOTICE file distributed with
+-- this work for additional information regarding copyright ownership.
+-- The ASF licenses this file to You under the Apache License, Version 2.0
+-- (the "License"); you may not use this file except in compliance with
+-- the License.  You may obtain a copy of the License at
+--
+--      http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- migration from the per-triple versions_added/versions_removed tables to the compact version deltas; the
+-- data is converted by KiWiVersioningPersistence after running this script, the old tables are dropped afterwards
+
+-- triple ids added and removed in a version, encoded as compressed block (see TripleIdCodec)
+CREATE TABLE versions_delta (
+  version_id  bigint     NOT NULL REFERENCES versions(id),
+  added       bytea,
+  removed     bytea,
+  PRIMARY KEY(version_id)
+);
+
+-- time index of the versions affecting a resource (as subject of an added or removed triple)
+CREATE TABLE versions_resources (
+  resource    bigint     NOT NULL REFERENCES nodes(id),
+  createdAt   timestamp  NOT NULL,
+  version_id  bigint     NOT NULL REFERENCES versions(id),
+  PRIMARY KEY(resource, createdAt, version_id)
+);
+
+-- id ranges (triple id / 4096) of the triples added or removed in a version; the garbage collector keeps deleted
+-- triples within these ranges, since it cannot look into the compressed blocks of versions_delta
+CREATE TABLE versions_ranges (
+  id_range    bigint     NOT NULL,
+  version_id  bigint     NOT NULL REFERENCES versions(id),
+  PRIMARY KEY(id_range, version_id)
+);
+
+CREATE INDEX idx_versions_resources_version ON versions_resources(version_id);
+CREATE INDEX idx_versions_ranges_version ON versions_ranges(version_id);
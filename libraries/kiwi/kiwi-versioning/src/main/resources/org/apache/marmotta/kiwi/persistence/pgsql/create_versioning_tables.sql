@@ -19,21 +19,30 @@ CREATE TABLE versions (
   PRIMARY KEY(id)
 );
 
--- join table: from version to the added triples
-CREATE TABLE versions_added (
-  version_id  bigint  REFERENCES versions(id),
-  triple_id   bigint REFERENCES triples(id)
+-- triple ids added and removed in a version, encoded as compressed block (see TripleIdCodec)
+CREATE TABLE versions_delta (
+  version_id  bigint     NOT NULL REFERENCES versions(id),
+  added       bytea,
+  removed     bytea,
+  PRIMARY KEY(version_id)
 );
 
--- join table: from version to the removed triples
-CREATE TABLE versions_removed (
-  version_id  bigint  REFERENCES versions(id),
-  triple_id   bigint REFERENCES triples(id)
+-- time index of the versions affecting a resource (as subject of an added or removed triple)
+CREATE TABLE versions_resources (
+  resource    bigint     NOT NULL REFERENCES nodes(id),
+  createdAt   timestamp  NOT NULL,
+  version_id  bigint     NOT NULL REFERENCES versions(id),
+  PRIMARY KEY(resource, createdAt, version_id)
 );
 
-CREATE INDEX idx_versions_added ON versions_added(version_id);
-CREATE INDEX idx_versions_added_tid ON versions_added(triple_id);
-CREATE INDEX idx_versions_removed ON versions_removed(version_id);
-CREATE INDEX idx_versions_removed_tid ON versions_removed(triple_id);
-CREATE INDEX idx_versions_created ON versions(createdAt);
+-- id ranges (triple id / 4096) of the triples added or removed in a version; the garbage collector keeps deleted
+-- triples within these ranges, since it cannot look into the compressed blocks of versions_delta
+CREATE TABLE versions_ranges (
+  id_range    bigint     NOT NULL,
+  version_id  bigint     NOT NULL REFERENCES versions(id),
+  PRIMARY KEY(id_range, version_id)
+);
 
+CREATE INDEX idx_versions_created ON versions(createdAt);
+CREATE INDEX idx_versions_resources_version ON versions_resources(version_id);
+CREATE INDEX idx_versions_ranges_version ON versions_ranges(version_id);
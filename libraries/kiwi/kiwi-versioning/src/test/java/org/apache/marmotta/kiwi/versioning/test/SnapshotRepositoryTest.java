@@ -31,6 +31,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.openrdf.model.Statement;
+import org.openrdf.query.BindingSet;
 import org.openrdf.query.BooleanQuery;
 import org.openrdf.query.QueryLanguage;
 import org.openrdf.repository.RepositoryConnection;
@@ -306,6 +307,67 @@ public class SnapshotRepositoryTest {
 
     }
 
+    /**
+     * Test a join query on snapshots, which is translated into a single SQL query on the triples valid at the
+     * snapshot date.
+     */
+    @Test
+    public void testSnapshotSPARQLJoin() throws Exception {
+        InputStream baseData = this.getClass().getResourceAsStream("version-base.rdf");
+        assumeThat("Could not load test-data: version-base.rdf", baseData, notNullValue(InputStream.class));
+
+        RepositoryConnection connectionBase = repository.getConnection();
+        try {
+            connectionBase.add(baseData, "http://marmotta.apache.org/testing/ns1/", RDFFormat.RDFXML);
+            connectionBase.commit();
+        } finally {
+            connectionBase.close();
+        }
+
+        Thread.sleep(1000);
+
+        Date date2 = new Date();
+
+        Thread.sleep(1000);
+
+        InputStream update1Data = this.getClass().getResourceAsStream("version-update1.rdf");
+        assumeThat("Could not load test-data: version-update1.rdf", update1Data, notNullValue(InputStream.class));
+
+        RepositoryConnection connectionUpdate1 = repository.getConnection();
+        try {
+            connectionUpdate1.add(update1Data, "http://marmotta.apache.org/testing/ns1/", RDFFormat.RDFXML);
+            connectionUpdate1.commit();
+        } finally {
+            connectionUpdate1.close();
+        }
+
+        String queryString = "SELECT ?r ?v WHERE { ?r a <http://marmotta.apache.org/testing/ns1/C> . ?r <http://marmotta.apache.org/testing/ns1/P1> ?v }";
+
+        // before the update only R1 exists
+        RepositoryConnection snapshot1 = repository.getSnapshot(date2);
+        try {
+            List<BindingSet> results = Iterations.asList(snapshot1.prepareTupleQuery(QueryLanguage.SPARQL, queryString).evaluate());
+            Assert.assertEquals(1, results.size());
+            Assert.assertEquals("http://marmotta.apache.org/testing/ns1/R1", results.get(0).getValue("r").stringValue());
+            Assert.assertEquals("property 1 value 1", results.get(0).getValue("v").stringValue());
+        } finally {
+            snapshot1.commit();
+            snapshot1.close();
+        }
+
+        // after the update both resources exist; the SQL translation of the query is reused for the other date
+        RepositoryConnection snapshot2 = repository.getSnapshot(new Date());
+        try {
+            List<BindingSet> results = Iterations.asList(snapshot2.prepareTupleQuery(QueryLanguage.SPARQL, queryString).evaluate());
+            Assert.assertEquals(2, results.size());
+        } finally {
+            snapshot2.commit();
+            snapshot2.close();
+        }
+        Assert.assertTrue(vsail.getPlanCache().getHits() > 0);
+    }
+
+
 
     /**
      * Workaround for https://openrdf.atlassian.net/browse/SES-1702 in Sesame 2.7.0-beta1
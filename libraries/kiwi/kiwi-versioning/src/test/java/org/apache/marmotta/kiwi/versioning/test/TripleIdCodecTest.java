@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.versioning.test;
+
+import org.apache.marmotta.kiwi.versioning.persistence.TripleIdCodec;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Test the encoding of the triple ids of a version as compressed blocks.
+ */
+public class TripleIdCodecTest {
+
+    @Test
+    public void testRoundtrip() {
+        Random random = new Random(42);
+
+        long[] ids = new long[10000];
+        long current = 1000000;
+        for(int i=0; i<ids.length; i++) {
+            current += 1 + random.nextInt(100);
+            ids[i] = current;
+        }
+        long[] shuffled = ids.clone();
+        for(int i=shuffled.length - 1; i>0; i--) {
+            int j = random.nextInt(i + 1);
+            long tmp = shuffled[i]; shuffled[i] = shuffled[j]; shuffled[j] = tmp;
+        }
+
+        byte[] encoded = TripleIdCodec.encode(shuffled);
+
+        // clustered ids need much less than the 8 bytes per id of the join tables
+        Assert.assertTrue(encoded.length < ids.length * 2);
+        Assert.assertArrayEquals(ids, TripleIdCodec.decode(encoded));
+    }
+
+    @Test
+    public void testEmptyAndDuplicates() {
+        Assert.assertEquals(0, TripleIdCodec.decode(TripleIdCodec.encode(new long[0])).length);
+        Assert.assertArrayEquals(new long[] {1, 5, 7}, TripleIdCodec.decode(TripleIdCodec.encode(new long[] {7, 1, 5, 1, 7})));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalid() {
+        TripleIdCodec.decode(new byte[] {1, 2, 3});
+    }
+}
@@ -38,6 +38,9 @@ import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Date;
 import java.util.List;
@@ -87,7 +90,7 @@ public class VersioningPersistenceTest {
         // test if database exists and has a version
         KiWiConnection connection = vpersistence.getConnection();
         try {
-            Assert.assertThat(connection.getDatabaseTables(), hasItems("versions", "versions_added", "versions_removed"));
+            Assert.assertThat(connection.getDatabaseTables(), hasItems("versions", "versions_delta", "versions_resources", "versions_ranges"));
             Assert.assertEquals(KiWiDialect.VERSION, connection.getDatabaseVersion());
 
             connection.commit();
@@ -165,6 +168,78 @@ public class VersioningPersistenceTest {
 
     }
 
+    /**
+     * Test that the garbage collector keeps the deleted triples referenced by a version, and cleans up deleted
+     * triples outside of the id ranges of all versions
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGarbageCollectVersionedTriples() throws Exception {
+        KiWiTriple versioned, unversioned, later;
+
+        KiWiVersioningConnection connection = vpersistence.getConnection();
+        try {
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+ RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred_1   = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource object_1 = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource object_2 = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource object_3 = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+
+            connection.storeNode(subject);
+            connection.storeNode(pred_1);
+            connection.storeNode(object_1);
+            connection.storeNode(object_2);
+            connection.storeNode(object_3);
+
+            versioned   = new KiWiTriple(subject,pred_1,object_1,null);
+            unversioned = new KiWiTriple(subject,pred_1,object_2,null);
+            connection.storeTriple(versioned);
+
+            // versions reference id ranges, so the unversioned triple needs an id outside the range of the versioned one
+            unversioned.setId(versioned.getId() + 10 * KiWiVersioningConnection.TRIPLE_ID_RANGE);
+            connection.storeTriple(unversioned);
+            connection.commit();
+
+            Version version1 = new Version();
+            version1.setCommitTime(new Date());
+            version1.addTriple(versioned);
+            connection.storeVersion(version1);
+            connection.commit();
+
+            // a later version, which must not keep the earlier unversioned triple
+            later = new KiWiTriple(subject,pred_1,object_3,null);
+            connection.storeTriple(later);
+            Version version2 = new Version();
+            version2.setCommitTime(new Date());
+            version2.addTriple(later);
+            connection.storeVersion(version2);
+            connection.commit();
+
+            connection.deleteTriple(versioned);
+            connection.deleteTriple(unversioned);
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+
+        persistence.garbageCollect();
+
+        Assert.assertEquals(1, count("SELECT count(*) FROM triples WHERE id = " + versioned.getId()));
+        Assert.assertEquals(0, count("SELECT count(*) FROM triples WHERE id = " + unversioned.getId()));
+        Assert.assertEquals(1, count("SELECT count(*) FROM triples WHERE id = " + later.getId()));
+    }
+
+    private long count(String query) throws SQLException {
+        Connection con = persistence.getJDBCConnection();
+        try(PreparedStatement stmt = con.prepareStatement(query); ResultSet result = stmt.executeQuery()) {
+            result.next();
+            return result.getLong(1);
+        } finally {
+            persistence.releaseJDBCConnection(con);
+        }
+    }
+
     /**
      * Test listing versions between two dates
      *
@@ -20,6 +20,8 @@ package org.apache.marmotta.ldcache.api;
 import org.apache.marmotta.ldcache.model.CacheEntry;
 import org.openrdf.model.URI;
 
+import java.util.Date;
+
 /**
  * Next generation caching backend API. Needs to be implemented by backend providers to offer caching support.
  *
@@ -29,8 +31,8 @@ public interface LDCachingBackend {
 
 
     /**
-     * Return the cache entry for the given resource, or null if this entry does not exist.
-     *
+     * Return the cache entry for the given resource, or null if this entry does not exist. Expired entries are
+     * returned as well; whether an entry needs to be refreshed is decided by the cache using its expiry date.
      *
      * @param resource the resource to retrieve the cache entry for
      * @return
@@ -47,6 +49,18 @@ public interface LDCachingBackend {
     public void putEntry(URI resource, CacheEntry entry);
 
 
+    /**
+     * Update the retrieval and expiry date of the cache entry for the given resource and increment its update count,
+     * without replacing the cached triples (e.g. in case the remote server reported that the resource has not been
+     * modified). Does nothing in case there is no entry for the resource.
+     *
+     * @param resource      the resource to update
+     * @param lastRetrieved the date of the retrieval
+     * @param expiryDate    the new expiry date of the entry
+     */
+    public void updateExpiry(URI resource, Date lastRetrieved, Date expiryDate);
+
+
     /**
      * Remove the cache entry for the given resource if it exists. Does nothing otherwise.
      *
@@ -32,6 +32,18 @@ public class CacheConfiguration {
 
     private long defaultExpiry = 86400L;
 
+    /** serve expired cache entries immediately and refresh them in the background */
+    private boolean staleWhileRevalidate = false;
+
+    /** maximum time in seconds after expiry an entry may still be served while it is refreshed in the background */
+    private long maxStaleness = 86400L;
+
+    /** number of threads refreshing expired entries in the background */
+    private int refreshThreads = 4;
+
+    /** maximum number of resources waiting for a background refresh */
+    private int refreshQueueSize = 1000;
+
     public CacheConfiguration() {
         this(new ClientConfiguration());
     }
@@ -55,4 +67,36 @@ public class CacheConfiguration {
     public void setDefaultExpiry(long defaultExpiry) {
         this.defaultExpiry = defaultExpiry;
     }
+
+    public boolean isStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(boolean staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    public void setMaxStaleness(long maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    public void setRefreshThreads(int refreshThreads) {
+        this.refreshThreads = refreshThreads;
+    }
+
+    public int getRefreshQueueSize() {
+        return refreshQueueSize;
+    }
+
+    public void setRefreshQueueSize(int refreshQueueSize) {
+        this.refreshQueueSize = refreshQueueSize;
+    }
 }
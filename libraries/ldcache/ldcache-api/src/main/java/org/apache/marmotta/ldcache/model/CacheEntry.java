@@ -62,6 +62,18 @@ public class CacheEntry implements Serializable {
     private Integer tripleCount;
 
 
+    /**
+     * The entity tag returned by the server when the resource has been retrieved the last time (may be null).
+     */
+    private String etag;
+
+
+    /**
+     * The modification date returned by the server when the resource has been retrieved the last time (may be null).
+     */
+    private Date lastModified;
+
+
     public CacheEntry() {
     }
 
@@ -136,6 +148,34 @@ public class CacheEntry implements Serializable {
         this.tripleCount = tripleCount;
     }
 
+    /**
+     * The entity tag returned by the server when the resource has been retrieved the last time (may be null).
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * The entity tag returned by the server when the resource has been retrieved the last time (may be null).
+     */
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * The modification date returned by the server when the resource has been retrieved the last time (may be null).
+     */
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * The modification date returned by the server when the resource has been retrieved the last time (may be null).
+     */
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified != null ? new Date(lastModified.getTime()) : null;
+    }
+
     /**
      * The triples cached for the resource by this entry.
      */
@@ -17,28 +17,27 @@
 
 package org.apache.marmotta.ldcache.backend.file;
 
-import org.apache.marmotta.commons.sesame.model.ModelCommons;
 import org.apache.marmotta.ldcache.api.LDCachingBackend;
+import org.apache.marmotta.ldcache.backend.file.io.CacheEntryIO;
+import org.apache.marmotta.ldcache.backend.file.segment.SegmentStore;
 import org.apache.marmotta.ldcache.backend.file.util.FileBackendUtils;
 import org.apache.marmotta.ldcache.model.CacheEntry;
-import org.openrdf.model.Model;
 import org.openrdf.model.URI;
 import org.openrdf.model.ValueFactory;
-import org.openrdf.model.impl.TreeModel;
 import org.openrdf.model.impl.ValueFactoryImpl;
-import org.openrdf.repository.Repository;
-import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
-import org.openrdf.repository.sail.SailRepository;
-import org.openrdf.sail.nativerdf.NativeStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Date;
 
 /**
- * File-based implementation of the next generation LDCaching Backend API
+ * File-based implementation of the next generation LDCaching Backend API. Cache entries are stored in binary form
+ * in an append-only, memory-mapped segment file with an in-memory index from resource URIs to entries (see
+ * SegmentStore), so a cache hit only requires an index lookup and decoding the entry from the mapped file.
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
@@ -46,9 +45,11 @@ public class LDCachingFileBackend implements LDCachingBackend {
 
     private static Logger log = LoggerFactory.getLogger(LDCachingFileBackend.class);
 
+    private static final String SEGMENT_FILE = "cache.seg";
+
     private final File storageDir;
 
-    private Repository cacheRepository;
+    private SegmentStore store;
 
     public LDCachingFileBackend(File storageDir) throws RepositoryException {
         if (storageDir == null) throw new NullPointerException();
@@ -66,32 +67,15 @@ public class LDCachingFileBackend implements LDCachingBackend {
      */
     @Override
     public CacheEntry getEntry(URI resource) {
-        try {
-            // load metadata from disk
-            final File dataFile = FileBackendUtils.getMetaFile(resource, storageDir);
-            if (!(dataFile.exists())) return null;
-            final CacheEntry ce = FileBackendUtils.readCacheEntry(dataFile, getValueFactory());
-            if (FileBackendUtils.isExpired(ce)) return null;
-
-            // read triples for this entry from cache repository
-            RepositoryConnection con = cacheRepository.getConnection();
-            try {
-                con.begin();
-
-                Model triples = new TreeModel();
-                ModelCommons.add(triples, con.getStatements(resource,null,null,true));
-                ce.setTriples(triples);
-
-                con.commit();
-            } catch(RepositoryException ex) {
-                con.rollback();
-            } finally {
-                con.close();
-            }
+        ByteBuffer data = store.get(resource.stringValue());
+        if(data == null) {
+            return null;
+        }
 
-            return ce;
-        } catch (IOException | RepositoryException e) {
-            log.error("error while loading cache entry from file system:",e);
+        try {
+            return CacheEntryIO.read(resource, data, getValueFactory());
+        } catch (RuntimeException e) {
+            log.error("error while decoding cache entry for {}:", resource.stringValue(), e);
 
             return null;
         }
@@ -107,26 +91,33 @@ public class LDCachingFileBackend implements LDCachingBackend {
     @Override
     public void putEntry(URI resource, CacheEntry entry) {
         try {
-            FileBackendUtils.writeCacheEntry(entry, storageDir);
-
-            // update the repository with the triples from the entry
-            RepositoryConnection con = cacheRepository.getConnection();
-            try {
-                con.begin();
+            store.put(resource.stringValue(), CacheEntryIO.write(entry));
+        } catch (IOException e) {
+            log.error("could not store cache entry for {}: {}", resource.stringValue(), e.getMessage());
+        }
 
-                con.remove(resource,null,null);
-                con.add(entry.getTriples());
+    }
 
-                con.commit();
-            } catch(RepositoryException ex) {
-                con.rollback();
-            } finally {
-                con.close();
-            }
-        } catch (IOException | RepositoryException e) {
-            log.error("could not store cache entry for {}: {}", resource.stringValue(), e.getMessage());
+    /**
+     * Update the retrieval and expiry date of the cache entry for the given resource and increment its update count,
+     * without replacing the cached triples. Does nothing in case there is no entry for the resource.
+     *
+     * @param resource      the resource to update
+     * @param lastRetrieved the date of the retrieval
+     * @param expiryDate    the new expiry date of the entry
+     */
+    @Override
+    public void updateExpiry(URI resource, Date lastRetrieved, Date expiryDate) {
+        ByteBuffer data = store.get(resource.stringValue());
+        if(data == null) {
+            return;
         }
 
+        try {
+            store.put(resource.stringValue(), CacheEntryIO.updateExpiry(data, lastRetrieved, expiryDate));
+        } catch (IOException e) {
+            log.error("could not update cache entry for {}: {}", resource.stringValue(), e.getMessage());
+        }
     }
 
     /**
@@ -137,23 +128,8 @@ public class LDCachingFileBackend implements LDCachingBackend {
     @Override
     public void removeEntry(URI resource) {
         try {
-            final File metaFile = FileBackendUtils.getMetaFile(resource, storageDir);
-            if (metaFile.exists()) metaFile.delete();
-
-            // update the repository with the triples from the entry
-            RepositoryConnection con = cacheRepository.getConnection();
-            try {
-                con.begin();
-
-                con.remove(resource, null, null);
-
-                con.commit();
-            } catch(RepositoryException ex) {
-                con.rollback();
-            } finally {
-                con.close();
-            }
-        } catch (RepositoryException e) {
+            store.remove(resource.stringValue());
+        } catch (IOException e) {
             log.error("could not remove cache entry for {}: {}", resource.stringValue(), e.getMessage());
         }
     }
@@ -163,24 +139,9 @@ public class LDCachingFileBackend implements LDCachingBackend {
      */
     @Override
     public void clear() {
-        for(File metaFile : FileBackendUtils.listMetaFiles(storageDir)) {
-            metaFile.delete();
-        }
-
         try {
-            RepositoryConnection con = cacheRepository.getConnection();
-            try {
-                con.begin();
-
-                con.clear();
-
-                con.commit();
-            } catch(RepositoryException ex) {
-                con.rollback();
-            } finally {
-                con.close();
-            }
-        } catch(RepositoryException ex) {
+            store.clear();
+        } catch(IOException ex) {
             log.error("could not clear cache: {}", ex.getMessage());
         }
     }
@@ -196,12 +157,12 @@ public class LDCachingFileBackend implements LDCachingBackend {
             log.error(storageDir.getPath() + " is not a directory");
         }
 
-        File tripleDir = new File(storageDir,"triples");
+        removeLegacyCache();
 
         try {
-            cacheRepository = new SailRepository(new NativeStore(tripleDir, "spoc"));
-            cacheRepository.initialize();
-        } catch (RepositoryException ex) {
+            store = new SegmentStore(new File(storageDir, SEGMENT_FILE));
+            store.open();
+        } catch (IOException ex) {
             log.error("could not initialize cache directory",ex);
         }
     }
@@ -211,15 +172,28 @@ public class LDCachingFileBackend implements LDCachingBackend {
      */
     @Override
     public void shutdown() {
-        try {
-            cacheRepository.shutDown();
-        } catch (RepositoryException e) {
-            log.error("error while shutting down cache repository", e);
+        if(store != null) {
+            store.close();
         }
-
     }
 
 
+    /**
+     * Remove the metadata files and triple repository written by earlier versions of the file backend; the cached
+     * resources will be retrieved again when they are accessed.
+     */
+    private void removeLegacyCache() {
+        File tripleDir = new File(storageDir,"triples");
+        if(tripleDir.exists()) {
+            log.info("removing cache entries stored in the old file cache format");
+
+            for(File metaFile : FileBackendUtils.listMetaFiles(storageDir)) {
+                metaFile.delete();
+            }
+            FileBackendUtils.deleteDirectory(tripleDir);
+        }
+    }
+
     private ValueFactory getValueFactory() {
         return ValueFactoryImpl.getInstance();
     }
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldcache.backend.file.io;
+
+import org.apache.marmotta.ldcache.model.CacheEntry;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.TreeModel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of cache entries for the segment file of the file backend. An entry is written as its metadata,
+ * followed by a table of all distinct values occurring in its triples and the triples as indexes into this table:
+ * <pre>
+ * long lastRetrieved | long expiryDate | int updateCount | int tripleCount | long lastModified | string etag
+ * int values  | values: byte type, string label [, string language or datatype]
+ * int triples | triples: int subject, int predicate, int object, int context (-1 for none)
+ * </pre>
+ * Strings are written as length followed by their UTF-8 bytes (a missing etag has length -1, a missing modification
+ * date is written as 0). Entries are decoded directly from the (memory-mapped) buffer passed as argument.
+ */
+public class CacheEntryIO {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte TYPE_URI           = 1;
+    private static final byte TYPE_BNODE         = 2;
+    private static final byte TYPE_LITERAL       = 3;
+    private static final byte TYPE_LITERAL_LANG  = 4;
+    private static final byte TYPE_LITERAL_TYPED = 5;
+
+    private CacheEntryIO() {
+        // static access only
+    }
+
+    /**
+     * Encode the cache entry passed as argument (without its resource, which is used as key in the segment file).
+     *
+     * @param entry the entry to encode
+     * @return the binary representation of the entry
+     * @throws IOException
+     */
+    public static byte[] write(CacheEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeLong(entry.getLastRetrieved() != null ? entry.getLastRetrieved().getTime() : 0);
+        out.writeLong(entry.getExpiryDate() != null ? entry.getExpiryDate().getTime() : 0);
+        out.writeInt(entry.getUpdateCount() != null ? entry.getUpdateCount() : 0);
+        out.writeInt(entry.getTripleCount() != null ? entry.getTripleCount() : 0);
+        out.writeLong(entry.getLastModified() != null ? entry.getLastModified().getTime() : 0);
+        if(entry.getEtag() != null) {
+            writeString(out, entry.getEtag());
+        } else {
+            out.writeInt(-1);
+        }
+
+        Model triples = entry.getTriples() != null ? entry.getTriples() : new TreeModel();
+
+        // build the value table; the subjects of the triples are usually all the same resource
+        Map<Value,Integer> ids    = new HashMap<>();
+        List<Value>        values = new ArrayList<>();
+        int[] encoded = new int[triples.size() * 4];
+        int i = 0;
+        for(Statement triple : triples) {
+            encoded[i++] = getId(triple.getSubject(), ids, values);
+            encoded[i++] = getId(triple.getPredicate(), ids, values);
+            encoded[i++] = getId(triple.getObject(), ids, values);
+            encoded[i++] = triple.getContext() != null ? getId(triple.getContext(), ids, values) : -1;
+        }
+
+        out.writeInt(values.size());
+        for(Value value : values) {
+            writeValue(out, value);
+        }
+
+        out.writeInt(i / 4);
+        for(int j=0; j<i; j++) {
+            out.writeInt(encoded[j]);
+        }
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode the cache entry for the given resource from the buffer passed as argument, starting at its current
+     * position.
+     *
+     * @param resource     the resource the entry belongs to
+     * @param in           the buffer holding the binary representation of the entry
+     * @param valueFactory the value factory to use for creating the triples of the entry
+     * @return the decoded cache entry
+     * @throws java.nio.BufferUnderflowException in case the buffer does not contain a complete entry
+     */
+    public static CacheEntry read(URI resource, ByteBuffer in, ValueFactory valueFactory) {
+        CacheEntry entry = new CacheEntry();
+        entry.setResource(resource);
+        entry.setLastRetrieved(new Date(in.getLong()));
+        entry.setExpiryDate(new Date(in.getLong()));
+        entry.setUpdateCount(in.getInt());
+        entry.setTripleCount(in.getInt());
+        long lastModified = in.getLong();
+        if(lastModified != 0) {
+            entry.setLastModified(new Date(lastModified));
+        }
+        int etagLength = in.getInt();
+        if(etagLength >= 0) {
+            byte[] etag = new byte[etagLength];
+            in.get(etag);
+            entry.setEtag(new String(etag, UTF8));
+        }
+
+        Value[] values = new Value[in.getInt()];
+        for(int i=0; i<values.length; i++) {
+            values[i] = readValue(in, valueFactory);
+        }
+
+        Model triples = new TreeModel();
+        int count = in.getInt();
+        for(int i=0; i<count; i++) {
+            Resource subject   = (Resource) values[in.getInt()];
+            URI      predicate = (URI) values[in.getInt()];
+            Value    object    = values[in.getInt()];
+            int      context   = in.getInt();
+
+            if(context >= 0) {
+                triples.add(valueFactory.createStatement(subject, predicate, object, (Resource) values[context]));
+            } else {
+                triples.add(valueFactory.createStatement(subject, predicate, object));
+            }
+        }
+        entry.setTriples(triples);
+
+        return entry;
+    }
+
+    /**
+     * Return a copy of the encoded cache entry in the buffer passed as argument with the retrieval and expiry date
+     * replaced and the update count incremented. The triples of the entry are copied without decoding them.
+     *
+     * @param in            the buffer holding the binary representation of the entry
+     * @param lastRetrieved the new retrieval date
+     * @param expiryDate    the new expiry date
+     * @return the binary representation of the updated entry
+     */
+    public static byte[] updateExpiry(ByteBuffer in, Date lastRetrieved, Date expiryDate) {
+        byte[] data = new byte[in.remaining()];
+        in.duplicate().get(data);
+
+        ByteBuffer out = ByteBuffer.wrap(data);
+        out.putLong(0, lastRetrieved.getTime());
+        out.putLong(8, expiryDate.getTime());
+        out.putInt(16, out.getInt(16) + 1);
+        return data;
+    }
+
+    private static int getId(Value value, Map<Value,Integer> ids, List<Value> values) {
+        Integer id = ids.get(value);
+        if(id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    private static void writeValue(DataOutputStream out, Value value) throws IOException {
+        if(value instanceof URI) {
+            out.writeByte(TYPE_URI);
+            writeString(out, value.stringValue());
+        } else if(value instanceof BNode) {
+            out.writeByte(TYPE_BNODE);
+            writeString(out, value.stringValue());
+        } else {
+            Literal l = (Literal) value;
+            if(l.getLanguage() != null) {
+                out.writeByte(TYPE_LITERAL_LANG);
+                writeString(out, l.getLabel());
+                writeString(out, l.getLanguage());
+            } else if(l.getDatatype() != null) {
+                out.writeByte(TYPE_LITERAL_TYPED);
+                writeString(out, l.getLabel());
+                writeString(out, l.getDatatype().stringValue());
+            } else {
+                out.writeByte(TYPE_LITERAL);
+                writeString(out, l.getLabel());
+            }
+        }
+    }
+
+    private static Value readValue(ByteBuffer in, ValueFactory valueFactory) {
+        byte type = in.get();
+        switch (type) {
+            case TYPE_URI:
+                return valueFactory.createURI(readString(in));
+            case TYPE_BNODE:
+                return valueFactory.createBNode(readString(in));
+            case TYPE_LITERAL:
+                return valueFactory.createLiteral(readString(in));
+            case TYPE_LITERAL_LANG:
+                return valueFactory.createLiteral(readString(in), readString(in));
+            case TYPE_LITERAL_TYPED:
+                return valueFactory.createLiteral(readString(in), valueFactory.createURI(readString(in)));
+            default:
+                throw new IllegalArgumentException("invalid value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
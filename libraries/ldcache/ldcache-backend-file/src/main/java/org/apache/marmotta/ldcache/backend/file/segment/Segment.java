@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldcache.backend.file.segment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A single append-only, memory-mapped segment file holding keyed records. Each record has the format
+ * <pre>
+ * int length | int crc | byte flag | int key length | key (UTF-8) | payload
+ * </pre>
+ * where the length covers all bytes following the length field and the checksum covers all bytes following the
+ * checksum field. The length is written last, so a record only becomes visible once it is complete. A length of 0
+ * marks the end of the data in the (pre-allocated) file.
+ * <p/>
+ * The file is mapped in regions of at most 2 GB, so record offsets are longs and a segment is not limited to the size
+ * of a single mapping. A record never spans two regions: when it does not fit in the rest of a region, a length of -1
+ * is written (if there is room for it) and the record starts at the next region.
+ * <p/>
+ * Segment files are never truncated, so buffers handed out for reading stay valid even after the segment has been
+ * replaced by a compacted one. Synchronization is the responsibility of the SegmentStore.
+ */
+class Segment {
+
+    private static Logger log = LoggerFactory.getLogger(Segment.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC   = 0x4C444353; // LDCS
+    // also covers the format of the records written by the file backend; older segments are discarded on open
+    private static final int VERSION = 2;
+
+    static final int HEADER = 8;
+
+    // the largest region that can be mapped; segments smaller than this are a single region, as before regions existed
+    static final int REGION_SIZE = Integer.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 1024 * 1024;
+    private static final int MAX_GROWTH       = 64 * 1024 * 1024;
+
+    // length of the smallest record (empty key and payload) including the length field
+    private static final int MIN_RECORD = 13;
+
+    // length marking the rest of a region as unused
+    private static final int SKIP = -1;
+
+    static final byte FLAG_ENTRY   = 0;
+    static final byte FLAG_REMOVED = 1;
+
+    /**
+     * Callback for scanning the records of a segment.
+     */
+    interface Visitor {
+        void visit(String key, byte flag, long offset);
+    }
+
+    private File file;
+
+    private RandomAccessFile raf;
+
+    private FileChannel channel;
+
+    private final int regionSize;
+
+    // all regions are mapped with the region size, except the last one
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+
+    // number of mapped bytes
+    private long capacity;
+
+    // offset of the end of the last complete record
+    private long size;
+
+    private Segment(File file, int regionSize) throws IOException {
+        this.file       = file;
+        this.regionSize = regionSize;
+        this.raf        = new RandomAccessFile(file, "rw");
+        this.channel    = raf.getChannel();
+    }
+
+    /**
+     * Create a new, empty segment in the given file, replacing the file if it exists.
+     */
+    static Segment create(File file, int regionSize) throws IOException {
+        if(file.exists() && !file.delete()) {
+            throw new IOException("could not delete existing segment file " + file.getPath());
+        }
+
+        Segment segment = new Segment(file, regionSize);
+        segment.map(INITIAL_CAPACITY);
+        segment.regions[0].putInt(0, MAGIC);
+        segment.regions[0].putInt(4, VERSION);
+        segment.size = HEADER;
+        return segment;
+    }
+
+    /**
+     * Open the segment stored in the given file, calling the visitor for all complete records in the order they have
+     * been written. Incomplete or corrupted records at the end of the file (e.g. after a crash) are discarded. In case
+     * the file does not exist or is not a valid segment, a new segment is created. The region size must be the one
+     * the segment has been created with.
+     */
+    static Segment open(File file, int regionSize, Visitor visitor) throws IOException {
+        if(!file.exists() || file.length() < HEADER) {
+            return create(file, regionSize);
+        }
+
+        Segment segment = new Segment(file, regionSize);
+        segment.map(segment.channel.size());
+        if(segment.regions[0].getInt(0) != MAGIC || segment.regions[0].getInt(4) != VERSION) {
+            log.warn("{} is not a valid segment file, discarding it", file.getPath());
+            segment.close();
+            return create(file, regionSize);
+        }
+        segment.size = segment.scan(HEADER, visitor);
+
+        // clear the pre-allocated or corrupted tail so that the space after the last record only contains zeros
+        segment.clear(segment.size);
+        return segment;
+    }
+
+    /**
+     * Call the visitor for all complete records starting at the given offset and return the offset after the last
+     * complete record.
+     */
+    long scan(long offset, Visitor visitor) {
+        MappedByteBuffer[] mapped = regions;
+        long end = offset;
+        while(true) {
+            int index = region(offset);
+            int local = local(offset);
+            if(local + MIN_RECORD > regionSize) {
+                // no record fits in the rest of the region
+                offset = next(offset);
+                continue;
+            }
+            if(index >= mapped.length || local + MIN_RECORD > mapped[index].capacity()) {
+                break;
+            }
+
+            ByteBuffer b = mapped[index];
+            int length = b.getInt(local);
+            if(length == SKIP) {
+                offset = next(offset);
+                continue;
+            }
+            if(length < 9 || length > b.capacity() - local - 4) {
+                break;
+            }
+
+            CRC32 crc = new CRC32();
+            ByteBuffer body = slice(b, local + 8, length - 4);
+            if(body.hasArray()) {
+                crc.update(body.array(), body.arrayOffset(), body.remaining());
+            } else {
+                byte[] bytes = new byte[body.remaining()];
+                body.get(bytes);
+                crc.update(bytes, 0, bytes.length);
+            }
+            if((int) crc.getValue() != b.getInt(local + 4)) {
+                log.warn("corrupted record at offset {} in segment file {}, discarding the rest of the file", offset, file.getPath());
+                break;
+            }
+
+            int keyLength = b.getInt(local + 9);
+            if(keyLength < 0 || keyLength > length - 9) {
+                break;
+            }
+            byte[] key = new byte[keyLength];
+            slice(b, local + 13, keyLength).get(key);
+
+            visitor.visit(new String(key, UTF8), b.get(local + 8), offset);
+
+            offset += 4 + length;
+            end     = offset;
+        }
+        return end;
+    }
+
+    /**
+     * Append a record to the segment and return its offset.
+     */
+    long append(String key, byte flag, byte[] payload) throws IOException {
+        byte[] keyBytes = key.getBytes(UTF8);
+
+        ByteBuffer body = ByteBuffer.allocate(5 + keyBytes.length + payload.length);
+        body.put(flag);
+        body.putInt(keyBytes.length);
+        body.put(keyBytes);
+        body.put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, body.capacity());
+
+        return appendRecord(body.array(), (int) crc.getValue());
+    }
+
+    /**
+     * Copy the record at the given offset of another segment to the end of this segment and return its new offset.
+     */
+    long copy(Segment from, long offset) throws IOException {
+        ByteBuffer b = from.buffer(offset);
+        int local  = from.local(offset);
+        int length = b.getInt(local);
+
+        byte[] body = new byte[length - 4];
+        slice(b, local + 8, length - 4).get(body);
+
+        return appendRecord(body, b.getInt(local + 4));
+    }
+
+    private long appendRecord(byte[] body, int crc) throws IOException {
+        int length = 8 + body.length;
+        if(length > regionSize - HEADER) {
+            throw new IOException("record of " + length + " bytes does not fit in a region of segment file " + file.getPath());
+        }
+
+        long offset = size;
+        if(local(offset) + length > regionSize) {
+            long next = next(offset);
+            ensureCapacity(next + length);
+            if(local(offset) + 4 <= regionSize) {
+                regions[region(offset)].putInt(local(offset), SKIP);
+            }
+            offset = next;
+        } else {
+            ensureCapacity(offset + length);
+        }
+
+        MappedByteBuffer region = regions[region(offset)];
+        int local = local(offset);
+
+        ByteBuffer b = region.duplicate();
+        b.position(local + 4);
+        b.putInt(crc);
+        b.put(body);
+
+        // writing the length makes the record visible
+        region.putInt(local, body.length + 4);
+
+        size = offset + length;
+        return offset;
+    }
+
+    /**
+     * Return a read-only buffer with the payload of the record at the given offset.
+     */
+    ByteBuffer payload(long offset) {
+        ByteBuffer b = buffer(offset);
+        int local     = local(offset);
+        int length    = b.getInt(local);
+        int keyLength = b.getInt(local + 9);
+        return slice(b, local + 13 + keyLength, length - 9 - keyLength).asReadOnlyBuffer();
+    }
+
+    /**
+     * Return the number of bytes occupied by the record at the given offset.
+     */
+    int length(long offset) {
+        return buffer(offset).getInt(local(offset)) + 4;
+    }
+
+    byte flag(long offset) {
+        return buffer(offset).get(local(offset) + 8);
+    }
+
+    /**
+     * Return the number of bytes occupied by the records of this segment.
+     */
+    long size() {
+        return size;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    void setFile(File file) {
+        this.file = file;
+    }
+
+    void force() {
+        for(MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    /**
+     * Close the file channel of the segment. Buffers already handed out stay valid until they are garbage collected.
+     */
+    void close() {
+        try {
+            force();
+            channel.close();
+            raf.close();
+        } catch (IOException e) {
+            log.error("error while closing segment file {}: {}", file.getPath(), e.getMessage());
+        }
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        if(required <= capacity) {
+            return;
+        }
+        map(Math.max(required, Math.min(capacity * 2, capacity + MAX_GROWTH)));
+    }
+
+    // map the file up to the given capacity, remapping the last region if it grows
+    private void map(long newCapacity) throws IOException {
+        int count = (int) ((newCapacity + regionSize - 1) / regionSize);
+        MappedByteBuffer[] mapped = Arrays.copyOf(regions, Math.max(count, regions.length));
+        for(int i = Math.max(0, regions.length - 1); i < count; i++) {
+            long start  = (long) i * regionSize;
+            long length = Math.min(regionSize, newCapacity - start);
+            if(mapped[i] == null || mapped[i].capacity() < length) {
+                mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+            }
+        }
+        regions  = mapped;
+        capacity = Math.max(capacity, newCapacity);
+    }
+
+    // overwrite all non-zero bytes from the given offset to the end of the mapped file with zeros
+    private void clear(long offset) {
+        for(int index = region(offset); index < regions.length; index++) {
+            MappedByteBuffer b = regions[index];
+            int i = index == region(offset) ? local(offset) : 0;
+            for(; i < b.capacity() && i % 8 != 0; i++) {
+                b.put(i, (byte) 0);
+            }
+            for(; i + 8 <= b.capacity(); i += 8) {
+                if(b.getLong(i) != 0) {
+                    b.putLong(i, 0);
+                }
+            }
+            for(; i < b.capacity(); i++) {
+                b.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private int region(long offset) {
+        return (int) (offset / regionSize);
+    }
+
+    private int local(long offset) {
+        return (int) (offset % regionSize);
+    }
+
+    // offset of the beginning of the region following the one of the given offset
+    private long next(long offset) {
+        return (long) (region(offset) + 1) * regionSize;
+    }
+
+    // the region holding the record at the given offset
+    private ByteBuffer buffer(long offset) {
+        return regions[region(offset)];
+    }
+
+    private static ByteBuffer slice(ByteBuffer b, int offset, int length) {
+        ByteBuffer d = b.duplicate();
+        d.limit(offset + length);
+        d.position(offset);
+        return d.slice();
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldcache.backend.file.segment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A key-value store for binary records backed by an append-only, memory-mapped segment file and an in-memory hash
+ * index from keys to record offsets. Updates and removals append a new record; the space occupied by superseded
+ * records is reclaimed by a background compaction once it exceeds half of the segment. The index is rebuilt by
+ * scanning the segment when the store is opened.
+ * <p/>
+ * Reads only require an index lookup and return a buffer on the mapped file, so they do not copy the record.
+ */
+public class SegmentStore {
+
+    private static Logger log = LoggerFactory.getLogger(SegmentStore.class);
+
+    // do not compact segments smaller than this
+    private static final int MIN_COMPACTION_SIZE = 4 * 1024 * 1024;
+
+    private final File file;
+
+    private final int regionSize;
+
+    private Segment segment;
+
+    private Map<String,Long> index;
+
+    // number of bytes occupied by superseded and removal records
+    private long garbage;
+
+    private ReentrantReadWriteLock lock;
+
+    private ExecutorService compactionService;
+
+    private AtomicBoolean compacting;
+
+    public SegmentStore(File file) {
+        this(file, Segment.REGION_SIZE);
+    }
+
+    /**
+     * Create a store whose segment file is mapped in regions of the given size instead of the largest mappable size.
+     * A segment file must always be opened with the region size it has been written with.
+     */
+    public SegmentStore(File file, int regionSize) {
+        this.file       = file;
+        this.regionSize = regionSize;
+        this.lock       = new ReentrantReadWriteLock();
+        this.compacting = new AtomicBoolean(false);
+    }
+
+    /**
+     * Open the segment file and build the index of the records it contains.
+     *
+     * @throws IOException in case the segment file could not be opened
+     */
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            index   = new HashMap<>();
+            garbage = 0;
+            segment = Segment.open(file, regionSize, new Segment.Visitor() {
+                @Override
+                public void visit(String key, byte flag, long offset) {
+                    index(key, flag, offset);
+                }
+            });
+
+            // everything not occupied by the header and the current records can be reclaimed by a compaction
+            long live = Segment.HEADER;
+            for(Long offset : index.values()) {
+                live += segment.length(offset);
+            }
+            garbage = segment.size() - live;
+
+            log.info("opened cache segment {} ({} entries, {} bytes)", file.getPath(), index.size(), segment.size());
+
+            compactionService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "LDCache Segment Compaction");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return a buffer holding the record stored for the given key, or null if there is no such record.
+     *
+     * @param key the key to look up
+     * @return a read-only buffer positioned at the beginning of the record
+     */
+    public ByteBuffer get(String key) {
+        lock.readLock().lock();
+        try {
+            Long offset = index.get(key);
+            if(offset == null) {
+                return null;
+            }
+            return segment.payload(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store the record passed as argument for the given key, replacing any existing record.
+     *
+     * @throws IOException in case the record could not be written
+     */
+    public void put(String key, byte[] record) throws IOException {
+        append(key, Segment.FLAG_ENTRY, record);
+    }
+
+    /**
+     * Remove the record stored for the given key, if any.
+     *
+     * @throws IOException in case the removal could not be written
+     */
+    public void remove(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            if(!index.containsKey(key)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        append(key, Segment.FLAG_REMOVED, new byte[0]);
+    }
+
+    /**
+     * Remove all records by replacing the segment with an empty one.
+     *
+     * @throws IOException in case the new segment could not be created
+     */
+    public void clear() throws IOException {
+        lock.writeLock().lock();
+        try {
+            File tmp = new File(file.getPath() + ".new");
+            Segment empty = Segment.create(tmp, regionSize);
+
+            replace(empty, tmp);
+            index   = new HashMap<>();
+            garbage = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return the number of records in the store.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the segment so that it only contains the current records. Readers and writers are only blocked while
+     * records written during the compaction are copied and the new segment is put in place. Compactions do not run
+     * concurrently, since they share the temporary file.
+     *
+     * @throws IOException in case the compacted segment could not be written
+     */
+    public synchronized void compact() throws IOException {
+        Segment source;
+        long end;
+        Map<String,Long> snapshot;
+
+        lock.readLock().lock();
+        try {
+            source   = segment;
+            end      = source.size();
+            snapshot = new HashMap<>(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long start = System.currentTimeMillis();
+
+        // copy the records of the snapshot; the source segment is append-only so no lock is needed
+        File tmp = new File(file.getPath() + ".compact");
+        final Segment target = Segment.create(tmp, regionSize);
+        final Map<String,Long> newIndex = new HashMap<>();
+        boolean replaced = false;
+        try {
+            for(Map.Entry<String,Long> entry : snapshot.entrySet()) {
+                newIndex.put(entry.getKey(), target.copy(source, entry.getValue()));
+            }
+
+            lock.writeLock().lock();
+            try {
+                if(segment != source) {
+                    // the store has been cleared in the meantime
+                    target.close();
+                    tmp.delete();
+                    return;
+                }
+
+                // replay the records written since the snapshot has been taken
+                final Segment current = source;
+                final IOException[] error = new IOException[1];
+                source.scan(end, new Segment.Visitor() {
+                    @Override
+                    public void visit(String key, byte flag, long offset) {
+                        if(flag == Segment.FLAG_REMOVED) {
+                            newIndex.remove(key);
+                        } else if(error[0] == null) {
+                            try {
+                                newIndex.put(key, target.copy(current, offset));
+                            } catch (IOException e) {
+                                error[0] = e;
+                            }
+                        }
+                    }
+                });
+                if(error[0] != null) {
+                    throw error[0];
+                }
+
+                long before = source.size();
+                replace(target, tmp);
+                replaced = true;
+                index   = newIndex;
+                garbage = 0;
+
+                log.info("compacted cache segment {} from {} to {} bytes in {} ms", file.getPath(), before, target.size(), System.currentTimeMillis() - start);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            if(!replaced) {
+                target.close();
+                tmp.delete();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Close the store; waits for a running compaction to finish. Does nothing in case the store has not been opened
+     * successfully.
+     */
+    public void close() {
+        if(compactionService != null) {
+            compactionService.shutdown();
+            try {
+                compactionService.awaitTermination(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                log.warn("interrupted while waiting for segment compaction to finish");
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            if(segment != null) {
+                segment.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(String key, byte flag, byte[] record) throws IOException {
+        boolean compact;
+        lock.writeLock().lock();
+        try {
+            long offset = segment.append(key, flag, record);
+            index(key, flag, offset);
+
+            compact = garbage > segment.size() / 2 && segment.size() > MIN_COMPACTION_SIZE;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if(compact && compacting.compareAndSet(false, true)) {
+            compactionService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        log.error("could not compact cache segment {}: {}", file.getPath(), e.getMessage());
+                    } finally {
+                        compacting.set(false);
+                    }
+                }
+            });
+        }
+    }
+
+    // update the index with a record written at the given offset; caller holds the write lock (garbage is not
+    // counted while the segment is opened)
+    private void index(String key, byte flag, long offset) {
+        Long previous;
+        if(flag == Segment.FLAG_REMOVED) {
+            previous = index.remove(key);
+            garbage += segment != null ? segment.length(offset) : 0;
+        } else {
+            previous = index.put(key, offset);
+        }
+        if(previous != null && segment != null) {
+            garbage += segment.length(previous);
+        }
+    }
+
+    // put the segment stored in tmp in place of the current segment; caller holds the write lock
+    private void replace(Segment replacement, File tmp) throws IOException {
+        replacement.force();
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        replacement.setFile(file);
+
+        segment.close();
+        segment = replacement;
+    }
+}
@@ -126,6 +126,20 @@ public class FileBackendUtils {
 		}
 	}
 
+	public static void deleteDirectory(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (f.isDirectory()) {
+					deleteDirectory(f);
+				} else {
+					f.delete();
+				}
+			}
+		}
+		dir.delete();
+	}
+
 	public static boolean isExpired(CacheEntry ce) {
 		return ce.getExpiryDate().before(new Date());
 	}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.ldcache.backend.file.test;
+
+import org.apache.marmotta.ldcache.backend.file.io.CacheEntryIO;
+import org.apache.marmotta.ldcache.model.CacheEntry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.TreeModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * Test the binary encoding of cache entries, in particular the validators used for conditional requests.
+ */
+public class CacheEntryIOTest {
+
+    private ValueFactory valueFactory = ValueFactoryImpl.getInstance();
+
+    private URI resource = valueFactory.createURI("http://localhost/resource1");
+
+    /**
+     * An entry with validators is read back with the same metadata, validators and triples.
+     */
+    @Test
+    public void testValidators() throws Exception {
+        CacheEntry entry = createEntry();
+        entry.setEtag("\"abc\u00e9\"");
+        entry.setLastModified(new Date(1400000000000L));
+
+        CacheEntry read = CacheEntryIO.read(resource, ByteBuffer.wrap(CacheEntryIO.write(entry)), valueFactory);
+
+        Assert.assertEquals(resource, read.getResource());
+        Assert.assertEquals(entry.getLastRetrieved(), read.getLastRetrieved());
+        Assert.assertEquals(entry.getExpiryDate(), read.getExpiryDate());
+        Assert.assertEquals(entry.getUpdateCount(), read.getUpdateCount());
+        Assert.assertEquals(entry.getTripleCount(), read.getTripleCount());
+        Assert.assertEquals("\"abc\u00e9\"", read.getEtag());
+        Assert.assertEquals(new Date(1400000000000L), read.getLastModified());
+        Assert.assertEquals(entry.getTriples(), read.getTriples());
+    }
+
+    /**
+     * An entry without validators is read back without validators.
+     */
+    @Test
+    public void testNoValidators() throws Exception {
+        CacheEntry entry = createEntry();
+
+        CacheEntry read = CacheEntryIO.read(resource, ByteBuffer.wrap(CacheEntryIO.write(entry)), valueFactory);
+
+        Assert.assertNull(read.getEtag());
+        Assert.assertNull(read.getLastModified());
+        Assert.assertEquals(entry.getTriples(), read.getTriples());
+    }
+
+    /**
+     * Updating the expiry of an encoded entry replaces the dates and increments the update count, keeping the
+     * validators and triples.
+     */
+    @Test
+    public void testUpdateExpiry() throws Exception {
+        CacheEntry entry = createEntry();
+        entry.setEtag("\"abc\"");
+        entry.setLastModified(new Date(1400000000000L));
+
+        Date lastRetrieved = new Date(System.currentTimeMillis() + 1000);
+        Date expiryDate    = new Date(System.currentTimeMillis() + 86400000);
+
+        ByteBuffer data = ByteBuffer.wrap(CacheEntryIO.write(entry));
+        byte[] updated = CacheEntryIO.updateExpiry(data, lastRetrieved, expiryDate);
+
+        // the buffer passed as argument is not modified
+        Assert.assertEquals(0, data.position());
+        Assert.assertEquals(entry.getExpiryDate(), CacheEntryIO.read(resource, data, valueFactory).getExpiryDate());
+
+        CacheEntry read = CacheEntryIO.read(resource, ByteBuffer.wrap(updated), valueFactory);
+        Assert.assertEquals(lastRetrieved, read.getLastRetrieved());
+        Assert.assertEquals(expiryDate, read.getExpiryDate());
+        Assert.assertEquals(entry.getUpdateCount() + 1, read.getUpdateCount().intValue());
+        Assert.assertEquals("\"abc\"", read.getEtag());
+        Assert.assertEquals(new Date(1400000000000L), read.getLastModified());
+        Assert.assertEquals(entry.getTriples(), read.getTriples());
+    }
+
+    private CacheEntry createEntry() {
+        Model triples = new TreeModel();
+        triples.add(resource, valueFactory.createURI("http://localhost/label"), valueFactory.createLiteral("resource", "en"));
+        triples.add(resource, valueFactory.createURI("http://localhost/count"), valueFactory.createLiteral(3));
+        triples.add(resource, valueFactory.createURI("http://localhost/link"), valueFactory.createBNode("b1"));
+
+        CacheEntry entry = new CacheEntry();
+        entry.setResource(resource);
+        entry.setLastRetrieved(new Date(System.currentTimeMillis() - 1000));
+        entry.setExpiryDate(new Date(System.currentTimeMillis() + 60000));
+        entry.setUpdateCount(2);
+        entry.setTripleCount(triples.size());
+        entry.setTriples(triples);
+        return entry;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.ldcache.backend.file.test;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.marmotta.ldcache.backend.file.segment.SegmentStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Test the segment store of the file backend: reopening, compaction and recovery from a corrupted or truncated
+ * last record.
+ */
+public class SegmentStoreTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // size of the segment file header (magic number and version)
+    private static final int HEADER = 8;
+
+    private File directory;
+
+    private File file;
+
+    private SegmentStore store;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDir();
+        file      = new File(directory, "segment");
+
+        store = new SegmentStore(file);
+        store.open();
+    }
+
+    @After
+    public void shutdown() throws IOException {
+        store.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    /**
+     * Updates and removals are visible after reopening the store.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        store.put("a", bytes("a1"));
+        store.put("b", bytes("b1"));
+        store.put("c", bytes("c1"));
+        store.put("a", bytes("a2"));
+        store.remove("b");
+
+        reopen();
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals("a2", string(store.get("a")));
+        Assert.assertNull(store.get("b"));
+        Assert.assertEquals("c1", string(store.get("c")));
+    }
+
+    /**
+     * Compaction reclaims the space of superseded records and keeps the current ones, also after reopening.
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        byte[] payload = new byte[64 * 1024];
+        for(int round = 0; round < 4; round++) {
+            for(int i = 0; i < 50; i++) {
+                Arrays.fill(payload, (byte) round);
+                store.put("key" + i, payload);
+            }
+        }
+        store.remove("key0");
+
+        store.compact();
+
+        // 200 records have been written, only 49 are left
+        Assert.assertTrue(file.length() < 100L * payload.length);
+        Assert.assertEquals(49, store.size());
+
+        reopen();
+
+        Assert.assertEquals(49, store.size());
+        Assert.assertNull(store.get("key0"));
+        for(int i = 1; i < 50; i++) {
+            ByteBuffer record = store.get("key" + i);
+            Assert.assertEquals(payload.length, record.remaining());
+            Assert.assertEquals(3, record.get(0));
+        }
+    }
+
+    /**
+     * Records continue in the next region when the current one is full, so a segment is not limited to the size of a
+     * single mapping; records larger than a region are rejected.
+     */
+    @Test
+    public void testRegions() throws Exception {
+        store.close();
+        FileUtils.deleteQuietly(file);
+
+        int regionSize = 64 * 1024;
+        store = new SegmentStore(file, regionSize);
+        store.open();
+
+        // records of varying sizes, so that region boundaries fall inside records and in the skipped rest of a region
+        for(int i = 0; i < 300; i++) {
+            store.put("key" + i, payload(i));
+        }
+        for(int i = 0; i < 300; i += 3) {
+            store.put("key" + i, payload(i + 1));
+        }
+        Assert.assertTrue(file.length() > 5L * regionSize);
+
+        try {
+            store.put("large", new byte[regionSize]);
+            Assert.fail("a record larger than a region can not be written");
+        } catch (IOException e) {
+            // expected
+        }
+
+        store.close();
+        store = new SegmentStore(file, regionSize);
+        store.open();
+        assertRegions();
+
+        store.compact();
+        store.close();
+        store = new SegmentStore(file, regionSize);
+        store.open();
+        assertRegions();
+    }
+
+    /**
+     * A last record with a wrong checksum is discarded when reopening the store, and new records can be written.
+     */
+    @Test
+    public void testCorruptedLastRecord() throws Exception {
+        store.put("a", bytes("a1"));
+        store.put("b", bytes("b1"));
+        store.close();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // flip the last byte of the payload of the last record
+            long end = lastRecord(raf) + 4 + raf.readInt();
+            raf.seek(end - 1);
+            byte last = raf.readByte();
+            raf.seek(end - 1);
+            raf.writeByte(last ^ 0xff);
+        } finally {
+            raf.close();
+        }
+
+        assertRecovered();
+    }
+
+    /**
+     * A last record that has only partly been written is discarded when reopening the store, and new records can be
+     * written.
+     */
+    @Test
+    public void testTruncatedLastRecord() throws Exception {
+        store.put("a", bytes("a1"));
+        store.put("b", bytes("b1"));
+        store.close();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(lastRecord(raf) + 10);
+        } finally {
+            raf.close();
+        }
+
+        assertRecovered();
+    }
+
+    /**
+     * Closing a store that could not be opened does not fail.
+     */
+    @Test
+    public void testCloseUnopened() throws Exception {
+        // a non-empty directory can neither be opened nor replaced by a new segment
+        File invalid = new File(directory, "invalid");
+        Assert.assertTrue(invalid.mkdir());
+        Assert.assertTrue(new File(invalid, "file").createNewFile());
+
+        SegmentStore unopened = new SegmentStore(invalid);
+        try {
+            unopened.open();
+            Assert.fail("a directory can not be opened as segment");
+        } catch (IOException e) {
+            // expected
+        }
+        unopened.close();
+
+        new SegmentStore(new File(directory, "never-opened")).close();
+    }
+
+    // reopen the store: "a" is still there, "b" is lost, and a new record survives another reopening
+    private void assertRecovered() throws IOException {
+        store = new SegmentStore(file);
+        store.open();
+
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals("a1", string(store.get("a")));
+        Assert.assertNull(store.get("b"));
+
+        store.put("c", bytes("c1"));
+        reopen();
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals("a1", string(store.get("a")));
+        Assert.assertEquals("c1", string(store.get("c")));
+    }
+
+    private void assertRegions() {
+        Assert.assertEquals(300, store.size());
+        for(int i = 0; i < 300; i++) {
+            Assert.assertEquals(ByteBuffer.wrap(payload(i % 3 == 0 ? i + 1 : i)), store.get("key" + i));
+        }
+    }
+
+    // a payload of 100 to 4000 bytes depending on the number
+    private static byte[] payload(int i) {
+        byte[] payload = new byte[100 + (i * 397) % 3900];
+        Arrays.fill(payload, (byte) i);
+        return payload;
+    }
+
+    private void reopen() throws IOException {
+        store.close();
+        store = new SegmentStore(file);
+        store.open();
+    }
+
+    // return the offset of the last record in the segment file and leave the file positioned at it
+    private static long lastRecord(RandomAccessFile raf) throws IOException {
+        long last   = -1;
+        long offset = HEADER;
+        while(offset + 4 <= raf.length()) {
+            raf.seek(offset);
+            int length = raf.readInt();
+            if(length == 0) {
+                break;
+            }
+            last    = offset;
+            offset += 4 + length;
+        }
+        Assert.assertTrue("no record found in segment file", last >= 0);
+        raf.seek(last);
+        return last;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(UTF8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return new String(data, UTF8);
+    }
+}
@@ -38,6 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -203,6 +204,28 @@ public class LDCachingInfinispanBackend implements LDCachingBackend {
         getEntryCache().put(resource.stringValue(), entry);
     }
 
+    /**
+     * Update the retrieval and expiry date of the cache entry for the given resource and increment its update count,
+     * without replacing the cached triples. Does nothing in case there is no entry for the resource.
+     *
+     * @param resource      the resource to update
+     * @param lastRetrieved the date of the retrieval
+     * @param expiryDate    the new expiry date of the entry
+     */
+    @Override
+    public void updateExpiry(URI resource, Date lastRetrieved, Date expiryDate) {
+        CacheEntry entry = getEntryCache().get(resource.stringValue());
+        if(entry != null) {
+            log.debug("updating expiry date for resource {} to {}", resource.stringValue(), expiryDate);
+
+            entry.setLastRetrieved(lastRetrieved);
+            entry.setExpiryDate(expiryDate);
+            entry.setUpdateCount(entry.getUpdateCount() + 1);
+
+            getEntryCache().put(resource.stringValue(), entry);
+        }
+    }
+
     /**
      * Remove the cache entry for the given resource if it exists. Does nothing otherwise.
      *
@@ -41,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.util.Date;
 
 /**
  * Add file description here!
@@ -206,6 +207,34 @@ public class LDCachingKiWiBackend implements LDCachingBackend {
 
     }
 
+    /**
+     * Update the retrieval and expiry date of the cache entry for the given resource and increment its update count,
+     * without replacing the cached triples. Does nothing in case there is no entry for the resource.
+     *
+     * @param resource      the resource to update
+     * @param lastRetrieved the date of the retrieval
+     * @param expiryDate    the new expiry date of the entry
+     */
+    @Override
+    public void updateExpiry(URI resource, Date lastRetrieved, Date expiryDate) {
+        try {
+            try(LDCachingKiWiPersistenceConnection dbcon = persistence.getConnection()) {
+                KiWiCacheEntry entry = dbcon.getCacheEntry(resource.stringValue());
+                if(entry != null) {
+                    try {
+                        dbcon.updateExpiry(entry, lastRetrieved, expiryDate);
+                        dbcon.commit();
+                    } catch (SQLException ex) {
+                        dbcon.rollback();
+                        throw ex;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.error("could not update expiry date of cache entry",e);
+        }
+    }
+
     /**
      * Remove the cache entry for the given resource if it exists. Does nothing otherwise.
      *
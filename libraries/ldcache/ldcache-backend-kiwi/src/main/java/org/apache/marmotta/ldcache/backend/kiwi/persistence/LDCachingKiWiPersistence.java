@@ -19,8 +19,14 @@ package org.apache.marmotta.ldcache.backend.kiwi.persistence;
 
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.sql.SQLException;
+import java.util.Set;
 
 /**
  * A KiWi persistence wrapper for storing caching information in the database used by the KiWi triple store
@@ -30,6 +36,8 @@ import java.sql.SQLException;
  */
 public class LDCachingKiWiPersistence {
 
+    private static Logger log = LoggerFactory.getLogger(LDCachingKiWiPersistence.class);
+
     /**
      * Get the parent persistence service to access the database
      */
@@ -47,7 +55,37 @@ public class LDCachingKiWiPersistence {
      * This method must only be called after the initDatabase of the wrapped KiWiPersistence has been evaluated.
      */
     public void initDatabase() throws SQLException {
-        persistence.initDatabase("ldcache", new String[] {"ldcache_entries"});
+        migrateDatabase();
+
+        persistence.initDatabase("ldcache", new String[] {"ldcache_entries", "ldcache_validators"});
+    }
+
+    /**
+     * Create the table for the validators of cache entries in databases created before validators were stored.
+     */
+    private void migrateDatabase() throws SQLException {
+        LDCachingKiWiPersistenceConnection connection = getConnection();
+        try {
+            Set<String> tables = connection.getDatabaseTables();
+            if(tables.contains("ldcache_entries") && !tables.contains("ldcache_validators")) {
+                log.info("creating table for validators of cache entries ...");
+
+                ScriptRunner runner = new ScriptRunner(connection.getJDBCConnection(), false, false);
+                runner.runScript(new StringReader(getDialect().getCreateScript("ldcache_validators")));
+
+                connection.commit();
+            }
+        } catch (SQLException ex) {
+            log.error("SQL exception while creating validator table, rolling back");
+            connection.rollback();
+            throw ex;
+        } catch (IOException ex) {
+            log.error("I/O exception while creating validator table, rolling back");
+            connection.rollback();
+            throw new SQLException("could not read the creation script for the validator table", ex);
+        } finally {
+            connection.close();
+        }
     }
 
     /**
@@ -30,10 +30,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.Date;
 import java.util.Map;
 import java.util.Set;
@@ -86,6 +88,10 @@ public class LDCachingKiWiPersistenceConnection implements Closeable {
         entry.setUpdateCount(row.getInt("update_count"));
         entry.setResource((URI) connection.loadNodeById(row.getLong("resource_id")));
         entry.setTripleCount(row.getInt("triple_count"));
+        entry.setEtag(row.getString("etag"));
+        if(row.getTimestamp("last_modified") != null) {
+            entry.setLastModified(new Date(row.getTimestamp("last_modified").getTime()));
+        }
 
         entryIdCache.put(id,entry);
         entryResourceCache.put(entry.getResource().stringValue(),entry);
@@ -147,6 +153,8 @@ public class LDCachingKiWiPersistenceConnection implements Closeable {
             kEntry.setUpdateCount(entry.getUpdateCount());
             kEntry.setResource(entry.getResource());
             kEntry.setTripleCount(entry.getTripleCount());
+            kEntry.setEtag(entry.getEtag());
+            kEntry.setLastModified(entry.getLastModified());
         }
 
         if(! (entry.getResource() instanceof KiWiResource) || ((KiWiResource) entry.getResource()).getId() < 0) {
@@ -167,6 +175,18 @@ public class LDCachingKiWiPersistenceConnection implements Closeable {
         insertEntry.setInt(6, kEntry.getTripleCount());
         insertEntry.executeUpdate();
 
+        if(kEntry.getEtag() != null || kEntry.getLastModified() != null) {
+            PreparedStatement insertValidators = connection.getPreparedStatement("store.validators");
+            insertValidators.setLong(1, kEntry.getId());
+            insertValidators.setString(2, kEntry.getEtag());
+            if(kEntry.getLastModified() != null) {
+                insertValidators.setTimestamp(3, new Timestamp(kEntry.getLastModified().getTime()));
+            } else {
+                insertValidators.setNull(3, Types.TIMESTAMP);
+            }
+            insertValidators.executeUpdate();
+        }
+
         log.debug("persisted ld-cache entry with id {}", kEntry.getId());
         
         entryIdCache.put(kEntry.getId(),kEntry);
@@ -174,6 +194,32 @@ public class LDCachingKiWiPersistenceConnection implements Closeable {
 
     }
 
+    /**
+     * Update the retrieval and expiry date of the given cache entry and increment its update count. The cache entry
+     * passed as argument must be a persistent instance of KiWiCacheEntry.
+     *
+     * @param entry         the entry to update
+     * @param lastRetrieved the date of the retrieval
+     * @param expiryDate    the new expiry date
+     * @throws SQLException
+     */
+    public void updateExpiry(KiWiCacheEntry entry, Date lastRetrieved, Date expiryDate) throws SQLException {
+        if(entry.getId() == null) {
+            throw new IllegalStateException("the passed cache entry is not managed by this connection");
+        }
+
+        PreparedStatement updateEntry = connection.getPreparedStatement("update.entry_expiry");
+        updateEntry.setTimestamp(1, new Timestamp(lastRetrieved.getTime()));
+        updateEntry.setTimestamp(2, new Timestamp(expiryDate.getTime()));
+        updateEntry.setLong(3, entry.getId());
+        updateEntry.executeUpdate();
+
+        // the entry instance is shared through the entry caches
+        entry.setLastRetrieved(lastRetrieved);
+        entry.setExpiryDate(expiryDate);
+        entry.setUpdateCount(entry.getUpdateCount() + 1);
+    }
+
     /**
      * Remove the given cache entry from the database. The cache entry passed as argument must be a persistent instance
      * of KiWiCacheEntry.
@@ -185,6 +231,10 @@ public class LDCachingKiWiPersistenceConnection implements Closeable {
             throw new IllegalStateException("the passed cache entry is not managed by this connection");
         }
 
+        PreparedStatement deleteValidators = connection.getPreparedStatement("delete.validators");
+        deleteValidators.setLong(1,((KiWiCacheEntry) entry).getId());
+        deleteValidators.executeUpdate();
+
         PreparedStatement deleteEntry = connection.getPreparedStatement("delete.entry");
         deleteEntry.setLong(1,((KiWiCacheEntry) entry).getId());
         deleteEntry.executeUpdate();
@@ -201,6 +251,10 @@ public class LDCachingKiWiPersistenceConnection implements Closeable {
      */
     public void removeCacheEntry(String uri) throws SQLException {
 
+        PreparedStatement deleteValidators = connection.getPreparedStatement("delete.validators_by_uri");
+        deleteValidators.setString(1,uri);
+        deleteValidators.executeUpdate();
+
         PreparedStatement deleteEntry = connection.getPreparedStatement("delete.entry_by_uri");
         deleteEntry.setString(1,uri);
         deleteEntry.executeUpdate();
@@ -352,6 +406,13 @@ public class LDCachingKiWiPersistenceConnection implements Closeable {
         return connection.getDatabaseTables();
     }
 
+    /**
+     * Return the JDBC connection wrapped by this connection (e.g. for running SQL scripts).
+     */
+    public Connection getJDBCConnection() throws SQLException {
+        return connection.getJDBCConnection();
+    }
+
     /**
      * Return the KiWi version of the database this connection is operating on. This query is necessary for
      * checking proper state of a database when initialising the system.
@@ -15,5 +15,6 @@
 DROP INDEX IF EXISTS idx_ldcache_expires;
 DROP INDEX IF EXISTS idx_ldcache_resource;
 
+DROP TABLE IF EXISTS ldcache_validators;
 DROP TABLE IF EXISTS ldcache_entries;
 
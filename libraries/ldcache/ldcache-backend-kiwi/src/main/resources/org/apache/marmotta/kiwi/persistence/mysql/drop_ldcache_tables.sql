@@ -15,4 +15,5 @@
 DROP INDEX idx_ldcache_expires ON ldcache_entries;
 DROP INDEX idx_ldcache_resource ON ldcache_entries;
 
+DROP TABLE IF EXISTS ldcache_validators;
 DROP TABLE IF EXISTS ldcache_entries;
@@ -22,6 +22,14 @@ CREATE TABLE ldcache_entries (
   PRIMARY KEY(id)
 );
 
+-- validators (entity tag and modification date) returned by the server, used for conditional requests
+CREATE TABLE ldcache_validators (
+  entry_id      bigint        NOT NULL REFERENCES ldcache_entries(id),
+  etag          varchar(1024),
+  last_modified timestamp,
+  PRIMARY KEY(entry_id)
+);
+
 
 CREATE INDEX idx_ldcache_expires ON ldcache_entries(expires_at);
 CREATE INDEX idx_ldcache_resource ON ldcache_entries(resource_id);
@@ -0,0 +1,24 @@
+-- Licensed to the Apache Software Foundation (ASF) under one or more
+-- contributor license agreements.  See the NOTICE file distributed with
+-- this work for additional information regarding copyright ownership.
+-- The ASF licenses this file to You under the Apache License, Version 2.0
+-- (the "License"); you may not use this file except in compliance with
+-- the License.  You may obtain a copy of the License at
+--
+--      http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- migration for databases created before validators of cache entries were stored
+
+-- validators (entity tag and modification date) returned by the server, used for conditional requests
+CREATE TABLE ldcache_validators (
+  entry_id      bigint        NOT NULL REFERENCES ldcache_entries(id),
+  etag          varchar(1024),
+  last_modified timestamp,
+  PRIMARY KEY(entry_id)
+);
@@ -15,4 +15,5 @@
 DROP INDEX idx_ldcache_expires;
 DROP INDEX idx_ldcache_resource;
 
+DROP TABLE IF EXISTS ldcache_validators;
 DROP TABLE IF EXISTS ldcache_entries;
@@ -166,7 +166,7 @@ public class LDCachePersistenceTest {
         // test if database exists and has a version
         LDCachingKiWiPersistenceConnection connection = vpersistence.getConnection();
         try {
-            Assert.assertThat(connection.getDatabaseTables(), hasItems("ldcache_entries"));
+            Assert.assertThat(connection.getDatabaseTables(), hasItems("ldcache_entries", "ldcache_validators"));
             Assert.assertEquals(KiWiDialect.VERSION, connection.getDatabaseVersion());
 
             connection.commit();
@@ -291,6 +291,56 @@ public class LDCachePersistenceTest {
 
     }
 
+    @Test
+    public void testValidatorsUpdateExpiry() throws Exception {
+        LDCachingKiWiPersistenceConnection connection = vpersistence.getConnection();
+        try {
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+ RandomStringUtils.randomAlphanumeric(8));
+
+            connection.storeNode(subject);
+
+            Date lastModified = new Date(System.currentTimeMillis() - 1000*60*60);
+
+            KiWiCacheEntry entry = new KiWiCacheEntry();
+            entry.setExpiryDate(new Date(System.currentTimeMillis() - 1000*60));
+            entry.setLastRetrieved(new Date(System.currentTimeMillis() - 1000*60*2));
+            entry.setUpdateCount(1);
+            entry.setResource(subject);
+            entry.setTripleCount(1);
+            entry.setEtag("\"abc123\"");
+            entry.setLastModified(lastModified);
+            connection.storeCacheEntry(entry);
+
+            connection.commit();
+
+            Assert.assertEquals(1,asList(connection.listExpired()).size());
+
+            KiWiCacheEntry stored = connection.getCacheEntry(subject.stringValue());
+            Assert.assertEquals("\"abc123\"", stored.getEtag());
+            Assert.assertEquals(lastModified.getTime() / 1000, stored.getLastModified().getTime() / 1000);
+
+            connection.updateExpiry(stored, new Date(), new Date(System.currentTimeMillis() + 1000*60));
+
+            connection.commit();
+
+            Assert.assertEquals(0,asList(connection.listExpired()).size());
+
+            KiWiCacheEntry updated = connection.getCacheEntry(subject.stringValue());
+            Assert.assertEquals(2, (int) updated.getUpdateCount());
+            Assert.assertEquals("\"abc123\"", updated.getEtag());
+
+            connection.removeCacheEntry(updated);
+
+            connection.commit();
+
+            Assert.assertEquals(0,asList(connection.listAll()).size());
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
 
 
     /**
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.ldcache.jmx;
+
+/**
+ * Hit, staleness and refresh metrics of an LDCache, to be published in JMX.
+ */
+public interface LDCacheMBean {
+
+    /**
+     * Number of accesses served from a cached entry that was not expired.
+     */
+    long getHits();
+
+    /**
+     * Number of accesses that retrieved the resource from the remote server before returning, because it was not
+     * cached, its entry was expired (and could not be served stale) or refreshing was forced.
+     */
+    long getRetrievals();
+
+    /**
+     * Number of times an expired entry has been served while refreshing it in the background.
+     */
+    long getStaleHits();
+
+    /**
+     * Number of completed background refreshes.
+     */
+    long getBackgroundRefreshes();
+
+    /**
+     * Number of background refreshes dropped because the refresh queue was full.
+     */
+    long getRejectedRefreshes();
+
+    /**
+     * Number of refreshes answered by the remote server with "not modified".
+     */
+    long getNotModifiedRefreshes();
+
+    /**
+     * Average time in milliseconds between scheduling a background refresh and its completion.
+     */
+    long getAverageRefreshLatency();
+
+    /**
+     * Number of resources waiting in the queue for a background refresh.
+     */
+    int getRefreshQueueDepth();
+
+    /**
+     * Number of resources for which a background refresh is queued or running.
+     */
+    int getPendingRefreshes();
+}
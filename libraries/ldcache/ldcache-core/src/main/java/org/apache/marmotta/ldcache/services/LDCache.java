@@ -17,9 +17,11 @@
 
 package org.apache.marmotta.ldcache.services;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.marmotta.commons.locking.ObjectLocks;
 import org.apache.marmotta.ldcache.api.LDCachingBackend;
 import org.apache.marmotta.ldcache.api.LDCachingService;
+import org.apache.marmotta.ldcache.jmx.LDCacheMBean;
 import org.apache.marmotta.ldcache.model.CacheConfiguration;
 import org.apache.marmotta.ldcache.model.CacheEntry;
 import org.apache.marmotta.ldclient.api.ldclient.LDClientService;
@@ -32,10 +34,22 @@ import org.openrdf.model.impl.TreeModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -43,10 +57,13 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
-public class LDCache implements LDCachingService {
+public class LDCache implements LDCachingService, LDCacheMBean {
 
     private static Logger log = LoggerFactory.getLogger(LDCache.class);
 
+    // distinguishes the JMX names of several caches in the same VM
+    private static AtomicInteger instances = new AtomicInteger(0);
+
     // lock a resource while refreshing it so that not several threads trigger a refresh at the same time
     private ObjectLocks resourceLocks;
 
@@ -58,6 +75,17 @@ public class LDCache implements LDCachingService {
 
     private ReentrantReadWriteLock lock;
 
+    // bounded pool refreshing expired entries in the background in stale-while-revalidate mode
+    private ThreadPoolExecutor refreshPool;
+
+    // resources currently waiting for or running a background refresh; used to coalesce refresh requests
+    private ConcurrentMap<String,Boolean> pendingRefreshes;
+
+    private AtomicLong hits, retrievals, staleHits, backgroundRefreshes, rejectedRefreshes, refreshLatency, notModified;
+
+    // the name of the metrics in JMX, null if they could not be registered
+    private ObjectName jmxName;
+
     /**
      * Create a new instance of LDCache using the provided LDCache configuration and backend. The backend needs to
      * be initialized already. The cache configuration will be used to create an instance of LDClient.
@@ -71,6 +99,29 @@ public class LDCache implements LDCachingService {
         this.ldclient = new LDClient(config.getClientConfiguration());
         this.config   = config;
         this.lock = new ReentrantReadWriteLock();
+
+        this.pendingRefreshes = new ConcurrentHashMap<>();
+        this.refreshPool = new ThreadPoolExecutor(
+                config.getRefreshThreads(), config.getRefreshThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(config.getRefreshQueueSize()),
+                new ThreadFactoryBuilder().setNameFormat("LDCache Refresh %d").setDaemon(true).build());
+        this.refreshPool.allowCoreThreadTimeOut(true);
+
+        this.hits                = new AtomicLong(0);
+        this.retrievals          = new AtomicLong(0);
+        this.staleHits           = new AtomicLong(0);
+        this.backgroundRefreshes = new AtomicLong(0);
+        this.rejectedRefreshes   = new AtomicLong(0);
+        this.refreshLatency      = new AtomicLong(0);
+        this.notModified         = new AtomicLong(0);
+
+        try {
+            ObjectName name = new ObjectName("org.apache.marmotta.ldcache.jmx:type=LDCache,id=" + instances.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this, LDCacheMBean.class), name);
+            jmxName = name;
+        } catch (JMException e) {
+            log.warn("could not register cache metrics in JMX: {}", e.getMessage());
+        }
     }
 
 
@@ -94,6 +145,9 @@ public class LDCache implements LDCachingService {
      * Refresh the resource passed as argument. If the resource is not yet cached or the cache entry is
      * expired or refreshing is forced, the remote resource is retrieved using LDClient and the result stored
      * in the cache. Otherwise the method does nothing.
+     * <p/>
+     * In stale-while-revalidate mode, an expired entry that is not older than the maximum staleness is kept as it is
+     * and the resource is refreshed in the background, so the caller does not wait for the remote retrieval.
      *
      * @param resource the resource to refresh
      * @param options  options for refreshing
@@ -102,22 +156,96 @@ public class LDCache implements LDCachingService {
     public void refresh(URI resource, RefreshOpts... options) {
         Set<RefreshOpts> optionSet = new HashSet<>(Arrays.asList(options));
 
+        if(config.isStaleWhileRevalidate() && !optionSet.contains(RefreshOpts.FORCE)) {
+            CacheEntry entry = backend.getEntry(resource);
+            if(entry != null && entry.getExpiryDate().getTime() + config.getMaxStaleness() * 1000 > System.currentTimeMillis()) {
+                if(entry.getExpiryDate().before(new Date())) {
+                    log.debug("serving expired entry for resource {} and refreshing it in the background",resource);
+                    staleHits.incrementAndGet();
+                    scheduleRefresh(resource);
+                } else {
+                    hits.incrementAndGet();
+                }
+                return;
+            }
+        }
+
+        if(retrieve(resource, optionSet.contains(RefreshOpts.FORCE))) {
+            retrievals.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Refresh the resource passed as argument in the background, unless a background refresh for the same resource
+     * is already pending. In case the refresh queue is full, the request is dropped and the resource will be scheduled
+     * again on the next access.
+     */
+    private void scheduleRefresh(final URI resource) {
+        final String key = resource.stringValue();
+        if(pendingRefreshes.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+
+        final long queued = System.currentTimeMillis();
+        try {
+            refreshPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        retrieve(resource, false);
+
+                        backgroundRefreshes.incrementAndGet();
+                        refreshLatency.addAndGet(System.currentTimeMillis() - queued);
+                    } catch (RuntimeException ex) {
+                        log.error("error while refreshing resource {} in the background: {}", resource, ex.getMessage());
+                    } finally {
+                        pendingRefreshes.remove(key);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pendingRefreshes.remove(key);
+            rejectedRefreshes.incrementAndGet();
+            log.debug("refresh queue is full, not refreshing resource {} in the background",resource);
+        }
+    }
+
+    /**
+     * Retrieve the resource using LDClient and store the result in the cache, unless it is cached and not yet expired
+     * and force is false.
+     *
+     * @return true in case the resource has been retrieved, false in case the cached entry was used
+     */
+    private boolean retrieve(URI resource, boolean force) {
         resourceLocks.lock(resource.stringValue());
         try {
             // check if the resource is already cached; if yes, and refresh is not forced, return immediately
             CacheEntry entry = backend.getEntry(resource);
-            if(!optionSet.contains(RefreshOpts.FORCE) && entry != null && entry.getExpiryDate().after(new Date())) {
+            if(!force && entry != null && entry.getExpiryDate().after(new Date())) {
                 log.debug("not refreshing resource {}, as the cached entry is not yet expired",resource);
-                return;
+                return false;
             }
 
             // refresh the resource by calling LDClient
             log.debug("refreshing resource {}",resource);
             this.lock.readLock().lock();
             try {
-                ClientResponse response = ldclient.retrieveResource(resource.stringValue());
+                ClientResponse response;
+                if(!force && entry != null && (entry.getEtag() != null || entry.getLastModified() != null)) {
+                    // ask the server to only send the resource in case it has changed since the last retrieval
+                    response = ldclient.retrieveResource(resource.stringValue(), entry.getEtag(), entry.getLastModified());
+                } else {
+                    response = ldclient.retrieveResource(resource.stringValue());
+                }
+
+                if(response != null && response.isNotModified() && entry != null) {
+                    log.info("resource {} not modified, extending expiry date",resource);
 
-                if(response != null) {
+                    notModified.incrementAndGet();
+                    backend.updateExpiry(resource, new Date(), response.getExpires());
+                } else if(response != null) {
                     log.info("refreshed resource {}",resource);
 
                     CacheEntry newEntry = new CacheEntry();
@@ -131,6 +259,8 @@ public class LDCache implements LDCachingService {
                     }
                     newEntry.setTripleCount(response.getData().size());
                     newEntry.setTriples(response.getData());
+                    newEntry.setEtag(response.getEtag());
+                    newEntry.setLastModified(response.getLastModified());
 
                     backend.putEntry(resource, newEntry);
 
@@ -156,6 +286,7 @@ public class LDCache implements LDCachingService {
             } finally {
                 this.lock.readLock().unlock();
             }
+            return true;
         } finally {
             resourceLocks.unlock(resource.stringValue());
         }
@@ -220,6 +351,25 @@ public class LDCache implements LDCachingService {
      */
     @Override
     public void shutdown() {
+        refreshPool.shutdown();
+        try {
+            if(!refreshPool.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("background refreshes did not finish in time, cancelling them");
+                refreshPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            refreshPool.shutdownNow();
+        }
+
+        if(jmxName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(jmxName);
+            } catch (JMException e) {
+                log.warn("could not unregister cache metrics from JMX: {}", e.getMessage());
+            }
+            jmxName = null;
+        }
+
         backend.shutdown();
     }
 
@@ -227,4 +377,78 @@ public class LDCache implements LDCachingService {
     public LDClientService getClient() {
         return ldclient;
     }
+
+    /**
+     * Return the number of accesses served from a cached entry that was not expired.
+     */
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Return the number of accesses that retrieved the resource from the remote server before returning.
+     */
+    @Override
+    public long getRetrievals() {
+        return retrievals.get();
+    }
+
+    /**
+     * Return the number of resources waiting in the queue for a background refresh.
+     */
+    @Override
+    public int getRefreshQueueDepth() {
+        return refreshPool.getQueue().size();
+    }
+
+    /**
+     * Return the number of resources for which a background refresh is queued or running.
+     */
+    @Override
+    public int getPendingRefreshes() {
+        return pendingRefreshes.size();
+    }
+
+    /**
+     * Return the number of times an expired entry has been served while refreshing it in the background.
+     */
+    @Override
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    /**
+     * Return the number of completed background refreshes.
+     */
+    @Override
+    public long getBackgroundRefreshes() {
+        return backgroundRefreshes.get();
+    }
+
+    /**
+     * Return the number of background refreshes dropped because the refresh queue was full.
+     */
+    @Override
+    public long getRejectedRefreshes() {
+        return rejectedRefreshes.get();
+    }
+
+    /**
+     * Return the number of refreshes answered by the remote server with "not modified", which only extended the
+     * expiry date of the cached entry.
+     */
+    @Override
+    public long getNotModifiedRefreshes() {
+        return notModified.get();
+    }
+
+    /**
+     * Return the average time in milliseconds between scheduling a background refresh and its completion.
+     */
+    @Override
+    public long getAverageRefreshLatency() {
+        long count = backgroundRefreshes.get();
+        return count > 0 ? refreshLatency.get() / count : 0;
+    }
 }
@@ -21,9 +21,14 @@ import org.apache.commons.io.IOUtils;
 import org.apache.marmotta.commons.sesame.model.ModelCommons;
 import org.apache.marmotta.ldcache.api.LDCachingBackend;
 import org.apache.marmotta.ldcache.model.CacheConfiguration;
+import org.apache.marmotta.ldcache.model.CacheEntry;
 import org.apache.marmotta.ldcache.services.LDCache;
+import org.apache.marmotta.ldcache.services.test.dummy.ConditionalDummyProvider;
+import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
+import org.apache.marmotta.ldclient.model.ClientConfiguration;
 import org.junit.*;
 import org.openrdf.model.Model;
+import org.openrdf.model.URI;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.query.BooleanQuery;
@@ -36,6 +41,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.util.Date;
 
 /**
  * Add file description here!
@@ -53,6 +59,7 @@ public abstract class BaseLDCacheTest {
 
     protected LDCache ldcache;
 
+    protected LDCachingBackend backend;
 
     protected ValueFactory valueFactory = ValueFactoryImpl.getInstance();
 
@@ -67,7 +74,13 @@ public abstract class BaseLDCacheTest {
 
     @Before
     public void setup() {
-        ldcache = new LDCache(new CacheConfiguration(), createBackend());
+        backend = createBackend();
+        ldcache = new LDCache(new CacheConfiguration(), backend);
+    }
+
+    @After
+    public void shutdown() {
+        ldcache.shutdown();
     }
 
 
@@ -124,6 +137,87 @@ public abstract class BaseLDCacheTest {
 
         Assert.assertTrue(ldcache.contains(valueFactory.createURI(uri3)));
         Assert.assertEquals(2, ldcache.get(valueFactory.createURI(uri3)).size());
+
+        // each resource has been retrieved once and then served from the cache
+        Assert.assertEquals(3, ldcache.getRetrievals());
+        Assert.assertEquals(3, ldcache.getHits());
+    }
+
+    /**
+     * Test serving an expired entry while refreshing it in the background (provided by DummyProvider).
+     */
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        CacheConfiguration config = new CacheConfiguration();
+        config.setStaleWhileRevalidate(true);
+
+        // replace the default cache, so that only one cache uses the backend and is shut down after the test
+        ldcache.shutdown();
+        backend = createBackend();
+        ldcache = new LDCache(config, backend);
+
+        URI uri = valueFactory.createURI("http://localhost/resource1");
+        ldcache.refresh(uri);
+
+        // let the cached entry expire a minute ago
+        CacheEntry entry = backend.getEntry(uri);
+        entry.setExpiryDate(new Date(System.currentTimeMillis() - 60000));
+        backend.putEntry(uri, entry);
+
+        // the expired entry is returned immediately and refreshed in the background
+        Assert.assertEquals(3, ldcache.get(uri).size());
+        Assert.assertEquals(1, ldcache.getStaleHits());
+
+        for(int i=0; i<100 && ldcache.getBackgroundRefreshes() == 0; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(1, ldcache.getBackgroundRefreshes());
+        Assert.assertEquals(0, ldcache.getPendingRefreshes());
+        Assert.assertTrue(backend.getEntry(uri).getExpiryDate().after(new Date()));
+        Assert.assertEquals(2, backend.getEntry(uri).getUpdateCount().intValue());
+    }
+
+    /**
+     * Test refreshing an expired entry with a conditional request answered with "304 Not Modified": the expiry date
+     * is extended through the backend without replacing the triples (provided by ConditionalDummyProvider).
+     */
+    @Test
+    public void testNotModified() throws Exception {
+        ConditionalDummyProvider provider = new ConditionalDummyProvider();
+
+        ClientConfiguration clientConfig = new ClientConfiguration();
+        clientConfig.addProvider(provider);
+        clientConfig.addEndpoint(new Endpoint(ConditionalDummyProvider.NAME, ConditionalDummyProvider.NAME, "^http://conditional\\.localhost/", null, 86400L));
+
+        // replace the default cache, so that only one cache uses the backend and is shut down after the test
+        ldcache.shutdown();
+        backend = createBackend();
+        ldcache = new LDCache(new CacheConfiguration(clientConfig), backend);
+
+        URI uri = valueFactory.createURI("http://conditional.localhost/resource1");
+        ldcache.refresh(uri);
+
+        Assert.assertEquals(1, provider.getRequests());
+        Assert.assertEquals(ConditionalDummyProvider.ETAG, backend.getEntry(uri).getEtag());
+
+        // let the cached entry expire a minute ago
+        CacheEntry entry = backend.getEntry(uri);
+        entry.setExpiryDate(new Date(System.currentTimeMillis() - 60000));
+        backend.putEntry(uri, entry);
+
+        ldcache.refresh(uri);
+
+        Assert.assertEquals(2, provider.getRequests());
+        Assert.assertEquals(1, provider.getNotModified());
+        Assert.assertEquals(1, ldcache.getNotModifiedRefreshes());
+        Assert.assertEquals(2, ldcache.getRetrievals());
+
+        // the entry is valid again and still contains the triples of the first retrieval
+        CacheEntry refreshed = backend.getEntry(uri);
+        Assert.assertTrue(refreshed.getExpiryDate().after(new Date()));
+        Assert.assertEquals(2, refreshed.getUpdateCount().intValue());
+        Assert.assertEquals(ConditionalDummyProvider.ETAG, refreshed.getEtag());
+        Assert.assertEquals(3, ldcache.get(uri).size());
     }
 
 
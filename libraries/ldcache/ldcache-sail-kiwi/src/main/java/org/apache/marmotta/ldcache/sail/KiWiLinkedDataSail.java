@@ -59,7 +59,7 @@ public class KiWiLinkedDataSail extends NotifyingSailWrapper {
      * @param cacheContextUri the URI of the context to use for storing cached triples
      */
     public KiWiLinkedDataSail(NotifyingSail baseSail, SesameFilter<Resource> acceptor, String cacheContextUri) {
-        this(baseSail, acceptor, cacheContextUri,null);
+        this(baseSail, acceptor, cacheContextUri, (ClientConfiguration) null);
     }
 
     /**
@@ -72,15 +72,26 @@ public class KiWiLinkedDataSail extends NotifyingSailWrapper {
      * @param cacheContextUri the URI of the context to use for storing cached triples
      */
     public KiWiLinkedDataSail(NotifyingSail baseSail, SesameFilter<Resource> acceptor, String cacheContextUri, ClientConfiguration clientConfiguration) {
+        this(baseSail, acceptor, cacheContextUri, clientConfiguration != null ? new CacheConfiguration(clientConfiguration) : new CacheConfiguration());
+    }
+
+    /**
+     * Creates a new SAIL with transparent Linked Data access. Caching information is stored in the underlying
+     * KiWi triple store.
+     *
+     * @param baseSail the wrapped SAIL; at the parent level must be a KiWiStore
+     * @param acceptor a filter that selects which resources are considered as external Linked Data resources,
+     *                 e.g. all resources not matching http://localhost and file:
+     * @param cacheContextUri the URI of the context to use for storing cached triples
+     * @param cacheConfiguration the LDCache configuration, including the LDClient configuration
+     */
+    public KiWiLinkedDataSail(NotifyingSail baseSail, SesameFilter<Resource> acceptor, String cacheContextUri, CacheConfiguration cacheConfiguration) {
         super(baseSail);
 
         this.store = getBaseStore();
         this.cache_context = cacheContextUri;
         this.acceptor = acceptor;
-        this.config = new CacheConfiguration();
-        if(clientConfiguration != null) {
-            config.setClientConfiguration(clientConfiguration);
-        }
+        this.config = cacheConfiguration;
     }
 
 
@@ -81,6 +81,11 @@ public class Endpoint implements Comparable<Endpoint> {
 
     public static final String REGEX_INDICATOR = "~";
 
+    /**
+     * Property holding the maximum number of requests for the documents of a single resource to run in parallel.
+     */
+    public static final String PROPERTY_PARALLEL_REQUESTS = "parallel_requests";
+
     /**
      * A regular expression describing for which URIs the endpoint applies. The endpoint will be applied to all
      * resource requests matching with this pattern.
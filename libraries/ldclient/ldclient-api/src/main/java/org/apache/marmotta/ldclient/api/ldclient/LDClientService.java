@@ -23,8 +23,11 @@ import org.apache.marmotta.ldclient.api.provider.DataProvider;
 import org.apache.marmotta.ldclient.exception.DataRetrievalException;
 import org.apache.marmotta.ldclient.model.ClientConfiguration;
 import org.apache.marmotta.ldclient.model.ClientResponse;
+import org.openrdf.rio.RDFHandler;
 
+import java.util.Date;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * A service offering Linked Data client functionality for retrieving Linked Data resources from the cloud.
@@ -55,6 +58,29 @@ public interface LDClientService {
      */
     public ClientResponse retrieveResource(String resource) throws DataRetrievalException;
 
+    /**
+     * Retrieve all triples for this resource from the Linked Data Cloud like retrieveResource(String), but pass the
+     * triples to the given handler while they are retrieved instead of collecting them in memory. The data of the
+     * returned client response is empty; only the status and expiry information are set.
+     *
+     * @param resource  the URI resource for which to retrieve the triples
+     * @param handler   the handler receiving the retrieved triples
+     * @return a client response with status and expiry information
+     */
+    public ClientResponse retrieveResource(String resource, RDFHandler handler) throws DataRetrievalException;
+
+    /**
+     * Retrieve all triples for this resource from the Linked Data Cloud like retrieveResource(String), but send a
+     * conditional request using the validators of a previous retrieval. In case the resource has not been modified,
+     * the returned client response has the status 304 (see ClientResponse.isNotModified()) and contains no data.
+     *
+     * @param resource      the URI resource for which to retrieve the triples
+     * @param etag          the entity tag returned by the previous retrieval (may be null)
+     * @param lastModified  the modification date returned by the previous retrieval (may be null)
+     * @return the client response, including the validators returned by the server
+     */
+    public ClientResponse retrieveResource(String resource, String etag, Date lastModified) throws DataRetrievalException;
+
     /**
      * Get access to the Apache HTTP Client managed by the connection handler to execute
      * a request.
@@ -70,6 +96,14 @@ public interface LDClientService {
      */
     public ClientConfiguration getClientConfiguration();
 
+    /**
+     * Get the executor used by data providers to run the requests for the documents of a resource in parallel. The
+     * executor is owned by the client and shut down together with it.
+     *
+     * @return
+     */
+    public ExecutorService getRequestExecutor();
+
     /**
      * Retrieve the endpoint matching the KiWiUriResource passed as argument. The endpoint is determined by
      * matching the endpoint's URI prefix with the resource URI. If no matching endpoint exists, returns null.
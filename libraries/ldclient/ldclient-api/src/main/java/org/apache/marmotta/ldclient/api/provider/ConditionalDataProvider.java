@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldclient.api.provider;
+
+import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
+import org.apache.marmotta.ldclient.api.ldclient.LDClientService;
+import org.apache.marmotta.ldclient.exception.DataRetrievalException;
+import org.apache.marmotta.ldclient.model.ClientResponse;
+
+import java.util.Date;
+
+/**
+ * A data provider that is able to send conditional requests, so that a resource that did not change since it has
+ * been retrieved the last time does not need to be transferred and parsed again.
+ */
+public interface ConditionalDataProvider extends DataProvider {
+
+    /**
+     * Retrieve the data for a resource unless it has not been modified according to the validators passed as
+     * argument. In case the resource has not been modified, the returned client response has the status 304 and
+     * does not contain any data, but the expiry information is set.
+     *
+     * @param resource     the resource to be retrieved
+     * @param client       the client used for retrieval
+     * @param endpoint     the endpoint definition
+     * @param etag         the entity tag returned when the resource was retrieved the last time (may be null)
+     * @param lastModified the modification date returned when the resource was retrieved the last time (may be null)
+     * @return a completely specified client response, including expiry information, validators and the set of triples
+     */
+    public ClientResponse retrieveResource(String resource, LDClientService client, Endpoint endpoint, String etag, Date lastModified) throws DataRetrievalException;
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldclient.api.provider;
+
+import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
+import org.apache.marmotta.ldclient.api.ldclient.LDClientService;
+import org.apache.marmotta.ldclient.exception.DataRetrievalException;
+import org.apache.marmotta.ldclient.model.ClientResponse;
+import org.openrdf.rio.RDFHandler;
+
+/**
+ * A data provider that is able to pass the retrieved triples to an RDFHandler while retrieving a resource, instead
+ * of collecting all triples in memory before returning them.
+ */
+public interface StreamingDataProvider extends DataProvider {
+
+    /**
+     * Retrieve the data for a resource and pass all retrieved triples to the given handler. The data of the returned
+     * client response is empty; only the status and expiry information are set.
+     *
+     * @param resource the resource to be retrieved
+     * @param client   the client used for retrieval
+     * @param endpoint the endpoint definition
+     * @param handler  the handler receiving the retrieved triples; calls to the handler are never concurrent
+     * @return a client response with status and expiry information
+     */
+    public ClientResponse retrieveResource(String resource, LDClientService client, Endpoint endpoint, RDFHandler handler) throws DataRetrievalException;
+
+}
@@ -21,7 +21,9 @@ import org.apache.http.client.HttpClient;
 import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
 import org.apache.marmotta.ldclient.api.provider.DataProvider;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -47,6 +49,39 @@ public class ClientConfiguration {
      */
     private int maxParallelRequests = 10;
 
+    /**
+     * Maximum number of requests for the documents of a single resource (e.g. pages) to run in parallel, unless the
+     * endpoint defines a different limit.
+     */
+    private int maxParallelPageRequests = 1;
+
+    /**
+     * Maximum number of pooled HTTP connections. Default: 20.
+     */
+    private int maxConnections = 20;
+
+    /**
+     * Maximum number of pooled HTTP connections per host, unless configured differently for the host. Default: 10.
+     */
+    private int maxConnectionsPerHost = 10;
+
+    /**
+     * Maximum number of pooled HTTP connections for individual hosts, e.g. for hosts where many resources are
+     * retrieved from.
+     */
+    private Map<String,Integer> hostConnections;
+
+    /**
+     * Time in milliseconds to keep a connection alive for reuse in case the server does not send a keep-alive
+     * timeout. Default: 30 seconds.
+     */
+    private long keepAliveTimeout = 30000;
+
+    /**
+     * Time in milliseconds after which idle pooled connections are closed. Default: 30 seconds.
+     */
+    private long idleConnectionTimeout = 30000;
+
 
     /**
      * Default expiry time in seconds if not given by the server.
@@ -86,6 +121,7 @@ public class ClientConfiguration {
         excludeUris = new HashSet<>();
         endpoints   = new HashSet<>();
         providers   = new HashSet<>();
+        hostConnections = new HashMap<>();
         httpClient = null;
     }
 
@@ -133,6 +169,103 @@ public class ClientConfiguration {
         this.maxParallelRequests = maxParallelRequests;
     }
 
+    /**
+     * Maximum number of requests for the documents of a single resource (e.g. pages) to run in parallel, unless the
+     * endpoint defines a different limit in its "parallel_requests" property. Default: 1 (sequential retrieval).
+     */
+    public int getMaxParallelPageRequests() {
+        return maxParallelPageRequests;
+    }
+
+    /**
+     * Maximum number of requests for the documents of a single resource (e.g. pages) to run in parallel, unless the
+     * endpoint defines a different limit in its "parallel_requests" property. Default: 1 (sequential retrieval).
+     */
+    public void setMaxParallelPageRequests(int maxParallelPageRequests) {
+        this.maxParallelPageRequests = maxParallelPageRequests;
+    }
+
+
+    /**
+     * Maximum number of pooled HTTP connections. Default: 20.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Maximum number of pooled HTTP connections. Default: 20.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Maximum number of pooled HTTP connections per host, unless configured differently for the host. Default: 10.
+     */
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Maximum number of pooled HTTP connections per host, unless configured differently for the host. Default: 10.
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Set the maximum number of pooled HTTP connections for the given host. The host is given by its name (http and
+     * https on their default ports), as "name:port" (http and https on that port), or as "http://name[:port]" or
+     * "https://name[:port]" (a single scheme).
+     */
+    public void setMaxConnectionsForHost(String host, int maxConnections) {
+        hostConnections.put(host, maxConnections);
+    }
+
+    /**
+     * Maximum number of pooled HTTP connections for individual hosts (see setMaxConnectionsForHost).
+     */
+    public Map<String, Integer> getHostConnections() {
+        return hostConnections;
+    }
+
+    /**
+     * Maximum number of pooled HTTP connections for individual hosts (see setMaxConnectionsForHost).
+     */
+    public void setHostConnections(Map<String, Integer> hostConnections) {
+        this.hostConnections = hostConnections;
+    }
+
+    /**
+     * Time in milliseconds to keep a connection alive for reuse in case the server does not send a keep-alive
+     * timeout. Default: 30 seconds.
+     */
+    public long getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    /**
+     * Time in milliseconds to keep a connection alive for reuse in case the server does not send a keep-alive
+     * timeout. Default: 30 seconds.
+     */
+    public void setKeepAliveTimeout(long keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    /**
+     * Time in milliseconds after which idle pooled connections are closed. Default: 30 seconds.
+     */
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    /**
+     * Time in milliseconds after which idle pooled connections are closed. Default: 30 seconds.
+     */
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
 
     /**
      * Default expiry time in seconds if not given by the server.
@@ -47,6 +47,16 @@ public class ClientResponse {
 
     private Date expires;
 
+    /**
+     * The entity tag returned by the server, used for conditional requests when refreshing the resource
+     */
+    private String etag;
+
+    /**
+     * The last modification date returned by the server, used for conditional requests when refreshing the resource
+     */
+    private Date lastModified;
+
     @Deprecated
     public ClientResponse(int httpStatus, Repository triples) {
         this.expires = DateUtils.addDays(new Date(), DEFAULT_EXPIRATION_IN_DAYS);
@@ -94,4 +104,28 @@ public class ClientResponse {
     public void setHttpStatus(int httpStatus) {
         this.httpStatus = httpStatus;
     }
+
+    /**
+     * Return true in case the server answered a conditional request with "304 Not Modified"; the response then does
+     * not contain any data and the previously retrieved triples are still valid.
+     */
+    public boolean isNotModified() {
+        return httpStatus == 304;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified != null ? new Date(lastModified.getTime()) : null;
+    }
 }
@@ -0,0 +1,436 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldclient.services.ldclient;
+
+import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A dispatch index for finding the endpoint responsible for a resource without matching the URI patterns of all
+ * endpoints one by one. The index is built from a list of endpoints sorted by priority and returns the same endpoint
+ * as a linear scan over this list, i.e. the first endpoint whose pattern matches.
+ * <p/>
+ * Patterns anchored at the beginning of the URI (e.g. "^http://dbpedia\\.org/resource/.*") are stored in a character
+ * trie under their literal prefix, so that a lookup only considers endpoints whose prefix matches the URI. Patterns
+ * consisting only of a literal prefix do not need to be evaluated at all. All other patterns are checked in priority
+ * order, after a combined pattern of all of them has been found to match the URI at all.
+ * <p/>
+ * The index reflects the URI patterns at the time it has been built; the active flag of endpoints is checked on
+ * every lookup.
+ */
+class EndpointIndex {
+
+    private static Logger log = LoggerFactory.getLogger(EndpointIndex.class);
+
+    private final Node root;
+
+    // entries that are not anchored at a literal prefix, sorted by priority
+    private final List<Entry> unanchored;
+
+    // alternation of all unanchored patterns, used for excluding URIs not matched by any of them in a single pass
+    private final Pattern combined;
+
+    /**
+     * Build the index for the endpoints passed as argument, which must be sorted by priority.
+     */
+    EndpointIndex(List<Endpoint> endpoints) {
+        root       = new Node();
+        unanchored = new ArrayList<>();
+
+        int ordinal = 0;
+        for(Endpoint endpoint : endpoints) {
+            Entry entry = analyse(endpoint, ordinal++);
+            if(entry == null) {
+                continue;
+            }
+
+            if(entry.prefix != null) {
+                Node node = root;
+                for(int i=0; i<entry.prefix.length(); i++) {
+                    node = node.getOrCreateChild(entry.prefix.charAt(i));
+                }
+                node.entries.add(entry);
+            } else {
+                unanchored.add(entry);
+            }
+        }
+
+        combined = unanchored.size() > 1 ? combine(unanchored) : null;
+
+        if(log.isDebugEnabled()) {
+            log.debug("built endpoint index for {} endpoints ({} not anchored at a prefix)", endpoints.size(), unanchored.size());
+        }
+    }
+
+    /**
+     * Return the endpoint with the highest priority handling the URI passed as argument, or null if there is none.
+     */
+    Endpoint getEndpoint(String uri) {
+        Entry best = null;
+
+        // entries in a node are sorted by priority, so the first match in a node is the best one of that node
+        Node node = root;
+        for(int i=0; node != null; i++) {
+            for(Entry entry : node.entries) {
+                if(best != null && entry.ordinal > best.ordinal) {
+                    break;
+                }
+                if(entry.matches(uri)) {
+                    best = entry;
+                    break;
+                }
+            }
+            node = i < uri.length() ? node.getChild(uri.charAt(i)) : null;
+        }
+
+        if(!unanchored.isEmpty() && (best == null || unanchored.get(0).ordinal < best.ordinal)
+                && (combined == null || combined.matcher(uri).find())) {
+            for(Entry entry : unanchored) {
+                if(best != null && entry.ordinal > best.ordinal) {
+                    break;
+                }
+                if(entry.matches(uri)) {
+                    best = entry;
+                    break;
+                }
+            }
+        }
+
+        return best != null ? best.endpoint : null;
+    }
+
+    /**
+     * Analyse the URI pattern of the endpoint and determine its literal prefix (in case the pattern is anchored at
+     * the beginning) and the longest literal the URI is required to contain. The analysis is conservative: patterns
+     * with alternatives, embedded flags or quoting are only evaluated as regular expressions.
+     */
+    private static Entry analyse(Endpoint endpoint, int ordinal) {
+        if(endpoint.getUriPattern() == null || endpoint.getUriPatternCompiled() == null) {
+            return null;
+        }
+
+        String pattern = endpoint.getUriPattern();
+        if(pattern.startsWith(Endpoint.REGEX_INDICATOR)) {
+            pattern = pattern.substring(Endpoint.REGEX_INDICATOR.length());
+        }
+
+        Entry entry = new Entry(endpoint, ordinal);
+
+        boolean anchored = pattern.startsWith("^");
+        int pos = anchored ? 1 : 0;
+
+        StringBuilder run = new StringBuilder();
+        String longest = "";
+        // raw position where the current run ends and where its last character starts
+        int runEnd = pos, lastStart = -1;
+        boolean first = true, lastWasLiteral = false;
+        int prefixEnd = -1;
+
+        while(pos < pattern.length()) {
+            char c = pattern.charAt(pos);
+            int start = pos;
+
+            if(c == '\\') {
+                if(pos + 1 >= pattern.length()) {
+                    return entry;
+                }
+                char e = pattern.charAt(pos + 1);
+                if(e == 'Q') {
+                    // quoted sections may contain any character; do not analyse further
+                    return entry;
+                }
+                pos += 2;
+                if(Character.isLetterOrDigit(e)) {
+                    // character class, boundary or back reference
+                    if(first) {
+                        prefixEnd = start;
+                    }
+                    longest = longer(longest, run);
+                    run.setLength(0);
+                    first = false;
+                    lastWasLiteral = false;
+                } else {
+                    run.append(e);
+                    lastStart = start;
+                    runEnd = pos;
+                    lastWasLiteral = true;
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '|':
+                    return entry;
+                case '?':
+                case '*':
+                case '{':
+                    if(lastWasLiteral) {
+                        // the quantified character is optional
+                        run.setLength(run.length() - 1);
+                        runEnd = lastStart;
+                    }
+                    // fall through
+                case '+':
+                    if(c == '{') {
+                        int close = pattern.indexOf('}', pos);
+                        pos = close < 0 ? pattern.length() : close + 1;
+                    } else {
+                        pos++;
+                    }
+                    if(first) {
+                        prefixEnd = runEnd;
+                    }
+                    longest = longer(longest, run);
+                    run.setLength(0);
+                    first = false;
+                    lastWasLiteral = false;
+                    break;
+                case '(':
+                    if(pos + 1 < pattern.length() && pattern.charAt(pos + 1) == '?') {
+                        char g = pos + 2 < pattern.length() ? pattern.charAt(pos + 2) : ')';
+                        if(g != ':' && g != '=' && g != '!' && g != '<' && g != '>') {
+                            // embedded flags might change the matching of the rest of the pattern
+                            return entry;
+                        }
+                    }
+                    pos = skipGroup(pattern, pos);
+                    if(pos < 0) {
+                        return entry;
+                    }
+                    if(first) {
+                        prefixEnd = start;
+                    }
+                    longest = longer(longest, run);
+                    run.setLength(0);
+                    first = false;
+                    lastWasLiteral = false;
+                    break;
+                case '[':
+                    pos = skipClass(pattern, pos);
+                    if(pos < 0) {
+                        return entry;
+                    }
+                    // fall through
+                case '.':
+                case '^':
+                case '$':
+                    if(c != '[') {
+                        pos++;
+                    }
+                    if(first) {
+                        prefixEnd = start;
+                    }
+                    longest = longer(longest, run);
+                    run.setLength(0);
+                    first = false;
+                    lastWasLiteral = false;
+                    break;
+                default:
+                    run.append(c);
+                    pos++;
+                    lastStart = start;
+                    runEnd = pos;
+                    lastWasLiteral = true;
+            }
+        }
+        if(first) {
+            prefixEnd = runEnd;
+        }
+        longest = longer(longest, run);
+
+        if(anchored) {
+            String prefix = pattern.substring(1, prefixEnd);
+            String rest   = pattern.substring(prefixEnd);
+
+            entry.prefix = unescape(prefix);
+            entry.exact  = rest.isEmpty() || rest.equals(".*");
+        }
+        if(longest.length() > 0 && !longest.equals(entry.prefix)) {
+            entry.literal = longest;
+        }
+
+        return entry;
+    }
+
+    private static String longer(String longest, StringBuilder run) {
+        return run.length() > longest.length() ? run.toString() : longest;
+    }
+
+    private static String unescape(String literal) {
+        StringBuilder result = new StringBuilder(literal.length());
+        for(int i=0; i<literal.length(); i++) {
+            char c = literal.charAt(i);
+            if(c == '\\' && i + 1 < literal.length()) {
+                c = literal.charAt(++i);
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    // return the position after the group starting at pos, or -1 if the group is not closed
+    private static int skipGroup(String pattern, int pos) {
+        int depth = 0;
+        while(pos < pattern.length()) {
+            char c = pattern.charAt(pos);
+            if(c == '\\') {
+                if(pos + 1 < pattern.length() && pattern.charAt(pos + 1) == 'Q') {
+                    return -1;
+                }
+                pos += 2;
+                continue;
+            } else if(c == '[') {
+                pos = skipClass(pattern, pos);
+                if(pos < 0) {
+                    return -1;
+                }
+                continue;
+            } else if(c == '(') {
+                depth++;
+            } else if(c == ')') {
+                depth--;
+                if(depth == 0) {
+                    return pos + 1;
+                }
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    // return the position after the character class starting at pos, or -1 if the class is not closed
+    private static int skipClass(String pattern, int pos) {
+        int depth = 0;
+        while(pos < pattern.length()) {
+            char c = pattern.charAt(pos);
+            if(c == '\\') {
+                pos += 2;
+                continue;
+            } else if(c == '[') {
+                depth++;
+                // a closing bracket at the beginning of a class is a literal
+                if(pos + 1 < pattern.length() && pattern.charAt(pos + 1) == '^') {
+                    pos++;
+                }
+                if(pos + 1 < pattern.length() && pattern.charAt(pos + 1) == ']') {
+                    pos++;
+                }
+            } else if(c == ']') {
+                depth--;
+                if(depth == 0) {
+                    return pos + 1;
+                }
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    /**
+     * Build the alternation of the patterns of the entries passed as argument, or return null in case the patterns
+     * cannot be combined safely (back references or comments).
+     */
+    private static Pattern combine(List<Entry> entries) {
+        StringBuilder alternation = new StringBuilder();
+        for(Entry entry : entries) {
+            String pattern = entry.endpoint.getUriPatternCompiled().pattern();
+            if(pattern.matches("(?s).*(\\\\[0-9]|\\\\k<|\\(\\?[a-zA-Z-]*x).*")) {
+                return null;
+            }
+            if(alternation.length() > 0) {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(pattern).append(')');
+        }
+        try {
+            return Pattern.compile(alternation.toString());
+        } catch (PatternSyntaxException ex) {
+            log.warn("could not combine endpoint patterns, checking them one by one ({})", ex.getMessage());
+            return null;
+        }
+    }
+
+
+    private static class Node {
+
+        private Map<Character,Node> children;
+
+        // entries whose prefix ends at this node, sorted by priority
+        private final List<Entry> entries = new ArrayList<>(1);
+
+        private Node getChild(char c) {
+            return children != null ? children.get(c) : null;
+        }
+
+        private Node getOrCreateChild(char c) {
+            if(children == null) {
+                children = new HashMap<>(4);
+            }
+            Node child = children.get(c);
+            if(child == null) {
+                child = new Node();
+                children.put(c, child);
+            }
+            return child;
+        }
+    }
+
+
+    private static class Entry {
+
+        private final Endpoint endpoint;
+
+        // position of the endpoint in the priority order
+        private final int ordinal;
+
+        // literal prefix of anchored patterns, null otherwise
+        private String prefix;
+
+        // true in case the pattern only consists of the prefix and does not need to be evaluated
+        private boolean exact;
+
+        // a literal contained in every matching URI, if any
+        private String literal;
+
+        private Entry(Endpoint endpoint, int ordinal) {
+            this.endpoint = endpoint;
+            this.ordinal  = ordinal;
+        }
+
+        // check whether the endpoint handles the uri; the prefix has already been matched by the trie
+        private boolean matches(String uri) {
+            if(!endpoint.isActive()) {
+                return false;
+            }
+            if(exact) {
+                return true;
+            }
+            if(literal != null && !uri.contains(literal)) {
+                return false;
+            }
+            return endpoint.handles(uri);
+        }
+    }
+}
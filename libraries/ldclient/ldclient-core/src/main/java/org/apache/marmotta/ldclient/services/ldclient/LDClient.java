@@ -17,6 +17,7 @@
  */
 package org.apache.marmotta.ldclient.services.ldclient;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.http.*;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.HttpRequestRetryHandler;
@@ -24,10 +25,12 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.params.ClientPNames;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.client.DefaultRedirectStrategy;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
@@ -38,10 +41,15 @@ import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
 import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
 import org.apache.marmotta.ldclient.api.ldclient.LDClientService;
+import org.apache.marmotta.ldclient.api.provider.ConditionalDataProvider;
 import org.apache.marmotta.ldclient.api.provider.DataProvider;
+import org.apache.marmotta.ldclient.api.provider.StreamingDataProvider;
 import org.apache.marmotta.ldclient.exception.DataRetrievalException;
 import org.apache.marmotta.ldclient.model.ClientConfiguration;
 import org.apache.marmotta.ldclient.model.ClientResponse;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.Rio;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +58,8 @@ import java.io.IOException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -79,11 +89,19 @@ public final class LDClient implements LDClientService {
     // limit maximum parallel retrievals of resources
     private Semaphore retrievalSemaphore;
 
+    // executes the requests for additional documents of a resource in case they are retrieved in parallel
+    private ExecutorService requestExecutor;
+
     private ClientConfiguration config;
 
     private List<DataProvider> providers;
     private List<Endpoint> endpoints;
 
+    // dispatch structures built from the endpoints and providers above
+    private EndpointIndex endpointIndex;
+    private Set<String> endpointPatterns;
+    private Map<String,DataProvider> providersByName;
+
     public LDClient() {
         this(new ClientConfiguration());
     }
@@ -117,6 +135,21 @@ public final class LDClient implements LDClientService {
             }
         }
 
+        endpointIndex = new EndpointIndex(endpoints);
+        endpointPatterns = new HashSet<>();
+        for(Endpoint endpoint : endpoints) {
+            if(endpoint.getUriPattern() != null) {
+                endpointPatterns.add(endpoint.getUriPattern());
+            }
+        }
+        providersByName = new HashMap<>();
+        for(DataProvider provider : providers) {
+            String name = provider.getName().toLowerCase(Locale.ENGLISH);
+            if(!providersByName.containsKey(name)) {
+                providersByName.put(name, provider);
+            }
+        }
+
         retrievalSemaphore = new Semaphore(config.getMaxParallelRequests());
 
         if (config.getHttpClient() != null) {
@@ -150,19 +183,59 @@ public final class LDClient implements LDClientService {
             }
 
             PoolingClientConnectionManager cm = new PoolingClientConnectionManager(schemeRegistry);
-            cm.setMaxTotal(20);
-            cm.setDefaultMaxPerRoute(10);
+            cm.setMaxTotal(config.getMaxConnections());
+            cm.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+            for(Map.Entry<String,Integer> host : config.getHostConnections().entrySet()) {
+                try {
+                    for(HttpRoute route : getHostRoutes(host.getKey())) {
+                        cm.setMaxPerRoute(route, host.getValue());
+                    }
+                } catch (NumberFormatException e) {
+                    log.warn("ignoring connection limit for host {}, the port is not a number", host.getKey());
+                }
+            }
 
             DefaultHttpClient client = new DefaultHttpClient(cm,httpParams);
             client.setRedirectStrategy(new LMFRedirectStrategy());
             client.setHttpRequestRetryHandler(new LMFHttpRequestRetryHandler());
-            idleConnectionMonitorThread = new IdleConnectionMonitorThread(client.getConnectionManager());
+            client.setKeepAliveStrategy(new LMFKeepAliveStrategy(config.getKeepAliveTimeout()));
+            idleConnectionMonitorThread = new IdleConnectionMonitorThread(client.getConnectionManager(), config.getIdleConnectionTimeout());
             idleConnectionMonitorThread.start();
 
             this.client = client;
         }
     }
 
+    /**
+     * Return the connection pool routes a per-host connection limit applies to. The host is either given by its
+     * name, applying to http and https on their default ports, as "name:port", applying to http and https on that
+     * port, or as "http://name[:port]" or "https://name[:port]", applying to a single scheme.
+     */
+    private static List<HttpRoute> getHostRoutes(String host) {
+        String scheme = null;
+        int port = -1;
+
+        int schemeEnd = host.indexOf("://");
+        if(schemeEnd >= 0) {
+            scheme = host.substring(0, schemeEnd).toLowerCase();
+            host   = host.substring(schemeEnd + 3);
+        }
+        int portStart = host.lastIndexOf(':');
+        if(portStart > host.lastIndexOf(']')) {
+            port = Integer.parseInt(host.substring(portStart + 1));
+            host = host.substring(0, portStart);
+        }
+
+        List<HttpRoute> routes = new ArrayList<>(2);
+        if(scheme == null || "http".equals(scheme)) {
+            routes.add(new HttpRoute(new HttpHost(host, port > 0 ? port : 80, "http")));
+        }
+        if(scheme == null || "https".equals(scheme)) {
+            routes.add(new HttpRoute(new HttpHost(host, port > 0 ? port : 443, "https"), null, true));
+        }
+        return routes;
+    }
+
     @Override
     public boolean ping(String resource) {
         //crappy implementation only for http
@@ -182,6 +255,13 @@ public final class LDClient implements LDClientService {
 
     @Override
     public void shutdown() {
+        synchronized (this) {
+            if(requestExecutor != null) {
+                requestExecutor.shutdownNow();
+                requestExecutor = null;
+            }
+        }
+
         if(config.getHttpClient() == null) {
             // we manage our own connection pool
             if (idleConnectionMonitorThread != null)
@@ -204,22 +284,38 @@ public final class LDClient implements LDClientService {
      */
     @Override
     public ClientResponse retrieveResource(String resource) throws DataRetrievalException {
+        return retrieveResource(resource, null, null);
+    }
+
+    /**
+     * Retrieve all triples for this resource from the Linked Data Cloud, sending a conditional request using the
+     * validators of a previous retrieval in case the data provider supports this. In case the resource has not
+     * been modified, the returned response has the status 304 and contains no data.
+     *
+     * @param resource      the URI resource for which to retrieve the triples
+     * @param etag          the entity tag returned by the previous retrieval (may be null)
+     * @param lastModified  the modification date returned by the previous retrieval (may be null)
+     * @return the client response, including the validators returned by the server
+     * @throws DataRetrievalException in case an error occurs
+     */
+    @Override
+    public ClientResponse retrieveResource(String resource, String etag, Date lastModified) throws DataRetrievalException {
         try {
             retrievalSemaphore.acquire();
             if(!config.isExcludedUri(resource)) {
 
                 Endpoint endpoint = getEndpoint(resource);
-                
+
                 if(endpoint != null) {
                     DataProvider provider = getDataProvider(endpoint);
-                    if(provider != null) {
+                    if(provider instanceof ConditionalDataProvider) {
+                        return ((ConditionalDataProvider) provider).retrieveResource(resource, this, endpoint, etag, lastModified);
+                    } else if(provider != null) {
                         return provider.retrieveResource(resource, this, endpoint);
                     } else {
                         log.error("no service provider for type {}",endpoint.getType());
                     }
                 } else {
-                    // TODO: the fallback should at least be a Linked Data handler, so maybe we should merge the ldclient-provider-rdf?
-                    // TODO: determine service provider from connection handshaking / MIME type
                     throw new UnsupportedOperationException("not implemented: determine service provider from connection handshaking / MIME type");
                 }
             } else {
@@ -231,6 +327,53 @@ public final class LDClient implements LDClientService {
             retrievalSemaphore.release();
         }
 
+        return null;
+    }
+
+    /**
+     * Retrieve all triples for this resource from the external data source and pass them to the handler passed as
+     * argument. Data providers implementing StreamingDataProvider pass the triples as soon as they have been parsed,
+     * for all other providers the triples are passed once the retrieval has finished.
+     *
+     * @param resource the resource to retrieve
+     * @param handler  the handler receiving the retrieved triples
+     * @return the client response with status and expiry information; its data is empty for streaming providers
+     * @throws DataRetrievalException in case an error occurs
+     */
+    @Override
+    public ClientResponse retrieveResource(String resource, RDFHandler handler) throws DataRetrievalException {
+        try {
+            retrievalSemaphore.acquire();
+            if(!config.isExcludedUri(resource)) {
+
+                Endpoint endpoint = getEndpoint(resource);
+
+                if(endpoint != null) {
+                    DataProvider provider = getDataProvider(endpoint);
+                    if(provider instanceof StreamingDataProvider) {
+                        return ((StreamingDataProvider) provider).retrieveResource(resource, this, endpoint, handler);
+                    } else if(provider != null) {
+                        ClientResponse response = provider.retrieveResource(resource, this, endpoint);
+                        try {
+                            Rio.write(response.getData(), handler);
+                        } catch (RDFHandlerException e) {
+                            throw new DataRetrievalException("error while handling the triples of resource " + resource, e);
+                        }
+                        return response;
+                    } else {
+                        log.error("no service provider for type {}",endpoint.getType());
+                    }
+                } else {
+                    throw new UnsupportedOperationException("not implemented: determine service provider from connection handshaking / MIME type");
+                }
+            } else {
+                log.error("cannot retrieve a local resource; linked data caching only allowed for remote resources");
+            }
+        } catch (InterruptedException e) {
+            log.warn("retrieval of resource was interruped: {}",resource);
+        } finally {
+            retrievalSemaphore.release();
+        }
 
         return null;
     }
@@ -256,6 +399,20 @@ public final class LDClient implements LDClientService {
         return config;
     }
 
+    /**
+     * Get the executor used by data providers to run the requests for the documents of a resource in parallel. The
+     * executor is created on first use and shut down together with the client.
+     *
+     * @return
+     */
+    @Override
+    public synchronized ExecutorService getRequestExecutor() {
+        if(requestExecutor == null) {
+            requestExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("LD Client Request %d").setDaemon(true).build());
+        }
+        return requestExecutor;
+    }
+
 
     /**
      * Retrieve the endpoint matching the KiWiUriResource passed as argument. The endpoint is determined by
@@ -267,11 +424,7 @@ public final class LDClient implements LDClientService {
      */
     @Override
     public Endpoint getEndpoint(String resource) {
-        for(Endpoint endpoint : endpoints) {
-            if (endpoint.handles(resource)) return endpoint;
-        }
-
-        return null;
+        return endpointIndex.getEndpoint(resource);
     }
 
     /**
@@ -282,10 +435,7 @@ public final class LDClient implements LDClientService {
      */
     @Override
     public boolean hasEndpoint(String urlPattern) {
-        for(Endpoint endpoint : endpoints) {
-            if(endpoint.getUriPattern() != null && endpoint.getUriPattern().equals(urlPattern)) return true;
-        }
-        return false;
+        return endpointPatterns.contains(urlPattern);
     }
 
     /**
@@ -303,10 +453,7 @@ public final class LDClient implements LDClientService {
 
 
     private DataProvider getDataProvider(Endpoint endpoint) {
-        for(DataProvider provider : providers) {
-            if(endpoint.getType().equalsIgnoreCase(provider.getName())) return provider;
-        }
-        return null;
+        return providersByName.get(endpoint.getType().toLowerCase(Locale.ENGLISH));
     }
 
     private static class LMFRedirectStrategy extends DefaultRedirectStrategy {
@@ -353,14 +500,35 @@ public final class LDClient implements LDClientService {
         }
     }
 
+    /**
+     * Keep connections alive for the time announced by the server in the Keep-Alive header, or for the configured
+     * time in case the server does not announce a timeout.
+     */
+    private static class LMFKeepAliveStrategy extends DefaultConnectionKeepAliveStrategy {
+
+        private final long defaultTimeout;
+
+        private LMFKeepAliveStrategy(long defaultTimeout) {
+            this.defaultTimeout = defaultTimeout;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = super.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : defaultTimeout;
+        }
+    }
+
     private static class IdleConnectionMonitorThread extends Thread {
 
         private final ClientConnectionManager connMgr;
+        private final long idleTimeout;
         private volatile boolean shutdown;
 
-        public IdleConnectionMonitorThread(ClientConnectionManager connMgr) {
+        public IdleConnectionMonitorThread(ClientConnectionManager connMgr, long idleTimeout) {
             super("LD HTTP Client Idle Connection Manager");
             this.connMgr = connMgr;
+            this.idleTimeout = idleTimeout;
             setDaemon(true);
         }
 
@@ -372,9 +540,8 @@ public final class LDClient implements LDClientService {
                         wait(5000);
                         // Close expired connections
                         connMgr.closeExpiredConnections();
-                        // Optionally, close connections
-                        // that have been idle longer than 30 sec
-                        connMgr.closeIdleConnections(30, TimeUnit.SECONDS);
+                        // Close connections that have been idle longer than the configured timeout
+                        connMgr.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
                     }
                 }
             } catch (InterruptedException ex) {
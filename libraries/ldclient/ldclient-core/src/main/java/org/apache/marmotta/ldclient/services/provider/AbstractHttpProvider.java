@@ -31,21 +31,34 @@ import org.apache.http.util.EntityUtils;
 import org.apache.marmotta.commons.http.ContentType;
 import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
 import org.apache.marmotta.ldclient.api.ldclient.LDClientService;
-import org.apache.marmotta.ldclient.api.provider.DataProvider;
+import org.apache.marmotta.ldclient.api.provider.ConditionalDataProvider;
+import org.apache.marmotta.ldclient.api.provider.StreamingDataProvider;
 import org.apache.marmotta.ldclient.exception.DataRetrievalException;
 import org.apache.marmotta.ldclient.model.ClientResponse;
 import org.openrdf.model.Model;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Statement;
 import org.openrdf.model.impl.TreeModel;
-import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 
 import static com.google.common.net.HttpHeaders.ACCEPT;
 import static com.google.common.net.HttpHeaders.ACCEPT_LANGUAGE;
+import static com.google.common.net.HttpHeaders.IF_MODIFIED_SINCE;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
 import static org.apache.marmotta.commons.http.MarmottaHttpUtils.parseContentType;
 
 /**
@@ -53,7 +66,7 @@ import static org.apache.marmotta.commons.http.MarmottaHttpUtils.parseContentTyp
  * <p/>
  * Author: Sebastian Schaffert
  */
-public abstract class AbstractHttpProvider implements DataProvider {
+public abstract class AbstractHttpProvider implements StreamingDataProvider, ConditionalDataProvider {
 
     public static final int RETRY_AFTER = 60;
     private static Logger log = LoggerFactory.getLogger(AbstractHttpProvider.class);
@@ -103,6 +116,61 @@ public abstract class AbstractHttpProvider implements DataProvider {
      */
     @Override
     public ClientResponse retrieveResource(String resource, LDClientService client, Endpoint endpoint) throws DataRetrievalException {
+        return retrieveResource(resource, client, endpoint, null, null);
+    }
+
+    /**
+     * Retrieve the data for a resource using the given http client and endpoint definition, sending a conditional
+     * request in case validators of a previous retrieval are given. Conditional requests are only sent for resources
+     * that are retrieved with a single request.
+     *
+     * @param resource     the resource to be retrieved
+     * @param endpoint     the endpoint definition
+     * @param etag         the entity tag returned by the previous retrieval (may be null)
+     * @param lastModified the modification date returned by the previous retrieval (may be null)
+     * @return a completely specified client response, including expiry information, validators and the set of
+     *         triples; the status is 304 and the set of triples empty in case the resource has not been modified
+     */
+    @Override
+    public ClientResponse retrieveResource(String resource, LDClientService client, Endpoint endpoint, String etag, Date lastModified) throws DataRetrievalException {
+        final Model triples = new TreeModel();
+
+        ClientResponse response = retrieve(resource, client, endpoint, etag, lastModified, new RDFHandlerBase() {
+            @Override
+            public void handleStatement(Statement st) throws RDFHandlerException {
+                triples.add(st);
+            }
+
+            @Override
+            public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+                triples.setNamespace(prefix, uri);
+            }
+        });
+
+        ClientResponse result = new ClientResponse(response.getHttpStatus(), triples);
+        result.setExpires(response.getExpires());
+        result.setEtag(response.getEtag());
+        result.setLastModified(response.getLastModified());
+        return result;
+    }
+
+    /**
+     * Retrieve the data for a resource using the given http client and endpoint definition and pass the triples to
+     * the handler as soon as each requested document has been parsed. Additional documents returned by
+     * parseResponse (e.g. further pages) are retrieved in parallel, up to the limit given by the endpoint property
+     * "parallel_requests" or the client configuration.
+     *
+     * @param resource the resource to be retrieved
+     * @param endpoint the endpoint definition
+     * @param handler  the handler receiving the retrieved triples
+     * @return a client response with status and expiry information; the data of the response is empty
+     */
+    @Override
+    public ClientResponse retrieveResource(String resource, LDClientService client, Endpoint endpoint, RDFHandler handler) throws DataRetrievalException {
+        return retrieve(resource, client, endpoint, null, null, handler);
+    }
+
+    private ClientResponse retrieve(String resource, LDClientService client, Endpoint endpoint, String etag, Date lastModified, RDFHandler handler) throws DataRetrievalException {
         try {
 
             String contentType;
@@ -123,39 +191,38 @@ public abstract class AbstractHttpProvider implements DataProvider {
                 defaultExpires = endpoint.getDefaultExpiry();
             }
 
-            final ResponseHandler handler = new ResponseHandler(resource, endpoint);
+            final Retrieval retrieval = new Retrieval(resource, endpoint, client, contentType, handler);
 
             // a queue for queuing the request URLs needed to build the query response
             Queue<String> requestUrls = new LinkedList<String>();
             requestUrls.addAll(buildRequestUrl(resource, endpoint));
 
-            Set<String> visited = new HashSet<String>();
-
-            String requestUrl = requestUrls.poll();
-            while(requestUrl != null) {
-
-                if(!visited.contains(requestUrl)) {
-                    HttpGet get = new HttpGet(requestUrl);
-                    try {
-                        get.setHeader(ACCEPT, contentType);
-                        get.setHeader(ACCEPT_LANGUAGE, "*"); // PoolParty compatibility
+            // validators only describe the resource if it is retrieved with a single request
+            if((etag != null || lastModified != null) && requestUrls.size() == 1) {
+                retrieval.setValidators(requestUrls.peek(), etag, lastModified);
+            }
 
-                        log.info("retrieving resource data for {} from '{}' endpoint, request URI is <{}>", new Object[]  {resource, getName(), get.getURI().toASCIIString()});
+            Set<String> visited = new HashSet<String>();
 
-                        handler.requestUrl = requestUrl;
-                        List<String> additionalRequestUrls = client.getClient().execute(get, handler);
-                        requestUrls.addAll(additionalRequestUrls);
+            handler.startRDF();
 
-                        visited.add(requestUrl);
-                    } finally {
-                        get.releaseConnection();
+            int parallelism = getParallelRequests(client, endpoint);
+            if(parallelism <= 1) {
+                String requestUrl = requestUrls.poll();
+                while(requestUrl != null) {
+                    if(visited.add(requestUrl)) {
+                        requestUrls.addAll(retrieval.retrieve(requestUrl));
                     }
-                }
 
-                requestUrl = requestUrls.poll();
+                    requestUrl = requestUrls.poll();
+                }
+            } else {
+                retrieveParallel(retrieval, requestUrls, visited, parallelism);
             }
 
-            Date expiresDate = handler.expiresDate;
+            handler.endRDF();
+
+            Date expiresDate = retrieval.expiresDate;
             if (expiresDate == null) {
                 expiresDate = new Date(System.currentTimeMillis() + defaultExpires * 1000);
             }
@@ -167,15 +234,19 @@ public abstract class AbstractHttpProvider implements DataProvider {
             }
 
             if(log.isInfoEnabled()) {
-                log.info("retrieved {} triples for resource {}; expiry date: {}", new Object[]{handler.triples.size(), resource, expiresDate});
+                log.info("retrieved {} triples for resource {}; expiry date: {}", new Object[]{retrieval.tripleCount, resource, expiresDate});
             }
 
-            ClientResponse result = new ClientResponse(handler.httpStatus, handler.triples);
+            ClientResponse result = new ClientResponse(retrieval.httpStatus, new TreeModel());
             result.setExpires(expiresDate);
+            if(visited.size() == 1) {
+                result.setEtag(retrieval.etag);
+                result.setLastModified(retrieval.lastModified);
+            }
             return result;
-        } catch (RepositoryException e) {
-            log.error("error while initialising Sesame repository; classpath problem?",e);
-            throw new DataRetrievalException("error while initialising Sesame repository; classpath problem?",e);
+        } catch (RDFHandlerException e) {
+            log.error("error while handling the triples of resource {}: {}", resource, e.getMessage());
+            throw new DataRetrievalException("error while handling the triples of resource "+resource,e);
         } catch (ClientProtocolException e) {
             log.error("HTTP client error while trying to retrieve resource {}: {}", resource, e.getMessage());
             throw new DataRetrievalException("I/O error while trying to retrieve resource "+resource,e);
@@ -189,6 +260,68 @@ public abstract class AbstractHttpProvider implements DataProvider {
 
     }
 
+    /**
+     * Retrieve the request URLs in the queue and all additional URLs they return with at most the given number of
+     * requests running at the same time. Fails as soon as one of the requests fails.
+     */
+    private void retrieveParallel(final Retrieval retrieval, Queue<String> requestUrls, Set<String> visited, int parallelism) throws IOException, RDFHandlerException {
+        CompletionService<List<String>> completionService = new ExecutorCompletionService<>(retrieval.client.getRequestExecutor());
+        List<Future<List<String>>> running = new ArrayList<>();
+        try {
+            while(!requestUrls.isEmpty() || !running.isEmpty()) {
+                while(running.size() < parallelism && !requestUrls.isEmpty()) {
+                    final String requestUrl = requestUrls.poll();
+                    if(visited.add(requestUrl)) {
+                        running.add(completionService.submit(new Callable<List<String>>() {
+                            @Override
+                            public List<String> call() throws Exception {
+                                return retrieval.retrieve(requestUrl);
+                            }
+                        }));
+                    }
+                }
+                if(running.isEmpty()) {
+                    break;
+                }
+
+                Future<List<String>> done = completionService.take();
+                running.remove(done);
+                requestUrls.addAll(done.get());
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while retrieving resource " + retrieval.resource);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if(e.getCause() instanceof RDFHandlerException) {
+                throw (RDFHandlerException) e.getCause();
+            } else if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new IOException(e.getCause());
+            }
+        } finally {
+            for(Future<List<String>> future : running) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Return the maximum number of parallel requests for the documents of a single resource, as configured in the
+     * endpoint or (if not given there) in the client configuration.
+     */
+    private int getParallelRequests(LDClientService client, Endpoint endpoint) {
+        if(endpoint != null && endpoint.hasProperty(Endpoint.PROPERTY_PARALLEL_REQUESTS)) {
+            try {
+                return Integer.parseInt(endpoint.getProperty(Endpoint.PROPERTY_PARALLEL_REQUESTS));
+            } catch (NumberFormatException ex) {
+                log.warn("invalid value for property {} of endpoint {}", Endpoint.PROPERTY_PARALLEL_REQUESTS, endpoint.getName());
+            }
+        }
+        return client.getClientConfiguration().getMaxParallelPageRequests();
+    }
+
     /**
      * Check whether the content type returned by the server is acceptable to the endpoint and data provider
      */
@@ -210,33 +343,154 @@ public abstract class AbstractHttpProvider implements DataProvider {
         }
     }
 
+    /**
+     * The state of the retrieval of a single resource, shared by all requests needed for retrieving the resource.
+     */
+    private class Retrieval {
+
+        private final String resource;
+
+        private final Endpoint endpoint;
+
+        private final LDClientService client;
+
+        private final String contentType;
+
+        // the handler receiving the triples; access is synchronized on the retrieval
+        private final RDFHandler handler;
+
+        private Date expiresDate;
+
+        private int httpStatus;
+
+        private long tripleCount;
+
+        // validators of the single document making up the resource
+        private String etag;
+
+        private Date lastModified;
+
+        // the request URL to send a conditional request for, if any
+        private String conditionalUrl;
+
+        private Retrieval(String resource, Endpoint endpoint, LDClientService client, String contentType, RDFHandler handler) {
+            this.resource = resource;
+            this.endpoint = endpoint;
+            this.client = client;
+            this.contentType = contentType;
+            this.handler = handler;
+        }
+
+        private void setValidators(String requestUrl, String etag, Date lastModified) {
+            this.conditionalUrl = requestUrl;
+            this.etag           = etag;
+            this.lastModified   = lastModified;
+        }
+
+        /**
+         * Retrieve the document with the given request URL, pass its triples to the handler and return the URLs of
+         * additional documents to retrieve.
+         */
+        private List<String> retrieve(String requestUrl) throws IOException, RDFHandlerException {
+            HttpGet get = new HttpGet(requestUrl);
+            try {
+                get.setHeader(ACCEPT, contentType);
+                get.setHeader(ACCEPT_LANGUAGE, "*"); // PoolParty compatibility
+
+                if(requestUrl.equals(conditionalUrl)) {
+                    if(etag != null) {
+                        get.setHeader(IF_NONE_MATCH, etag);
+                    }
+                    if(lastModified != null) {
+                        get.setHeader(IF_MODIFIED_SINCE, DateUtils.formatDate(lastModified));
+                    }
+                }
+
+                log.info("retrieving resource data for {} from '{}' endpoint, request URI is <{}>", new Object[]  {resource, getName(), get.getURI().toASCIIString()});
+
+                ResponseHandler responseHandler = new ResponseHandler(resource, requestUrl, endpoint);
+                List<String> additionalRequestUrls = client.getClient().execute(get, responseHandler);
+
+                synchronized (this) {
+                    if(responseHandler.httpStatus != 0) {
+                        httpStatus = responseHandler.httpStatus;
+                    }
+                    if(responseHandler.expiresDate != null && (expiresDate == null || responseHandler.retry)) {
+                        expiresDate = responseHandler.expiresDate;
+                    }
+                    if(responseHandler.httpStatus != 304) {
+                        etag         = responseHandler.etag;
+                        lastModified = responseHandler.lastModified;
+                    }
+
+                    for(Map.Entry<String,String> ns : responseHandler.namespaces.entrySet()) {
+                        handler.handleNamespace(ns.getKey(), ns.getValue());
+                    }
+                    for(Statement triple : responseHandler.triples) {
+                        handler.handleStatement(triple);
+                    }
+                    tripleCount += responseHandler.triples.size();
+                }
+
+                return additionalRequestUrls;
+            } finally {
+                get.releaseConnection();
+            }
+        }
+    }
+
     private class ResponseHandler implements org.apache.http.client.ResponseHandler<List<String>> {
 
         private Date             expiresDate;
 
-        private String                requestUrl;
+        // true in case the expiry date is a retry date returned for a failed request
+        private boolean          retry;
+
+        private final String                requestUrl;
 
-        // the repository where the triples will be stored in case the data providers return them
+        // the model where the triples of the requested document will be stored in case the data providers return them
         private final Model triples;
 
+        private final Map<String,String> namespaces;
+
         private final Endpoint   endpoint;
 
         private final String resource;
 
         private int httpStatus;
 
-        public ResponseHandler(String resource, Endpoint endpoint) throws RepositoryException {
+        // validators returned by the server
+        private String etag;
+
+        private Date lastModified;
+
+        public ResponseHandler(String resource, String requestUrl, Endpoint endpoint) {
             this.resource = resource;
+            this.requestUrl = requestUrl;
             this.endpoint = endpoint;
 
             triples = new TreeModel();
+            namespaces = new HashMap<String, String>();
         }
 
         @Override
         public List<String> handleResponse(HttpResponse response) throws ClientProtocolException, IOException {
             ArrayList<String> requestUrls = new ArrayList<String>();
 
-            if (response.getStatusLine().getStatusCode() >= 200 && response.getStatusLine().getStatusCode() < 400) {
+            if (response.getStatusLine().getStatusCode() == 304) {
+                // the resource has not changed since the last retrieval
+                this.httpStatus = 304;
+
+                Header expires = response.getFirstHeader("Expires");
+                if (expires != null) {
+                    try {
+                        expiresDate = DateUtils.parseDate(expires.getValue());
+                    } catch (DateParseException e) {
+                        log.debug("error parsing Expires: header");
+                    }
+                }
+                EntityUtils.consume(response.getEntity());
+            } else if (response.getStatusLine().getStatusCode() >= 200 && response.getStatusLine().getStatusCode() < 400) {
             	final HttpEntity entity = response.getEntity();
             	if (entity == null)
             		throw new IOException("no content returned by Linked Data resource " + resource);
@@ -263,6 +517,23 @@ public abstract class AbstractHttpProvider implements DataProvider {
                         List<String> urls = parseResponse(resource, requestUrl, triples, in, parseContentType);
                         requestUrls.addAll(urls);
 
+                        for(Namespace ns : triples.getNamespaces()) {
+                            namespaces.put(ns.getPrefix(), ns.getName());
+                        }
+
+                        Header etagHeader = response.getFirstHeader("ETag");
+                        if (etagHeader != null) {
+                            etag = etagHeader.getValue();
+                        }
+                        Header lastModifiedHeader = response.getFirstHeader("Last-Modified");
+                        if (lastModifiedHeader != null) {
+                            try {
+                                lastModified = DateUtils.parseDate(lastModifiedHeader.getValue());
+                            } catch (DateParseException e) {
+                                log.debug("error parsing Last-Modified: header");
+                            }
+                        }
+
                         if (expiresDate == null) {
                             Header expires = response.getFirstHeader("Expires");
                             if (expires != null) {
@@ -284,6 +555,7 @@ public abstract class AbstractHttpProvider implements DataProvider {
                 EntityUtils.consume(entity);
             } else if(response.getStatusLine().getStatusCode() == 500 || response.getStatusLine().getStatusCode() == 503  || response.getStatusLine().getStatusCode() == 504) {
                 this.httpStatus = response.getStatusLine().getStatusCode();
+                this.retry = true;
 
                 Header retry = response.getFirstHeader("Retry-After");
                 if(retry != null) {
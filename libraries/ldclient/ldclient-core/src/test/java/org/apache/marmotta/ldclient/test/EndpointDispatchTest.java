@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldclient.test;
+
+import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
+import org.apache.marmotta.ldclient.model.ClientConfiguration;
+import org.apache.marmotta.ldclient.services.ldclient.LDClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Check that the endpoint dispatch of the LDClient returns the same endpoints as matching the patterns of all
+ * endpoints in priority order.
+ */
+public class EndpointDispatchTest {
+
+    private static final String[] PATTERNS = {
+            "^http://dbpedia\\.org/resource/.*",
+            "^http://dbpedia\\.org/",
+            "^http(s?)://([^.]+)\\.facebook\\.com/.*",
+            "^http://([^.]+)\\.wikipedia\\.org/wiki/.*",
+            "^http://www\\.carving-ski\\.de/phpBB/viewtopic.php\\?.*t=.*",
+            "~^http://rdf\\.freebase\\.com/ns/.*",
+            "^http://ab?c",
+            "^http://x+y\\.org/$",
+            "youtube\\.com/watch",
+            "^(?i)http://CASE\\.org/.*",
+            "^http://a\\.org/|^http://b\\.org/",
+            "^http://[a-z]+\\.geonames\\.org/.*",
+            "^http://q\\Q.x|\\E/",
+            "(a)\\1b",
+            "^http://inactive\\.org/.*",
+            "^http://lit\\.org/x{2}y",
+            "^https?://s\\.org/.*",
+            "^http://grp\\.org/(a|b)/c\\.rdf$"
+    };
+
+    private static final String[] URIS = {
+            "http://dbpedia.org/resource/Berlin", "http://dbpedia.org/", "http://dbpedia.org",
+            "https://graph.facebook.com/x", "http://en.wikipedia.org/wiki/X",
+            "http://www.carving-ski.de/phpBB/viewtopic.php?t=1", "http://rdf.freebase.com/ns/m.1",
+            "http://ac", "http://abc", "http://abbc", "http://xxy.org/", "http://y.org/",
+            "http://www.youtube.com/watch?v=1", "http://case.org/a", "http://b.org/", "http://a.org/",
+            "http://www.geonames.org/1", "http://q.x|/", "aab", "http://inactive.org/a",
+            "http://lit.org/xxy", "http://lit.org/xy", "http://s.org/a", "https://s.org/a",
+            "http://grp.org/a/c.rdf", "http://grp.org/c/c.rdf", "http://127.1.2.3/x", "", "ftp://nothing"
+    };
+
+    private LDClient client;
+
+    private List<Endpoint> endpoints;
+
+    @Before
+    public void setUp() {
+        ClientConfiguration config = new ClientConfiguration();
+        for(int i=0; i<PATTERNS.length; i++) {
+            Endpoint endpoint = new Endpoint("Endpoint " + i, "Dummy", PATTERNS[i], null, 86400L);
+            endpoint.setPriority(Endpoint.PRIORITY_LOW + i % 3);
+            endpoint.setActive(!PATTERNS[i].contains("inactive"));
+            config.addEndpoint(endpoint);
+        }
+        client = new LDClient(config);
+
+        // reference order used by the client: auto-registered endpoints first, then sorted by priority
+        endpoints = new ArrayList<>();
+        for(Endpoint endpoint : ServiceLoader.load(Endpoint.class)) {
+            endpoints.add(endpoint);
+        }
+        endpoints.addAll(config.getEndpoints());
+        Collections.sort(endpoints);
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    public void testSameEndpointAsLinearScan() {
+        for(String uri : URIS) {
+            Assert.assertEquals("wrong endpoint for " + uri, linearScan(uri), client.getEndpoint(uri));
+        }
+    }
+
+    @Test
+    public void testHasEndpoint() {
+        Assert.assertTrue(client.hasEndpoint("^http://dbpedia\\.org/resource/.*"));
+        Assert.assertFalse(client.hasEndpoint("^http://dbpedia\\.org/ontology/.*"));
+    }
+
+    private Endpoint linearScan(String uri) {
+        for(Endpoint endpoint : endpoints) {
+            if(endpoint.handles(uri)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+}
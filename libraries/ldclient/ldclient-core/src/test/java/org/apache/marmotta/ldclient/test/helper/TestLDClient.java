@@ -23,9 +23,11 @@ import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Pattern;
 
 import org.apache.http.client.HttpClient;
@@ -36,6 +38,7 @@ import org.apache.marmotta.ldclient.exception.DataRetrievalException;
 import org.apache.marmotta.ldclient.model.ClientConfiguration;
 import org.apache.marmotta.ldclient.model.ClientResponse;
 import org.junit.Assume;
+import org.openrdf.rio.RDFHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -111,6 +114,42 @@ public class TestLDClient implements LDClientService {
 		}
 	}
 	
+    @Override
+	public ClientResponse retrieveResource(String resource, RDFHandler handler)
+			throws DataRetrievalException {
+		try {
+			return delegate.retrieveResource(resource, handler);
+		} catch (final DataRetrievalException e) {
+			if (defaultChecks) {
+				for (Check exCheck : DEFAULT_CHECKS) {
+					exCheck.matches(e);
+				}
+			}
+			for (Check exCheck : extraCheck) {
+				exCheck.matches(e);
+			}
+			throw e;
+		}
+	}
+
+    @Override
+	public ClientResponse retrieveResource(String resource, String etag, Date lastModified)
+			throws DataRetrievalException {
+		try {
+			return delegate.retrieveResource(resource, etag, lastModified);
+		} catch (final DataRetrievalException e) {
+			if (defaultChecks) {
+				for (Check exCheck : DEFAULT_CHECKS) {
+					exCheck.matches(e);
+				}
+			}
+			for (Check exCheck : extraCheck) {
+				exCheck.matches(e);
+			}
+			throw e;
+		}
+	}
+
     @Override
 	public HttpClient getClient() {
 		return delegate.getClient();
@@ -121,6 +160,11 @@ public class TestLDClient implements LDClientService {
 		return delegate.getClientConfiguration();
 	}
 
+    @Override
+	public ExecutorService getRequestExecutor() {
+		return delegate.getRequestExecutor();
+	}
+
     @Override
 	public Endpoint getEndpoint(String resource) {
 		return delegate.getEndpoint(resource);
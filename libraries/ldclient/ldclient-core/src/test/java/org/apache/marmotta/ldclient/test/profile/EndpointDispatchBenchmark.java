@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldclient.test.profile;
+
+import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
+import org.apache.marmotta.ldclient.model.ClientConfiguration;
+import org.apache.marmotta.ldclient.services.ldclient.LDClient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark comparing the endpoint dispatch of the LDClient with matching the URI patterns of all endpoints
+ * in priority order. The endpoint set resembles a larger installation: Linked Data endpoints for many hosts and the
+ * localized DBPedia instances (plain prefix patterns), some provider endpoints with regular expressions (Wikipedia,
+ * Facebook, phpBB, ...) and a few unanchored patterns. Half of the looked up resources are not handled by any
+ * endpoint, as is common for the resources of a cache miss.
+ * <p/>
+ * Run it with
+ * <pre>
+ *     java -cp target/test-classes:... org.apache.marmotta.ldclient.test.profile.EndpointDispatchBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EndpointDispatchBenchmark {
+
+    private static final String[] LANGUAGES = {
+            "de", "fr", "es", "it", "nl", "pl", "pt", "ru", "ja", "zh", "sv", "fi", "no", "da", "cs", "hu", "ko",
+            "el", "tr", "ar", "he", "ca", "eu", "gl", "eo", "id", "uk", "ro", "bg", "sr", "hr", "sk", "sl", "lt"
+    };
+
+    /**
+     * number of hosts with a plain Linked Data endpoint
+     */
+    @Param({"300"})
+    public int hosts;
+
+    private LDClient client;
+
+    private List<Endpoint> endpoints;
+
+    private String[] resources;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ClientConfiguration config = new ClientConfiguration();
+
+        for(int i=0; i<hosts; i++) {
+            config.addEndpoint(new Endpoint("Linked Data " + i, "Linked Data", "^http://data\\.host" + i + "\\.org/.*", null, 86400L));
+        }
+        for(String lang : LANGUAGES) {
+            config.addEndpoint(new Endpoint("DBPedia " + lang, "Linked Data", "^http://" + lang + "\\.dbpedia\\.org/resource/.*", null, 86400L));
+        }
+        config.addEndpoint(new Endpoint("DBPedia", "Linked Data", "^http://dbpedia\\.org/resource/.*", null, 86400L));
+        config.addEndpoint(new Endpoint("Wikipedia", "Mediawiki", "^http://([^.]+)\\.wikipedia\\.org/wiki/.*", "http://$1.wikipedia.org/w/api.php", 86400L));
+        config.addEndpoint(new Endpoint("Facebook", "Facebook", "^http(s?)://([^.]+)\\.facebook\\.com/.*", null, 86400L));
+        config.addEndpoint(new Endpoint("phpBB", "phpBB Topic", "^http://www\\.carving-ski\\.de/phpBB/viewtopic.php\\?.*t=.*", null, 86400L));
+        config.addEndpoint(new Endpoint("Geonames", "Linked Data", "^http://([a-z]+\\.)?geonames\\.org/.*", null, 86400L));
+        config.addEndpoint(new Endpoint("YouTube", "YouTube Video", "youtube\\.com/watch", null, 86400L));
+        config.addEndpoint(new Endpoint("Vimeo", "Vimeo Video", "vimeo\\.com/[0-9]+", null, 86400L));
+
+        client = new LDClient(config);
+
+        endpoints = new ArrayList<>(config.getEndpoints());
+        Collections.sort(endpoints);
+
+        resources = new String[1024];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int i=0; i<resources.length; i++) {
+            switch (random.nextInt(8)) {
+                case 0: resources[i] = "http://data.host" + random.nextInt(hosts) + ".org/resource/" + i; break;
+                case 1: resources[i] = "http://" + LANGUAGES[random.nextInt(LANGUAGES.length)] + ".dbpedia.org/resource/R" + i; break;
+                case 2: resources[i] = "http://en.wikipedia.org/wiki/Page_" + i; break;
+                case 3: resources[i] = "http://www.youtube.com/watch?v=" + i; break;
+                default: resources[i] = "http://unknown" + i + ".example.com/resource/" + i;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        client.shutdown();
+    }
+
+    @Benchmark
+    public Endpoint dispatch() {
+        return client.getEndpoint(resources[ThreadLocalRandom.current().nextInt(resources.length)]);
+    }
+
+    @Benchmark
+    public Endpoint linearScan() {
+        String resource = resources[ThreadLocalRandom.current().nextInt(resources.length)];
+        for(Endpoint endpoint : endpoints) {
+            if(endpoint.handles(resource)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EndpointDispatchBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldclient.test.provider;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.cookie.DateUtils;
+import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
+import org.apache.marmotta.ldclient.exception.DataRetrievalException;
+import org.apache.marmotta.ldclient.model.ClientConfiguration;
+import org.apache.marmotta.ldclient.model.ClientResponse;
+import org.apache.marmotta.ldclient.services.ldclient.LDClient;
+import org.apache.marmotta.ldclient.services.provider.AbstractHttpProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test the conditional requests sent by AbstractHttpProvider when the validators of a previous retrieval are given,
+ * using a local HTTP server that answers "304 Not Modified" in case the validators match.
+ */
+public class ConditionalRequestTest {
+
+    // HTTP dates only have a precision of seconds
+    private static final Date MODIFIED = new Date(1400000000000L);
+
+    private HttpServer server;
+
+    private String resource;
+
+    // the current entity tag of the resource on the server
+    private volatile String etag = "\"v1\"";
+
+    // the conditional headers of the last request received by the server
+    private volatile String ifNoneMatch, ifModifiedSince;
+
+    private LDClient ldclient;
+
+    @Before
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new ConditionalHandler());
+        server.start();
+
+        String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        resource = baseUrl + "resource";
+
+        ClientConfiguration config = new ClientConfiguration();
+        config.addProvider(new LineProvider());
+        config.addEndpoint(new Endpoint("Conditional Test", LineProvider.NAME, "^" + baseUrl + ".*", null, "text/plain", 86400L));
+
+        ldclient = new LDClient(config);
+    }
+
+    @After
+    public void shutdown() {
+        ldclient.shutdown();
+        server.stop(0);
+    }
+
+    /**
+     * A retrieval without validators sends no conditional headers and returns the validators sent by the server.
+     */
+    @Test
+    public void testUnconditionalRetrieval() throws Exception {
+        ClientResponse response = ldclient.retrieveResource(resource);
+
+        Assert.assertEquals(200, response.getHttpStatus());
+        Assert.assertFalse(response.isNotModified());
+        Assert.assertEquals(2, response.getData().size());
+        Assert.assertEquals("\"v1\"", response.getEtag());
+        Assert.assertEquals(MODIFIED, response.getLastModified());
+
+        Assert.assertNull(ifNoneMatch);
+        Assert.assertNull(ifModifiedSince);
+    }
+
+    /**
+     * A retrieval with the current entity tag is answered with 304 and returns no data.
+     */
+    @Test
+    public void testNotModifiedEtag() throws Exception {
+        ClientResponse response = ldclient.retrieveResource(resource, "\"v1\"", null);
+
+        Assert.assertEquals("\"v1\"", ifNoneMatch);
+        Assert.assertNull(ifModifiedSince);
+
+        Assert.assertTrue(response.isNotModified());
+        Assert.assertTrue(response.getData().isEmpty());
+        Assert.assertEquals("\"v1\"", response.getEtag());
+        Assert.assertTrue(response.getExpires().after(new Date()));
+    }
+
+    /**
+     * A retrieval with the current modification date is answered with 304 and returns no data.
+     */
+    @Test
+    public void testNotModifiedLastModified() throws Exception {
+        ClientResponse response = ldclient.retrieveResource(resource, null, MODIFIED);
+
+        Assert.assertNull(ifNoneMatch);
+        Assert.assertEquals(MODIFIED, DateUtils.parseDate(ifModifiedSince));
+
+        Assert.assertTrue(response.isNotModified());
+        Assert.assertTrue(response.getData().isEmpty());
+        Assert.assertEquals(MODIFIED, response.getLastModified());
+    }
+
+    /**
+     * A retrieval with an outdated entity tag returns the data and the new validators.
+     */
+    @Test
+    public void testModified() throws Exception {
+        etag = "\"v2\"";
+
+        ClientResponse response = ldclient.retrieveResource(resource, "\"v1\"", MODIFIED);
+
+        Assert.assertEquals("\"v1\"", ifNoneMatch);
+        Assert.assertNotNull(ifModifiedSince);
+
+        Assert.assertEquals(200, response.getHttpStatus());
+        Assert.assertFalse(response.isNotModified());
+        Assert.assertEquals(2, response.getData().size());
+        Assert.assertEquals("\"v2\"", response.getEtag());
+    }
+
+    /**
+     * Answers with 304 in case the If-None-Match header matches the current entity tag, or (without entity tag) in
+     * case the resource has not been modified since the If-Modified-Since date.
+     */
+    private class ConditionalHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            ifNoneMatch     = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Last-Modified", DateUtils.formatDate(MODIFIED));
+
+            boolean notModified;
+            if(ifNoneMatch != null) {
+                notModified = ifNoneMatch.equals(etag);
+            } else {
+                notModified = ifModifiedSince != null && ifModifiedSince.equals(DateUtils.formatDate(MODIFIED));
+            }
+
+            if(notModified) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            String base = "http://localhost:" + server.getAddress().getPort() + "/";
+            String body = base + "resource " + base + "property " + base + "value1\n"
+                        + base + "resource " + base + "property " + base + "value2\n";
+
+            byte[] data = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, data.length);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * A data provider parsing lines of three URIs separated by spaces as triples.
+     */
+    private static class LineProvider extends AbstractHttpProvider {
+
+        private static final String NAME = "Conditional Test";
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public String[] listMimeTypes() {
+            return new String[] {"text/plain"};
+        }
+
+        @Override
+        protected List<String> buildRequestUrl(String resourceUri, Endpoint endpoint) throws DataRetrievalException {
+            return Collections.singletonList(resourceUri);
+        }
+
+        @Override
+        protected List<String> parseResponse(String resourceUri, String requestUrl, Model model, InputStream in, String contentType) throws DataRetrievalException {
+            ValueFactory vf = ValueFactoryImpl.getInstance();
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+                for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    String[] parts = line.split(" ");
+                    if(parts.length == 3) {
+                        model.add(vf.createURI(parts[0]), vf.createURI(parts[1]), vf.createURI(parts[2]));
+                    }
+                }
+            } catch (IOException e) {
+                throw new DataRetrievalException("could not read document " + requestUrl, e);
+            }
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldclient.test.provider;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
+import org.apache.marmotta.ldclient.exception.DataRetrievalException;
+import org.apache.marmotta.ldclient.model.ClientConfiguration;
+import org.apache.marmotta.ldclient.model.ClientResponse;
+import org.apache.marmotta.ldclient.services.ldclient.LDClient;
+import org.apache.marmotta.ldclient.services.provider.AbstractHttpProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.TreeModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test retrieving resources through a StreamingDataProvider from a local HTTP server, with the pages of a resource
+ * retrieved one after the other and in parallel.
+ */
+public class StreamingProviderTest {
+
+    private static final int PAGES = 4;
+
+    private static final int TRIPLES_PER_PAGE = 10;
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    private String baseUrl;
+
+    // released once all additional pages are requested at the same time
+    private CountDownLatch pagesRequested;
+
+    // true in case the server only answers the additional pages once all of them have been requested
+    private volatile boolean awaitParallel;
+
+    private AtomicInteger requests;
+
+    @Before
+    public void startServer() throws IOException {
+        pagesRequested = new CountDownLatch(PAGES);
+        requests = new AtomicInteger();
+
+        serverExecutor = Executors.newCachedThreadPool();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", new PageHandler());
+        server.start();
+
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * Retrieve all pages of a resource one after the other and check that all triples are passed to the handler.
+     */
+    @Test
+    public void testSequentialRetrieval() throws Exception {
+        LDClient ldclient = createClient(1);
+        try {
+            Model triples = new TreeModel();
+            ClientResponse response = ldclient.retrieveResource(baseUrl + "resource", new CollectingHandler(triples));
+
+            Assert.assertEquals(200, response.getHttpStatus());
+            Assert.assertTrue(response.getData().isEmpty());
+            Assert.assertEquals((PAGES + 1) * TRIPLES_PER_PAGE, triples.size());
+            Assert.assertEquals(PAGES + 1, requests.get());
+        } finally {
+            ldclient.shutdown();
+        }
+    }
+
+    /**
+     * Retrieve the additional pages of a resource in parallel; the server only answers the page requests once all
+     * of them have been received, so the retrieval only succeeds in case they are really sent in parallel.
+     */
+    @Test
+    public void testParallelRetrieval() throws Exception {
+        awaitParallel = true;
+
+        LDClient ldclient = createClient(PAGES);
+        try {
+            Model triples = new TreeModel();
+            ClientResponse response = ldclient.retrieveResource(baseUrl + "resource", new CollectingHandler(triples));
+
+            Assert.assertEquals(200, response.getHttpStatus());
+            Assert.assertEquals((PAGES + 1) * TRIPLES_PER_PAGE, triples.size());
+            Assert.assertEquals(PAGES + 1, requests.get());
+        } finally {
+            ldclient.shutdown();
+        }
+    }
+
+    /**
+     * Retrieving a resource without handler collects the streamed triples in the data of the response.
+     */
+    @Test
+    public void testNonStreamingRetrieval() throws Exception {
+        LDClient ldclient = createClient(PAGES);
+        try {
+            ClientResponse response = ldclient.retrieveResource(baseUrl + "resource");
+
+            Assert.assertEquals(200, response.getHttpStatus());
+            Assert.assertEquals((PAGES + 1) * TRIPLES_PER_PAGE, response.getData().size());
+        } finally {
+            ldclient.shutdown();
+        }
+    }
+
+    /**
+     * The executor running the parallel requests is owned by the client and shut down together with it.
+     */
+    @Test
+    public void testShutdownRequestExecutor() throws Exception {
+        LDClient ldclient = createClient(PAGES);
+        ExecutorService executor = ldclient.getRequestExecutor();
+
+        ldclient.retrieveResource(baseUrl + "resource", new CollectingHandler(new TreeModel()));
+        Assert.assertFalse(executor.isShutdown());
+
+        ldclient.shutdown();
+        Assert.assertTrue(executor.isShutdown());
+    }
+
+    private LDClient createClient(int parallelRequests) {
+        PagedProvider provider = new PagedProvider();
+
+        Endpoint endpoint = new Endpoint("Paged Test", PagedProvider.NAME, "^" + baseUrl + ".*", null, "text/plain", 86400L);
+        endpoint.setProperty(Endpoint.PROPERTY_PARALLEL_REQUESTS, String.valueOf(parallelRequests));
+
+        ClientConfiguration config = new ClientConfiguration();
+        config.setMaxConnectionsPerHost(PAGES + 1);
+        config.addProvider(provider);
+        config.addEndpoint(endpoint);
+
+        return new LDClient(config);
+    }
+
+    /**
+     * Serves the resource as a first page listing the URLs of the additional pages, followed by the triples of the
+     * page. The additional pages optionally wait until all of them have been requested.
+     */
+    private class PageHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+
+            String path = exchange.getRequestURI().getPath();
+            StringBuilder body = new StringBuilder();
+            int page = 0;
+            if(path.startsWith("/resource/")) {
+                page = Integer.parseInt(path.substring("/resource/".length()));
+                if(awaitParallel) {
+                    pagesRequested.countDown();
+                    try {
+                        if(!pagesRequested.await(10, TimeUnit.SECONDS)) {
+                            exchange.sendResponseHeaders(503, -1);
+                            exchange.close();
+                            return;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            } else {
+                for(int i = 1; i <= PAGES; i++) {
+                    body.append("next ").append(baseUrl).append("resource/").append(i).append("\n");
+                }
+            }
+            for(int i = 0; i < TRIPLES_PER_PAGE; i++) {
+                body.append(baseUrl).append("resource ").append(baseUrl).append("property ").append(baseUrl).append("value/").append(page).append("/").append(i).append("\n");
+            }
+
+            byte[] data = body.toString().getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, data.length);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * A data provider parsing a simple line based format: each line is either "next URL", giving an additional page
+     * to retrieve, or three URIs separated by spaces, giving a triple.
+     */
+    private static class PagedProvider extends AbstractHttpProvider {
+
+        private static final String NAME = "Paged Test";
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public String[] listMimeTypes() {
+            return new String[] {"text/plain"};
+        }
+
+        @Override
+        protected List<String> buildRequestUrl(String resourceUri, Endpoint endpoint) throws DataRetrievalException {
+            return Collections.singletonList(resourceUri);
+        }
+
+        @Override
+        protected List<String> parseResponse(String resourceUri, String requestUrl, Model model, InputStream in, String contentType) throws DataRetrievalException {
+            ValueFactory vf = ValueFactoryImpl.getInstance();
+            List<String> pages = new ArrayList<>();
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+                for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    String[] parts = line.split(" ");
+                    if(parts.length == 2 && "next".equals(parts[0])) {
+                        pages.add(parts[1]);
+                    } else if(parts.length == 3) {
+                        model.add(vf.createURI(parts[0]), vf.createURI(parts[1]), vf.createURI(parts[2]));
+                    }
+                }
+            } catch (IOException e) {
+                throw new DataRetrievalException("could not read page " + requestUrl, e);
+            }
+            return pages;
+        }
+    }
+
+    /**
+     * Collects the triples passed by the provider; fails in case the handler is called concurrently.
+     */
+    private static class CollectingHandler extends RDFHandlerBase {
+
+        private final Model triples;
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private CollectingHandler(Model triples) {
+            this.triples = triples;
+        }
+
+        @Override
+        public void handleStatement(Statement st) throws RDFHandlerException {
+            if(active.incrementAndGet() > 1) {
+                throw new RDFHandlerException("concurrent call of the RDF handler");
+            }
+            try {
+                triples.add(st);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+}
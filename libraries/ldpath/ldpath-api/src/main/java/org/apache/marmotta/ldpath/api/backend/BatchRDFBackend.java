@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.api.backend;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * An optional extension of the {@link RDFBackend} for backends that can look up the triples of many nodes at once
+ * more efficiently than with separate lookups, e.g. in a single database query. Selectors use it for evaluating a
+ * step of a path for all nodes selected by the previous step at once instead of one node at a time.
+ *
+ * @param <Node> most generic type of a Node (e.g. Value in Sesame).
+ */
+public interface BatchRDFBackend<Node> extends RDFBackend<Node> {
+
+    /**
+     * List the objects of triples in the triple store underlying this backend that have one of the subjects and
+     * the property given as argument.
+     *
+     * @param subjects the subjects of the triples to look for
+     * @param property the property of the triples to look for, <code>null</code> is interpreted as wildcard
+     * @return a map from the subjects to the objects of their matching triples; subjects without matching triples
+     *         need not be contained in the map
+     */
+    public Map<Node, Collection<Node>> listObjectsBatch(Collection<Node> subjects, Node property);
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.api.selectors;
+
+import java.util.Collection;
+
+import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+
+/**
+ * A node selector that can be applied to a collection of context nodes at once, e.g. to evaluate the right side of
+ * a path for all nodes selected by the left side. Batch selection does not track result paths; it is only used
+ * when path tracking is disabled.
+ *
+ * @param <Node> the node type used by the backend
+ */
+public interface BatchNodeSelector<Node> extends NodeSelector<Node> {
+
+    /**
+     * Apply the selector to all context nodes passed as argument and return the union of the selected nodes,
+     * without duplicates.
+     *
+     * @param backend  the backend to select the nodes from; in case it is a
+     *                 {@link org.apache.marmotta.ldpath.api.backend.BatchRDFBackend}, its batch lookups can be used
+     * @param contexts the nodes where to start the selection
+     * @return the collection of selected nodes
+     */
+    public Collection<Node> selectAll(RDFBackend<Node> backend, Collection<Node> contexts);
+}
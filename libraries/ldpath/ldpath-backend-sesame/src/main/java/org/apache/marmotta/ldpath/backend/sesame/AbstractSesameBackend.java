@@ -18,15 +18,27 @@
 package org.apache.marmotta.ldpath.backend.sesame;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.regex.Pattern;
 
 
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
 import org.openrdf.model.*;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.DatasetImpl;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.RepositoryResult;
@@ -38,6 +50,9 @@ public abstract class AbstractSesameBackend extends SesameValueBackend implement
 
     private static final Logger log = LoggerFactory.getLogger(AbstractSesameBackend.class);
 
+    // URIs that can be written as IRI references in a SPARQL query without escaping
+    private static final Pattern SPARQL_IRI = Pattern.compile("[^<>\"{}|^`\\\\\\x00-\\x20]*");
+
     protected org.openrdf.model.URI createURIInternal(final ValueFactory valueFactory, String uri) {
         return valueFactory.createURI(uri);
     }
@@ -75,6 +90,94 @@ public abstract class AbstractSesameBackend extends SesameValueBackend implement
         return  result;
     }
 
+    /**
+     * List the objects of the triples with one of the given subjects and the given property. The subjects are looked
+     * up with a SPARQL query for each batch of subjects, which stores evaluating SPARQL natively (e.g. KiWi) translate
+     * into a single database query. Blank nodes (and URIs that cannot be written in a query) are looked up one at a
+     * time.
+     *
+     * @param batchSize maximum number of subjects looked up in a single query
+     */
+    protected Map<Value, Collection<Value>> listObjectsBatchInternal(RepositoryConnection connection, Collection<Value> subjects, org.openrdf.model.URI property, boolean includeInferred, int batchSize, Resource... contexts)
+            throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+        Map<Value, Collection<Value>> result = new HashMap<Value, Collection<Value>>();
+
+        DatasetImpl dataset = null;
+        boolean batched = batchSize > 1 && (property == null || SPARQL_IRI.matcher(property.stringValue()).matches());
+        if(batched && contexts.length > 0) {
+            dataset = new DatasetImpl();
+            for(Resource context : contexts) {
+                if(context instanceof org.openrdf.model.URI) {
+                    dataset.addDefaultGraph((org.openrdf.model.URI) context);
+                } else {
+                    // the default graph or blank node contexts cannot be expressed as dataset
+                    batched = false;
+                }
+            }
+        }
+
+        List<Value> batch = new ArrayList<Value>(Math.max(batchSize, 1));
+        for(Value subject : subjects) {
+            if(batched && subject instanceof org.openrdf.model.URI && SPARQL_IRI.matcher(subject.stringValue()).matches()) {
+                batch.add(subject);
+                if(batch.size() >= batchSize) {
+                    listObjectsQuery(connection, batch, property, includeInferred, dataset, result);
+                    batch.clear();
+                }
+            } else {
+                result.put(subject, listObjectsInternal(connection, (Resource) subject, property, includeInferred, contexts));
+            }
+        }
+        if(batch.size() == 1) {
+            result.put(batch.get(0), listObjectsInternal(connection, (Resource) batch.get(0), property, includeInferred, contexts));
+        } else if(batch.size() > 1) {
+            listObjectsQuery(connection, batch, property, includeInferred, dataset, result);
+        }
+
+        return result;
+    }
+
+    private void listObjectsQuery(RepositoryConnection connection, List<Value> subjects, org.openrdf.model.URI property, boolean includeInferred, DatasetImpl dataset, Map<Value, Collection<Value>> result)
+            throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+        StringBuilder query = new StringBuilder();
+        query.append("SELECT ?s ?o WHERE { ?s ");
+        if(property != null) {
+            query.append("<").append(property.stringValue()).append("> ?o . FILTER(");
+        } else {
+            query.append("?p ?o . FILTER(");
+        }
+        for(int i=0; i<subjects.size(); i++) {
+            if(i > 0) {
+                query.append(" || ");
+            }
+            query.append("sameTerm(?s, <").append(subjects.get(i).stringValue()).append(">)");
+        }
+        query.append(") }");
+
+        TupleQuery tupleQuery = connection.prepareTupleQuery(QueryLanguage.SPARQL, query.toString());
+        tupleQuery.setIncludeInferred(includeInferred);
+        if(dataset != null) {
+            tupleQuery.setDataset(dataset);
+        }
+
+        TupleQueryResult qResult = tupleQuery.evaluate();
+        try {
+            while(qResult.hasNext()) {
+                BindingSet row = qResult.next();
+
+                Value subject = row.getValue("s");
+                Collection<Value> objects = result.get(subject);
+                if(objects == null) {
+                    objects = new HashSet<Value>();
+                    result.put(subject, objects);
+                }
+                objects.add(row.getValue("o"));
+            }
+        } finally {
+            qResult.close();
+        }
+    }
+
     protected Collection<Value> listSubjectsInternal(final RepositoryConnection connection, org.openrdf.model.URI property, Value object, boolean includeInferred, Resource... contexts)
             throws RepositoryException {
         final ValueFactory valueFactory = connection.getValueFactory();
@@ -20,20 +20,25 @@ package org.apache.marmotta.ldpath.backend.sesame;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Locale;
+import java.util.Map;
 
+import org.apache.marmotta.ldpath.api.backend.BatchRDFBackend;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Value;
 import org.openrdf.model.ValueFactory;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 
-public class SesameConnectionBackend extends AbstractSesameBackend {
+public class SesameConnectionBackend extends AbstractSesameBackend implements BatchRDFBackend<Value> {
 
     private final RepositoryConnection connection;
     private final ValueFactory valueFactory;
     private final Resource[] contexts;
     private final boolean includeInferred;
+    private int batchSize;
 
     /**
      * Create a new {@link SesameConnectionBackend}. This backend is context-agnostig (ignores all context information). 
@@ -81,6 +86,42 @@ public class SesameConnectionBackend extends AbstractSesameBackend {
         }
     }
 
+    /**
+     * List the objects of the triples with one of the given subjects and the given property. In case batch lookups
+     * are enabled (see {@link #setBatchSize(int)}), the subjects are looked up with a SPARQL query for each batch of
+     * subjects; this is only efficient in case the repository evaluates the query natively (e.g. KiWi with native
+     * SPARQL support), since otherwise all triples with the property might be scanned.
+     */
+    @Override
+    public Map<Value, Collection<Value>> listObjectsBatch(Collection<Value> subjects, Value property) {
+        try {
+            return listObjectsBatchInternal(connection, subjects, (org.openrdf.model.URI) property, includeInferred, batchSize, contexts);
+        } catch (RepositoryException | MalformedQueryException | QueryEvaluationException e) {
+            throw new RuntimeException(
+                    "error while querying Sesame repository!", e);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException(String.format(
+                    "Subjects need to be URIs or blank nodes, property a URI node "
+                            + "(property type: %s)",
+                    debugType(property)), e);
+        }
+    }
+
+    /**
+     * Return the maximum number of subjects looked up in a single query by {@link #listObjectsBatch(Collection, Value)}.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the maximum number of subjects looked up in a single query by {@link #listObjectsBatch(Collection, Value)};
+     * a value smaller than 2 disables batch lookups (default).
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     @Override
     public Collection<Value> listSubjects(Value property, Value object) {
         try {
@@ -17,6 +17,7 @@
  */
 package org.apache.marmotta.ldpath;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.Collection;
@@ -25,6 +26,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
 import org.apache.marmotta.ldpath.api.functions.SelectorFunction;
@@ -32,15 +34,18 @@ import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
 import org.apache.marmotta.ldpath.api.transformers.NodeTransformer;
 import org.apache.marmotta.ldpath.exception.LDPathParseException;
 import org.apache.marmotta.ldpath.model.fields.FieldMapping;
+import org.apache.marmotta.ldpath.model.programs.ParallelProgramExecutor;
 import org.apache.marmotta.ldpath.model.programs.Program;
 import org.apache.marmotta.ldpath.parser.Configuration;
 import org.apache.marmotta.ldpath.parser.DefaultConfiguration;
+import org.apache.marmotta.ldpath.parser.ParseCache;
 import org.apache.marmotta.ldpath.parser.ParseException;
 import org.apache.marmotta.ldpath.parser.LdPathParser;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.CharStreams;
 
 /**
  * Main class providing query functionality for the different RDF backends.
@@ -59,6 +64,8 @@ public class LDPath<Node> {
 
     private Configuration<Node> config;
 
+    private ParseCache<Node> cache;
+
     /**
      * Initialise a new LDPath instance for querying the backend passed as argument with the default configuration.
      * @param backend
@@ -75,10 +82,24 @@ public class LDPath<Node> {
      * @param config
      */
     public LDPath(RDFBackend<Node> backend, Configuration<Node> config) {
+        this(backend, config, new ParseCache<Node>());
+    }
+
+    /**
+     * Initialise a new LDPath instance for querying the backend passed as argument with a custom configuration
+     * and a cache for parsed path expressions and programs. The cache can be shared between LDPath instances using
+     * the same configuration, e.g. instances created for each request on a new backend connection.
+     *
+     * @param backend
+     * @param config
+     * @param cache
+     */
+    public LDPath(RDFBackend<Node> backend, Configuration<Node> config, ParseCache<Node> cache) {
         this.backend      = backend;
         this.functions    = new HashSet<SelectorFunction<Node>>();
         this.transformers = new HashMap<String, NodeTransformer<?, Node>>();
         this.config       = config;
+        this.cache        = cache;
     }
 
     /**
@@ -104,23 +125,9 @@ public class LDPath<Node> {
      * @throws LDPathParseException when the path passed as argument is not valid
      */
     public Collection<Node> pathQuery(Node context, String path, Map<String, String> namespaces) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<Node>(backend,config,new StringReader(path));
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri,transformers.get(typeUri));
-        }
-
-        try {
-            NodeSelector<Node> selector = parser.parseSelector(namespaces);
-
-            return selector.select(backend,context,null,null);
-
-        } catch (ParseException e) {
-            throw new LDPathParseException("error while parsing path expression",e);
-        }
+        NodeSelector<Node> selector = parseSelector(path, namespaces);
 
+        return selector.select(backend,context,null,null);
     }
 
 
@@ -150,23 +157,9 @@ public class LDPath<Node> {
      * @throws LDPathParseException when the path passed as argument is not valid
      */
     public Collection<Node> pathQuery(Node context, String path, Map<String, String> namespaces, Map<Node,List<Node>> paths) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<Node>(backend,config,new StringReader(path));
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri,transformers.get(typeUri));
-        }
-
-        try {
-            NodeSelector<Node> selector = parser.parseSelector(namespaces);
-
-            return selector.select(backend, context, ImmutableList.<Node> of(), paths);
-
-        } catch (ParseException e) {
-            throw new LDPathParseException("error while parsing path expression",e);
-        }
+        NodeSelector<Node> selector = parseSelector(path, namespaces);
 
+        return selector.select(backend, context, ImmutableList.<Node> of(), paths);
     }
 
 
@@ -193,17 +186,14 @@ public class LDPath<Node> {
      * @return a collection of nodes
      * @throws LDPathParseException when the path passed as argument is not valid
      */
-    public <T> Collection<T> pathTransform(Node context, String path, Map<String, String> namespaces) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<Node>(backend,config,new StringReader(path));
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri,transformers.get(typeUri));
-        }
-
+    public <T> Collection<T> pathTransform(Node context, final String path, final Map<String, String> namespaces) throws LDPathParseException {
         try {
-            FieldMapping<T,Node> mapping = parser.parseRule(namespaces);
+            FieldMapping<T,Node> mapping = cache.getRule(path, namespaces, new Callable<FieldMapping<T, Node>>() {
+                @Override
+                public FieldMapping<T, Node> call() throws ParseException {
+                    return createParser(new StringReader(path)).parseRule(namespaces);
+                }
+            });
 
             return mapping.getValues(backend, context);
 
@@ -223,28 +213,48 @@ public class LDPath<Node> {
      * @throws LDPathParseException
      */
     public Map<String,Collection<?>> programQuery(Node context, Reader program) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<Node>(backend,config,program);
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri, transformers.get(typeUri));
+        try {
+            return programQuery(context, CharStreams.toString(program));
+        } catch (IOException e) {
+            throw new LDPathParseException("error while reading path program",e);
         }
+    }
 
-        try {
-            Program<Node> p = parser.parseProgram();
+    /**
+     * Evaluate a path program passed as argument starting from the given context node and return a mapping for
+     * each field in the program to the selected values.
+     *
+     * @param context
+     * @param program
+     * @return
+     * @throws LDPathParseException
+     */
+    public Map<String,Collection<?>> programQuery(Node context, String program) throws LDPathParseException {
+        Program<Node> p = getProgram(program);
 
-            Map<String,Collection<?>> result = new HashMap<String, Collection<?>>();
+        Map<String,Collection<?>> result = new HashMap<String, Collection<?>>();
 
-            for(FieldMapping<?,Node> mapping : p.getFields()) {
-                result.put(mapping.getFieldName(),mapping.getValues(backend,context));
-            }
+        for(FieldMapping<?,Node> mapping : p.getFields()) {
+            result.put(mapping.getFieldName(),mapping.getValues(backend,context));
+        }
 
-            return result;
+        return result;
+    }
 
-        } catch (ParseException e) {
-            throw new LDPathParseException("error while parsing path expression",e);
-        }
+    /**
+     * Evaluate a path program passed as argument for all context nodes passed as argument and return a mapping from
+     * each context node to the result of the program for this node. In case the backend supports threading, the
+     * program is executed for several context nodes in parallel using the thread pool of the backend. The result
+     * contains the context nodes in the order they have been passed and the fields in the order of the program.
+     *
+     * @param contexts the context nodes to evaluate the program for
+     * @param program  the program in LDPath syntax
+     * @return
+     * @throws LDPathParseException
+     * @see ParallelProgramExecutor
+     */
+    public Map<Node,Map<String,Collection<?>>> programQuery(Iterable<? extends Node> contexts, String program) throws LDPathParseException {
+        return new ParallelProgramExecutor<Node>(getProgram(program), backend).executeAll(contexts);
     }
 
     /**
@@ -255,16 +265,30 @@ public class LDPath<Node> {
      * @throws LDPathParseException
      */
     public Program<Node> parseProgram(Reader program) throws LDPathParseException {
-        LdPathParser<Node> parser = new LdPathParser<Node>(backend,config,program);
-        for(SelectorFunction<Node> function : functions) {
-            parser.registerFunction(function);
-        }
-        for(String typeUri : transformers.keySet()) {
-            parser.registerTransformer(typeUri, transformers.get(typeUri));
+        try {
+            return createParser(program).parseProgram();
+        } catch (ParseException e) {
+            throw new LDPathParseException("error while parsing path program",e);
         }
+    }
 
+    /**
+     * Return the parsed program for the program passed as argument, parsing it only in case it is not yet contained
+     * in the parse cache. Other than {@link #parseProgram(java.io.Reader)}, the returned program is shared and
+     * must not be modified.
+     *
+     * @param program the program in LDPath syntax
+     * @return the parsed program
+     * @throws LDPathParseException
+     */
+    public Program<Node> getProgram(final String program) throws LDPathParseException {
         try {
-            return parser.parseProgram();
+            return cache.getProgram(program, new Callable<Program<Node>>() {
+                @Override
+                public Program<Node> call() throws ParseException {
+                    return createParser(new StringReader(program)).parseProgram();
+                }
+            });
         } catch (ParseException e) {
             throw new LDPathParseException("error while parsing path program",e);
         }
@@ -277,6 +301,7 @@ public class LDPath<Node> {
      */
     public void registerFunction(SelectorFunction<Node> function) {
         functions.add(function);
+        cache.invalidateAll();
     }
 
     /**
@@ -297,6 +322,7 @@ public class LDPath<Node> {
      */
     public void registerTransformer(String typeUri, NodeTransformer<?,Node> transformer) {
         transformers.put(typeUri,transformer);
+        cache.invalidateAll();
     }
 
     public Map<String, NodeTransformer<?,Node>> getTransformers() {
@@ -311,4 +337,36 @@ public class LDPath<Node> {
     public Configuration<Node> getConfig() {
         return config;
     }
+
+    /**
+     * Return the cache for parsed path expressions and programs used by this LDPath instance.
+     * @return
+     */
+    public ParseCache<Node> getParseCache() {
+        return cache;
+    }
+
+    private NodeSelector<Node> parseSelector(final String path, final Map<String, String> namespaces) throws LDPathParseException {
+        try {
+            return cache.getSelector(path, namespaces, new Callable<NodeSelector<Node>>() {
+                @Override
+                public NodeSelector<Node> call() throws ParseException {
+                    return createParser(new StringReader(path)).parseSelector(namespaces);
+                }
+            });
+        } catch (ParseException e) {
+            throw new LDPathParseException("error while parsing path expression",e);
+        }
+    }
+
+    private LdPathParser<Node> createParser(Reader input) {
+        LdPathParser<Node> parser = new LdPathParser<Node>(backend,config,input);
+        for(SelectorFunction<Node> function : functions) {
+            parser.registerFunction(function);
+        }
+        for(String typeUri : transformers.keySet()) {
+            parser.registerTransformer(typeUri, transformers.get(typeUri));
+        }
+        return parser;
+    }
 }
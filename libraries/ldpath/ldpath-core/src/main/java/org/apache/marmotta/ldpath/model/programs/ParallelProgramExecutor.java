@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.model.programs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+import org.apache.marmotta.ldpath.model.fields.FieldMapping;
+
+/**
+ * Executes a program for one or many context nodes using the thread pool of the backend. For a single context node,
+ * the field mappings of the program are evaluated concurrently; for many context nodes, the program is executed
+ * for several context nodes concurrently. At most the configured number of tasks is running or waiting at any time,
+ * so that bulk executions over many context nodes only keep a bounded number of results in memory.
+ * <p/>
+ * Results are returned in a deterministic order: fields in the order of the program and context nodes in the order
+ * they have been passed. In case the backend does not support threading (see {@link RDFBackend#supportsThreading()}),
+ * the program is executed sequentially on the calling thread.
+ *
+ * @param <Node> the node type used by the backend
+ */
+public class ParallelProgramExecutor<Node> {
+
+    /**
+     * Receives the results of a bulk execution, in the order of the context nodes and on the calling thread.
+     *
+     * @param <Node> the node type used by the backend
+     */
+    public interface ResultHandler<Node> {
+
+        /**
+         * Handle the result of executing the program for the given context node.
+         *
+         * @param context the context node of the execution
+         * @param result  a mapping from each field of the program to the selected values
+         */
+        public void handle(Node context, Map<String, Collection<?>> result);
+    }
+
+    private final Program<Node> program;
+
+    private final RDFBackend<Node> backend;
+
+    private final ExecutorService executor;
+
+    private final int parallelism;
+
+    /**
+     * Create a new executor for the program and backend passed as argument, running as many tasks in parallel as
+     * the thread pool of the backend has threads, but not more than the number of available processors.
+     *
+     * @param program the program to execute
+     * @param backend the backend to evaluate the program on
+     */
+    public ParallelProgramExecutor(Program<Node> program, RDFBackend<Node> backend) {
+        this(program, backend, getDefaultParallelism(backend));
+    }
+
+    /**
+     * Create a new executor for the program and backend passed as argument, running at most the given number of
+     * tasks in parallel.
+     *
+     * @param program     the program to execute
+     * @param backend     the backend to evaluate the program on
+     * @param parallelism the maximum number of tasks submitted to the thread pool of the backend at the same time
+     */
+    @SuppressWarnings("deprecation")
+    public ParallelProgramExecutor(Program<Node> program, RDFBackend<Node> backend, int parallelism) {
+        this.program     = program;
+        this.backend     = backend;
+        this.executor    = backend.supportsThreading() ? backend.getThreadPool() : null;
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Execute the program for the context node passed as argument, evaluating the fields concurrently.
+     *
+     * @param context the context node of the execution
+     * @return a mapping from each field of the program to the selected values, in the order of the program
+     */
+    public Map<String, Collection<?>> execute(Node context) {
+        List<Callable<Collection<?>>> tasks = new ArrayList<>();
+        for(final FieldMapping<?, Node> mapping : program.getFields()) {
+            tasks.add(new FieldTask(mapping, context));
+        }
+
+        Map<String, Collection<?>> result = new LinkedHashMap<>();
+        List<Collection<?>> values = run(tasks);
+        int i = 0;
+        for(FieldMapping<?, Node> mapping : program.getFields()) {
+            result.put(mapping.getFieldName(), values.get(i++));
+        }
+        return result;
+    }
+
+    /**
+     * Execute the program for all context nodes passed as argument, executing it for several context nodes
+     * concurrently.
+     *
+     * @param contexts the context nodes of the execution
+     * @return a mapping from each context node to the result of the program for this node, in the order of the
+     *         context nodes
+     */
+    public Map<Node, Map<String, Collection<?>>> executeAll(Iterable<? extends Node> contexts) {
+        final Map<Node, Map<String, Collection<?>>> result = new LinkedHashMap<>();
+        executeAll(contexts, new ResultHandler<Node>() {
+            @Override
+            public void handle(Node context, Map<String, Collection<?>> values) {
+                result.put(context, values);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Execute the program for all context nodes passed as argument, executing it for several context nodes
+     * concurrently and passing the results to the handler in the order of the context nodes. Only a bounded number
+     * of results is kept in memory, so the context nodes can e.g. be iterated from a database cursor.
+     *
+     * @param contexts the context nodes of the execution
+     * @param handler  receives the result for each context node on the calling thread
+     */
+    public void executeAll(Iterable<? extends Node> contexts, ResultHandler<Node> handler) {
+        if(executor == null) {
+            for(Node context : contexts) {
+                handler.handle(context, executeSequential(context));
+            }
+            return;
+        }
+
+        Deque<Node>                             pendingContexts = new ArrayDeque<>(parallelism);
+        Deque<Future<Map<String, Collection<?>>>> pending       = new ArrayDeque<>(parallelism);
+        try {
+            for(final Node context : contexts) {
+                if(pending.size() >= parallelism) {
+                    handler.handle(pendingContexts.poll(), await(pending.poll()));
+                }
+                pendingContexts.add(context);
+                pending.add(executor.submit(new Callable<Map<String, Collection<?>>>() {
+                    @Override
+                    public Map<String, Collection<?>> call() throws Exception {
+                        return executeSequential(context);
+                    }
+                }));
+            }
+            while(!pending.isEmpty()) {
+                handler.handle(pendingContexts.poll(), await(pending.poll()));
+            }
+        } finally {
+            for(Future<?> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Execute the program for the context node passed as argument on the calling thread.
+     */
+    private Map<String, Collection<?>> executeSequential(Node context) {
+        Map<String, Collection<?>> result = new LinkedHashMap<>();
+        for(FieldMapping<?, Node> mapping : program.getFields()) {
+            result.put(mapping.getFieldName(), new ArrayList<>(mapping.getValues(backend, context)));
+        }
+        return result;
+    }
+
+    private <T> List<T> run(List<? extends Callable<T>> tasks) {
+        List<T> result = new ArrayList<>(tasks.size());
+        if(executor == null || tasks.size() < 2) {
+            for(Callable<T> task : tasks) {
+                try {
+                    result.add(task.call());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException("error while executing LDPath program", e);
+                }
+            }
+            return result;
+        }
+
+        Deque<Future<T>> pending = new ArrayDeque<>(parallelism);
+        try {
+            for(Callable<T> task : tasks) {
+                if(pending.size() >= parallelism) {
+                    result.add(await(pending.poll()));
+                }
+                pending.add(executor.submit(task));
+            }
+            while(!pending.isEmpty()) {
+                result.add(await(pending.poll()));
+            }
+        } finally {
+            for(Future<T> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return result;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while executing LDPath program", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if(e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("error while executing LDPath program", e.getCause());
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int getDefaultParallelism(RDFBackend<?> backend) {
+        ThreadPoolExecutor pool = backend.supportsThreading() ? backend.getThreadPool() : null;
+        int processors = Runtime.getRuntime().availableProcessors();
+        if(pool == null) {
+            return 1;
+        }
+        return Math.max(1, Math.min(pool.getMaximumPoolSize(), processors));
+    }
+
+    private class FieldTask implements Callable<Collection<?>> {
+
+        private final FieldMapping<?, Node> mapping;
+
+        private final Node context;
+
+        private FieldTask(FieldMapping<?, Node> mapping, Node context) {
+            this.mapping = mapping;
+            this.context = context;
+        }
+
+        @Override
+        public Collection<?> call() {
+            // copy the values, so the transformation is done in the worker thread
+            return new ArrayList<>(mapping.getValues(backend, context));
+        }
+    }
+}
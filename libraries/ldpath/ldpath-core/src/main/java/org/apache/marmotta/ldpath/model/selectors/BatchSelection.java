@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.model.selectors;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+import org.apache.marmotta.ldpath.api.selectors.BatchNodeSelector;
+import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
+
+/**
+ * Helper for applying a selector to a collection of context nodes, using batch selection where the selector
+ * supports it and selecting for one context node at a time otherwise.
+ */
+final class BatchSelection {
+
+    private BatchSelection() {
+        // static access only
+    }
+
+    /**
+     * Apply the selector to all context nodes passed as argument and return the union of the selected nodes.
+     */
+    static <Node> Collection<Node> selectAll(NodeSelector<Node> selector, RDFBackend<Node> backend, Collection<Node> contexts) {
+        if(contexts.isEmpty()) {
+            return new LinkedHashSet<Node>();
+        } else if(selector instanceof BatchNodeSelector) {
+            return ((BatchNodeSelector<Node>) selector).selectAll(backend, contexts);
+        } else {
+            Set<Node> result = new LinkedHashSet<Node>();
+            for(Node context : contexts) {
+                result.addAll(selector.select(backend, context, null, null));
+            }
+            return result;
+        }
+    }
+}
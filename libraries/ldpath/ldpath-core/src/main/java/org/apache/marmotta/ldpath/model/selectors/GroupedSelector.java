@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.apache.marmotta.ldpath.api.backend.NodeBackend;
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+import org.apache.marmotta.ldpath.api.selectors.BatchNodeSelector;
 import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
 
 /**
@@ -32,7 +33,7 @@ import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
  * @param <Node> the node type used by the backend
  * @author Jakob Frank <jakob@apache.org>
  */
-public class GroupedSelector<Node> implements NodeSelector<Node> {
+public class GroupedSelector<Node> implements BatchNodeSelector<Node> {
 
     private final NodeSelector<Node> content;
 
@@ -57,6 +58,11 @@ public class GroupedSelector<Node> implements NodeSelector<Node> {
         return content.select(rdfBackend, context, path, resultPaths);
     }
 
+    @Override
+    public Collection<Node> selectAll(RDFBackend<Node> rdfBackend, Collection<Node> contexts) {
+        return BatchSelection.selectAll(content, rdfBackend, contexts);
+    }
+
     /**
      * Return the name of the NodeSelector for registration in the selector registry
      *
@@ -27,14 +27,18 @@ import java.util.Set;
 
 import org.apache.marmotta.ldpath.api.backend.NodeBackend;
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+import org.apache.marmotta.ldpath.api.selectors.BatchNodeSelector;
 import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
 
 /**
  * Traverse a path by following several edges in the RDF graph. Each step is separated by a "/".
  * <p/>
+ * Unless result paths are tracked, the right side of the path is evaluated for all nodes selected by the left side
+ * at once, so that backends supporting batch lookups only need a few queries for each step.
+ * <p/>
  * Author: Sebastian Schaffert <sebastian.schaffert@salzburgresearch.at>
  */
-public class PathSelector<Node> implements NodeSelector<Node> {
+public class PathSelector<Node> implements BatchNodeSelector<Node> {
 
     private NodeSelector<Node> left;
     private NodeSelector<Node> right;
@@ -57,17 +61,16 @@ public class PathSelector<Node> implements NodeSelector<Node> {
      */
     @Override
     public Collection<Node> select(RDFBackend<Node> rdfBackend, Node context, List<Node> path, Map<Node, List<Node>> resultPaths) {
-        // a new map for storing the result path for the left selector
-        Map<Node,List<Node>> myResultPaths = null;
-        if(resultPaths != null && path != null) {
-            myResultPaths = new HashMap<Node, List<Node>>();
+        if(resultPaths == null || path == null) {
+            return BatchSelection.selectAll(right, rdfBackend, left.select(rdfBackend, context, null, null));
         }
-        
+
+        // a new map for storing the result path for the left selector
+        Map<Node,List<Node>> myResultPaths = new HashMap<Node, List<Node>>();
+
         Collection<Node> nodesLeft = left.select(rdfBackend,context,path,myResultPaths);
         final Set<Node> result = new HashSet<Node>();
 
-        
-        
         for(Node n : nodesLeft) {
             // new path is the path resulting from selecting the context node in the left selector
             if(myResultPaths != null && myResultPaths.get(n) != null) {
@@ -79,6 +82,19 @@ public class PathSelector<Node> implements NodeSelector<Node> {
         return result;
     }
 
+    /**
+     * Apply the selector to all context nodes passed as argument by evaluating the left side for all context nodes
+     * and the right side for all nodes selected by the left side.
+     *
+     * @param rdfBackend the backend to select the nodes from
+     * @param contexts   the nodes where to start the selection
+     * @return the collection of selected nodes
+     */
+    @Override
+    public Collection<Node> selectAll(RDFBackend<Node> rdfBackend, Collection<Node> contexts) {
+        return BatchSelection.selectAll(right, rdfBackend, BatchSelection.selectAll(left, rdfBackend, contexts));
+    }
+
 
     @Override
     public String getPathExpression(NodeBackend<Node> backend) {
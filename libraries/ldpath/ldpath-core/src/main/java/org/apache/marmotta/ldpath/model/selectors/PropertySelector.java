@@ -19,14 +19,18 @@ package org.apache.marmotta.ldpath.model.selectors;
 
 import com.google.common.collect.ImmutableList;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.apache.marmotta.ldpath.api.backend.BatchRDFBackend;
 import org.apache.marmotta.ldpath.api.backend.NodeBackend;
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
-import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
+import org.apache.marmotta.ldpath.api.selectors.BatchNodeSelector;
 
 /**
  * A path definition selecting the value of a property. Either a URI enclosed in <> or a namespace prefix and a
@@ -34,7 +38,7 @@ import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
  * <p/>
  * Author: Sebastian Schaffert <sebastian.schaffert@salzburgresearch.at>
  */
-public class PropertySelector<Node> implements NodeSelector<Node> {
+public class PropertySelector<Node> implements BatchNodeSelector<Node> {
 
 	private Node property;
 
@@ -71,6 +75,38 @@ public class PropertySelector<Node> implements NodeSelector<Node> {
 		}
 	}
 
+    /**
+     * Select the values of the property for all context nodes passed as argument. In case the backend supports
+     * batch lookups, the values of all context nodes are retrieved at once.
+     *
+     * @param rdfBackend the backend to select the nodes from
+     * @param contexts   the nodes where to start the selection
+     * @return the collection of selected nodes
+     */
+    @Override
+    public Collection<Node> selectAll(RDFBackend<Node> rdfBackend, Collection<Node> contexts) {
+        List<Node> subjects = new ArrayList<Node>(contexts.size());
+        for(Node context : contexts) {
+            if(rdfBackend.isURI(context) || rdfBackend.isBlank(context)) {
+                subjects.add(context);
+            }
+        }
+
+        Set<Node> result = new LinkedHashSet<Node>();
+        if(subjects.isEmpty()) {
+            return result;
+        } else if(rdfBackend instanceof BatchRDFBackend && subjects.size() > 1) {
+            for(Collection<Node> objects : ((BatchRDFBackend<Node>) rdfBackend).listObjectsBatch(subjects, property).values()) {
+                result.addAll(objects);
+            }
+        } else {
+            for(Node subject : subjects) {
+                result.addAll(rdfBackend.listObjects(subject, property));
+            }
+        }
+        return result;
+    }
+
 	@Override
 	public String getPathExpression(NodeBackend<Node> backend) {
 		if (property != null) {
@@ -23,9 +23,15 @@ import java.util.*;
 
 import org.apache.marmotta.ldpath.api.backend.NodeBackend;
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+import org.apache.marmotta.ldpath.api.selectors.BatchNodeSelector;
 import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
 
-public class RecursivePathSelector<Node> implements NodeSelector<Node> {
+/**
+ * Follow the delegate selector repeatedly, selecting all nodes reached after at least the minimum and at most the
+ * maximum number of steps. Unless result paths are tracked, the selection proceeds breadth-first and applies the
+ * delegate to all nodes reached in the previous step at once.
+ */
+public class RecursivePathSelector<Node> implements BatchNodeSelector<Node> {
 
 	private final NodeSelector<Node> delegate;
 	private final int minRecursions, maxRecursions;
@@ -50,6 +56,10 @@ public class RecursivePathSelector<Node> implements NodeSelector<Node> {
      */
     @Override
     public Collection<Node> select(RDFBackend<Node> rdfBackend, Node context, List<Node> path, Map<Node, List<Node>> resultPaths) {
+        if(path == null || resultPaths == null) {
+            return selectAll(rdfBackend, Collections.singleton(context));
+        }
+
 		List<Node> result = new LinkedList<>();
 
 		if (minRecursions <= 0) {
@@ -60,6 +70,39 @@ public class RecursivePathSelector<Node> implements NodeSelector<Node> {
 		return result;
 	}
 
+    /**
+     * Apply the selector to all context nodes passed as argument, following the delegate breadth-first for all
+     * nodes reached in the previous step at once. Nodes already selected are not followed again.
+     *
+     * @param rdfBackend the backend to select the nodes from
+     * @param contexts   the nodes where to start the selection
+     * @return the collection of selected nodes
+     */
+    @Override
+    public Collection<Node> selectAll(RDFBackend<Node> rdfBackend, Collection<Node> contexts) {
+        Set<Node> result = new LinkedHashSet<>();
+        if (minRecursions <= 0) {
+            result.addAll(contexts);
+        }
+
+        Collection<Node> frontier = contexts;
+        for (int depth = 1; depth <= maxRecursions && !frontier.isEmpty(); depth++) {
+            Collection<Node> next = BatchSelection.selectAll(delegate, rdfBackend, frontier);
+            if (depth < minRecursions) {
+                // nodes reached before the minimum number of steps are not selected, but need to be followed further
+                frontier = next;
+            } else {
+                frontier = new ArrayList<>(next.size());
+                for (Node n : next) {
+                    if (result.add(n)) {
+                        frontier.add(n);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
 	private void subSelect(Node currentContext, int depth, RDFBackend<Node> rdfBackend, List<Node> resultList, List<Node> path, Map<Node, List<Node>> resultPaths) {
 		Collection<Node> nextNodes = delegate.select(rdfBackend, currentContext,path,resultPaths);
 		depth++;
@@ -26,6 +26,7 @@ import java.util.Set;
 
 import org.apache.marmotta.ldpath.api.backend.NodeBackend;
 import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+import org.apache.marmotta.ldpath.api.selectors.BatchNodeSelector;
 import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
 
 /**
@@ -35,7 +36,7 @@ import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
  * <p/>
  * Author: Sebastian Schaffert <sebastian.schaffert@salzburgresearch.at>
  */
-public class UnionSelector<Node> implements NodeSelector<Node> {
+public class UnionSelector<Node> implements BatchNodeSelector<Node> {
 
     private NodeSelector<Node> left;
     private NodeSelector<Node> right;
@@ -66,6 +67,15 @@ public class UnionSelector<Node> implements NodeSelector<Node> {
         return result;
     }
 
+    @Override
+    public Collection<Node> selectAll(RDFBackend<Node> rdfBackend, Collection<Node> contexts) {
+        final Set<Node> result = new HashSet<Node>();
+
+        result.addAll(BatchSelection.selectAll(left, rdfBackend, contexts));
+        result.addAll(BatchSelection.selectAll(right, rdfBackend, contexts));
+        return result;
+    }
+
     /**
      * Return the name of the NodeSelector for registration in the selector registry
      *
@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.parser;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
+import org.apache.marmotta.ldpath.model.fields.FieldMapping;
+import org.apache.marmotta.ldpath.model.programs.Program;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A thread-safe cache for parsed path selectors, field rules and programs, keyed by the expression text and the
+ * namespaces passed to the parser. The least recently used expressions are evicted once the maximum size is reached.
+ * <p/>
+ * The parsed objects are shared between all users of the cache and must not be modified. Since the result of parsing
+ * also depends on the functions, transformers and default namespaces available to the parser, a cache must only be
+ * shared by LDPath instances using the same configuration, and {@link #invalidateAll()} needs to be called whenever
+ * the configuration changes.
+ *
+ * @param <Node> the node type used by the backend
+ */
+public class ParseCache<Node> {
+
+    /**
+     * Default maximum number of parsed expressions held by a cache.
+     */
+    public static final int DEFAULT_SIZE = 100;
+
+    private static final int TYPE_SELECTOR = 0;
+    private static final int TYPE_RULE     = 1;
+    private static final int TYPE_PROGRAM  = 2;
+
+    private final Cache<Key, Object> cache;
+
+    /**
+     * Create a new parse cache holding at most {@link #DEFAULT_SIZE} parsed expressions.
+     */
+    public ParseCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Create a new parse cache holding at most the given number of parsed expressions.
+     *
+     * @param maximumSize the maximum number of parsed expressions to keep
+     */
+    public ParseCache(int maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Return the selector for the given path expression and namespaces, calling the parser in case it is not yet
+     * contained in the cache.
+     *
+     * @param path       the path expression
+     * @param namespaces the namespaces passed to the parser; can be null
+     * @param parser     parses the path expression in case of a cache miss
+     * @return the (shared) parsed selector
+     * @throws ParseException in case the path expression could not be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public NodeSelector<Node> getSelector(String path, Map<String, String> namespaces, Callable<NodeSelector<Node>> parser) throws ParseException {
+        return (NodeSelector<Node>) get(new Key(TYPE_SELECTOR, path, namespaces), parser);
+    }
+
+    /**
+     * Return the field mapping for the given rule and namespaces, calling the parser in case it is not yet contained
+     * in the cache.
+     *
+     * @param rule       the field rule
+     * @param namespaces the namespaces passed to the parser; can be null
+     * @param parser     parses the rule in case of a cache miss
+     * @return the (shared) parsed field mapping
+     * @throws ParseException in case the rule could not be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> FieldMapping<T, Node> getRule(String rule, Map<String, String> namespaces, Callable<FieldMapping<T, Node>> parser) throws ParseException {
+        return (FieldMapping<T, Node>) get(new Key(TYPE_RULE, rule, namespaces), parser);
+    }
+
+    /**
+     * Return the program for the given program text, calling the parser in case it is not yet contained in the
+     * cache.
+     *
+     * @param program the program in LDPath syntax
+     * @param parser  parses the program in case of a cache miss
+     * @return the (shared) parsed program
+     * @throws ParseException in case the program could not be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public Program<Node> getProgram(String program, Callable<Program<Node>> parser) throws ParseException {
+        return (Program<Node>) get(new Key(TYPE_PROGRAM, program, null), parser);
+    }
+
+    /**
+     * Remove all parsed expressions from the cache, e.g. after functions or transformers have been registered.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Return the number of parsed expressions currently held by the cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Return the number of lookups that could be answered from the cache.
+     */
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * Return the number of lookups that required parsing the expression.
+     */
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Return the hit and miss statistics of the cache.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    private Object get(Key key, Callable<?> parser) throws ParseException {
+        try {
+            return cache.get(key, parser);
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwables.propagateIfPossible(e.getCause(), ParseException.class);
+            throw new IllegalStateException("unexpected error while parsing path expression", e.getCause());
+        }
+    }
+
+    private static final class Key {
+
+        private final int type;
+
+        private final String expression;
+
+        private final Map<String, String> namespaces;
+
+        private final int hashCode;
+
+        private Key(int type, String expression, Map<String, String> namespaces) {
+            this.type       = type;
+            this.expression = expression;
+            this.namespaces = namespaces != null ? ImmutableMap.copyOf(namespaces) : ImmutableMap.<String, String>of();
+            this.hashCode   = Objects.hashCode(type, expression, this.namespaces);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return type == key.type && expression.equals(key.expression) && namespaces.equals(key.namespaces);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
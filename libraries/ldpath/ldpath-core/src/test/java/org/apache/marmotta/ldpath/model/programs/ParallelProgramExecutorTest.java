@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.model.programs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.marmotta.ldpath.LDPath;
+import org.apache.marmotta.ldpath.backend.sesame.ThreadingSesameBackend;
+import org.apache.marmotta.ldpath.exception.LDPathParseException;
+import org.apache.marmotta.ldpath.test.AbstractTestBase;
+import org.hamcrest.CoreMatchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Value;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+
+import com.google.common.collect.ImmutableList;
+
+@SuppressWarnings("deprecation")
+public class ParallelProgramExecutorTest extends AbstractTestBase {
+
+    private static final String PROGRAM = "@prefix foo : <http://localhost/vcab#> ;\n" +
+            "title = foo:title :: xsd:string ;\n" +
+            "subtitle = foo:subtitle :: xsd:string ;\n" +
+            "i = foo:i :: xsd:string ;\n" +
+            "j = foo:j :: xsd:string ;\n" +
+            "left = foo:left :: xsd:string ;\n" +
+            "right = foo:right :: xsd:string ;";
+
+    private ThreadingSesameBackend threadingBackend;
+
+    private Program<Value> program;
+
+    @Before
+    public void setup() throws RepositoryException, RDFParseException, IOException, LDPathParseException {
+        loadData("/ldpath/test-data.n3", RDFFormat.N3);
+
+        threadingBackend = new ThreadingSesameBackend(repository);
+        program = new LDPath<Value>(backend).getProgram(PROGRAM);
+    }
+
+    @After
+    public void shutdownPool() {
+        threadingBackend.shutdown();
+    }
+
+    @Test
+    public void testExecuteFields() {
+        Value context = createURI("ex:1");
+
+        Map<String, Collection<?>> expected = program.execute(backend, context);
+        Map<String, Collection<?>> result = new ParallelProgramExecutor<Value>(program, threadingBackend, 2).execute(context);
+
+        assertEquals(ImmutableList.of("title", "subtitle", "i", "j", "left", "right"), new ArrayList<>(result.keySet()));
+        for(String field : expected.keySet()) {
+            assertEquals(new HashSet<Object>(expected.get(field)), new HashSet<Object>(result.get(field)));
+        }
+    }
+
+    @Test
+    public void testExecuteAllOrdered() {
+        List<Value> contexts = new ArrayList<>();
+        for(int i=0; i<20; i++) {
+            for(String c : new String[] {"ex:1", "ex:2", "ex:Eq", "ex:Lt", "ex:Gt"}) {
+                contexts.add(createURI("ex", c.substring(3) + "-" + i));
+            }
+        }
+        contexts.addAll(ImmutableList.of(createURI("ex:Gt"), createURI("ex:2"), createURI("ex:Lt"), createURI("ex:1")));
+
+        Map<Value, Map<String, Collection<?>>> result = new ParallelProgramExecutor<Value>(program, threadingBackend, 3).executeAll(contexts);
+
+        assertEquals(contexts, new ArrayList<>(result.keySet()));
+        for(Value context : contexts) {
+            Map<String, Collection<?>> expected = program.execute(backend, context);
+            for(String field : expected.keySet()) {
+                assertEquals(new HashSet<Object>(expected.get(field)), new HashSet<Object>(result.get(context).get(field)));
+            }
+        }
+        assertThat(result.get(createURI("ex:2")).get("title"), CoreMatchers.<Object>hasItem("Two"));
+        assertThat(result.get(createURI("ex:Lt")).get("left"), CoreMatchers.<Object>hasItem("1"));
+    }
+
+    @Test
+    public void testSequentialFallback() throws LDPathParseException {
+        LDPath<Value> ldpath = new LDPath<Value>(backend);
+
+        Map<Value, Map<String, Collection<?>>> result = ldpath.programQuery(ImmutableList.of(createURI("ex:2"), createURI("ex:1")), PROGRAM);
+
+        assertEquals(ImmutableList.of(createURI("ex:2"), createURI("ex:1")), new ArrayList<>(result.keySet()));
+        assertThat(result.get(createURI("ex:1")).get("i"), CoreMatchers.<Object>hasItems("1", "2", "3"));
+    }
+}
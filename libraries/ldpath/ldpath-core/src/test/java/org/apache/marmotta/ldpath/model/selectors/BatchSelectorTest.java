@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.model.selectors;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
+import org.apache.marmotta.ldpath.backend.sesame.SesameConnectionBackend;
+import org.apache.marmotta.ldpath.parser.ParseException;
+import org.apache.marmotta.ldpath.test.AbstractTestBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Value;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Test the set-at-a-time evaluation of selectors against a backend supporting batch lookups.
+ */
+public class BatchSelectorTest extends AbstractTestBase {
+
+    private RepositoryConnection connection;
+
+    private CountingBackend batchBackend;
+
+    @Before
+    public void setup() throws RepositoryException, RDFParseException, IOException {
+        loadData("/ldpath/test-data.n3", RDFFormat.N3);
+
+        connection = repository.getConnection();
+        connection.begin();
+
+        batchBackend = new CountingBackend(connection);
+        batchBackend.setBatchSize(2);
+    }
+
+    @After
+    public void shutdown() throws RepositoryException {
+        connection.commit();
+        connection.close();
+    }
+
+    @Test
+    public void testPath() throws ParseException {
+        NodeSelector<Value> selector = createParserFromString("ex:hasItem / foo:i").parseSelector(NSS);
+
+        Collection<Value> result = selector.select(batchBackend, createURI("ex:start"), null, null);
+        assertEquals(new HashSet<Value>(selectTracked(selector, "ex:start")), new HashSet<Value>(result));
+        assertEquals(4, result.size());
+
+        // one lookup for the context node, one batch lookup for the items
+        assertEquals(1, batchBackend.lookups);
+        assertEquals(1, batchBackend.batchLookups);
+    }
+
+    @Test
+    public void testLongPath() throws ParseException {
+        NodeSelector<Value> selector = createParserFromString("ex:hasItem / foo:title / foo:none").parseSelector(NSS);
+        assertEquals(0, selector.select(batchBackend, createURI("ex:start"), null, null).size());
+
+        selector = createParserFromString("ex:hasItem / ex:hasItem / foo:left").parseSelector(NSS);
+        assertEquals(0, selector.select(batchBackend, createURI("ex:start"), null, null).size());
+
+        selector = createParserFromString("(ex:hasItem | rdf:type) / foo:right").parseSelector(NSS);
+        Collection<Value> result = selector.select(batchBackend, createURI("ex:Compare"), null, null);
+        assertEquals(new HashSet<Value>(selectTracked(selector, "ex:Compare")), new HashSet<Value>(result));
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    public void testRecursivePath() throws ParseException {
+        NodeSelector<Value> star = createParserFromString("(ex:hasItem)*").parseSelector(NSS);
+        Collection<Value> result = star.select(batchBackend, createURI("ex:start"), null, null);
+        assertEquals(3, result.size());
+        assertThat(result, hasItems((Value) createURI("ex:start"), createURI("ex:1"), createURI("ex:2")));
+
+        NodeSelector<Value> plus = createParserFromString("(ex:hasItem)+ / foo:left").parseSelector(NSS);
+        result = plus.select(batchBackend, createURI("ex:Compare"), null, null);
+        assertEquals(new HashSet<Value>(selectTracked(plus, "ex:Compare")), new HashSet<Value>(result));
+        assertEquals(3, result.size());
+    }
+
+    private Collection<Value> selectTracked(NodeSelector<Value> selector, String context) {
+        // path tracking disables the batch evaluation
+        Map<Value, List<Value>> paths = new HashMap<Value, List<Value>>();
+        return selector.select(backend, createURI(context), ImmutableList.<Value>of(), paths);
+    }
+
+    private static class CountingBackend extends SesameConnectionBackend {
+
+        private int lookups = 0;
+        private int batchLookups = 0;
+
+        private CountingBackend(RepositoryConnection connection) {
+            super(connection);
+        }
+
+        @Override
+        public Collection<Value> listObjects(Value subject, Value property) {
+            lookups++;
+            return super.listObjects(subject, property);
+        }
+
+        @Override
+        public Map<Value, Collection<Value>> listObjectsBatch(Collection<Value> subjects, Value property) {
+            batchLookups++;
+            return super.listObjectsBatch(subjects, property);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.ldpath.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.marmotta.ldpath.LDPath;
+import org.apache.marmotta.ldpath.exception.LDPathParseException;
+import org.apache.marmotta.ldpath.model.functions.ConcatenateFunction;
+import org.apache.marmotta.ldpath.model.programs.Program;
+import org.apache.marmotta.ldpath.test.AbstractTestBase;
+import org.hamcrest.CoreMatchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+
+import com.google.common.collect.ImmutableMap;
+
+public class ParseCacheTest extends AbstractTestBase {
+
+    private static final String PROGRAM = "@prefix foo : <http://localhost/vcab#> ;\n title = foo:title :: xsd:string ;";
+
+    @Before
+    public void loadData() throws RepositoryException, RDFParseException, IOException {
+        loadData("/ldpath/test-data.n3", RDFFormat.N3);
+    }
+
+    @Test
+    public void testSelectorCache() throws LDPathParseException {
+        ParseCache<Value> cache = new ParseCache<Value>();
+        LDPath<Value> ldpath = new LDPath<Value>(backend, new DefaultConfiguration<Value>(), cache);
+        URI context = createURI("ex:1");
+
+        Collection<Value> first = ldpath.pathQuery(context, "foo:title", NSS);
+        Collection<Value> second = ldpath.pathQuery(context, "foo:title", NSS);
+
+        assertEquals(1, first.size());
+        assertEquals(first, second);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        // the same expression with different namespaces is parsed again
+        ldpath.pathQuery(context, "foo:title", ImmutableMap.of("foo", "http://localhost/vcab#", "bar", "http://localhost/bar#"));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testProgramCache() throws LDPathParseException {
+        ParseCache<Value> cache = new ParseCache<Value>();
+        LDPath<Value> ldpath1 = new LDPath<Value>(backend, new DefaultConfiguration<Value>(), cache);
+        LDPath<Value> ldpath2 = new LDPath<Value>(backend, new DefaultConfiguration<Value>(), cache);
+
+        Program<Value> program = ldpath1.getProgram(PROGRAM);
+        assertSame(program, ldpath2.getProgram(PROGRAM));
+
+        Map<String,Collection<?>> result = ldpath2.programQuery(createURI("ex:2"), PROGRAM);
+        assertThat(result.get("title"), CoreMatchers.<Object>hasItem("Two"));
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testParseErrorNotCached() {
+        ParseCache<Value> cache = new ParseCache<Value>();
+        LDPath<Value> ldpath = new LDPath<Value>(backend, new DefaultConfiguration<Value>(), cache);
+
+        for(int i=0; i<2; i++) {
+            try {
+                ldpath.pathQuery(createURI("ex:1"), "foo:title /", NSS);
+                fail("invalid path expression has been parsed");
+            } catch (LDPathParseException e) {
+                // expected
+            }
+        }
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testInvalidateOnRegistration() throws LDPathParseException {
+        ParseCache<Value> cache = new ParseCache<Value>();
+        LDPath<Value> ldpath = new LDPath<Value>(backend, new DefaultConfiguration<Value>(), cache);
+
+        Program<Value> program = ldpath.getProgram(PROGRAM);
+        ldpath.registerFunction(new ConcatenateFunction<Value>());
+
+        assertEquals(0, cache.size());
+        assertNotSame(program, ldpath.getProgram(PROGRAM));
+    }
+
+    @Test
+    public void testEviction() throws LDPathParseException {
+        ParseCache<Value> cache = new ParseCache<Value>(10);
+        LDPath<Value> ldpath = new LDPath<Value>(backend, new DefaultConfiguration<Value>(), cache);
+
+        for(int i=0; i<100; i++) {
+            ldpath.pathQuery(createURI("ex:1"), "foo:title" + i, NSS);
+        }
+        assertThat(cache.size() <= 10, CoreMatchers.is(true));
+    }
+}
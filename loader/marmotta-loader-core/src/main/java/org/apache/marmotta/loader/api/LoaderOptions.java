@@ -84,4 +84,17 @@ public class LoaderOptions {
      */
     public static final String STATISTICS_INTERVAL = "loader.statistics.interval";
 
+
+    /**
+     * Number of threads used for decompressing and parsing files and archives in parallel. Configuration value needs
+     * to be an integer; 1 (the default) loads all files sequentially.
+     */
+    public static final String PARSER_THREADS = "loader.threads";
+
+    /**
+     * Number of statements handed off from the parser threads to the backend at once when loading in parallel.
+     * Configuration value needs to be an integer.
+     */
+    public static final String BATCH_SIZE = "loader.batchsize";
+
 }
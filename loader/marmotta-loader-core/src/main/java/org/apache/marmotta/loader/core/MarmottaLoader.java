@@ -46,6 +46,7 @@ import org.apache.marmotta.loader.api.LoaderHandler;
 import org.apache.marmotta.loader.api.LoaderOptions;
 import org.apache.marmotta.loader.context.ContextHandler;
 import org.apache.marmotta.loader.functions.BackendIdentifierFunction;
+import org.apache.marmotta.loader.parallel.ParallelLoader;
 import org.apache.marmotta.loader.rio.GeonamesFormat;
 import org.apache.marmotta.loader.statistics.StatisticsHandler;
 import org.apache.marmotta.loader.util.DirectoryFilter;
@@ -92,46 +93,98 @@ public class MarmottaLoader {
 
         handler.initialise();
 
+        int threads = configuration.getInt(LoaderOptions.PARSER_THREADS, 1);
+        if(threads > 1) {
+            loadParallel(handler, threads);
+        } else {
+            if(configuration.containsKey(LoaderOptions.DIRS)) {
+                for(String dirname : configuration.getStringArray(LoaderOptions.DIRS)) {
+                    File dir = new File(dirname);
+
+                    try {
+                        loadDirectory(dir, handler, getRDFFormat(configuration.getString(LoaderOptions.FORMAT)), configuration.getString(LoaderOptions.COMPRESSION));
+                    } catch (RDFParseException | IOException e) {
+                        log.warn("error importing directory {}: {}", dir, e.getMessage());
+                    }
+                }
+            }
+
+            if(configuration.containsKey(LoaderOptions.ARCHIVES)) {
+                for(String archiveName : configuration.getStringArray(LoaderOptions.ARCHIVES)) {
+                    File archive = new File(archiveName);
+
+                    try {
+                        loadArchive(archive, handler, getRDFFormat(configuration.getString(LoaderOptions.FORMAT)));
+                    } catch (RDFParseException | IOException | ArchiveException e) {
+                        log.warn("error importing directory {}: {}", archive, e.getMessage());
+                    }
+                }
+            }
+
+
+            if(configuration.containsKey(LoaderOptions.FILES)) {
+                for(String fname : configuration.getStringArray(LoaderOptions.FILES)) {
+                    File f = new File(fname);
+
+                    try {
+                        loadFile(f, handler, getRDFFormat(configuration.getString(LoaderOptions.FORMAT)), configuration.getString(LoaderOptions.COMPRESSION));
+                    } catch (RDFParseException | IOException e) {
+                        log.warn("error importing file {}: {}", f, e.getMessage());
+                    }
+                }
+            }
+        }
+
+        handler.shutdown();
+
+        return handler;
+    }
+
+    /**
+     * Load all directories, archives and files specified in the configuration using the given number of parser
+     * threads.
+     *
+     * @param handler handler to add the data to
+     * @param threads number of parser threads
+     * @throws RDFHandlerException
+     */
+    private void loadParallel(LoaderHandler handler, int threads) throws RDFHandlerException {
+        ParallelLoader parallel = new ParallelLoader(this, threads, configuration.getInt(LoaderOptions.BATCH_SIZE, 10000));
+
+        RDFFormat format   = getRDFFormat(configuration.getString(LoaderOptions.FORMAT));
+        String compression = configuration.getString(LoaderOptions.COMPRESSION);
+
         if(configuration.containsKey(LoaderOptions.DIRS)) {
             for(String dirname : configuration.getStringArray(LoaderOptions.DIRS)) {
                 File dir = new File(dirname);
 
-                try {
-                    loadDirectory(dir, handler, getRDFFormat(configuration.getString(LoaderOptions.FORMAT)), configuration.getString(LoaderOptions.COMPRESSION));
-                } catch (RDFParseException | IOException e) {
-                    log.warn("error importing directory {}: {}", dir, e.getMessage());
+                if(dir.exists() && dir.isDirectory()) {
+                    for(File f : dir.listFiles(new DirectoryFilter())) {
+                        if(isArchive(f)) {
+                            parallel.addArchive(f, format);
+                        } else {
+                            parallel.addFile(f, format, compression);
+                        }
+                    }
+                } else {
+                    log.warn("error importing directory {}: it does not exist or is not a directory", dir);
                 }
             }
         }
 
         if(configuration.containsKey(LoaderOptions.ARCHIVES)) {
             for(String archiveName : configuration.getStringArray(LoaderOptions.ARCHIVES)) {
-                File archive = new File(archiveName);
-
-                try {
-                    loadArchive(archive, handler, getRDFFormat(configuration.getString(LoaderOptions.FORMAT)));
-                } catch (RDFParseException | IOException | ArchiveException e) {
-                    log.warn("error importing directory {}: {}", archive, e.getMessage());
-                }
+                parallel.addArchive(new File(archiveName), format);
             }
         }
 
-
         if(configuration.containsKey(LoaderOptions.FILES)) {
             for(String fname : configuration.getStringArray(LoaderOptions.FILES)) {
-                File f = new File(fname);
-
-                try {
-                    loadFile(f, handler, getRDFFormat(configuration.getString(LoaderOptions.FORMAT)), configuration.getString(LoaderOptions.COMPRESSION));
-                } catch (RDFParseException | IOException e) {
-                    log.warn("error importing file {}: {}", f, e.getMessage());
-                }
+                parallel.addFile(new File(fname), format, compression);
             }
         }
 
-        handler.shutdown();
-
-        return handler;
+        parallel.load(handler);
     }
 
     /**
@@ -543,6 +596,7 @@ public class MarmottaLoader {
      *     <li>-d | --dir:  input directory containing files to use for loading</li>
      *     <li>-t | --type: input format to use for parsing (MIME type)</li>
      *     <li>-s | --statistics: collect statistics and write a graph into the file given</li>
+     *     <li>-P | --threads: number of threads for parsing files and archives in parallel</li>
      * </ul>
      *
      * In addition, loader backends can provide their own additional command line options.
@@ -629,6 +683,14 @@ public class MarmottaLoader {
                         .create('s');
         options.addOption(statistics);
 
+        final Option threads =
+                OptionBuilder.withArgName("threads")
+                        .hasArgs(1)
+                        .withDescription("number of threads for parsing files and archives in parallel")
+                        .withLongOpt("threads")
+                        .create('P');
+        options.addOption(threads);
+
         final Option property  =
                 OptionBuilder.withArgName("property=value")
                         .hasArgs(2)
@@ -708,6 +770,14 @@ public class MarmottaLoader {
             result.setProperty(LoaderOptions.STATISTICS_GRAPH,   cmd.getOptionValue('s'));
         }
 
+        if(cmd.hasOption('P')) {
+            try {
+                result.setProperty(LoaderOptions.PARSER_THREADS, Integer.parseInt(cmd.getOptionValue('P')));
+            } catch (NumberFormatException e) {
+                throw new ParseException("invalid number of threads: " + cmd.getOptionValue('P'));
+            }
+        }
+
         if(cmd.hasOption('D')) {
             for(Map.Entry e : cmd.getOptionProperties("D").entrySet()) {
                 result.setProperty(e.getKey().toString(), e.getValue());
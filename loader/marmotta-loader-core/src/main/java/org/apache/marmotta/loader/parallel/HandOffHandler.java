@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.loader.parallel;
+
+import org.apache.marmotta.loader.api.LoaderHandler;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A loader handler used by the parser threads of a parallel import. Collects the parsed statements in batches and
+ * hands them off to a bounded queue, from which a single thread feeds them into the actual loader handler. In case
+ * the queue is full, parsing blocks until the loader handler has caught up.
+ */
+public class HandOffHandler extends RDFHandlerBase implements LoaderHandler {
+
+    private final BlockingQueue<StatementBatch> queue;
+
+    private final int batchSize;
+
+    private StatementBatch batch;
+
+    public HandOffHandler(BlockingQueue<StatementBatch> queue, int batchSize) {
+        this.queue     = queue;
+        this.batchSize = batchSize;
+        this.batch     = new StatementBatch(batchSize);
+    }
+
+    /**
+     * Initialise the handler, performing any initialisation steps that are necessary before bulk importing can
+     * start (e.g. dropping indexes or establishing a connection).
+     *
+     * @throws org.openrdf.rio.RDFHandlerException
+     */
+    @Override
+    public void initialise() throws RDFHandlerException {
+
+    }
+
+    /**
+     * Perform cleanup on shutdown, e.g. re-creating indexes after import completed or freeing resources acquired by
+     * the handler.
+     */
+    @Override
+    public void shutdown() throws RDFHandlerException {
+        flush();
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        flush();
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+        batch.addNamespace(prefix, uri);
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+        batch.addStatement(st);
+        if(batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Hand off the statements collected so far, waiting for space in the queue if necessary.
+     *
+     * @throws RDFHandlerException in case the thread is interrupted while waiting
+     */
+    public void flush() throws RDFHandlerException {
+        if(!batch.isEmpty()) {
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RDFHandlerException("interrupted while handing off parsed statements", e);
+            }
+            batch = new StatementBatch(batchSize);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.loader.parallel;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.marmotta.loader.api.LoaderHandler;
+import org.apache.marmotta.loader.core.MarmottaLoader;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Load a number of files and archives in parallel. Each file or archive is decompressed and parsed by one of a
+ * fixed number of parser threads; the parsed statements are collected in batches and handed off through a bounded
+ * queue to the calling thread, which is the only thread passing data to the loader handler. Loader handlers
+ * therefore do not need to be thread-safe.
+ * <p/>
+ * In contrast to sequential loading, the data of all files is passed to the loader handler between a single
+ * startRDF() and endRDF() call, and statements from different files are interleaved.
+ */
+public class ParallelLoader {
+
+    private static Logger log = LoggerFactory.getLogger(ParallelLoader.class);
+
+    private final MarmottaLoader loader;
+
+    private final int threads;
+
+    private final int batchSize;
+
+    private final List<Source> sources;
+
+    /**
+     * @param loader    loader used for decompressing and parsing the individual files and archives
+     * @param threads   number of parser threads
+     * @param batchSize number of statements handed off to the loader handler at once
+     */
+    public ParallelLoader(MarmottaLoader loader, int threads, int batchSize) {
+        this.loader    = loader;
+        this.threads   = Math.max(threads, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        this.sources   = new ArrayList<>();
+    }
+
+    /**
+     * Add a file to load.
+     *
+     * @param file        file to read the data from
+     * @param format      format to use for creating the parser or null for auto-detection
+     * @param compression compression format to use, or null for auto-detection
+     */
+    public void addFile(final File file, final RDFFormat format, final String compression) {
+        sources.add(new Source(file) {
+            @Override
+            void load(LoaderHandler handler) throws RDFParseException, IOException {
+                loader.loadFile(file, handler, format, compression);
+            }
+        });
+    }
+
+    /**
+     * Add an archive to load. All entries of an archive are parsed by the same parser thread.
+     *
+     * @param archive archive to read the data from
+     * @param format  format to use for creating the parser or null for auto-detection
+     */
+    public void addArchive(final File archive, final RDFFormat format) {
+        sources.add(new Source(archive) {
+            @Override
+            void load(LoaderHandler handler) throws RDFParseException, IOException, ArchiveException {
+                loader.loadArchive(archive, handler, format);
+            }
+        });
+    }
+
+    /**
+     * Load all files and archives that have been added into the handler given as argument. Returns when all of
+     * them have been parsed and passed to the handler. Errors in individual files are logged and do not abort
+     * loading the other files.
+     *
+     * @param handler handler to add the data to
+     * @throws RDFHandlerException in case the handler fails or the calling thread is interrupted
+     */
+    public void load(LoaderHandler handler) throws RDFHandlerException {
+        log.info("loading {} files and archives using {} parser threads ...", sources.size(), threads);
+
+        BlockingQueue<StatementBatch> queue = new ArrayBlockingQueue<>(threads * 2);
+
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("Loader Parser %d").setDaemon(true).build());
+        try {
+            for(Source source : sources) {
+                parsers.execute(new ParseTask(source, queue));
+            }
+
+            handler.startRDF();
+
+            int finished = 0;
+            while (finished < sources.size()) {
+                StatementBatch batch = queue.take();
+                if(batch == StatementBatch.END) {
+                    finished++;
+                } else {
+                    batch.handle(handler);
+                }
+            }
+
+            handler.endRDF();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RDFHandlerException("interrupted while waiting for parser threads", e);
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    private abstract static class Source {
+
+        private final File file;
+
+        private Source(File file) {
+            this.file = file;
+        }
+
+        abstract void load(LoaderHandler handler) throws RDFParseException, IOException, ArchiveException;
+
+        @Override
+        public String toString() {
+            return file.toString();
+        }
+    }
+
+    private class ParseTask implements Runnable {
+
+        private final Source source;
+
+        private final BlockingQueue<StatementBatch> queue;
+
+        private ParseTask(Source source, BlockingQueue<StatementBatch> queue) {
+            this.source = source;
+            this.queue  = queue;
+        }
+
+        @Override
+        public void run() {
+            HandOffHandler handler = new HandOffHandler(queue, batchSize);
+            try {
+                source.load(handler);
+            } catch (RDFParseException | IOException | ArchiveException e) {
+                log.warn("error importing file {}: {}", source, e.getMessage());
+            } finally {
+                // hand off the statements parsed so far even in case of errors, like sequential loading does
+                try {
+                    handler.flush();
+                    queue.put(StatementBatch.END);
+                } catch (RDFHandlerException | InterruptedException e) {
+                    // loading has been aborted
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
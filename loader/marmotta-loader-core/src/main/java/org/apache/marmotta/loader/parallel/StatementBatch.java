@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.loader.parallel;
+
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.NamespaceImpl;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of statements and namespace declarations parsed by one of the parser threads of a parallel import,
+ * handed off to the thread feeding the loader handler.
+ */
+public class StatementBatch {
+
+    /**
+     * Marker signalling that a parser thread has finished parsing its input.
+     */
+    static final StatementBatch END = new StatementBatch(0);
+
+    private final List<Namespace> namespaces;
+
+    private final List<Statement> statements;
+
+    public StatementBatch(int capacity) {
+        this.namespaces = new ArrayList<>();
+        this.statements = new ArrayList<>(capacity);
+    }
+
+    public void addNamespace(String prefix, String uri) {
+        namespaces.add(new NamespaceImpl(prefix, uri));
+    }
+
+    public void addStatement(Statement statement) {
+        statements.add(statement);
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    public boolean isEmpty() {
+        return statements.isEmpty() && namespaces.isEmpty();
+    }
+
+    /**
+     * Pass the namespaces and statements of this batch to the handler given as argument, namespaces first.
+     *
+     * @param handler handler to add the data to
+     * @throws RDFHandlerException
+     */
+    public void handle(RDFHandler handler) throws RDFHandlerException {
+        for(Namespace ns : namespaces) {
+            handler.handleNamespace(ns.getPrefix(), ns.getName());
+        }
+        for(Statement st : statements) {
+            handler.handleStatement(st);
+        }
+    }
+}
@@ -65,6 +65,20 @@ public class CLITest {
     }
 
 
+    @Test
+    public void testThreads() throws ParseException {
+        Configuration cfg = MarmottaLoader.parseOptions(new String[] { "-P", "8", "-d", "dir1" });
+
+        Assert.assertEquals(8, cfg.getInt(LoaderOptions.PARSER_THREADS));
+    }
+
+
+    @Test(expected = ParseException.class)
+    public void testInvalidThreads() throws ParseException {
+        Configuration cfg = MarmottaLoader.parseOptions(new String[] { "-P", "many", "-d", "dir1" });
+    }
+
+
     @Test
     public void testCompressionGZIP() throws ParseException {
         Configuration cfg = MarmottaLoader.parseOptions(new String[] { "-z", "-f", "file1.ttl" });
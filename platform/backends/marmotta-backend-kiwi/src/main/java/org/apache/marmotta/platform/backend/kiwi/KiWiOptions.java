@@ -33,6 +33,7 @@ public class KiWiOptions {
     public static final String CACHING_BNODE_SIZE = "caching.bnode.size";
     public static final String CACHING_URI_SIZE = "caching.uri.size";
     public static final String CACHING_TRIPLE_SIZE = "caching.triple.size";
+    public static final String CACHING_DIRECTORY = "caching.directory";
     public static final String CLUSTERING_NAME = "clustering.name";
     public static final String CACHING_QUERY_ENABLED = "caching.query.enabled";
     public static final String CONTEXTS_DEFAULT = "contexts.default";
@@ -46,6 +47,9 @@ public class KiWiOptions {
 
     public static final String TRIPLES_BATCHCOMMIT = "database.triples.batchcommit";
     public static final String TRIPLES_BATCHSIZE = "database.triples.batchsize";
+    public static final String GC_BATCHSIZE = "database.gc.batchsize";
+    public static final String GC_THREADS = "database.gc.threads";
+    public static final String GC_ROWS_PER_SECOND = "database.gc.rows_per_second";
     public static final String CLUSTERING_BACKEND = "clustering.backend";
     public static final String CLUSTERING_MODE = "clustering.mode";
 }
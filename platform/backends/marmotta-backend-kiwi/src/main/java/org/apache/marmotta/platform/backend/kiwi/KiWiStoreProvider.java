@@ -41,6 +41,7 @@ import org.slf4j.Logger;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
+import java.io.File;
 
 /**
  * A store implementation providing an instance of a KiWi triple store as backend for the Marmotta platform. Uses the
@@ -105,6 +106,9 @@ public class KiWiStoreProvider implements StoreProvider {
         configuration.setQueryLoggingEnabled(configurationService.getBooleanConfiguration(KiWiOptions.DEBUG_SLOWQUERIES, false));
         configuration.setTripleBatchCommit(configurationService.getBooleanConfiguration(KiWiOptions.TRIPLES_BATCHCOMMIT, true));
         configuration.setTripleBatchSize(configurationService.getIntConfiguration(KiWiOptions.TRIPLES_BATCHSIZE, 10000));
+        configuration.setGcBatchSize(configurationService.getIntConfiguration(KiWiOptions.GC_BATCHSIZE, 10000));
+        configuration.setGcThreads(configurationService.getIntConfiguration(KiWiOptions.GC_THREADS, 1));
+        configuration.setGcRowsPerSecond(configurationService.getIntConfiguration(KiWiOptions.GC_ROWS_PER_SECOND, 0));
 
         configuration.setDatacenterId(configurationService.getIntConfiguration(KiWiOptions.DATACENTER_ID,0));
         configuration.setFulltextEnabled(configurationService.getBooleanConfiguration(KiWiOptions.FULLTEXT_ENABLED, true));
@@ -117,6 +121,7 @@ public class KiWiStoreProvider implements StoreProvider {
         configuration.setBNodeCacheSize(configurationService.getIntConfiguration(KiWiOptions.CACHING_BNODE_SIZE, 10000));
         configuration.setUriCacheSize(configurationService.getIntConfiguration(KiWiOptions.CACHING_URI_SIZE, 500000));
         configuration.setTripleCacheSize(configurationService.getIntConfiguration(KiWiOptions.CACHING_TRIPLE_SIZE, 100000));
+        configuration.setCacheDirectory(configurationService.getStringConfiguration(KiWiOptions.CACHING_DIRECTORY, configurationService.getHome() + File.separator + "cache"));
 
         configuration.setClusterPort(configurationService.getIntConfiguration(KiWiOptions.CLUSTERING_PORT, 46655));
         configuration.setClusterAddress(configurationService.getStringConfiguration(KiWiOptions.CLUSTERING_ADDRESS, "228.6.7.8"));
@@ -182,11 +187,15 @@ public class KiWiStoreProvider implements StoreProvider {
                 e.containsChangedKey(KiWiOptions.FULLTEXT_ENABLED) ||
                 e.containsChangedKey(KiWiOptions.FULLTEXT_LANGUAGES) ||
                 e.containsChangedKey(KiWiOptions.DEBUG_SLOWQUERIES) ||
+                e.containsChangedKey(KiWiOptions.GC_BATCHSIZE) ||
+                e.containsChangedKey(KiWiOptions.GC_THREADS) ||
+                e.containsChangedKey(KiWiOptions.GC_ROWS_PER_SECOND) ||
                 e.containsChangedKey(KiWiOptions.CLUSTERING_ENABLED) ||
                 e.containsChangedKey(KiWiOptions.CACHING_LITERAL_SIZE) ||
                 e.containsChangedKey(KiWiOptions.CACHING_TRIPLE_SIZE) ||
                 e.containsChangedKey(KiWiOptions.CACHING_URI_SIZE) ||
                 e.containsChangedKey(KiWiOptions.CACHING_BNODE_SIZE) ||
+                e.containsChangedKey(KiWiOptions.CACHING_DIRECTORY) ||
                 e.containsChangedKey(KiWiOptions.CACHING_QUERY_ENABLED) ||
                 e.containsChangedKey(KiWiOptions.CLUSTERING_BACKEND) ||
                 e.containsChangedKey(KiWiOptions.CLUSTERING_ADDRESS) ||
@@ -17,6 +17,7 @@
 
 package org.apache.marmotta.platform.ldcache.api.ldcache;
 
+import org.apache.marmotta.ldcache.model.CacheConfiguration;
 import org.apache.marmotta.ldcache.services.LDCache;
 import org.apache.marmotta.ldclient.api.endpoint.Endpoint;
 import org.apache.marmotta.ldclient.api.ldclient.LDClientService;
@@ -59,6 +60,8 @@ public abstract class LDCacheSailProvider implements NotifyingSailProvider {
 
     protected ClientConfiguration ldclientConfig;
 
+    protected CacheConfiguration ldcacheConfig;
+
     @Inject
     private Logger log;
 
@@ -98,7 +101,7 @@ public abstract class LDCacheSailProvider implements NotifyingSailProvider {
     }
 
     public void configurationChanged(@Observes ConfigurationChangedEvent e) {
-        if(e.containsChangedKey(LDCACHE_ENABLED)) {
+        if(e.containsChangedKey(LDCACHE_ENABLED) || e.containsChangedKey("ldcache.refresh_threads") || e.containsChangedKey("ldcache.refresh_queue_size")) {
             sesameService.restart();
 
             if(!isEnabled()) {
@@ -111,6 +114,7 @@ public abstract class LDCacheSailProvider implements NotifyingSailProvider {
     public void initialize() {
         volatileEndpoints = new HashSet<Endpoint>();
         ldclientConfig = new ClientConfiguration();
+        ldcacheConfig  = new CacheConfiguration(ldclientConfig);
         updateConfig();
     }
 
@@ -132,6 +136,13 @@ public abstract class LDCacheSailProvider implements NotifyingSailProvider {
         ldclientConfig.setSocketTimeout(configurationService.getIntConfiguration("ldcache.so_timeout", 60000));
         ldclientConfig.setConnectionTimeout(configurationService.getIntConfiguration("ldcache.connection_timeout", 10000));
         ldclientConfig.setMaxParallelRequests(configurationService.getIntConfiguration("ldcache.max_parallel_requests",10));
+        ldclientConfig.setMaxParallelPageRequests(configurationService.getIntConfiguration("ldcache.parallel_page_requests", 1));
+
+        ldcacheConfig.setDefaultExpiry(configurationService.getLongConfiguration("ldcache.expiry", 86400L));
+        ldcacheConfig.setStaleWhileRevalidate(configurationService.getBooleanConfiguration("ldcache.stale_while_revalidate", false));
+        ldcacheConfig.setMaxStaleness(configurationService.getLongConfiguration("ldcache.max_staleness", 86400L));
+        ldcacheConfig.setRefreshThreads(configurationService.getIntConfiguration("ldcache.refresh_threads", 4));
+        ldcacheConfig.setRefreshQueueSize(configurationService.getIntConfiguration("ldcache.refresh_queue_size", 1000));
 
         HashSet<Endpoint> endpoints = new HashSet<Endpoint>();
         endpoints.addAll(endpointService.listEndpoints());
@@ -88,7 +88,7 @@ public class FileLDCacheSailProvider extends LDCacheSailProvider {
 
         try {
             backend = new LDCachingFileBackend(directory);
-            sail = new GenericLinkedDataSail(parent, backend, new NotFilter<Resource>(cacheFilters), ldclientConfig);
+            sail = new GenericLinkedDataSail(parent, backend, new NotFilter<Resource>(cacheFilters), ldcacheConfig);
             return sail;
         } catch (RepositoryException e) {
             log.error("could not initialize LDCache file backend",e);
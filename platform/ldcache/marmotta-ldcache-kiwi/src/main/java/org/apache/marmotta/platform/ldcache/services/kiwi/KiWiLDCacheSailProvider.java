@@ -74,7 +74,7 @@ public class KiWiLDCacheSailProvider extends LDCacheSailProvider {
         SesameFilter<Resource> cacheFilters = new OneOfFilter<Resource>(filters);
 
         String cache_context = configurationService.getCacheContext();
-        sail = new KiWiLinkedDataSail(parent, new NotFilter<Resource>(cacheFilters), cache_context, ldclientConfig);
+        sail = new KiWiLinkedDataSail(parent, new NotFilter<Resource>(cacheFilters), cache_context, ldcacheConfig);
         return sail;
     }
 
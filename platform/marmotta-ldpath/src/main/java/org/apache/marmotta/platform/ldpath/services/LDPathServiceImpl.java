@@ -22,7 +22,11 @@ import org.apache.marmotta.ldpath.model.fields.FieldMapping;
 import org.apache.marmotta.ldpath.model.programs.Program;
 import org.apache.marmotta.platform.ldpath.api.LDPathService;
 import org.apache.marmotta.platform.ldpath.api.AutoRegisteredLDPathFunction;
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.statistics.StatisticsModule;
+import org.apache.marmotta.platform.core.api.statistics.StatisticsService;
 import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
 
 import org.apache.marmotta.ldpath.LDPath;
 import org.apache.marmotta.ldpath.api.functions.SelectorFunction;
@@ -32,18 +36,20 @@ import org.apache.marmotta.ldpath.exception.LDPathParseException;
 import org.apache.marmotta.ldpath.model.Constants;
 import org.apache.marmotta.ldpath.parser.Configuration;
 import org.apache.marmotta.ldpath.parser.DefaultConfiguration;
+import org.apache.marmotta.ldpath.parser.ParseCache;
 import org.openrdf.model.Value;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.slf4j.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.enterprise.inject.Any;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
-import java.io.StringReader;
 import java.util.*;
 
 /**
@@ -54,14 +60,27 @@ import java.util.*;
 @ApplicationScoped
 public class LDPathServiceImpl implements LDPathService {
 
+    private static final String[] KEYS = {
+        "parse cache size", "parse cache hits", "parse cache misses", "parse cache hit rate"
+    };
+
     @Inject
     private Logger log;
 
     @Inject
     private SesameService               sesameService;
 
+    @Inject
+    private ConfigurationService        configurationService;
+
+    @Inject
+    private StatisticsService           statisticsService;
+
     private Configuration<Value>        config;
 
+    // parsed path expressions and programs, shared by the LDPath instances created for each request
+    private volatile ParseCache<Value>  parseCache;
+
     @Inject @Any
     private Instance<AutoRegisteredLDPathFunction> functions;
 
@@ -74,8 +93,33 @@ public class LDPathServiceImpl implements LDPathService {
         for(AutoRegisteredLDPathFunction function : functions) {
             config.addFunction(Constants.NS_LMF_FUNCS + function.getLocalName(), function);
         }
+
+        parseCache = new ParseCache<Value>(configurationService.getIntConfiguration("ldpath.parse_cache_size", ParseCache.DEFAULT_SIZE));
+
+        statisticsService.registerModule(LDPathService.class.getSimpleName(), new StatisticsProvider());
     }
 
+    @PreDestroy
+    public void shutdown() {
+        statisticsService.unregisterModule(LDPathService.class.getSimpleName());
+    }
+
+    public void onConfigurationChange(@Observes ConfigurationChangedEvent event) {
+        if(event.containsChangedKey("ldpath.parse_cache_size")) {
+            parseCache = new ParseCache<Value>(configurationService.getIntConfiguration("ldpath.parse_cache_size", ParseCache.DEFAULT_SIZE));
+        }
+    }
+
+
+    /**
+     * Create an LDPath backend for the connection passed as argument; path steps are evaluated for many nodes at once
+     * with the configured batch size.
+     */
+    private SesameConnectionBackend createBackend(RepositoryConnection conn) {
+        SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
+        backend.setBatchSize(configurationService.getIntConfiguration("ldpath.batch_size", 100));
+        return backend;
+    }
 
     /**
      * Register an LDPath function in this LDPath service. Can be used by other modules to plug in their own LDPath
@@ -92,7 +136,7 @@ public class LDPathServiceImpl implements LDPathService {
                 RepositoryConnection conn = sesameService.getConnection();
                 try {
                     conn.begin();
-                    SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
+                    SesameConnectionBackend backend = createBackend(conn);
                     config.addFunction(Constants.NS_LMF_FUNCS + function.getPathExpression(backend), function);
                 } finally {
                     conn.commit();
@@ -102,11 +146,13 @@ public class LDPathServiceImpl implements LDPathService {
                 log.warn("Could not add function:" + function.getSignature(), e);
             }
         }
+        parseCache.invalidateAll();
     }
 
     @Override
     public void registerTransformer(String typeUri, NodeTransformer<?, Value> transformer) {
         config.addTransformer(typeUri, transformer);
+        parseCache.invalidateAll();
     }
 
 
@@ -148,8 +194,8 @@ public class LDPathServiceImpl implements LDPathService {
             RepositoryConnection conn = sesameService.getConnection();
             try {
                 conn.begin();
-                SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
-                LDPath<Value> ldpath = new LDPath<Value>(backend, config);
+                SesameConnectionBackend backend = createBackend(conn);
+                LDPath<Value> ldpath = new LDPath<Value>(backend, config, parseCache);
 
                 return ldpath.pathQuery(context, path, namespaces);
             } finally {
@@ -177,10 +223,10 @@ public class LDPathServiceImpl implements LDPathService {
             RepositoryConnection conn = sesameService.getConnection();
             try {
                 conn.begin();
-                SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
-                LDPath<Value> ldpath = new LDPath<Value>(backend, config);
+                SesameConnectionBackend backend = createBackend(conn);
+                LDPath<Value> ldpath = new LDPath<Value>(backend, config, parseCache);
 
-                return ldpath.programQuery(context, new StringReader(program));
+                return ldpath.programQuery(context, program);
             } finally {
                 conn.commit();
                 conn.close();
@@ -207,10 +253,10 @@ public class LDPathServiceImpl implements LDPathService {
             RepositoryConnection conn = sesameService.getConnection();
             try {
                 conn.begin();
-                SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
-                LDPath<Value> ldpath = new LDPath<Value>(backend, config);
+                SesameConnectionBackend backend = createBackend(conn);
+                LDPath<Value> ldpath = new LDPath<Value>(backend, config, parseCache);
 
-                Program<Value> p = ldpath.parseProgram(new StringReader(program));
+                Program<Value> p = ldpath.getProgram(program);
 
                 // TODO: not very efficient, LDPath should support more efficient listing of resources based on filter
                 for(Value context : ResourceUtils.listResources(conn)) {
@@ -233,4 +279,47 @@ public class LDPathServiceImpl implements LDPathService {
         }
         return result;
     }
+
+    private class StatisticsProvider implements StatisticsModule {
+
+        private boolean enabled = true;
+
+        @Override
+        public void enable() {
+            enabled = true;
+        }
+
+        @Override
+        public void disable() {
+            enabled = false;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public List<String> getPropertyNames() {
+            return Collections.unmodifiableList(Arrays.asList(KEYS));
+        }
+
+        @Override
+        public Map<String, String> getStatistics() {
+            ParseCache<Value> cache = parseCache;
+
+            int i = 0;
+            final Map<String, String> data = new LinkedHashMap<String, String>();
+            data.put(KEYS[i++], String.valueOf(cache.size()));
+            data.put(KEYS[i++], String.valueOf(cache.getHitCount()));
+            data.put(KEYS[i++], String.valueOf(cache.getMissCount()));
+            data.put(KEYS[i++], String.format("%.2f", cache.getStats().hitRate()));
+            return data;
+        }
+
+        @Override
+        public String getName() {
+            return LDPathService.class.getSimpleName();
+        }
+    }
 }
@@ -29,6 +29,7 @@ import javax.inject.Inject;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionalSail;
 import org.apache.marmotta.commons.sesame.transactions.wrapper.TransactionalSailWrapper;
 import org.apache.marmotta.kiwi.reasoner.engine.ReasoningConfiguration;
+import org.apache.marmotta.kiwi.reasoner.engine.ReasoningEngine;
 import org.apache.marmotta.kiwi.reasoner.model.program.Justification;
 import org.apache.marmotta.kiwi.reasoner.model.program.Program;
 import org.apache.marmotta.kiwi.reasoner.parser.ParseException;
@@ -81,6 +82,9 @@ public class ReasoningSailProvider implements TransactionalSailProvider {
         ReasoningConfiguration config = new ReasoningConfiguration();
         config.setBatchSize(configurationService.getIntConfiguration("reasoning.batchsize",1000));
         config.setRemoveDuplicateJustifications(configurationService.getBooleanConfiguration("reasoning.remove_duplicate_justifications",false));
+        config.setSemiNaive(configurationService.getBooleanConfiguration("reasoning.semi_naive",true));
+        config.setDeltaSize(configurationService.getIntConfiguration("reasoning.delta_size",500));
+        config.setWorkers(configurationService.getIntConfiguration("reasoning.workers",4));
 
         sail = new KiWiReasoningSail(parent,config);
 
@@ -109,6 +113,8 @@ public class ReasoningSailProvider implements TransactionalSailProvider {
             ReasoningConfiguration config = sail.getConfig();
             config.setBatchSize(configurationService.getIntConfiguration("reasoning.batchsize",1000));
             config.setRemoveDuplicateJustifications(configurationService.getBooleanConfiguration("reasoning.remove_duplicate_justifications",false));
+            config.setSemiNaive(configurationService.getBooleanConfiguration("reasoning.semi_naive",true));
+            config.setDeltaSize(configurationService.getIntConfiguration("reasoning.delta_size",500));
         }
     }
 
@@ -260,4 +266,18 @@ public class ReasoningSailProvider implements TransactionalSailProvider {
             throw new SailException("reasoning is disabled");
         }
     }
+
+    /**
+     * Return the reasoning engine of the reasoning sail, e.g. for retrieving its queue and rule statistics.
+     *
+     * @return the reasoning engine
+     * @throws org.openrdf.sail.SailException in case reasoning is disabled
+     */
+    public ReasoningEngine getEngine() throws SailException {
+        if(isEnabled() && sail != null) {
+            return sail.getEngine();
+        } else {
+            throw new SailException("reasoning is disabled");
+        }
+    }
 }
@@ -21,6 +21,8 @@ import info.aduna.iteration.Iterations;
 import org.apache.marmotta.kiwi.model.rdf.KiWiLiteral;
 import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
 import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.reasoner.engine.ReasoningEngine;
+import org.apache.marmotta.kiwi.reasoner.engine.RuleStatistics;
 import org.apache.marmotta.kiwi.reasoner.model.program.Justification;
 import org.apache.marmotta.kiwi.reasoner.model.program.Rule;
 import org.apache.marmotta.platform.reasoner.services.ReasoningSailProvider;
@@ -60,6 +62,44 @@ public class ReasonerWebService {
         return Response.ok("(re-)reasoning triggered").build();
     }
 
+    /**
+     * Return the status of the reasoning engine: the number of transactions waiting in the reasoning queue, the
+     * time the oldest of them has been waiting (lag, in milliseconds), and the timing of each rule.
+     */
+    @GET
+    @Path("/status")
+    public Response getStatus() {
+        try {
+            ReasoningEngine engine = provider.getEngine();
+
+            Map<String,Object> result = new LinkedHashMap<String, Object>();
+            result.put("running", engine.isRunning());
+            result.put("workers", engine.getWorkers());
+            result.put("queueSize", engine.getQueueSize());
+            result.put("queueLag", engine.getQueueLag());
+            result.put("lastLag", engine.getLastLag());
+            result.put("processedTransactions", engine.getProcessedTransactions());
+
+            List<Map<String,Object>> rules = new ArrayList<Map<String, Object>>();
+            for(RuleStatistics statistics : engine.getRuleStatistics()) {
+                Map<String,Object> rule = new LinkedHashMap<String, Object>();
+                rule.put("name", statistics.getName());
+                rule.put("rule", statistics.getRule().toString());
+                rule.put("evaluations", statistics.getEvaluations());
+                rule.put("bindings", statistics.getBindings());
+                rule.put("queryTime", statistics.getQueryTime());
+                rule.put("storeTime", statistics.getStoreTime());
+                rule.put("totalTime", statistics.getTotalTime());
+                rules.add(rule);
+            }
+            result.put("rules", rules);
+
+            return Response.ok(result).build();
+        } catch (SailException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(e.getMessage()).build();
+        }
+    }
+
 
     @GET
     @Path("/justify")
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.dataView.api;
+
+import java.io.OutputStream;
+
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+
+import ch.hevs.overLOD.dataView.exceptions.DataViewException;
+
+/**
+ * Materialized DataViews API
+ *
+ * The result of a materialized DataView is computed once by the SPARQL web service, with the credentials of the caller,
+ * kept in Sesame's compact binary result format, and then served in any result format to callers with the same
+ * credentials until a transaction adds or removes triples that the query may read
+ * (same predicate and same context as one of its triple patterns).
+ * 
+ * The DataViews to materialize are listed in the "dataView.materializedViews" configuration
+ *
+ * See MaterializedDataViewsImpl for the current implementation
+ * 
+ * @author Fabian Cretton, HES-SO OverLOD surfer project
+ * http://www.hevs.ch/fr/rad-instituts/institut-informatique-de-gestion/projets/overlod-surfer-6349
+ */
+public interface MaterializedDataViews {
+
+	/**
+	 * @param viewName the name of the dataView
+	 * @return true if the result of that dataView is materialized
+	 */
+	public boolean isMaterialized(String viewName) ;
+
+	/**
+	 * Write the result of a materialized dataView, computing it first if not available
+	 * 
+	 * @param viewName the name of the dataView
+	 * @param query the query of the dataView, after the parameters replacement
+	 * @param marmottaUri the base uri of the Marmotta web services, whose SPARQL web service evaluates the query
+	 * @param headerAuth the "Authorization" header of the caller, null if Marmotta is configured with no security option
+	 * @param format the result format to write
+	 * @param out the stream to write to
+	 * @throws DataViewException if the query can't be evaluated or the result can't be written
+	 */
+	public void writeResult(String viewName, String query, String marmottaUri, String headerAuth, TupleQueryResultFormat format, OutputStream out) throws DataViewException ;
+
+	/**
+	 * Drop the materialized results of a dataView, e.g. when its query changes
+	 * @param viewName the name of the dataView
+	 */
+	public void invalidate(String viewName) ;
+}
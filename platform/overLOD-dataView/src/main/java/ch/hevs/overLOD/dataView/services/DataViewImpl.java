@@ -42,6 +42,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
 
 import ch.hevs.overLOD.dataView.api.DataView;
+import ch.hevs.overLOD.dataView.api.MaterializedDataViews;
 import ch.hevs.overLOD.dataView.exceptions.DataViewException;
 
 /**
@@ -66,6 +67,9 @@ public class DataViewImpl implements DataView {
     @Inject
     private ConfigurationService configurationService;
 
+    @Inject
+    private MaterializedDataViews materializedDataViews;
+
     String dataViewFolder ;
     
     // Will be read from the module configuration
@@ -210,6 +214,8 @@ public class DataViewImpl implements DataView {
     		throw new DataViewException("Impossible to save the query to the DataView file '" + viewName + "': " + e.getMessage()) ;
 		}
         	
+        materializedDataViews.invalidate(viewName) ; // the materialized results of the previous query are obsolete
+
         return "DataView '" + viewName + "' saved successfully!";
     }
 
@@ -263,6 +269,8 @@ public class DataViewImpl implements DataView {
         if (!dataViewfile.delete())
     		throw new DataViewException("Impossible to delete the file associated to data view '" + viewName + "'") ;
         	
+        materializedDataViews.invalidate(viewName) ;
+
         return "DataView '" + viewName + "' deleted successfully!";
     }
 }
@@ -0,0 +1,388 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.dataView.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.marmotta.client.ClientConfiguration;
+import org.apache.marmotta.client.util.HTTPUtil;
+import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
+import org.apache.marmotta.platform.core.qualifiers.event.transaction.AfterCommit;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.algebra.Service;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
+import org.openrdf.query.parser.ParsedTupleQuery;
+import org.openrdf.query.parser.QueryParserUtil;
+import org.openrdf.query.resultio.QueryResultIO;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+import org.slf4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+
+import ch.hevs.overLOD.dataView.api.MaterializedDataViews;
+import ch.hevs.overLOD.dataView.exceptions.DataViewException;
+
+/**
+ * Default Implementation of {@link MaterializedDataViews}
+ * 
+ * Results are kept in memory, in Sesame's binary result format, in a cache bounded by
+ * "dataView.materialization_maxSize" (MB). A result is identified by the final query of the dataView,
+ * as the same dataView called with different parameters gives different results, and by the credentials
+ * of the caller: the query is evaluated by the SPARQL web service with the caller's "Authorization" header,
+ * exactly as for a non materialized dataView, so a result is only served again to callers that have been
+ * granted access with the same credentials.
+ * 
+ * The read footprint of a query (predicates and contexts of its triple patterns) is computed when it is materialized.
+ * After each commit, the results whose footprint match one of the added or removed triples are dropped;
+ * they will be computed again on the next request. Queries calling a SERVICE are never materialized, as their
+ * result don't only depend on the local data.
+ * A result being computed while its dataView is invalidated, or while a transaction changes its footprint,
+ * is returned to its caller but not kept.
+ * 
+ * @author Fabian Cretton, HES-SO OverLOD surfer project
+ * http://www.hevs.ch/fr/rad-instituts/institut-informatique-de-gestion/projets/overlod-surfer-6349
+ */
+@ApplicationScoped
+public class MaterializedDataViewsImpl implements MaterializedDataViews {
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private ConfigurationService configurationService;
+
+	private static final String URL_QUERY_SERVICE  = "/sparql/select";
+
+	// replaced as a whole when the configuration changes, while request threads read them
+	private volatile Set<String> materializedViews = Collections.emptySet();
+
+	private volatile Cache<String, MaterializedResult> results;
+
+	// the results currently being computed, marked when an invalidation concerns them
+	private final Set<PendingResult> pendingResults = Collections.newSetFromMap(new ConcurrentHashMap<PendingResult, Boolean>());
+
+	@PostConstruct
+	public void initialize() {
+		readConfiguration();
+	}
+
+	public void readConfiguration() {
+		Set<String> views = Collections.unmodifiableSet(new HashSet<String>(configurationService.getListConfiguration("dataView.materializedViews")));
+		long maxSize = configurationService.getLongConfiguration("dataView.materialization_maxSize", 64) * 1024 * 1024;
+
+		Cache<String, MaterializedResult> cache = CacheBuilder.newBuilder()
+				.maximumWeight(maxSize)
+				.weigher(new Weigher<String, MaterializedResult>() {
+					@Override
+					public int weigh(String query, MaterializedResult result) {
+						return query.length() * 2 + result.data.length;
+					}
+				})
+				.build();
+
+		materializedViews = views;
+		results = cache;
+
+		log.debug("DataView configuration 'dataView.materializedViews': {}", views) ;
+	}
+
+	/**
+	 * Detect a change in the materialization configuration, and if so reload the configuration values
+	 * All the materialized results are dropped
+	 * @param event
+	 */
+	public void configurationEventHandler(@Observes ConfigurationChangedEvent event) {
+		if (event.containsChangedKeyWithPrefix("dataView.materiali")) {
+			log.debug("Data View: Reloading materialization configuration - change detected");
+			for (PendingResult pending : pendingResults)
+				pending.invalidated = true;
+			readConfiguration();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see ch.hevs.overLOD.dataView.api.MaterializedDataViews#isMaterialized(java.lang.String)
+	 */
+	@Override
+	public boolean isMaterialized(String viewName) {
+		return materializedViews.contains(viewName);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see ch.hevs.overLOD.dataView.api.MaterializedDataViews#writeResult(java.lang.String, java.lang.String, java.lang.String, java.lang.String, org.openrdf.query.resultio.TupleQueryResultFormat, java.io.OutputStream)
+	 */
+	@Override
+	public void writeResult(String viewName, String query, String marmottaUri, String headerAuth, TupleQueryResultFormat format, OutputStream out) throws DataViewException {
+		String key = resultKey(query, headerAuth);
+		Cache<String, MaterializedResult> cache = results;
+		MaterializedResult result = cache.getIfPresent(key);
+
+		if (result == null) {
+			result = materialize(cache, viewName, query, key, marmottaUri, headerAuth);
+		} else
+			log.debug("DataView '{}' served from its materialized result", viewName);
+
+		try {
+			QueryResultIO.parse(new ByteArrayInputStream(result.data), TupleQueryResultFormat.BINARY,
+					QueryResultIO.createWriter(format, out), ValueFactoryImpl.getInstance());
+		} catch (Exception e) {
+			throw new DataViewException("Impossible to write the materialized result of the DataView '" + viewName + "': " + e.getMessage());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see ch.hevs.overLOD.dataView.api.MaterializedDataViews#invalidate(java.lang.String)
+	 */
+	@Override
+	public void invalidate(String viewName) {
+		for (PendingResult pending : pendingResults)
+			if (pending.viewName.equals(viewName))
+				pending.invalidated = true;
+
+		Cache<String, MaterializedResult> cache = results;
+		for (Map.Entry<String, MaterializedResult> entry : cache.asMap().entrySet())
+			if (entry.getValue().viewName.equals(viewName))
+				cache.invalidate(entry.getKey());
+	}
+
+	/**
+	 * Drop the results that may be affected by the triples of a committed transaction
+	 * @param data the transaction data sent by SesameService
+	 */
+	public void onTransactionCommit(@Observes @AfterCommit TransactionData data) {
+		Cache<String, MaterializedResult> cache = results;
+		if (cache.size() == 0 && pendingResults.isEmpty())
+			return;
+
+		Set<Value> predicates = new HashSet<Value>();
+		Set<Value> contexts = new HashSet<Value>();
+		collect(data.getAddedTriples(), predicates, contexts);
+		collect(data.getRemovedTriples(), predicates, contexts);
+
+		if (predicates.isEmpty())
+			return;
+
+		for (PendingResult pending : pendingResults)
+			if (pending.footprint.matches(predicates, contexts))
+				pending.invalidated = true;
+
+		for (Map.Entry<String, MaterializedResult> entry : cache.asMap().entrySet())
+			if (entry.getValue().footprint.matches(predicates, contexts)) {
+				log.debug("DataView '{}': materialized result invalidated by transaction {}", entry.getValue().viewName, data.getTransactionId());
+				cache.invalidate(entry.getKey());
+			}
+	}
+
+	private void collect(Iterable<Statement> triples, Set<Value> predicates, Set<Value> contexts) {
+		for (Statement triple : triples) {
+			predicates.add(triple.getPredicate());
+			contexts.add(triple.getContext());
+		}
+	}
+
+	/**
+	 * The key of a result: the query, and a digest of the credentials it has been evaluated with
+	 */
+	private static String resultKey(String query, String headerAuth) {
+		if (headerAuth == null || headerAuth.equals(""))
+			return query;
+		return Hashing.sha256().hashString(headerAuth, StandardCharsets.UTF_8) + "\n" + query;
+	}
+
+	/**
+	 * Evaluate the query and keep its result in the binary format, in the cache that was current when the request started
+	 * (a result computed while the configuration is reloaded is invalidated, so it never ends up in the new cache)
+	 */
+	private MaterializedResult materialize(Cache<String, MaterializedResult> cache, String viewName, String query, String key, String marmottaUri, String headerAuth) throws DataViewException {
+		long timer = System.currentTimeMillis();
+
+		Footprint footprint;
+		try {
+			footprint = new Footprint(QueryParserUtil.parseTupleQuery(QueryLanguage.SPARQL, query, configurationService.getBaseUri()));
+		} catch (Exception e) {
+			throw new DataViewException("Impossible to parse the query of the DataView '" + viewName + "': " + e.getMessage());
+		}
+
+		// registered before the evaluation, so that any change committed meanwhile is noticed
+		PendingResult pending = new PendingResult(viewName, footprint);
+		pendingResults.add(pending);
+
+		MaterializedResult result;
+		try {
+			result = new MaterializedResult(viewName, evaluate(viewName, query, marmottaUri, headerAuth), footprint);
+
+			// don't keep a result that could miss the changes of a transaction committed meanwhile
+			if (!footprint.remote && !pending.invalidated)
+				cache.put(key, result);
+		} finally {
+			pendingResults.remove(pending);
+		}
+
+		log.debug("DataView '{}' materialized in {} ms ({} bytes)", viewName, System.currentTimeMillis() - timer, result.data.length);
+
+		return result;
+	}
+
+	/**
+	 * Evaluate the query through the SPARQL web service, with the credentials of the caller, and return the result
+	 * in the binary format
+	 */
+	private byte[] evaluate(String viewName, String query, String marmottaUri, String headerAuth) throws DataViewException {
+		ClientConfiguration clientConfig = new ClientConfiguration(marmottaUri) ;
+
+		HttpClient httpClient = HTTPUtil.createClient(clientConfig);
+
+		HttpGet get;
+		try {
+			get = new HttpGet(clientConfig.getMarmottaUri() + URL_QUERY_SERVICE + "?query=" + URLEncoder.encode(query, "utf-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new DataViewException("Impossible to encode the query of the DataView '" + viewName + "': " + e.getMessage());
+		}
+
+		get.setHeader("Accept", TupleQueryResultFormat.BINARY.getDefaultMIMEType());
+
+		// the same credentials as for a non materialized dataView, so that the access control applies
+		if (headerAuth != null && !headerAuth.equals(""))
+			get.setHeader("Authorization", headerAuth);
+
+		try {
+			HttpResponse response = httpClient.execute(get);
+			if (response.getStatusLine().getStatusCode() != 200)
+				throw new DataViewException("Impossible to evaluate the query of the DataView '" + viewName + "' - Status Code:"
+						+ response.getStatusLine().getStatusCode() + " - " + response.getStatusLine().getReasonPhrase());
+
+			return IOUtils.toByteArray(response.getEntity().getContent());
+		} catch (IOException e) {
+			throw new DataViewException("Impossible to evaluate the query of the DataView '" + viewName + "': " + e.getMessage());
+		} finally {
+			get.releaseConnection();
+		}
+	}
+
+	/**
+	 * A result being computed; invalidated if its dataView or its footprint is invalidated meanwhile
+	 */
+	private static class PendingResult {
+		private final String viewName;
+		private final Footprint footprint;
+		private volatile boolean invalidated = false;
+
+		private PendingResult(String viewName, Footprint footprint) {
+			this.viewName = viewName;
+			this.footprint = footprint;
+		}
+	}
+
+	private static class MaterializedResult {
+		private final String viewName;
+		private final byte[] data;
+		private final Footprint footprint;
+
+		private MaterializedResult(String viewName, byte[] data, Footprint footprint) {
+			this.viewName = viewName;
+			this.data = data;
+			this.footprint = footprint;
+		}
+	}
+
+	/**
+	 * Predicates and contexts a query may read
+	 * An empty set means that any predicate (or context) may be read
+	 */
+	private static class Footprint {
+		private final Set<Value> predicates = new HashSet<Value>();
+		private final Set<Value> contexts = new HashSet<Value>();
+		private boolean anyPredicate = false;
+		private boolean anyContext = false;
+		private boolean remote = false;
+
+		private Footprint(ParsedTupleQuery parsedQuery) {
+			parsedQuery.getTupleExpr().visit(new QueryModelVisitorBase<RuntimeException>() {
+				@Override
+				public void meet(StatementPattern pattern) {
+					if (pattern.getPredicateVar().hasValue())
+						predicates.add(pattern.getPredicateVar().getValue());
+					else
+						anyPredicate = true;
+
+					if (pattern.getContextVar() != null && pattern.getContextVar().hasValue())
+						contexts.add(pattern.getContextVar().getValue());
+					else
+						anyContext = true;
+				}
+
+				@Override
+				public void meet(Service service) {
+					remote = true;
+				}
+			});
+
+			// FROM and FROM NAMED restrict the contexts of the patterns without a constant context
+			Dataset dataset = parsedQuery.getDataset();
+			if (anyContext && dataset != null) {
+				anyContext = false;
+				contexts.addAll(dataset.getDefaultGraphs());
+				contexts.addAll(dataset.getNamedGraphs());
+			}
+		}
+
+		private boolean matches(Set<Value> changedPredicates, Set<Value> changedContexts) {
+			return (anyPredicate || intersects(predicates, changedPredicates))
+					&& (anyContext || intersects(contexts, changedContexts));
+		}
+
+		private static boolean intersects(Set<Value> a, Set<Value> b) {
+			for (Value value : a)
+				if (b.contains(value))
+					return true;
+			return false;
+		}
+	}
+}
@@ -17,6 +17,7 @@
  */
 package ch.hevs.overLOD.dataView.webservices;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -52,6 +53,8 @@ import org.apache.marmotta.client.ClientConfiguration;
 import org.apache.marmotta.client.util.HTTPUtil;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
 import org.apache.marmotta.platform.core.api.logging.LoggingService;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+import org.openrdf.query.resultio.TupleQueryResultWriterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +62,7 @@ import com.brsanthu.googleanalytics.GoogleAnalytics;
 import com.brsanthu.googleanalytics.PageViewHit;
 
 import ch.hevs.overLOD.dataView.api.DataView;
+import ch.hevs.overLOD.dataView.api.MaterializedDataViews;
 import ch.hevs.overLOD.dataView.exceptions.DataViewException;
 
 /**
@@ -88,6 +92,9 @@ public class DataViewWebService {
     @Inject
     private DataView dataViewService;
 
+    @Inject
+    private MaterializedDataViews materializedDataViews;
+
     @Inject
     private ConfigurationService configurationService;
     
@@ -182,6 +189,14 @@ public class DataViewWebService {
         }
 
        log.debug("final query:" + query) ;
+
+       if (materializedDataViews.isMaterialized(viewName)) {
+    	   TupleQueryResultFormat format = getResultFormat(mimeType) ;
+    	   if (format != null)
+    		   return getMaterializedDataView(headerAuth, viewName, query, format) ;
+    	   else
+    		   log.debug("no result writer for '{}', the materialized result of '{}' can't be used", mimeType, viewName) ;
+       }
         
        return getDataViewImpl(headerAuth, mimeType, query) ;
     }
@@ -321,6 +336,31 @@ public class DataViewWebService {
        return Response.ok(query).build(); 
     }    
     
+    /*
+     * Return the materialized result of a DataView in the requested format
+     */
+    private Response getMaterializedDataView(final String headerAuth, final String viewName, final String query, final TupleQueryResultFormat format) {
+    	// the result is written to a buffer first, so that an error can still be returned as such
+    	ByteArrayOutputStream out = new ByteArrayOutputStream() ;
+    	try {
+    		materializedDataViews.writeResult(viewName, query, uri.getBaseUri().toString(), headerAuth, format, out) ;
+    	} catch (DataViewException e) {
+			log.error("error evaluating materialized DataView {}: {}", viewName, e.getMessage());
+			return Response.status(Status.INTERNAL_SERVER_ERROR).entity(e.getMessage()).build();
+    	}
+
+    	return Response.ok(out.toByteArray()).type(format.getDefaultMIMEType() + "; charset=" + format.getCharset().name()).build() ;
+    }
+
+    /*
+     * Get the tuple result format for a mime type (the first one if the Accept header lists several)
+     * @return the format, or null if no result writer is available for that mime type
+     */
+    private TupleQueryResultFormat getResultFormat(String mimeType) {
+    	String firstMimeType = mimeType.split(",")[0].split(";")[0].trim() ;
+    	return TupleQueryResultWriterRegistry.getInstance().getFileFormatForMIMEType(firstMimeType) ;
+    }
+
     /*
      * Actual implementation of getDataView
      * to return the result of the SPARQL query associated to the DataView
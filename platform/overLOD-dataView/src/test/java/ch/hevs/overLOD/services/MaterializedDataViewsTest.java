@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.services;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.test.base.JettyMarmotta;
+import org.apache.marmotta.platform.sparql.webservices.SparqlWebService;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+import org.openrdf.repository.RepositoryConnection;
+
+import ch.hevs.overLOD.dataView.api.MaterializedDataViews;
+import ch.hevs.overLOD.dataView.exceptions.DataViewException;
+
+/**
+ * Test the materialization of DataView results: a result is served from memory until a commit touches the
+ * predicates and contexts its query reads, its dataView is invalidated or the materialization configuration changes,
+ * and is then computed again by the SPARQL web service.
+ *
+ * A result served from memory doesn't need the SPARQL web service: requesting it with the uri of a server that
+ * doesn't exist only succeeds if it is still materialized.
+ */
+public class MaterializedDataViewsTest {
+
+    private static final String VIEW = "materializedTest";
+    private static final String NS = "http://localhost/materialized-test/";
+    private static final String QUERY = "SELECT ?o WHERE { GRAPH <" + NS + "context> { ?s <" + NS + "p> ?o } }";
+
+    private static JettyMarmotta marmotta;
+    private static MaterializedDataViews materializedDataViews;
+    private static SesameService sesameService;
+    private static ConfigurationService configurationService;
+
+    private static String marmottaUri;
+    private static String unavailableUri;
+
+    @BeforeClass
+    public static void setUp() {
+        marmotta = new JettyMarmotta("/materialized-test", SparqlWebService.class);
+        materializedDataViews = marmotta.getService(MaterializedDataViews.class);
+        sesameService = marmotta.getService(SesameService.class);
+        configurationService = marmotta.getService(ConfigurationService.class);
+
+        marmottaUri = "http://localhost:" + marmotta.getPort() + "/materialized-test";
+        unavailableUri = "http://localhost:" + JettyMarmotta.getRandomPort() + "/materialized-test";
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        marmotta.shutdown();
+    }
+
+    @Before
+    public void materialize() throws Exception {
+        configurationService.setListConfiguration("dataView.materializedViews", Arrays.asList(VIEW));
+        Assert.assertTrue(materializedDataViews.isMaterialized(VIEW));
+
+        add("s1", "p", "o1", "context");
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        RepositoryConnection connection = sesameService.getConnection();
+        try {
+            connection.begin();
+            connection.clear(uri("context"), uri("other"));
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+        configurationService.setListConfiguration("dataView.materializedViews", Collections.<String>emptyList());
+    }
+
+    @Test
+    public void testMaterialization() throws Exception {
+        String result = result(marmottaUri);
+        Assert.assertTrue(result, result.contains(NS + "o1"));
+
+        // served from memory, in any format
+        Assert.assertEquals(result, result(unavailableUri));
+        Assert.assertTrue(result(TupleQueryResultFormat.JSON, unavailableUri).contains(NS + "o1"));
+
+        // the configuration lists the materialized dataViews
+        Assert.assertFalse(materializedDataViews.isMaterialized("notMaterialized"));
+        configurationService.setListConfiguration("dataView.materializedViews", Arrays.asList(VIEW, "notMaterialized"));
+        Assert.assertTrue(materializedDataViews.isMaterialized("notMaterialized"));
+    }
+
+    @Test
+    public void testInvalidationByCommit() throws Exception {
+        result(marmottaUri);
+
+        // neither the predicate nor the context of the query: the result is kept
+        add("s2", "q", "o2", "context");
+        add("s2", "p", "o2", "other");
+        Assert.assertFalse(result(unavailableUri).contains(NS + "o2"));
+
+        // the predicate and the context of the query: the result is dropped
+        add("s3", "p", "o3", "context");
+        assertNotMaterialized();
+
+        String result = result(marmottaUri);
+        Assert.assertTrue(result, result.contains(NS + "o1") && result.contains(NS + "o3"));
+        Assert.assertFalse(result, result.contains(NS + "o2"));
+        Assert.assertEquals(result, result(unavailableUri));
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        result(marmottaUri);
+
+        // a new query for the dataView
+        materializedDataViews.invalidate(VIEW);
+        assertNotMaterialized();
+        result(marmottaUri);
+        result(unavailableUri);
+
+        // a change of the materialization configuration drops all the results
+        configurationService.setLongConfiguration("dataView.materialization_maxSize", 32);
+        assertNotMaterialized();
+        result(marmottaUri);
+        result(unavailableUri);
+    }
+
+    private void assertNotMaterialized() {
+        try {
+            result(unavailableUri);
+            Assert.fail("the result should not be materialized anymore");
+        } catch (DataViewException e) {
+            // expected, the query is sent to the unavailable server
+        }
+    }
+
+    private String result(String uri) throws DataViewException {
+        return result(TupleQueryResultFormat.CSV, uri);
+    }
+
+    private String result(TupleQueryResultFormat format, String uri) throws DataViewException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        materializedDataViews.writeResult(VIEW, QUERY, uri, null, format, out);
+        return new String(out.toByteArray());
+    }
+
+    private void add(String subject, String predicate, String object, String context) throws Exception {
+        RepositoryConnection connection = sesameService.getConnection();
+        try {
+            connection.begin();
+            connection.add(uri(subject), uri(predicate), uri(object), uri(context));
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private URI uri(String name) {
+        ValueFactory factory = sesameService.getValueFactory();
+        return factory.createURI(NS + name);
+    }
+}
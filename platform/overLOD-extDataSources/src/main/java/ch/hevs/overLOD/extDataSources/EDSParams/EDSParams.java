@@ -16,6 +16,13 @@ public class EDSParams {
 	public String timeStamp ; // the specific value of timeStamp is not defined yet, so save it as a string currently 
 	public String filterFileName ;
 	public String validationFileName ;
+
+	// scheduled refresh (see EDSRefreshService)
+	public long refreshInterval ; // seconds between two refreshes, 0 to use the "EDS.refresh_interval" configuration
+	public long lastRefresh ; // milliseconds since 01.01.1970 of the last successful refresh check
+	public String etag ; // HTTP ETag of the source when last retrieved, if any
+	public String lastModified ; // HTTP Last-Modified of the source when last retrieved, if any
+	public String contentHash ; // hash of the (filtered) statements last written in the context
 	
 	public EDSParams() // needed for Jackson read/write operations
 	{
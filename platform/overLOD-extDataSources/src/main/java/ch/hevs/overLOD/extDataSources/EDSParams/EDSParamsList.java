@@ -85,4 +85,21 @@ public class EDSParamsList {
 	else
 		return false ;
 	}
+	
+	/**
+    * Set a new value for the refresh interval of an EDS
+    * @param context  the context (Named Graph) where this EDS is saved locally, which is its identifier
+    * @param refreshInterval seconds between two refreshes, 0 to use the "EDS.refresh_interval" configuration
+    * @return true/false whether the value has been saved or not
+	 */
+	public boolean setEDSParamsRefreshInterval(String context, long refreshInterval)
+	{
+		if (EDSParamsSortedMap.containsKey(context))
+		{
+			((EDSParams)EDSParamsSortedMap.get(context)).refreshInterval = refreshInterval ;
+			return true;
+		}
+	else
+		return false ;
+	}
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.extDataSources.api;
+
+import java.util.Map;
+
+/**
+ * Scheduled refresh of the External Data Sources (EDS)
+ *
+ * When enabled ("EDS.refresh_enabled"), all registered EDS are refreshed with ExtDataSources.refreshEDS()
+ * once their refresh interval is elapsed, by a bounded pool of workers and with a maximum number
+ * of concurrent refreshes per remote host.
+ *
+ * See EDSRefreshServiceImpl for the current implementation
+ *
+ * @author Fabian Cretton, HES-SO OverLOD surfer project
+ * http://www.hevs.ch/fr/rad-instituts/institut-informatique-de-gestion/projets/overlod-surfer-6349
+ */
+public interface EDSRefreshService {
+
+	/**
+	 * Start the scheduler, if enabled in the configuration
+	 */
+	public void startup() ;
+
+	/**
+	 * Stop the scheduler, refreshes already started are interrupted
+	 */
+	public void shutdown() ;
+
+	/**
+	 * @return true if the scheduler is running
+	 */
+	public boolean isRunning() ;
+
+	/**
+	 * Get the result of the last scheduled refresh of each EDS
+	 * @return a map of EDS contexts with the message (or error message) of their last refresh
+	 */
+	public Map<String,String> getLastResults() ;
+}
@@ -88,12 +88,22 @@ public interface ExtDataSources {
      */
     public boolean setEDSParamsTimeStamp(String context, String timeStamp) throws ExtDataSourcesException ;
     
+    /**
+     * Set the number of seconds between two scheduled refreshes of an EDS (see EDSRefreshService)
+     * @param context  the context (Named Graph) where this EDS is saved locally, which is its identifier
+     * @param refreshInterval seconds between two refreshes, 0 to use the "EDS.refresh_interval" configuration
+     * @return true/false whether the value has been saved or not
+     * @throws ExtDataSourcesException if the interval is negative, or the EDS list can't be saved
+     */
+    public boolean setEDSParamsRefreshInterval(String context, long refreshInterval) throws ExtDataSourcesException ;
+    
 	/**
 	 * Import data that can be handled by LDClient So far "linked data" and RDF
 	 * files were tested
 	 * 
-	 * LDClient retrieves data in a temporary store, than data is queried from
-	 * the result and imported in Marmotta using the ImportClient
+	 * LDClient retrieves the data, which is then passed through the optional filter
+	 * and written to the context of the local store in batches (configuration "EDS.import_streaming",
+	 * the default). If streaming is disabled, the data is serialized and imported in Marmotta using the ImportClient
 	 * 
 	 * @param marmottaURL marmottaServer URL, needed to call ImportClient
 	 * @param EDSType the type of EDS, as "RDFFile" or "LinkedData" This
@@ -117,6 +127,22 @@ public interface ExtDataSources {
 	 */
 	public String importWithLDClient(String marmottaURL, String headerAuth, String LDClientType, String url, String context, String filterFileName, String validationFileName)  throws ExtDataSourcesException ;
  
+	/**
+	 * Refresh the content of an existing EDS, writing only the difference with the current content of its context
+	 * 
+	 * The refresh is skipped if the source reports, with a conditional HTTP request, that it was not modified
+	 * since the last retrieval (ETag/Last-Modified), or if the hash of the retrieved (filtered) data equals the
+	 * hash of the data written by the previous refresh. Otherwise the data is validated (if a validation file is set),
+	 * the statements that disappeared are removed from the context and the new ones are added.
+	 * 
+	 * Blank nodes can't be matched between two retrievals: their statements are always replaced.
+	 * 
+	 * @param context the context (Named Graph) identifying the EDS
+	 * @return a string describing the result of the refresh
+	 * @throws ExtDataSourcesException with an error message
+	 */
+	public String refreshEDS(String context) throws ExtDataSourcesException ;
+
 	/**
 	 * Get the list of DataFilters (i.e. files found in  $marmotta-home\EDS\EDSFilters
 	 * @return a String list of file names
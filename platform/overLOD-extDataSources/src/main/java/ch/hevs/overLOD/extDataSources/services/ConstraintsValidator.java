@@ -0,0 +1,556 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.extDataSources.services;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.topbraid.spin.constraints.ConstraintViolation;
+import org.topbraid.spin.constraints.SPINConstraints;
+import org.topbraid.spin.system.SPINModuleRegistry;
+import org.topbraid.spin.vocabulary.SP;
+import org.topbraid.spin.vocabulary.SPIN;
+import org.topbraid.spin.vocabulary.SPL;
+
+import com.google.common.collect.AbstractIterator;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.graph.compose.Difference;
+import com.hp.hpl.jena.graph.compose.MultiUnion;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.ResIterator;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.util.FileUtils;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import ch.hevs.overLOD.extDataSources.exceptions.ExtDataSourcesException;
+
+/**
+ * SPIN constraints validation with a cache of compiled constraints files
+ *
+ * For each constraints file, the union of the SPIN template model, the constraints model and the
+ * SPL/SPIN/SP system models is built once, and its functions registered once in the SPINModuleRegistry.
+ * The cached entry is dropped when the constraints file is modified on disk, or when the template model changes.
+ *
+ * By default (chunkSize of 0) the data set is validated as a whole. The spin:constraint statements of a constraints
+ * file are then split in up to 'threads' parts, that are independent and evaluated in parallel on the whole data set.
+ *
+ * Optionally the data is validated in chunks of 'chunkSize' subjects: a chunk holds all the statements of its
+ * subjects, plus the rdf:type statements of their values (needed by range constraints as oslc:range).
+ * Only the violations of the chunk subjects are reported, the values being checked in their own chunk.
+ * Constraints must thus only look at the description of an instance and the types of its values,
+ * which is the case for the OSLC Resource Shapes templates: constraints relating several instances
+ * (e.g. uniqueness, inverse or cardinality of incoming links) are not detected across chunks.
+ * Chunks are independent and are checked in parallel by 'threads' workers, each against all the constraints.
+ * A Sesame data set is split in chunks directly, without being copied as a whole in a Jena model, so that
+ * only the chunks being checked are held in memory in addition to the data set itself.
+ *
+ * @author Fabian Cretton, HES-SO OverLOD surfer project
+ * http://www.hevs.ch/fr/rad-instituts/institut-informatique-de-gestion/projets/overlod-surfer-6349
+ */
+public class ConstraintsValidator {
+
+	private static final Logger log = LoggerFactory.getLogger(ConstraintsValidator.class);
+
+	private final ConcurrentHashMap<String, CompiledConstraints> cache = new ConcurrentHashMap<String, CompiledConstraints>();
+
+	private final int threads;
+	private final int chunkSize;
+	private final ExecutorService executor;
+
+	// validations hold the read lock, shutdown waits for them with the write lock
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private boolean closed = false;
+
+	/**
+	 * @param threads number of constraints parts or chunks validated in parallel, 1 to validate on the calling thread
+	 * @param chunkSize number of subjects per chunk, 0 to validate the data set as a whole
+	 */
+	public ConstraintsValidator(int threads, int chunkSize) {
+		this.threads = Math.max(1, threads);
+		this.chunkSize = Math.max(0, chunkSize);
+		this.executor = this.threads > 1 ? Executors.newFixedThreadPool(this.threads) : null;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Stop the worker threads once the validations in progress are finished.
+	 * Validations started afterwards are run on the calling thread.
+	 */
+	public void shutdown() {
+		lock.writeLock().lock();
+		try {
+			closed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		if (executor == null)
+			return;
+
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(60, TimeUnit.SECONDS))
+				log.warn("EDS data validation workers still running 60 seconds after shutdown");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Drop all the compiled constraints
+	 */
+	public void invalidate() {
+		cache.clear();
+	}
+
+	/**
+	 * Get the compiled constraints for a constraints file, compiling it if it is not cached yet
+	 * or if the file or the template model changed since it was compiled
+	 *
+	 * @param constraintsFile the SPIN constraints file
+	 * @param modelSpinTemplates the SPIN templates the constraints are based on
+	 * @return the compiled constraints
+	 * @throws ExtDataSourcesException if the constraints file can't be loaded, or is empty
+	 */
+	public CompiledConstraints getCompiledConstraints(File constraintsFile, Model modelSpinTemplates) throws ExtDataSourcesException {
+		String key = constraintsFile.getAbsolutePath();
+		long lastModified = constraintsFile.lastModified();
+
+		CompiledConstraints compiled = cache.get(key);
+		if (compiled != null && compiled.lastModified == lastModified && compiled.modelSpinTemplates == modelSpinTemplates)
+			return compiled;
+
+		// concurrent imports may compile the same file twice, the last one wins: this is harmless
+		compiled = compile(constraintsFile, lastModified, modelSpinTemplates);
+		cache.put(key, compiled);
+
+		return compiled;
+	}
+
+	private CompiledConstraints compile(File constraintsFile, long lastModified, Model modelSpinTemplates) throws ExtDataSourcesException {
+		log.debug("compiling SPIN constraints file: {}", constraintsFile);
+
+		Model modelConstraints = ModelFactory.createDefaultModel();
+		try {
+			FileInputStream inputStream = new FileInputStream(constraintsFile);
+			modelConstraints.read(inputStream, null, FileUtils.langTurtle);
+			inputStream.close();
+		} catch (Exception e) {
+			throw new ExtDataSourcesException("Data validation failed - unable to load the constraints file: " + constraintsFile.getPath());
+		}
+
+		if (modelConstraints.size() == 0)
+			throw new ExtDataSourcesException("Data validation failed - the loaded constraints file model has a size of 0: " + constraintsFile.getPath());
+
+		MultiUnion schema = new MultiUnion(new Graph[] { modelSpinTemplates.getGraph(), modelConstraints.getGraph(),
+				SPL.getModel().getGraph(), SPIN.getModel().getGraph(), SP.getModel().getGraph() });
+
+		// Register locally defined functions (none exist, but may in the future)
+		SPINModuleRegistry.get().registerAll(ModelFactory.createModelForGraph(schema), null);
+
+		return new CompiledConstraints(schema, split(schema, modelConstraints), lastModified, modelSpinTemplates);
+	}
+
+	/**
+	 * Split the schema in parts that each hold a share of the spin:constraint statements of the constraints file,
+	 * the rest of the schema (templates, shapes, system models) being shared by all the parts.
+	 * The constraints of the shared models (e.g. the arguments of the templates) are thus evaluated by each part:
+	 * their violations are only reported by the first part, the other parts only report the violations
+	 * caused by their own share of constraints.
+	 *
+	 * @return the parts, or only the schema itself if there is nothing to split
+	 */
+	private List<ConstraintsPart> split(Graph schema, Model modelConstraints) {
+		List<Statement> constraints = modelConstraints.listStatements(null, SPIN.constraint, (RDFNode) null).toList();
+		int parts = Math.min(threads, constraints.size());
+
+		List<ConstraintsPart> result = new ArrayList<ConstraintsPart>();
+		if (parts < 2) {
+			result.add(new ConstraintsPart(schema, null));
+			return result;
+		}
+
+		for (int part = 0; part < parts; part++) {
+			Model removed = ModelFactory.createDefaultModel();
+			Set<Node> sources = new HashSet<Node>();
+			for (int i = 0; i < constraints.size(); i++) {
+				if (i % parts != part)
+					removed.add(constraints.get(i));
+				else
+					sources.add(constraints.get(i).getObject().asNode());
+			}
+
+			result.add(new ConstraintsPart(new Difference(schema, removed.getGraph()), part == 0 ? null : sources));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Check a data set against compiled constraints
+	 *
+	 * @param data the data to be checked, it is only read
+	 * @param constraints the compiled constraints
+	 * @return the list of detected violations, empty if none
+	 * @throws ExtDataSourcesException if the validation could not be performed
+	 */
+	public List<ConstraintViolation> validate(Model data, CompiledConstraints constraints) throws ExtDataSourcesException {
+		lock.readLock().lock();
+		try {
+			if (chunkSize == 0)
+				return validateParts(data, constraints);
+
+			return validateChunks(chunks(data), constraints);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Check a Sesame data set against compiled constraints
+	 *
+	 * @param data the data to be checked, it is only read
+	 * @param constraints the compiled constraints
+	 * @return the list of detected violations, empty if none
+	 * @throws ExtDataSourcesException if the validation could not be performed
+	 */
+	public List<ConstraintViolation> validate(org.openrdf.model.Model data, CompiledConstraints constraints) throws ExtDataSourcesException {
+		lock.readLock().lock();
+		try {
+			if (chunkSize == 0)
+				return validateParts(asJenaModel(data), constraints);
+
+			return validateChunks(chunks(data), constraints);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Check the whole data set against each part of the constraints, in parallel
+	 */
+	private List<ConstraintViolation> validateParts(final Model data, CompiledConstraints constraints) throws ExtDataSourcesException {
+		if (closed || executor == null || constraints.parts.size() == 1)
+			return check(data, constraints.schema);
+
+		List<Future<List<ConstraintViolation>>> pending = new ArrayList<Future<List<ConstraintViolation>>>();
+		for (final ConstraintsPart part : constraints.parts)
+			pending.add(executor.submit(new Callable<List<ConstraintViolation>>() {
+				@Override
+				public List<ConstraintViolation> call() throws Exception {
+					return part.filter(check(data, part.schema));
+				}
+			}));
+
+		return collect(pending);
+	}
+
+	private List<ConstraintViolation> validateChunks(Iterator<Chunk> chunks, CompiledConstraints constraints) throws ExtDataSourcesException {
+		List<ConstraintViolation> violations = new ArrayList<ConstraintViolation>();
+		Deque<Future<List<ConstraintViolation>>> pending = new ArrayDeque<Future<List<ConstraintViolation>>>();
+
+		try {
+			while (chunks.hasNext())
+				submit(chunks.next(), constraints.schema, violations, pending);
+
+			while (!pending.isEmpty())
+				violations.addAll(pending.poll().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExtDataSourcesException("Data validation interrupted");
+		} catch (ExecutionException e) {
+			throw new ExtDataSourcesException("Data validation failed: " + e.getCause().getMessage());
+		} finally {
+			for (Future<List<ConstraintViolation>> future : pending)
+				future.cancel(true);
+		}
+
+		return violations;
+	}
+
+	private List<ConstraintViolation> collect(List<Future<List<ConstraintViolation>>> pending) throws ExtDataSourcesException {
+		List<ConstraintViolation> violations = new ArrayList<ConstraintViolation>();
+
+		try {
+			for (Future<List<ConstraintViolation>> future : pending)
+				violations.addAll(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExtDataSourcesException("Data validation interrupted");
+		} catch (ExecutionException e) {
+			throw new ExtDataSourcesException("Data validation failed: " + e.getCause().getMessage());
+		} finally {
+			for (Future<List<ConstraintViolation>> future : pending)
+				future.cancel(true);
+		}
+
+		return violations;
+	}
+
+	/**
+	 * Split a Jena data set in chunks of chunkSize subjects, built one after the other
+	 */
+	private Iterator<Chunk> chunks(final Model data) {
+		final ResIterator subjects = data.listSubjects();
+
+		return new AbstractIterator<Chunk>() {
+			@Override
+			protected Chunk computeNext() {
+				if (!subjects.hasNext()) {
+					subjects.close();
+					return endOfData();
+				}
+
+				Chunk chunk = new Chunk();
+				for (int i = 0; i < chunkSize && subjects.hasNext(); i++) {
+					Resource subject = subjects.next();
+					chunk.subjects.add(subject.asNode());
+					addDescription(data, subject, chunk.model);
+				}
+				return chunk;
+			}
+		};
+	}
+
+	/**
+	 * Split a Sesame data set in chunks of chunkSize subjects, built one after the other
+	 */
+	private Iterator<Chunk> chunks(final org.openrdf.model.Model data) {
+		final Iterator<org.openrdf.model.Resource> subjects = data.subjects().iterator();
+
+		return new AbstractIterator<Chunk>() {
+			@Override
+			protected Chunk computeNext() {
+				if (!subjects.hasNext())
+					return endOfData();
+
+				Chunk chunk = new Chunk();
+				for (int i = 0; i < chunkSize && subjects.hasNext(); i++) {
+					org.openrdf.model.Resource subject = subjects.next();
+					chunk.subjects.add(asJenaResource(chunk.model, subject).asNode());
+					addDescription(data, subject, chunk.model);
+				}
+				return chunk;
+			}
+		};
+	}
+
+	/**
+	 * Add the statements of a subject, and the types of its values, to a chunk
+	 */
+	private void addDescription(Model data, Resource subject, Model chunk) {
+		StmtIterator statements = data.listStatements(subject, null, (RDFNode) null);
+		try {
+			while (statements.hasNext()) {
+				Statement statement = statements.next();
+				chunk.add(statement);
+
+				if (statement.getObject().isResource())
+					chunk.add(data.listStatements(statement.getObject().asResource(), RDF.type, (RDFNode) null));
+			}
+		} finally {
+			statements.close();
+		}
+	}
+
+	/**
+	 * Add the statements of a Sesame subject, and the types of its values, to a chunk
+	 */
+	private void addDescription(org.openrdf.model.Model data, org.openrdf.model.Resource subject, Model chunk) {
+		for (org.openrdf.model.Statement statement : data.filter(subject, null, null)) {
+			add(chunk, statement);
+
+			if (statement.getObject() instanceof org.openrdf.model.Resource)
+				for (org.openrdf.model.Statement type : data.filter((org.openrdf.model.Resource) statement.getObject(), org.openrdf.model.vocabulary.RDF.TYPE, null))
+					add(chunk, type);
+		}
+	}
+
+	/**
+	 * Copy a Sesame model into a new Jena model, as needed by SPIN
+	 *
+	 * @param data the Sesame model
+	 * @return a Jena model with the same statements
+	 */
+	public static Model asJenaModel(org.openrdf.model.Model data) {
+		Model model = ModelFactory.createDefaultModel();
+
+		for (org.openrdf.model.Statement st : data)
+			add(model, st);
+
+		return model;
+	}
+
+	private static void add(Model model, org.openrdf.model.Statement st) {
+		model.add(asJenaResource(model, st.getSubject()), model.createProperty(st.getPredicate().stringValue()), asJenaNode(model, st.getObject()));
+	}
+
+	private static Resource asJenaResource(Model model, org.openrdf.model.Resource resource) {
+		if (resource instanceof BNode)
+			return model.createResource(new AnonId(resource.stringValue()));
+		else
+			return model.createResource(resource.stringValue());
+	}
+
+	private static RDFNode asJenaNode(Model model, Value value) {
+		if (value instanceof Literal) {
+			Literal literal = (Literal) value;
+			if (literal.getLanguage() != null)
+				return model.createLiteral(literal.getLabel(), literal.getLanguage());
+			else if (literal.getDatatype() != null)
+				return model.createTypedLiteral(literal.getLabel(), literal.getDatatype().stringValue());
+			else
+				return model.createLiteral(literal.getLabel());
+		} else
+			return asJenaResource(model, (org.openrdf.model.Resource) value);
+	}
+
+	/**
+	 * Check a chunk, in a worker thread if available
+	 * At most 2 chunks per worker are kept in memory: when the limit is reached, wait for the oldest one
+	 */
+	private void submit(final Chunk chunk, final Graph schema, List<ConstraintViolation> violations,
+			Deque<Future<List<ConstraintViolation>>> pending) throws InterruptedException, ExecutionException, ExtDataSourcesException {
+		if (closed || executor == null) {
+			violations.addAll(chunk.filter(check(chunk.model, schema)));
+			return;
+		}
+
+		while (pending.size() >= 2 * threads)
+			violations.addAll(pending.poll().get());
+
+		pending.add(executor.submit(new Callable<List<ConstraintViolation>>() {
+			@Override
+			public List<ConstraintViolation> call() throws Exception {
+				return chunk.filter(check(chunk.model, schema));
+			}
+		}));
+	}
+
+	private List<ConstraintViolation> check(Model data, Graph schema) throws ExtDataSourcesException {
+		Model unionModel = ModelFactory.createModelForGraph(new MultiUnion(new Graph[] { data.getGraph(), schema }));
+
+		try {
+			return SPINConstraints.check(unionModel, null);
+		} catch (RuntimeException e) {
+			throw new ExtDataSourcesException("Data validation failed - error while checking the constraints: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * A constraints file, joined with the SPIN templates and system models, ready for validation
+	 */
+	public static class CompiledConstraints {
+		private final Graph schema;
+		private final List<ConstraintsPart> parts;
+		private final long lastModified;
+		private final Model modelSpinTemplates;
+
+		private CompiledConstraints(Graph schema, List<ConstraintsPart> parts, long lastModified, Model modelSpinTemplates) {
+			this.schema = schema;
+			this.parts = parts;
+			this.lastModified = lastModified;
+			this.modelSpinTemplates = modelSpinTemplates;
+		}
+
+		/**
+		 * @return the number of parts the constraints are split in for a whole data set validation
+		 */
+		public int getParts() {
+			return parts.size();
+		}
+	}
+
+	/**
+	 * A share of the constraints of a constraints file, evaluated on its own
+	 */
+	private static class ConstraintsPart {
+		private final Graph schema;
+		// the constraints owned by this part, null if it also reports the violations of the shared constraints
+		private final Set<Node> sources;
+
+		private ConstraintsPart(Graph schema, Set<Node> sources) {
+			this.schema = schema;
+			this.sources = sources;
+		}
+
+		private List<ConstraintViolation> filter(List<ConstraintViolation> violations) {
+			if (sources == null)
+				return violations;
+
+			List<ConstraintViolation> result = new ArrayList<ConstraintViolation>();
+			for (ConstraintViolation violation : violations)
+				if (violation.getSource() == null || sources.contains(violation.getSource().asNode()))
+					result.add(violation);
+			return result;
+		}
+	}
+
+	/**
+	 * The descriptions of some subjects of the data set, checked on their own
+	 */
+	private static class Chunk {
+		private final Model model = ModelFactory.createDefaultModel();
+		private final Set<Node> subjects = new HashSet<Node>();
+
+		/**
+		 * Drop the violations of the values of the subjects, as only their types are in the chunk
+		 */
+		private List<ConstraintViolation> filter(List<ConstraintViolation> violations) {
+			List<ConstraintViolation> result = new ArrayList<ConstraintViolation>();
+			for (ConstraintViolation violation : violations)
+				if (violation.getRoot() == null || subjects.contains(violation.getRoot().asNode()))
+					result.add(violation);
+			return result;
+		}
+	}
+}
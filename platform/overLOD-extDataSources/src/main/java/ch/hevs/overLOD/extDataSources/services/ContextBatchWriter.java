@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.extDataSources.services;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+/**
+ * RDFHandler writing the statements it receives directly into one context of a repository
+ *
+ * Statements are committed in batches of 'batchSize' statements, so that the size of a
+ * transaction stays bounded whatever the size of the imported data set.
+ * The number of written statements is counted on the fly, see getCount()
+ *
+ * Batches committed before a failure remain in the context: call rollback() to discard
+ * only the current (uncommitted) batch and release the connection, and getCommittedCount()
+ * to know how many statements were written anyway.
+ *
+ * @author Fabian Cretton, HES-SO OverLOD surfer project
+ * http://www.hevs.ch/fr/rad-instituts/institut-informatique-de-gestion/projets/overlod-surfer-6349
+ */
+public class ContextBatchWriter extends RDFHandlerBase {
+
+	private final Repository repository;
+	private final URI context;
+	private final int batchSize;
+
+	private RepositoryConnection connection = null;
+	private long count = 0;
+	private long committed = 0;
+	private int pending = 0;
+
+	/**
+	 * @param repository the repository to write to, as sesameService.getRepository()
+	 * @param context the context in which the statements are written
+	 * @param batchSize number of statements per transaction, values < 1 are handled as 1
+	 */
+	public ContextBatchWriter(Repository repository, URI context, int batchSize) {
+		this.repository = repository;
+		this.context = context;
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	@Override
+	public void startRDF() throws RDFHandlerException {
+		try {
+			if (connection == null) {
+				connection = repository.getConnection();
+				connection.begin();
+			}
+		} catch (RepositoryException e) {
+			throw new RDFHandlerException("Unable to open a connection to the repository: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void handleStatement(Statement st) throws RDFHandlerException {
+		if (connection == null)
+			startRDF();
+
+		try {
+			connection.add(st.getSubject(), st.getPredicate(), st.getObject(), context);
+			count++;
+
+			if (++pending >= batchSize) {
+				connection.commit();
+				committed = count;
+				connection.begin();
+				pending = 0;
+			}
+		} catch (RepositoryException e) {
+			throw new RDFHandlerException("Unable to write the statement to the repository: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void endRDF() throws RDFHandlerException {
+		if (connection == null)
+			return;
+
+		try {
+			connection.commit();
+			committed = count;
+			connection.close();
+		} catch (RepositoryException e) {
+			throw new RDFHandlerException("Unable to commit the last batch to the repository: " + e.getMessage(), e);
+		} finally {
+			connection = null;
+			pending = 0;
+		}
+	}
+
+	/**
+	 * Discard the current batch (if any) and release the connection
+	 * Batches that were already committed are not affected
+	 */
+	public void rollback() {
+		if (connection == null)
+			return;
+
+		try {
+			connection.rollback();
+			connection.close();
+		} catch (RepositoryException e) {
+			// nothing more can be done, the connection is dropped anyway
+		} finally {
+			connection = null;
+			pending = 0;
+		}
+	}
+
+	/**
+	 * @return the number of statements written so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of statements written by the batches committed so far,
+	 * i.e. the statements that remain in the context after a rollback()
+	 */
+	public long getCommittedCount() {
+		return committed;
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.extDataSources.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
+import org.apache.marmotta.platform.core.events.SystemStartupEvent;
+import org.slf4j.Logger;
+
+import ch.hevs.overLOD.extDataSources.EDSParams.EDSParams;
+import ch.hevs.overLOD.extDataSources.api.EDSRefreshService;
+import ch.hevs.overLOD.extDataSources.api.ExtDataSources;
+import ch.hevs.overLOD.extDataSources.exceptions.ExtDataSourcesException;
+
+/**
+ * Default Implementation of {@link EDSRefreshService}
+ *
+ * A timer checks every "EDS.refresh_checkInterval" seconds which EDS are due: an EDS is due when its own
+ * refreshInterval (or "EDS.refresh_interval" if not set) is elapsed since its last refresh or refresh attempt.
+ * Due EDS are handed to a pool of "EDS.refresh_threads" workers. An EDS whose host already has
+ * "EDS.refresh_maxPerHost" refreshes queued or running is left for a later check.
+ *
+ * The refresh itself (conditional request, content hash, delta write) is done by ExtDataSources.refreshEDS()
+ *
+ * @author Fabian Cretton, HES-SO OverLOD surfer project
+ * http://www.hevs.ch/fr/rad-instituts/institut-informatique-de-gestion/projets/overlod-surfer-6349
+ */
+@ApplicationScoped
+public class EDSRefreshServiceImpl implements EDSRefreshService {
+
+	private static final String CONFIG_PREFIX = "EDS.refresh_";
+	private static final String CONFIG_KEY_ENABLED = CONFIG_PREFIX + "enabled";
+	private static final String CONFIG_KEY_INTERVAL = CONFIG_PREFIX + "interval";
+	private static final String CONFIG_KEY_CHECK_INTERVAL = CONFIG_PREFIX + "checkInterval";
+	private static final String CONFIG_KEY_THREADS = CONFIG_PREFIX + "threads";
+	private static final String CONFIG_KEY_MAX_PER_HOST = CONFIG_PREFIX + "maxPerHost";
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private ConfigurationService configurationService;
+
+	@Inject
+	private ExtDataSources edsService;
+
+	private ScheduledExecutorService timer = null;
+	private ExecutorService workers = null;
+
+	private int maxPerHost;
+
+	// per host permits, a permit is held from the submission of a refresh to its end
+	private final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+	// contexts currently queued or refreshed
+	private final Set<String> running = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	// time of the last refresh attempt, successful or not, to avoid retrying a failing EDS on every check
+	private final ConcurrentHashMap<String, Long> lastAttempts = new ConcurrentHashMap<String, Long>();
+	private final ConcurrentHashMap<String, String> lastResults = new ConcurrentHashMap<String, String>();
+
+	/*
+	 * (non-Javadoc)
+	 * @see ch.hevs.overLOD.extDataSources.api.EDSRefreshService#startup()
+	 */
+	@Override
+	public synchronized void startup() {
+		if (timer != null || !configurationService.getBooleanConfiguration(CONFIG_KEY_ENABLED, false))
+			return;
+
+		maxPerHost = Math.max(1, configurationService.getIntConfiguration(CONFIG_KEY_MAX_PER_HOST, 2));
+		int threads = Math.max(1, configurationService.getIntConfiguration(CONFIG_KEY_THREADS, 4));
+		int checkInterval = Math.max(1, configurationService.getIntConfiguration(CONFIG_KEY_CHECK_INTERVAL, 60));
+
+		log.info("EDS refresh: starting scheduler ({} workers, {} per host)", threads, maxPerHost);
+
+		hostPermits.clear();
+		workers = Executors.newFixedThreadPool(threads);
+		timer = Executors.newSingleThreadScheduledExecutor();
+		timer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					submitDueSources();
+				} catch (RuntimeException e) {
+					log.error("EDS refresh: error while checking the EDS list: " + e.getMessage());
+				}
+			}
+		}, checkInterval, checkInterval, TimeUnit.SECONDS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see ch.hevs.overLOD.extDataSources.api.EDSRefreshService#shutdown()
+	 */
+	@Override
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (timer == null)
+			return;
+
+		log.info("EDS refresh: stopping scheduler");
+		timer.shutdownNow();
+		workers.shutdownNow();
+		timer = null;
+		workers = null;
+		running.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see ch.hevs.overLOD.extDataSources.api.EDSRefreshService#isRunning()
+	 */
+	@Override
+	public synchronized boolean isRunning() {
+		return timer != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see ch.hevs.overLOD.extDataSources.api.EDSRefreshService#getLastResults()
+	 */
+	@Override
+	public Map<String, String> getLastResults() {
+		return new TreeMap<String, String>(lastResults);
+	}
+
+	protected void onSystemStartupEvent(@Observes SystemStartupEvent event) {
+		shutdown();
+		startup();
+	}
+
+	protected void onConfigurationChangedEvent(@Observes ConfigurationChangedEvent event) {
+		if (event.containsChangedKeyWithPrefix(CONFIG_PREFIX)) {
+			shutdown();
+			startup();
+		}
+	}
+
+	/**
+	 * Hand all the due EDS to the workers
+	 */
+	private synchronized void submitDueSources() {
+		if (workers == null)
+			return;
+
+		List<EDSParams> sources;
+		try {
+			sources = new ArrayList<EDSParams>(edsService.getEDSParamsList().values());
+		} catch (ExtDataSourcesException e) {
+			log.debug("EDS refresh: EDS list not available, retrying on the next check ({})", e.getMessage());
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		long defaultInterval = configurationService.getLongConfiguration(CONFIG_KEY_INTERVAL);
+
+		for (final EDSParams params : sources) {
+			long interval = params.refreshInterval > 0 ? params.refreshInterval : defaultInterval;
+			if (interval <= 0)
+				continue;
+
+			Long lastAttempt = lastAttempts.get(params.context);
+			long last = Math.max(params.lastRefresh, lastAttempt != null ? lastAttempt : 0);
+			if (last + interval * 1000 > now)
+				continue;
+
+			if (!running.add(params.context))
+				continue;
+
+			final Semaphore permit = getHostPermit(params.url);
+			if (!permit.tryAcquire()) {
+				running.remove(params.context);
+				continue;
+			}
+
+			lastAttempts.put(params.context, now);
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						String result = edsService.refreshEDS(params.context);
+						log.debug("EDS refresh: {}", result);
+						lastResults.put(params.context, result);
+					} catch (ExtDataSourcesException e) {
+						log.warn("EDS refresh: refresh of '{}' failed: {}", params.context, e.getMessage());
+						lastResults.put(params.context, "Error: " + e.getMessage());
+					} finally {
+						permit.release();
+						running.remove(params.context);
+					}
+				}
+			});
+		}
+	}
+
+	private Semaphore getHostPermit(String url) {
+		String host;
+		try {
+			host = new java.net.URI(url).getHost();
+		} catch (Exception e) {
+			host = null;
+		}
+		if (host == null)
+			host = url;
+
+		Semaphore permit = hostPermits.get(host);
+		if (permit == null) {
+			Semaphore newPermit = new Semaphore(maxPerHost);
+			permit = hostPermits.putIfAbsent(host, newPermit);
+			if (permit == null)
+				permit = newPermit;
+		}
+		return permit;
+	}
+}
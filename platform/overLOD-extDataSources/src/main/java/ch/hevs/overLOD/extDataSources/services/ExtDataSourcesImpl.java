@@ -26,8 +26,12 @@ import java.io.OutputStream;
 import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,6 +44,7 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.entity.ContentProducer;
 import org.apache.http.entity.EntityTemplate;
 import org.apache.http.util.EntityUtils;
@@ -53,8 +58,14 @@ import org.apache.marmotta.ldclient.exception.DataRetrievalException;
 import org.apache.marmotta.ldclient.model.ClientResponse;
 import org.apache.marmotta.ldclient.services.ldclient.LDClient;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.triplestore.ContextService;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
 import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
+import org.openrdf.model.BNode;
 import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.LinkedHashModel;
 import org.openrdf.query.BooleanQuery;
 import org.openrdf.query.GraphQuery;
 import org.openrdf.query.GraphQueryResult;
@@ -62,31 +73,30 @@ import org.openrdf.query.QueryLanguage;
 import org.openrdf.query.QueryResults;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.RDFWriter;
 import org.openrdf.rio.Rio;
 import org.openrdf.rio.UnsupportedRDFormatException;
+import org.openrdf.rio.helpers.StatementCollector;
 import org.slf4j.Logger;
 import org.topbraid.spin.constraints.ConstraintViolation;
-import org.topbraid.spin.constraints.SPINConstraints;
 import org.topbraid.spin.system.SPINLabels;
 import org.topbraid.spin.system.SPINModuleRegistry;
-import org.topbraid.spin.vocabulary.SP;
-import org.topbraid.spin.vocabulary.SPIN;
-import org.topbraid.spin.vocabulary.SPL;
 
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
 import com.google.common.io.ByteStreams;
-import com.hp.hpl.jena.graph.Graph;
-import com.hp.hpl.jena.graph.compose.MultiUnion;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.util.FileUtils;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
@@ -96,6 +106,7 @@ import ch.hevs.overLOD.extDataSources.EDSParams.EDSParams;
 import ch.hevs.overLOD.extDataSources.EDSParams.EDSParamsList;
 import ch.hevs.overLOD.extDataSources.api.ExtDataSources;
 import ch.hevs.overLOD.extDataSources.exceptions.ExtDataSourcesException;
+import ch.hevs.overLOD.extDataSources.services.ConstraintsValidator.CompiledConstraints;
 
 /**
  * Default Implementation of {@link ExtDataSources}
@@ -125,6 +136,12 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 	@Inject
 	private ConfigurationService configurationService;
 
+	@Inject
+	private SesameService sesameService;
+
+	@Inject
+	private ContextService contextService;
+
 	private EDSParamsList cacheEDSParamsList = null;
 
 	private static final String URL_UPLOAD_SERVICE = "/import/upload";
@@ -138,10 +155,14 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 	String EDSFiltersFolder = null;
 	
 	Model modelSpinTemplates = null;
+	// replaced when the validation configuration changes, while imports may still be validating with the previous one
+	volatile ConstraintsValidator constraintsValidator = null;
 
     // From the module configuration
 	boolean spinTemplateFileReload = false ; // will also be set to true if the name of the template file was changed in the config
 	String spinTemplateFileName = null ;
+	boolean importStreaming = true ; // import directly in the local store instead of uploading to the import web service
+	int importBatchSize = 10000 ; // number of statements per transaction for the streaming import
 	
 	@PostConstruct
 	public void initialize() {
@@ -283,6 +304,21 @@ public class ExtDataSourcesImpl implements ExtDataSources {
     	log.debug("EDS configuration 'dataValidation_SPINTemplateFile_ForceReload': {}", spinTemplateFileReload) ;
     	log.debug("EDS configuration 'dataValidation_SPINTemplateFile': {}", newSpinTemplateFileName) ;
 
+    	int validationThreads = configurationService.getIntConfiguration("EDS.dataValidation_threads", 4);
+    	int validationChunkSize = configurationService.getIntConfiguration("EDS.dataValidation_chunkSize", 0);
+    	ConstraintsValidator previousValidator = constraintsValidator;
+    	if (previousValidator == null || previousValidator.getThreads() != validationThreads || previousValidator.getChunkSize() != validationChunkSize)
+    	{
+    		constraintsValidator = new ConstraintsValidator(validationThreads, validationChunkSize);
+    		// waits for the validations in progress on the previous validator
+    		if (previousValidator != null)
+    			previousValidator.shutdown();
+    	}
+
+    	importStreaming = configurationService.getBooleanConfiguration("EDS.import_streaming", true);
+    	importBatchSize = configurationService.getIntConfiguration("EDS.import_batchSize", 10000);
+    	log.debug("EDS configuration 'import_streaming': {}, 'import_batchSize': {}", importStreaming, importBatchSize) ;
+
     	if (spinTemplateFileReload || spinTemplateFileName == null || !newSpinTemplateFileName.equals(spinTemplateFileName))
     	{
         	spinTemplateFileName = newSpinTemplateFileName ;
@@ -305,12 +341,19 @@ public class ExtDataSourcesImpl implements ExtDataSources {
      */
     public void configurationEventHandler(@Observes ConfigurationChangedEvent event) 
     {
-   		if (event.containsChangedKeyWithPrefix("EDS.dataValidation")) {
+   		if (event.containsChangedKeyWithPrefix("EDS.dataValidation") || event.containsChangedKeyWithPrefix("EDS.import")) {
    	    	log.debug("EDS: Reloading configuration - change detected");
    			readConfiguration() ;
     	}
    	}
     
+    @PreDestroy
+    public void shutdown() {
+    	ConstraintsValidator validator = constraintsValidator;
+    	if (validator != null)
+    		validator.shutdown();
+    }
+
     /**
      * Change the configuration value for "EDS.dataValidation_SPINTemplateFile_ForceReload"
      * @param value true/false
@@ -325,7 +368,10 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 	 */
 	@Override
 	public TreeMap<String, EDSParams> getEDSParamsList() throws ExtDataSourcesException {
-		return cacheEDSParamsList.getList();
+		synchronized (this) // the list is modified under the same lock, return a copy that can be iterated safely
+		{
+			return new TreeMap<String, EDSParams>(cacheEDSParamsList.getList());
+		}
 	}
 
 	/*
@@ -416,17 +462,44 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 	public boolean setEDSParamsTimeStamp(String context, String timeStamp) throws ExtDataSourcesException {
 		log.debug("update timeStep of EDSParams identified by context:{}", context);
 
-		if (cacheEDSParamsList.setEDSParamsTimeStamp(context, timeStamp)) {
-			serializeObjectToJSON(cacheEDSParamsList, EDSParamsListFile);
-			log.debug("saving EDSParams list after a timeStamp update...done!");
-			return true;
-		} else {
-			log.debug("can't set the EDS timeStamp");
-			return false;
+		synchronized (this) // to avoid concurrent access to the object and while saving the serialization
+		{
+			if (cacheEDSParamsList.setEDSParamsTimeStamp(context, timeStamp)) {
+				serializeObjectToJSON(cacheEDSParamsList, EDSParamsListFile);
+				log.debug("saving EDSParams list after a timeStamp update...done!");
+				return true;
+			} else {
+				log.debug("can't set the EDS timeStamp");
+				return false;
+			}
 		}
 
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see ch.hevs.overLOD.extDataSources.api.ExtDataSources#setEDSParamsRefreshInterval(java.lang.String, long)
+	 */
+	@Override
+	public boolean setEDSParamsRefreshInterval(String context, long refreshInterval) throws ExtDataSourcesException {
+		log.debug("update refreshInterval of EDSParams identified by context:{} to {}", context, refreshInterval);
+
+		if (refreshInterval < 0)
+			throw new ExtDataSourcesException("The refresh interval can't be negative: " + refreshInterval);
+
+		synchronized (this) // to avoid concurrent access to the object and while saving the serialization
+		{
+			if (cacheEDSParamsList.setEDSParamsRefreshInterval(context, refreshInterval)) {
+				serializeObjectToJSON(cacheEDSParamsList, EDSParamsListFile);
+				log.debug("saving EDSParams list after a refreshInterval update...done!");
+				return true;
+			} else {
+				log.debug("can't set the EDS refreshInterval");
+				return false;
+			}
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see ch.hevs.overLOD.extDataSources.api.ExtDataSources#getEDSParams(java.lang.String)
@@ -502,6 +575,11 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 		}
 
 		log.debug("EDS Constraints template file size: {}", modelSpinTemplates.size());
+
+		// constraints compiled with the previous template model are obsolete
+		ConstraintsValidator validator = constraintsValidator;
+		if (validator != null)
+			validator.invalidate();
 	}
 
 	/**
@@ -554,6 +632,109 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 	 */
 	@Override
 	public String importWithLDClient(String marmottaURL, String headerAuth, String EDSType, String url, String context, String filterFileName, String validationFileName) throws ExtDataSourcesException {
+		if (importStreaming)
+			return importWithLDClientStreaming(url, context, filterFileName, validationFileName);
+		else
+			return importWithLDClientUpload(marmottaURL, headerAuth, url, context, filterFileName, validationFileName);
+	}
+
+	/**
+	 * Streaming import: the statements retrieved by LDClient flow through the optional filter
+	 * straight into the context of the local store, in batches of importBatchSize statements
+	 * (see ContextBatchWriter). The filter query is evaluated only once and the triples are counted on the fly.
+	 * 
+	 * If a validation is requested, the (filtered) statements are first collected
+	 * as SPIN needs the complete data set, and written to the store only if the validation succeeds.
+	 * 
+	 * Batches committed before an error remain in the context: the import is not atomic, as a single transaction
+	 * would grow with the size of the data set. The context then holds a part of the data, whose size is logged
+	 * and reported in the exception; importing the EDS again completes it, as statements already in the context are
+	 * not duplicated (except statements with blank nodes).
+	 * 
+	 * @see #importWithLDClient(String, String, String, String, String, String, String)
+	 */
+	private String importWithLDClientStreaming(String url, String context, String filterFileName, String validationFileName) throws ExtDataSourcesException {
+		log.debug("importWithLDClient (streaming):{} -> {}", url, context);
+
+		LDClient ldclient = new LDClient();
+		ContextBatchWriter writer = null;
+
+		try {
+			ClientResponse result = ldclient.retrieveResource(url); // look for a provider for that resource
+
+			writer = new ContextBatchWriter(sesameService.getRepository(), contextService.createContext(context), importBatchSize);
+
+			if (validationFileName != null) {
+				org.openrdf.model.Model filteredData = new LinkedHashModel();
+				emitStatements(result.getData(), filterFileName, new StatementCollector(filteredData));
+				log.debug("Size of the data to be validated: " + filteredData.size());
+
+				dataConstraintsValidation(filteredData, validationFileName);
+
+				emitStatements(filteredData, null, writer);
+			} else {
+				log.debug("Import with no constraint validation");
+				emitStatements(result.getData(), filterFileName, writer);
+			}
+		} catch (Exception e) {
+			long committed = 0;
+			if (writer != null) {
+				writer.rollback();
+				committed = writer.getCommittedCount();
+			}
+
+			if (committed > 0) {
+				log.error("importWithLDClient exception: {} - {} triples were already committed to the context {}", e.getMessage(), committed, context);
+				throw new ExtDataSourcesException(e.getMessage() + " (" + committed + " triples were already imported in the context '" + context + "')");
+			}
+
+			log.error("importWithLDClient exception: " + e.getMessage());
+			throw new ExtDataSourcesException(e.getMessage());
+		} finally {
+			ldclient.shutdown();
+		}
+
+		return "Data successfully imported using the LDClient (" + writer.getCount() + " triples)";
+	}
+
+	/**
+	 * Send the statements of a data set to an RDFHandler, through the SPARQL CONSTRUCT
+	 * filter if one is specified
+	 * 
+	 * @param data the data set retrieved by LDClient
+	 * @param filterFileName the filter file name, or null to send the full data set
+	 * @param handler the handler receiving the statements
+	 */
+	private void emitStatements(org.openrdf.model.Model data, String filterFileName, RDFHandler handler) throws Exception {
+		if (filterFileName == null) {
+			handler.startRDF();
+			for (Statement st : data)
+				handler.handleStatement(st);
+			handler.endRDF();
+			return;
+		}
+
+		log.debug("Import with filter: {}", filterFileName);
+		String sparqlQuery = readFilterQuery(filterFileName);
+
+		// the data must be wrapped in a repository to be queried
+		RepositoryConnection connection = ModelCommons.asRepository(data).getConnection();
+		try {
+			connection.begin();
+			connection.prepareGraphQuery(QueryLanguage.SPARQL, sparqlQuery).evaluate(handler);
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Import using an intermediate serialization uploaded to Marmotta's import web service
+	 * (the behaviour before the streaming import, used when "EDS.import_streaming" is false)
+	 * 
+	 * @see #importWithLDClient(String, String, String, String, String, String, String)
+	 */
+	private String importWithLDClientUpload(String marmottaURL, String headerAuth, String url, String context, String filterFileName, String validationFileName) throws ExtDataSourcesException {
 		log.debug("importWithLDClient:{} -> {}", url, context);
 
 		long importedTriplesCount = 0;
@@ -563,8 +744,6 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 		// providers we created as RDFFile
 		LDClient ldclient = new LDClient();
 
-		Set<DataProvider> providers = ldclient.getDataProviders();
-
 		RepositoryConnection connection = null;
 
 		try {
@@ -637,6 +816,160 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 		return "Data successfully imported using the LDClient (" + importedTriplesCount + " triples)";
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see ch.hevs.overLOD.extDataSources.api.ExtDataSources#refreshEDS(java.lang.String)
+	 */
+	@Override
+	public String refreshEDS(String context) throws ExtDataSourcesException {
+		EDSParams params = getEDSParams(context);
+		if (params == null)
+			throw new ExtDataSourcesException("Context '" + context + "' not found in the list of EDS");
+
+		log.debug("refreshEDS:{} -> {}", params.url, context);
+
+		LDClient ldclient = new LDClient();
+		try {
+			// a single conditional GET: the source is only downloaded if it was modified since the last retrieval
+			Date lastModified = params.lastModified != null ? DateUtils.parseDate(params.lastModified) : null;
+			ClientResponse result = ldclient.retrieveResource(params.url, params.etag, lastModified);
+			if (result == null)
+				throw new ExtDataSourcesException("No LDClient data provider found for '" + params.url + "'");
+
+			if (result.isNotModified()) {
+				saveRefreshState(params, result, params.contentHash);
+				return "EDS not modified since the last retrieval: " + context;
+			}
+
+			org.openrdf.model.Model data = new LinkedHashModel();
+			emitStatements(result.getData(), params.filterFileName, new StatementCollector(data));
+
+			String contentHash = contentHash(data);
+			if (contentHash.equals(params.contentHash)) {
+				saveRefreshState(params, result, contentHash);
+				return "EDS content unchanged since the last retrieval: " + context;
+			}
+
+			if (params.validationFileName != null)
+				dataConstraintsValidation(data, params.validationFileName);
+
+			String deltaMsg = writeDelta(contextService.createContext(context), data);
+
+			saveRefreshState(params, result, contentHash);
+
+			return "EDS refreshed: " + context + " (" + deltaMsg + ")";
+		} catch (ExtDataSourcesException e) {
+			throw e;
+		} catch (Exception e) {
+			log.error("refreshEDS exception: " + e.getMessage());
+			throw new ExtDataSourcesException(e.getMessage());
+		} finally {
+			ldclient.shutdown();
+		}
+	}
+
+	/**
+	 * Replace the content of a context by new data, writing only the difference:
+	 * the statements of the context not found in the new data are removed, the remaining new statements are added.
+	 * Both steps are committed in batches of importBatchSize statements.
+	 * 
+	 * @param context the context to update
+	 * @param data the new content, the statements already in the context are removed from it
+	 * @return a message with the number of removed and added statements
+	 */
+	private String writeDelta(URI context, org.openrdf.model.Model data) throws Exception {
+		List<Statement> removed = new ArrayList<Statement>();
+
+		RepositoryConnection connection = sesameService.getConnection();
+		try {
+			connection.begin();
+			RepositoryResult<Statement> existing = connection.getStatements(null, null, null, false, context);
+			try {
+				while (existing.hasNext()) {
+					Statement st = existing.next();
+					if (!data.remove(st.getSubject(), st.getPredicate(), st.getObject()))
+						removed.add(st);
+				}
+			} finally {
+				existing.close();
+			}
+
+			int pending = 0;
+			for (Statement st : removed) {
+				connection.remove(st, context);
+				if (++pending >= importBatchSize) {
+					connection.commit();
+					connection.begin();
+					pending = 0;
+				}
+			}
+			connection.commit();
+		} catch (RepositoryException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.close();
+		}
+
+		ContextBatchWriter writer = new ContextBatchWriter(sesameService.getRepository(), context, importBatchSize);
+		try {
+			emitStatements(data, null, writer);
+		} catch (Exception e) {
+			writer.rollback();
+			throw e;
+		}
+
+		return removed.size() + " triples removed, " + writer.getCount() + " triples added";
+	}
+
+	/**
+	 * Order independent hash of a set of statements
+	 * Blank nodes are hashed without their identifier, as it changes from one retrieval to the other
+	 * 
+	 * @param data the statements
+	 * @return an hexadecimal hash
+	 */
+	private String contentHash(org.openrdf.model.Model data) throws NoSuchAlgorithmException {
+		MessageDigest digest = MessageDigest.getInstance("MD5");
+		long sum = 0, xor = 0;
+
+		for (Statement st : data) {
+			digest.update(hashString(st.getSubject()).getBytes(Charsets.UTF_8));
+			digest.update(hashString(st.getPredicate()).getBytes(Charsets.UTF_8));
+			digest.update(hashString(st.getObject()).getBytes(Charsets.UTF_8));
+			long h = ByteBuffer.wrap(digest.digest()).getLong();
+			sum += h;
+			xor ^= h;
+		}
+
+		return data.size() + "-" + Long.toHexString(sum) + Long.toHexString(xor);
+	}
+
+	private String hashString(Value value) {
+		if (value instanceof BNode)
+			return "_:";
+		else
+			return value.toString() + " "; // the literal toString() includes its language and datatype
+	}
+
+	/**
+	 * Save the refresh information of an EDS: time of the refresh, HTTP validators and content hash
+	 */
+	private void saveRefreshState(EDSParams params, ClientResponse response, String contentHash) throws ExtDataSourcesException {
+		synchronized (this) // to avoid concurrent access to the object and while saving the serialization
+		{
+			// a "304 Not Modified" may omit the validators, keep the previous ones in that case
+			if (!response.isNotModified() || response.getEtag() != null)
+				params.etag = response.getEtag();
+			if (!response.isNotModified() || response.getLastModified() != null)
+				params.lastModified = response.getLastModified() != null ? DateUtils.formatDate(response.getLastModified()) : null;
+			params.lastRefresh = System.currentTimeMillis();
+			params.contentHash = contentHash;
+
+			serializeObjectToJSON(cacheEDSParamsList, EDSParamsListFile);
+		}
+	}
+
 	/**
 	 * This method is not used yet, but could serve to extract the user/pwd
 	 * from the authentication parameter, and set those value to a clientConfiguration
@@ -722,7 +1055,8 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 	 * - rdfDataInputStream: the rdfGraph to be checked (passed as parameter)
 	 * 
 	 * All those files are joined in a common model, to run the SPIN constraints
-	 * checking
+	 * checking. The join of the template and constraints files is cached per constraints file,
+	 * and the data is checked as a whole, or in chunks if "EDS.dataValidation_chunkSize" is set (see ConstraintsValidator)
 	 * 
 	 * This method is based on SPIN examples files
 	 * 
@@ -737,28 +1071,6 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 	 */
 
 	public void dataConstraintsValidation(InputStream rdfDataInputStream, String rdfDataFormat, String constraintsFileName) throws ExtDataSourcesException {
-		log.debug("data constraints validation with constraintsFile: {}", constraintsFileName);
-
-		if (modelSpinTemplates == null)
-			throw new ExtDataSourcesException("modelSpinTemplates wasn't loaded properly, data constraints validation can't be performed");
-
-		// Load Constraints/Shapes
-		Model modelConstraints = ModelFactory.createDefaultModel();
-
-		String spinConstraintsFile = null;
-		try {
-			FileInputStream inputStream = new FileInputStream(spinConstraintsFolder + constraintsFileName);
-			modelConstraints.read(inputStream, null, FileUtils.langTurtle);
-			inputStream.close();
-		} catch (Exception e) {
-			throw new ExtDataSourcesException("Data validation failed - unable to load the constraints file: " + spinConstraintsFolder
-					+ constraintsFileName);
-		}
-
-		if (modelConstraints.size() == 0)
-			throw new ExtDataSourcesException("Data validation failed - the loaded constraints file model has a size of 0: " + spinConstraintsFolder
-					+ constraintsFileName);
-
 		// Model for the data to be tested
 		Model modelDataToBeTested = ModelFactory.createDefaultModel();
 
@@ -769,24 +1081,59 @@ public class ExtDataSourcesImpl implements ExtDataSources {
 					+ constraintsFileName);
 		}
 
-		if (modelConstraints.size() == 0)
-			throw new ExtDataSourcesException("Data validation failed - the loaded rdf data model has a size of 0: " + spinConstraintsFolder
-					+ constraintsFileName);
+		dataConstraintsValidation(modelDataToBeTested, constraintsFileName);
+	}
 
-		// Create Model for the base graph with its imports
-		MultiUnion union = new MultiUnion(new Graph[] { modelDataToBeTested.getGraph(), modelSpinTemplates.getGraph(), modelConstraints.getGraph(),
-				SPL.getModel().getGraph(), SPIN.getModel().getGraph(), SP.getModel().getGraph() });
+	/**
+	 * Check one rdf data set (passed as a Jena Model) againts a SPIN constraints file
+	 * 
+	 * @see #dataConstraintsValidation(InputStream, String, String)
+	 * @param modelDataToBeTested the rdfGraph to be checked
+	 * @param constraintsFileName name of a file containing the constraints,
+	 *        available in "marmotta-home\EDS\SPIN\Constraints\" folder
+	 * @throws ExtDataSourcesException if constraints violation are detected, or another error occurs
+	 */
+	public void dataConstraintsValidation(Model modelDataToBeTested, String constraintsFileName) throws ExtDataSourcesException {
+		log.debug("data constraints validation with constraintsFile: {}", constraintsFileName);
 
-		Model unionModel = ModelFactory.createModelForGraph(union);
+		// Run all constraints
+		ConstraintsValidator validator = constraintsValidator;
+		reportViolations(validator.validate(modelDataToBeTested, getCompiledConstraints(validator, constraintsFileName)));
+	}
 
-		// Register locally defined functions (none exist, but may in the
-		// future)
-		SPINModuleRegistry.get().registerAll(unionModel, null);
+	/**
+	 * Check one rdf data set (passed as a Sesame Model) againts a SPIN constraints file
+	 * When the data is checked in chunks, the chunks are built directly from the Sesame model, without
+	 * copying the whole data set in a Jena model (see ConstraintsValidator)
+	 * 
+	 * @see #dataConstraintsValidation(InputStream, String, String)
+	 * @param modelDataToBeTested the rdfGraph to be checked
+	 * @param constraintsFileName name of a file containing the constraints,
+	 *        available in "marmotta-home\EDS\SPIN\Constraints\" folder
+	 * @throws ExtDataSourcesException if constraints violation are detected, or another error occurs
+	 */
+	public void dataConstraintsValidation(org.openrdf.model.Model modelDataToBeTested, String constraintsFileName) throws ExtDataSourcesException {
+		log.debug("data constraints validation with constraintsFile: {}", constraintsFileName);
 
 		// Run all constraints
-		List<ConstraintViolation> cvs = SPINConstraints.check(unionModel, null);
+		ConstraintsValidator validator = constraintsValidator;
+		reportViolations(validator.validate(modelDataToBeTested, getCompiledConstraints(validator, constraintsFileName)));
+	}
 
-		// Run constraints on a single instance only
+	/**
+	 * Get the Constraints/Shapes of a constraints file, compiled once per constraints file (see ConstraintsValidator)
+	 */
+	private CompiledConstraints getCompiledConstraints(ConstraintsValidator validator, String constraintsFileName) throws ExtDataSourcesException {
+		if (modelSpinTemplates == null)
+			throw new ExtDataSourcesException("modelSpinTemplates wasn't loaded properly, data constraints validation can't be performed");
+
+		return validator.getCompiledConstraints(new File(spinConstraintsFolder + constraintsFileName), modelSpinTemplates);
+	}
+
+	/**
+	 * @throws ExtDataSourcesException with all violations in the text message, if any
+	 */
+	private void reportViolations(List<ConstraintViolation> cvs) throws ExtDataSourcesException {
 		if (cvs.size() > 0) {
 			String violationsList = null;
 
@@ -63,6 +63,7 @@ import org.slf4j.Logger;
 
 import ch.hevs.overLOD.extDataSources.EDSParams.EDSParams;
 import ch.hevs.overLOD.extDataSources.EDSParams.StringListForWSReturn;
+import ch.hevs.overLOD.extDataSources.api.EDSRefreshService;
 import ch.hevs.overLOD.extDataSources.api.ExtDataSources;
 import ch.hevs.overLOD.extDataSources.exceptions.ExtDataSourcesException;
 
@@ -84,6 +85,7 @@ import ch.hevs.overLOD.extDataSources.exceptions.ExtDataSourcesException;
  * 
  * So far EDS parameters are read only and can be set only when creating the EDS
  * 	to change the parameters, the EDS must be deleted and a new one created by the user
+ * 	except the refresh interval, that can be changed with PUT /EDS/refresh/interval
  * 
  * See the module's about.html for more information 
  *
@@ -102,6 +104,9 @@ public class ExtDataSourcesWebService {
 
     @Inject
     private ContextService contextService;
+
+    @Inject
+    private EDSRefreshService refreshService;
     
     @Context
     UriInfo uri ;
@@ -136,9 +141,10 @@ public class ExtDataSourcesWebService {
      * @param url address of the file to be uploaded
      * @param filterFileName name of file (including file extension) that will allow to import only part of the data using a SPARQL CONSTRUCT query. This file must be available in the folder %marmotta-home%/EDS/EDSFilters/. (OPTIONAL - don't specify it to import the all data)
      * @param validationFileName name of file (including file extension) that will allow to check the data validity using SPIN constraints. This file must be available in the folder %marmotta-home%/EDS/SPIN/Constraints/. (OPTIONAL - don't specify it to import data without validation)
+     * @param refreshInterval number of seconds between two scheduled refreshes of this EDS (OPTIONAL - don't specify it to use the "EDS.refresh_interval" configuration)
      * 
      * @HTTP 200 in case the query was executed successfully
-     * @HTTP 400 if a querystring parameter is missing
+     * @HTTP 400 if a querystring parameter is missing or invalid
      * @HTTP 500 in case there was an error during the execution
      * @HTTP 502 in case there was an error while accessing the specified URL
      * @return a string which is either a validation message or an error message
@@ -153,9 +159,9 @@ public class ExtDataSourcesWebService {
     @POST
     @Path("/EDSParams")
     public Response addEDS(@HeaderParam("Authorization") String headerAuth, @HeaderParam("Content-Type") String contentType, @QueryParam("EDSType") String EDSType, @QueryParam("url") String url, @QueryParam("context") String context,
-    		@QueryParam("filterFileName") String filterFileName, @QueryParam("validationFileName") String validationFileName) 
+    		@QueryParam("filterFileName") String filterFileName, @QueryParam("validationFileName") String validationFileName, @QueryParam("refreshInterval") long refreshInterval) 
     {
-        log.debug("POST addEDS Authorization:{}, Content-type:{}, EDSType:{}, url:{} context:{} filterFileName:{} validationFileName:{}", headerAuth, contentType, EDSType, url, context, filterFileName, validationFileName);
+        log.debug("POST addEDS Authorization:{}, Content-type:{}, EDSType:{}, url:{} context:{} filterFileName:{} validationFileName:{} refreshInterval:{}", headerAuth, contentType, EDSType, url, context, filterFileName, validationFileName, refreshInterval);
        
         String importWithLDClientResultString = "" ;
         
@@ -165,6 +171,8 @@ public class ExtDataSourcesWebService {
             return Response.status(Status.BAD_REQUEST).entity("Web Service call error: missing 'url' parameter").build();
         if (StringUtils.isBlank(EDSType))
             return Response.status(Status.BAD_REQUEST).entity("Web Service call error: missing 'EDSType' parameter").build();
+        if (refreshInterval < 0)
+            return Response.status(Status.BAD_REQUEST).entity("Web Service call error: 'refreshInterval' can't be negative").build();
         
         // Ensure that the context for the new EDS don't exist
         if (contextService.getContext(context) != null) // if the context don't exist, null is returned
@@ -191,6 +199,8 @@ public class ExtDataSourcesWebService {
         // If import done or started, save the EDS parameters
         try {
         	edsService.addEDSParams(EDSType, contentType, url, context, String.valueOf(timeStamp), filterFileName, validationFileName) ;        	
+        	if (refreshInterval > 0)
+        		edsService.setEDSParamsRefreshInterval(context, refreshInterval) ;
         	// return the confirmation string returned by importWithLD
 			return Response.ok(importWithLDClientResultString).build();
 		} catch (ExtDataSourcesException e) {
@@ -490,6 +500,74 @@ public class ExtDataSourcesWebService {
         return Response.ok().entity(updatedEDSList).build();
     }
     
+    /**
+     * Refresh an External Data Source, writing only the difference with the current content of its context
+     * The refresh is skipped if the source is unchanged (see ExtDataSources.refreshEDS())
+     * 
+     * @param context Named Graph that identifies the EDS and correspond to its context in the store
+     * @HTTP 200 in case the refresh was executed successfully
+     * @HTTP 400 if a querystring parameter is missing
+     * @HTTP 500 in case there was an error during the execution
+     * @return a string which is either a validation message or an error message
+     */
+    @PUT
+    @Path("/refresh")
+    public Response refreshEDS(@QueryParam("context") String context) {
+        log.debug("PUT refreshEDS context:{}", context);
+
+        if (StringUtils.isBlank(context))
+            return Response.status(Status.BAD_REQUEST).entity("Web Service call error: missing 'context' parameter").build();
+
+        try {
+			return Response.ok(edsService.refreshEDS(context)).build();
+		} catch (ExtDataSourcesException e) {
+			return Response.status(Status.INTERNAL_SERVER_ERROR).entity(e.getMessage()).build();
+		}
+    }
+
+    /**
+     * Set the number of seconds between two scheduled refreshes of an External Data Source
+     * 
+     * @param context Named Graph that identifies the EDS and correspond to its context in the store
+     * @param refreshInterval seconds between two refreshes, 0 to use the "EDS.refresh_interval" configuration
+     * @HTTP 200 in case the interval was saved
+     * @HTTP 400 if a querystring parameter is missing or invalid
+     * @HTTP 404 if no EDS correspond to the context
+     * @HTTP 500 in case there was an error during the execution
+     */
+    @PUT
+    @Path("/refresh/interval")
+    public Response setRefreshInterval(@QueryParam("context") String context, @QueryParam("refreshInterval") Long refreshInterval) {
+        log.debug("PUT setRefreshInterval context:{} refreshInterval:{}", context, refreshInterval);
+
+        if (StringUtils.isBlank(context))
+            return Response.status(Status.BAD_REQUEST).entity("Web Service call error: missing 'context' parameter").build();
+        if (refreshInterval == null || refreshInterval < 0)
+            return Response.status(Status.BAD_REQUEST).entity("Web Service call error: missing or negative 'refreshInterval' parameter").build();
+
+        try {
+			if (!edsService.setEDSParamsRefreshInterval(context, refreshInterval))
+				return Response.status(Status.NOT_FOUND).entity("Error - No EDS correspond to the context '" + context + "'").build();
+		} catch (ExtDataSourcesException e) {
+			return Response.status(Status.INTERNAL_SERVER_ERROR).entity(e.getMessage()).build();
+		}
+
+        return Response.ok("The refresh interval of the EDS was saved").build();
+    }
+
+    /**
+     * Get the result of the last scheduled refresh of each External Data Source
+     * @return Return a map of EDS contexts with the message of their last scheduled refresh
+     */
+    @GET
+    @Path("/refresh/status")
+    @Produces("application/json")
+    public Response getRefreshStatus() {
+        log.debug("GET getRefreshStatus");
+
+        return Response.ok().entity(refreshService.getLastResults()).build();
+    }
+
     /**
      * Get the list of data filter files, files that allow to import only a part of an external data source
      * @return Return a Array of string that is the list of the names of the existing filter files
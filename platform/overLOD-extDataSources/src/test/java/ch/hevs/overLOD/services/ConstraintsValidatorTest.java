@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.services;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.topbraid.spin.constraints.ConstraintViolation;
+import org.topbraid.spin.system.SPINModuleRegistry;
+
+import com.google.common.io.ByteStreams;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.FileUtils;
+
+import ch.hevs.overLOD.extDataSources.services.ConstraintsValidator;
+import ch.hevs.overLOD.extDataSources.services.ConstraintsValidator.CompiledConstraints;
+
+/**
+ * Test the cache of compiled constraints, and that the parallel and chunked validations
+ * report the same violations as a validation of the whole data set by a single thread
+ */
+public class ConstraintsValidatorTest {
+
+	private static final String SPIN_FOLDER = "/EDS_for_Marmotta_home/SPIN/";
+
+	private static final String DATA =
+			"@prefix foaf: <http://xmlns.com/foaf/0.1/> .\n" +
+			"@prefix rel: <http://purl.org/vocab/relationship/> .\n" +
+			"@prefix ex: <http://example.org/> .\n" +
+			"ex:alice a foaf:Person ; foaf:title \"Madam\" ; foaf:family_name \"Wonderland\" ; foaf:name \"Alice\"@en , \"Alice\"@fr .\n" +
+			"ex:bob a foaf:Person ; foaf:title \"Mister\" ; foaf:family_name \"Bob\" ; foaf:name \"Bob\"@en ; rel:worksWith ex:alice .\n" +
+			"ex:carol a foaf:Person ; foaf:title \"M.\" ; foaf:family_name \"Carol\" ; foaf:name \"Carole\"@fr ; rel:worksWith ex:acme .\n" +
+			"ex:acme a foaf:Organization .\n" +
+			"ex:dave a foaf:Person ; foaf:title \"Mm\" , \"Mister\" ; foaf:family_name \"Dave\" ; foaf:name \"Dave\"@en , \"Dave\"@fr .\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Model modelSpinTemplates;
+
+	private List<ConstraintsValidator> validators = new ArrayList<ConstraintsValidator>();
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		SPINModuleRegistry.get().init();
+
+		modelSpinTemplates = ModelFactory.createDefaultModel();
+		InputStream in = ConstraintsValidatorTest.class.getResourceAsStream(SPIN_FOLDER + "Templates/OSLC_ResourceShapes_Constraints.spin.ttl");
+		try {
+			modelSpinTemplates.read(in, null, FileUtils.langTurtle);
+		} finally {
+			in.close();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (ConstraintsValidator validator : validators)
+			validator.shutdown();
+	}
+
+	@Test
+	public void testCompiledConstraintsAreCached() throws Exception {
+		ConstraintsValidator validator = validator(1, 0);
+		File constraintsFile = constraintsFile();
+
+		CompiledConstraints compiled = validator.getCompiledConstraints(constraintsFile, modelSpinTemplates);
+		Assert.assertSame(compiled, validator.getCompiledConstraints(constraintsFile, modelSpinTemplates));
+		Assert.assertSame(compiled, validator.getCompiledConstraints(new File(constraintsFile.getPath()), modelSpinTemplates));
+	}
+
+	@Test
+	public void testModifiedConstraintsFileIsCompiledAgain() throws Exception {
+		ConstraintsValidator validator = validator(1, 0);
+		File constraintsFile = constraintsFile();
+
+		CompiledConstraints compiled = validator.getCompiledConstraints(constraintsFile, modelSpinTemplates);
+		Assert.assertTrue(constraintsFile.setLastModified(constraintsFile.lastModified() - 10000));
+
+		CompiledConstraints recompiled = validator.getCompiledConstraints(constraintsFile, modelSpinTemplates);
+		Assert.assertNotSame(compiled, recompiled);
+		Assert.assertSame(recompiled, validator.getCompiledConstraints(constraintsFile, modelSpinTemplates));
+	}
+
+	@Test
+	public void testInvalidateAndTemplatesChange() throws Exception {
+		ConstraintsValidator validator = validator(1, 0);
+		File constraintsFile = constraintsFile();
+
+		CompiledConstraints compiled = validator.getCompiledConstraints(constraintsFile, modelSpinTemplates);
+		validator.invalidate();
+		CompiledConstraints recompiled = validator.getCompiledConstraints(constraintsFile, modelSpinTemplates);
+		Assert.assertNotSame(compiled, recompiled);
+
+		Model otherTemplates = ModelFactory.createDefaultModel().add(modelSpinTemplates);
+		Assert.assertNotSame(recompiled, validator.getCompiledConstraints(constraintsFile, otherTemplates));
+	}
+
+	@Test
+	public void testParallelAndChunkedValidationsMatchWholeValidation() throws Exception {
+		File constraintsFile = constraintsFile();
+
+		List<String> expected = validate(validator(1, 0), constraintsFile);
+		// Madam is not an allowed title, Wonderland is too long, the french name of bob and the english name of carol
+		// are missing, carol works with an organization and dave has two titles
+		Assert.assertEquals(expected.toString(), 6, expected.size());
+
+		ConstraintsValidator parallel = validator(4, 0);
+		Assert.assertEquals(4, parallel.getCompiledConstraints(constraintsFile, modelSpinTemplates).getParts());
+		Assert.assertEquals(expected, validate(parallel, constraintsFile));
+
+		Assert.assertEquals(expected, validate(validator(1, 1), constraintsFile));
+		Assert.assertEquals(expected, validate(validator(3, 2), constraintsFile));
+	}
+
+	@Test
+	public void testValidationAfterShutdown() throws Exception {
+		File constraintsFile = constraintsFile();
+		List<String> expected = validate(validator(1, 0), constraintsFile);
+
+		ConstraintsValidator validator = validator(4, 0);
+		CompiledConstraints compiled = validator.getCompiledConstraints(constraintsFile, modelSpinTemplates);
+		validator.shutdown();
+
+		// a validation started on a replaced validator still completes, on the calling thread
+		Assert.assertEquals(expected, violations(validator.validate(data(), compiled)));
+	}
+
+	private ConstraintsValidator validator(int threads, int chunkSize) {
+		ConstraintsValidator validator = new ConstraintsValidator(threads, chunkSize);
+		validators.add(validator);
+		return validator;
+	}
+
+	private List<String> validate(ConstraintsValidator validator, File constraintsFile) throws Exception {
+		return violations(validator.validate(data(), validator.getCompiledConstraints(constraintsFile, modelSpinTemplates)));
+	}
+
+	private static Model data() {
+		return ModelFactory.createDefaultModel().read(new StringReader(DATA), null, FileUtils.langTurtle);
+	}
+
+	/**
+	 * @return the violations as sorted "root: message" strings, to compare validations regardless of the order
+	 */
+	private static List<String> violations(List<ConstraintViolation> cvs) {
+		List<String> result = new ArrayList<String>();
+		for (ConstraintViolation cv : cvs)
+			result.add(cv.getRoot() + ": " + cv.getMessage());
+		Collections.sort(result);
+		return result;
+	}
+
+	private File constraintsFile() throws Exception {
+		File constraintsFile = folder.newFile("foaf_dummy_constraints.spin.ttl");
+		InputStream in = getClass().getResourceAsStream(SPIN_FOLDER + "Constraints/foaf_dummy_constraints.spin.ttl");
+		FileOutputStream out = new FileOutputStream(constraintsFile);
+		try {
+			ByteStreams.copy(in, out);
+		} finally {
+			in.close();
+			out.close();
+		}
+		return constraintsFile;
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.test.base.EmbeddedMarmotta;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.repository.RepositoryConnection;
+
+import ch.hevs.overLOD.extDataSources.api.EDSRefreshService;
+import ch.hevs.overLOD.extDataSources.api.ExtDataSources;
+
+/**
+ * Test the refresh of an EDS against a local HTTP source: conditional request, content hash,
+ * delta write, blank nodes, and the scheduled refresh with its per EDS interval and per host cap
+ */
+public class EDSRefreshServiceTest {
+
+    private static final String PREFIXES = "@prefix ex: <http://example.org/> .\n";
+
+    private static EmbeddedMarmotta marmotta;
+    private static ExtDataSources edsService;
+    private static EDSRefreshService refreshService;
+    private static SesameService sesameService;
+    private static ConfigurationService configurationService;
+
+    private static Server server;
+    private static String baseUrl;
+
+    // documents served by the local source, by path: content and ETag
+    private static final ConcurrentHashMap<String, String[]> documents = new ConcurrentHashMap<String, String[]>();
+    private static final AtomicInteger notModified = new AtomicInteger();
+    private static final AtomicInteger running = new AtomicInteger();
+    private static final AtomicInteger maxRunning = new AtomicInteger();
+    private static volatile long delay = 0;
+
+    private List<String> contexts = new ArrayList<String>();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        marmotta = new EmbeddedMarmotta();
+        edsService = marmotta.getService(ExtDataSources.class);
+        refreshService = marmotta.getService(EDSRefreshService.class);
+        sesameService = marmotta.getService(SesameService.class);
+        configurationService = marmotta.getService(ConfigurationService.class);
+
+        ServletContextHandler handler = new ServletContextHandler();
+        handler.addServlet(new ServletHolder(new SourceServlet()), "/*");
+        server = new Server(0);
+        server.setHandler(handler);
+        server.start();
+        baseUrl = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.stop();
+        marmotta.shutdown();
+    }
+
+    @After
+    public void deleteEDS() throws Exception {
+        refreshService.shutdown();
+        for (String context : contexts)
+            edsService.deleteEDSParams(context);
+        documents.clear();
+        delay = 0;
+    }
+
+    @Test
+    public void testRefreshUnchanged() throws Exception {
+        String context = addEDS("unchanged", "\"v1\"", "ex:a ex:p \"a\" . ex:b ex:p \"b\" .");
+
+        String result = edsService.refreshEDS(context);
+        Assert.assertTrue(result, result.contains("0 triples removed, 2 triples added"));
+        Assert.assertEquals(2, size(context));
+
+        // the source answers the conditional request with "304 Not Modified"
+        int before = notModified.get();
+        result = edsService.refreshEDS(context);
+        Assert.assertTrue(result, result.startsWith("EDS not modified"));
+        Assert.assertEquals(before + 1, notModified.get());
+
+        // a new ETag for the same content: the content hash is unchanged, nothing is written
+        setDocument("unchanged", "\"v2\"", "ex:b ex:p \"b\" . ex:a ex:p \"a\" .");
+        result = edsService.refreshEDS(context);
+        Assert.assertTrue(result, result.startsWith("EDS content unchanged"));
+        Assert.assertEquals("\"v2\"", edsService.getEDSParams(context).etag);
+        Assert.assertEquals(2, size(context));
+    }
+
+    @Test
+    public void testRefreshChanged() throws Exception {
+        String context = addEDS("changed", "\"v1\"", "ex:a ex:p \"a\" . ex:b ex:p \"b\" . ex:c ex:p \"c\" .");
+        edsService.refreshEDS(context);
+        Assert.assertEquals(3, size(context));
+
+        // only the difference is written
+        setDocument("changed", "\"v2\"", "ex:a ex:p \"a\" . ex:b ex:p \"b2\" . ex:c ex:p \"c\" . ex:d ex:p \"d\" .");
+        String result = edsService.refreshEDS(context);
+        Assert.assertTrue(result, result.contains("1 triples removed, 2 triples added"));
+        Assert.assertEquals(4, size(context));
+        Assert.assertTrue(contains(context, "http://example.org/b", "b2"));
+        Assert.assertFalse(contains(context, "http://example.org/b", "b"));
+    }
+
+    @Test
+    public void testRefreshBlankNodes() throws Exception {
+        String context = addEDS("bnodes", "\"v1\"", "ex:a ex:address [ ex:city \"Sion\" ] .");
+        edsService.refreshEDS(context);
+        Assert.assertEquals(2, size(context));
+
+        // new blank node identifiers, same content: unchanged
+        setDocument("bnodes", "\"v2\"", "ex:a ex:address _:x . _:x ex:city \"Sion\" .");
+        String result = edsService.refreshEDS(context);
+        Assert.assertTrue(result, result.startsWith("EDS content unchanged"));
+
+        // the statements of the blank nodes are replaced, none of the previous ones is left
+        setDocument("bnodes", "\"v3\"", "ex:a ex:address [ ex:city \"Martigny\" ] .");
+        result = edsService.refreshEDS(context);
+        Assert.assertTrue(result, result.contains("2 triples removed, 2 triples added"));
+        Assert.assertEquals(2, size(context));
+    }
+
+    @Test
+    public void testScheduledRefreshPerHostLimit() throws Exception {
+        List<String> scheduled = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            String context = addEDS("scheduled" + i, "\"v1\"", "ex:s" + i + " ex:p \"s\" .");
+            Assert.assertTrue(edsService.setEDSParamsRefreshInterval(context, 1));
+            scheduled.add(context);
+        }
+        Assert.assertEquals(1, edsService.getEDSParams(scheduled.get(0)).refreshInterval);
+
+        delay = 300;
+        maxRunning.set(0);
+        configurationService.setIntConfiguration("EDS.refresh_checkInterval", 1);
+        configurationService.setIntConfiguration("EDS.refresh_threads", 4);
+        configurationService.setIntConfiguration("EDS.refresh_maxPerHost", 1);
+        configurationService.setBooleanConfiguration("EDS.refresh_enabled", true);
+        try {
+            refreshService.shutdown();
+            refreshService.startup();
+
+            long timeout = System.currentTimeMillis() + 30000;
+            while (!refreshService.getLastResults().keySet().containsAll(scheduled) && System.currentTimeMillis() < timeout)
+                Thread.sleep(100);
+        } finally {
+            configurationService.setBooleanConfiguration("EDS.refresh_enabled", false);
+        }
+
+        for (String context : scheduled) {
+            Assert.assertTrue(refreshService.getLastResults().toString(), refreshService.getLastResults().containsKey(context));
+            Assert.assertEquals(1, size(context));
+        }
+        // all the sources are on the same host: never more than one request at a time
+        Assert.assertEquals(1, maxRunning.get());
+    }
+
+    private String addEDS(String name, String etag, String content) throws Exception {
+        setDocument(name, etag, content);
+
+        String context = "http://localhost/EDS-test/" + name;
+        edsService.addEDSParams("RDFFile", "text/turtle", baseUrl + "/" + name + ".ttl", context, "0", null, null);
+        contexts.add(context);
+        return context;
+    }
+
+    private static void setDocument(String name, String etag, String content) {
+        documents.put("/" + name + ".ttl", new String[] { PREFIXES + content, etag });
+    }
+
+    private long size(String context) throws Exception {
+        RepositoryConnection connection = sesameService.getConnection();
+        try {
+            connection.begin();
+            long size = connection.size(connection.getValueFactory().createURI(context));
+            connection.commit();
+            return size;
+        } finally {
+            connection.close();
+        }
+    }
+
+    private boolean contains(String context, String subject, String label) throws Exception {
+        RepositoryConnection connection = sesameService.getConnection();
+        try {
+            connection.begin();
+            URI contextUri = connection.getValueFactory().createURI(context);
+            boolean result = connection.hasStatement(connection.getValueFactory().createURI(subject), null,
+                    connection.getValueFactory().createLiteral(label), false, contextUri);
+            connection.commit();
+            return result;
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Serves the documents with their ETag, answering conditional requests
+     */
+    private static class SourceServlet extends HttpServlet {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            int current = running.incrementAndGet();
+            try {
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), current));
+                }
+                if (delay > 0)
+                    Thread.sleep(delay);
+
+                String[] document = documents.get(req.getRequestURI());
+                if (document == null) {
+                    resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+
+                resp.setHeader("ETag", document[1]);
+                if (document[1].equals(req.getHeader("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+
+                resp.setContentType("text/turtle");
+                resp.setCharacterEncoding("UTF-8");
+                resp.getWriter().write(document[0]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.hevs.overLOD.services;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.test.base.EmbeddedMarmotta;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.RepositoryConnection;
+
+import ch.hevs.overLOD.extDataSources.api.ExtDataSources;
+import ch.hevs.overLOD.extDataSources.exceptions.ExtDataSourcesException;
+import ch.hevs.overLOD.extDataSources.services.ContextBatchWriter;
+
+/**
+ * Test the streaming import of an EDS into the local store, with and without a filter,
+ * in batches smaller than the data set, and the statements left in the context by a failed import
+ */
+public class StreamingImportTest {
+
+    private static final String DATA =
+            "@prefix ex: <http://example.org/> .\n" +
+            "ex:a a ex:City ; ex:name \"A\" .\n" +
+            "ex:b a ex:City ; ex:name \"B\" .\n" +
+            "ex:c a ex:Country ; ex:name \"C\" .\n";
+
+    private static final String FILTER_FILE = "streaming_test_filter.sparql";
+
+    private static final String FILTER =
+            "PREFIX ex: <http://example.org/>\n" +
+            "CONSTRUCT { ?s ex:name ?n } WHERE { ?s a ex:City ; ex:name ?n }";
+
+    private static final String CONTEXT = "http://localhost/EDS-test/streaming";
+
+    private static EmbeddedMarmotta marmotta;
+    private static ExtDataSources edsService;
+    private static SesameService sesameService;
+    private static ConfigurationService configurationService;
+
+    private static Server server;
+    private static String url;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        marmotta = new EmbeddedMarmotta();
+        edsService = marmotta.getService(ExtDataSources.class);
+        sesameService = marmotta.getService(SesameService.class);
+        configurationService = marmotta.getService(ConfigurationService.class);
+
+        configurationService.setBooleanConfiguration("EDS.import_streaming", true);
+        configurationService.setIntConfiguration("EDS.import_batchSize", 2);
+
+        FileUtils.writeStringToFile(new File(configurationService.getHome() + File.separator + "EDS" + File.separator
+                + "EDSFilters" + File.separator + FILTER_FILE), FILTER, "UTF-8");
+
+        ServletContextHandler handler = new ServletContextHandler();
+        handler.addServlet(new ServletHolder(new SourceServlet()), "/*");
+        server = new Server(0);
+        server.setHandler(handler);
+        server.start();
+        url = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/data.ttl";
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.stop();
+        marmotta.shutdown();
+    }
+
+    @After
+    public void clearContext() throws Exception {
+        RepositoryConnection connection = sesameService.getConnection();
+        try {
+            connection.begin();
+            connection.clear(uri(CONTEXT));
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testImport() throws Exception {
+        String result = edsService.importWithLDClient(null, null, "RDFFile", url, CONTEXT, null, null);
+        Assert.assertTrue(result, result.contains("(6 triples)"));
+        Assert.assertEquals(6, size());
+
+        // importing the same data again doesn't duplicate the statements
+        edsService.importWithLDClient(null, null, "RDFFile", url, CONTEXT, null, null);
+        Assert.assertEquals(6, size());
+    }
+
+    @Test
+    public void testImportWithFilter() throws Exception {
+        String result = edsService.importWithLDClient(null, null, "RDFFile", url, CONTEXT, FILTER_FILE, null);
+        Assert.assertTrue(result, result.contains("(2 triples)"));
+        Assert.assertEquals(2, size());
+        Assert.assertTrue(contains("http://example.org/a", "A"));
+        Assert.assertTrue(contains("http://example.org/b", "B"));
+        Assert.assertFalse(contains("http://example.org/c", "C"));
+    }
+
+    @Test
+    public void testImportWithMissingFilter() throws Exception {
+        try {
+            edsService.importWithLDClient(null, null, "RDFFile", url, CONTEXT, "missing_filter.sparql", null);
+            Assert.fail("the filter file doesn't exist");
+        } catch (ExtDataSourcesException e) {
+            // expected
+        }
+        Assert.assertEquals(0, size());
+    }
+
+    @Test
+    public void testBatchesCommittedBeforeRollback() throws Exception {
+        ContextBatchWriter writer = new ContextBatchWriter(sesameService.getRepository(), uri(CONTEXT), 2);
+        ValueFactory factory = sesameService.getValueFactory();
+
+        writer.startRDF();
+        for (int i = 0; i < 5; i++)
+            writer.handleStatement(factory.createStatement(uri("http://example.org/s" + i), uri("http://example.org/p"), factory.createLiteral(i)));
+        writer.rollback();
+
+        // the two first batches remain, the last statement is discarded
+        Assert.assertEquals(5, writer.getCount());
+        Assert.assertEquals(4, writer.getCommittedCount());
+        Assert.assertEquals(4, size());
+    }
+
+    private static URI uri(String uri) {
+        return sesameService.getValueFactory().createURI(uri);
+    }
+
+    private long size() throws Exception {
+        RepositoryConnection connection = sesameService.getConnection();
+        try {
+            connection.begin();
+            long size = connection.size(uri(CONTEXT));
+            connection.commit();
+            return size;
+        } finally {
+            connection.close();
+        }
+    }
+
+    private boolean contains(String subject, String name) throws Exception {
+        RepositoryConnection connection = sesameService.getConnection();
+        try {
+            connection.begin();
+            boolean result = connection.hasStatement(uri(subject), uri("http://example.org/name"),
+                    connection.getValueFactory().createLiteral(name), false, uri(CONTEXT));
+            connection.commit();
+            return result;
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Serves the test data set
+     */
+    private static class SourceServlet extends HttpServlet {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/turtle");
+            resp.setCharacterEncoding("UTF-8");
+            resp.getWriter().write(DATA);
+        }
+    }
+}